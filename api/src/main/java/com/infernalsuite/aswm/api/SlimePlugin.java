@@ -15,6 +15,8 @@ import com.infernalsuite.aswm.api.loaders.SlimeLoader;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Main class of the SWM API. From here, you can load
@@ -74,6 +76,30 @@ public interface SlimePlugin {
      */
     SlimeWorld createEmptyWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) throws WorldAlreadyExistsException, IOException;
 
+    /**
+     * Creates an overlay world on top of a template world and stores it using a specified
+     * {@link SlimeLoader}. Overlays reference their template by name and content hash, and only store the chunks
+     * that differ from it, so creating and saving them is much cheaper than a full clone. Templates are shared
+     * by every loaded overlay using them.
+     * <p>
+     * The template has to be stored in the same data source, and must not be changed or removed while overlays use it.
+     * This world can then be added to the server's world list by using the {@link #loadWorld(SlimeWorld)} method.
+     *
+     * @param loader       {@link SlimeLoader} used to retrieve the template and to store the world.
+     * @param templateName Name of the template world.
+     * @param worldName    Name of the world.
+     * @param readOnly     Whether or not read-only mode is enabled.
+     * @param propertyMap  A {@link SlimePropertyMap} object containing all the properties of the world.
+     * @return A {@link SlimeWorld}, which is the in-memory representation of the world.
+     * @throws WorldAlreadyExistsException if the provided data source already contains a world with the same name.
+     * @throws UnknownWorldException       if the template cannot be found.
+     * @throws CorruptedWorldException     if the template cannot be parsed into a {@link SlimeWorld} object.
+     * @throws NewerFormatException        if the template uses a newer version of the SRF.
+     * @throws IOException                 if the template cannot be obtained or the world could not be stored.
+     */
+    SlimeWorld createOverlayWorld(SlimeLoader loader, String templateName, String worldName, boolean readOnly, SlimePropertyMap propertyMap)
+            throws WorldAlreadyExistsException, UnknownWorldException, CorruptedWorldException, NewerFormatException, IOException;
+
     /**
      * Generates a Minecraft World from a {@link SlimeWorld} and
      * adds it to the server's world list.
@@ -127,13 +153,76 @@ public interface SlimePlugin {
      */
     void importWorld(File worldDir, String worldName, SlimeLoader loader) throws WorldAlreadyExistsException, InvalidWorldException, WorldLoadedException, WorldTooBigException, IOException;
 
-//    CompletableFuture<Optional<SlimeWorld>> asyncLoadWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap);
-//
-//    CompletableFuture<Optional<SlimeWorld>> asyncGetWorld(String worldName);
-//
-//    CompletableFuture<Optional<SlimeWorld>> asyncCreateEmptyWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap);
-//
-//    CompletableFuture<Void> asyncMigrateWorld(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader);
-//
-//    CompletableFuture<Void> asyncImportWorld(File worldDir, String worldName, SlimeLoader loader);
+    /**
+     * Asynchronously loads a world using a specified {@link SlimeLoader}. The world is fetched and parsed on an
+     * I/O thread, and can then be added to the server's world list by calling {@link #loadWorld(SlimeWorld)} from
+     * the main thread. Chunks are only decompressed and decoded once the server accesses them, unless the world was
+     * saved by an older version: those worlds are decoded and upgraded as a whole on the I/O thread.
+     * <p>
+     * {@link com.infernalsuite.aswm.api.events.AsyncPreLoadWorldEvent} is fired before the world is loaded, and
+     * {@link com.infernalsuite.aswm.api.events.AsyncPostLoadWorldEvent} after it has been loaded.
+     *
+     * @param loader      {@link SlimeLoader} used to retrieve the world.
+     * @param worldName   Name of the world.
+     * @param readOnly    Whether or not read-only mode is enabled.
+     * @param propertyMap A {@link SlimePropertyMap} object containing all the properties of the world.
+     * @return A {@link CompletableFuture} completed with the world, or with an empty {@link Optional} if the load was cancelled.
+     * It completes exceptionally with any of the exceptions thrown by {@link #loadWorld(SlimeLoader, String, boolean, SlimePropertyMap)}.
+     */
+    CompletableFuture<Optional<SlimeWorld>> asyncLoadWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap);
+
+    /**
+     * Asynchronously gets a world which has already been loaded by ASWM.
+     * <p>
+     * {@link com.infernalsuite.aswm.api.events.AsyncPreGetWorldEvent} is fired before the world is looked up, and
+     * {@link com.infernalsuite.aswm.api.events.AsyncPostGetWorldEvent} once it has been found.
+     *
+     * @param worldName the name of the world to get
+     * @return A {@link CompletableFuture} completed with the loaded world, or with an empty {@link Optional}
+     * if no loaded world matches the given name or the lookup was cancelled.
+     */
+    CompletableFuture<Optional<SlimeWorld>> asyncGetWorld(String worldName);
+
+    /**
+     * Asynchronously creates an empty world and stores it using a specified {@link SlimeLoader}.
+     * This world can then be added to the server's world list by calling {@link #loadWorld(SlimeWorld)} from the main thread.
+     * <p>
+     * {@link com.infernalsuite.aswm.api.events.AsyncPreCreateEmptyWorldEvent} is fired before the world is created, and
+     * {@link com.infernalsuite.aswm.api.events.AsyncPostCreateEmptyWorldEvent} after it has been stored.
+     *
+     * @param loader      {@link SlimeLoader} used to store the world.
+     * @param worldName   Name of the world.
+     * @param readOnly    Whether or not read-only mode is enabled.
+     * @param propertyMap A {@link SlimePropertyMap} object containing all the properties of the world.
+     * @return A {@link CompletableFuture} completed with the world, or with an empty {@link Optional} if the creation was cancelled.
+     * It completes exceptionally with any of the exceptions thrown by {@link #createEmptyWorld(SlimeLoader, String, boolean, SlimePropertyMap)}.
+     */
+    CompletableFuture<Optional<SlimeWorld>> asyncCreateEmptyWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap);
+
+    /**
+     * Asynchronously migrates a {@link SlimeWorld} to another datasource.
+     * <p>
+     * {@link com.infernalsuite.aswm.api.events.AsyncPostMigrateWorldEvent} is fired after the world has been migrated.
+     *
+     * @param worldName     The name of the world to be migrated.
+     * @param currentLoader The {@link SlimeLoader} of the data source where the world is currently stored in.
+     * @param newLoader     The {@link SlimeLoader} of the data source where the world will be moved to.
+     * @return A {@link CompletableFuture} completed once the world has been migrated.
+     * It completes exceptionally with any of the exceptions thrown by {@link #migrateWorld(String, SlimeLoader, SlimeLoader)}.
+     */
+    CompletableFuture<Void> asyncMigrateWorld(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader);
+
+    /**
+     * Asynchronously imports a world into the SRF and saves it in a data source.
+     * <p>
+     * {@link com.infernalsuite.aswm.api.events.AsyncPreImportWorldEvent} is fired before the world is imported, and
+     * {@link com.infernalsuite.aswm.api.events.AsyncPostImportWorldEvent} after it has been stored.
+     *
+     * @param worldDir  The directory where the world is.
+     * @param worldName The name of the world.
+     * @param loader    The {@link SlimeLoader} that will be used to store the world.
+     * @return A {@link CompletableFuture} completed once the world has been imported, or if the import was cancelled.
+     * It completes exceptionally with any of the exceptions thrown by {@link #importWorld(File, String, SlimeLoader)}.
+     */
+    CompletableFuture<Void> asyncImportWorld(File worldDir, String worldName, SlimeLoader loader);
 }
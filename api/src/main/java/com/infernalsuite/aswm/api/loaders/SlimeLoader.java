@@ -3,7 +3,10 @@ package com.infernalsuite.aswm.api.loaders;
 import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -23,6 +26,33 @@ public interface SlimeLoader {
      */
     byte[] loadWorld(String worldName) throws UnknownWorldException, IOException;
 
+    /**
+     * Load a world's data file into a buffer. Data sources backed by files may
+     * return a memory-mapped buffer instead of copying the file onto the heap.
+     * The contents of the buffer must not change while the world is in use.
+     *
+     * @param worldName The name of the world.
+     * @return The world's data file, contained inside a buffer.
+     * @throws UnknownWorldException if the world cannot be found.
+     * @throws IOException           if the world could not be obtained.
+     */
+    default ByteBuffer loadWorldBuffer(String worldName) throws UnknownWorldException, IOException {
+        return ByteBuffer.wrap(loadWorld(worldName));
+    }
+
+    /**
+     * Opens a world's data file for reading. Data sources that can stream their data
+     * don't have to hold the whole file in memory. The caller has to close the returned stream.
+     *
+     * @param worldName The name of the world.
+     * @return A stream of the world's data file.
+     * @throws UnknownWorldException if the world cannot be found.
+     * @throws IOException           if the world could not be obtained.
+     */
+    default InputStream loadWorldStream(String worldName) throws UnknownWorldException, IOException {
+        return new ByteArrayInputStream(loadWorld(worldName));
+    }
+
     /**
      * Checks whether or not a world exists
      * inside the data source.
@@ -51,6 +81,33 @@ public interface SlimeLoader {
      */
     void saveWorld(String worldName, byte[] serializedWorld) throws IOException;
 
+    /**
+     * Saves the world's data file, but only if the lock of the world is still held with the given fencing token.
+     * A server whose lock expired and was taken over by another server can't overwrite the world anymore.
+     * <p>
+     * By default this calls {@link #saveWorld(String, byte[])}, for data sources that don't hand out tokens.
+     *
+     * @param worldName       The name of the world.
+     * @param serializedWorld The world's data file, contained inside a byte array.
+     * @param lockToken       The fencing token returned by {@link #acquireLockToken(String)}, or 0 to save the world unconditionally.
+     * @throws IOException if the world could not be saved, or its lock is now held with another token.
+     */
+    default void saveWorld(String worldName, byte[] serializedWorld, long lockToken) throws IOException {
+        saveWorld(worldName, serializedWorld);
+    }
+
+    /**
+     * Saves the world's data file, reading it from a stream until it ends. Data sources that can stream their data
+     * don't have to hold the whole file in memory. The stream is not closed.
+     *
+     * @param worldName       The name of the world.
+     * @param serializedWorld A stream of the world's data file.
+     * @throws IOException if the world could not be saved.
+     */
+    default void saveWorldStream(String worldName, InputStream serializedWorld) throws IOException {
+        saveWorld(worldName, serializedWorld.readAllBytes());
+    }
+
     /**
      * Deletes a world from the data source.
      *
@@ -70,6 +127,23 @@ public interface SlimeLoader {
      */
     void acquireLock(String worldName) throws UnknownWorldException, WorldLockedException, IOException;
 
+    /**
+     * Attempts to lock the world in a single atomic step, returning a fencing token. The tokens of a world increase
+     * every time its lock is acquired, so the holder of an expired lock can be told apart from the current one.
+     * <p>
+     * By default this calls {@link #acquireLock(String)} and returns 0, for data sources that don't hand out tokens.
+     *
+     * @param worldName name of the world
+     * @return the fencing token of the lock, or 0 if the data source doesn't hand out tokens
+     * @throws UnknownWorldException If the world could not be found
+     * @throws WorldLockedException  If the world is already locked
+     * @throws IOException If the world could not be locked
+     */
+    default long acquireLockToken(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        acquireLock(worldName);
+        return 0;
+    }
+
     /**
      * Checks whether or not a world is locked.
      *
@@ -89,4 +163,36 @@ public interface SlimeLoader {
      */
     void unlockWorld(String worldName) throws UnknownWorldException, IOException;
 
+    /**
+     * Checks whether or not the data source can store zstd dictionaries.
+     *
+     * @return <code>true</code> if dictionaries can be saved through {@link #saveDictionary(int, byte[])}, <code>false</code> otherwhise.
+     */
+    default boolean supportsDictionaries() {
+        return false;
+    }
+
+    /**
+     * Loads a zstd dictionary stored inside the data source.
+     *
+     * @param dictionaryId The id of the dictionary.
+     * @return The dictionary, or <code>null</code> if the data source doesn't contain it.
+     * @throws IOException if the dictionary could not be obtained.
+     */
+    default byte[] loadDictionary(int dictionaryId) throws IOException {
+        return null;
+    }
+
+    /**
+     * Stores a zstd dictionary inside the data source, next to the worlds compressed with it.
+     *
+     * @param dictionaryId The id of the dictionary.
+     * @param dictionary   The dictionary, contained inside a byte array.
+     * @throws IOException if the dictionary could not be saved.
+     * @throws UnsupportedOperationException if the data source doesn't {@link #supportsDictionaries() support dictionaries}.
+     */
+    default void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        throw new UnsupportedOperationException("This data source doesn't support dictionaries");
+    }
+
 }
@@ -1,45 +1,185 @@
 package com.infernalsuite.aswm.api.utils;
 
+import java.util.Arrays;
+
 /**
  * Credits to Minikloon for this class.
  *
  * Source: https://github.com/Minikloon/CraftyWorld/blob/master/crafty-common/src/main/kotlin/world/crafty/common/utils/NibbleArray.kt
+ * <p>
+ * Arrays where every nibble has the same value, like fully lit or fully dark light data,
+ * only store that value until a different one is written or the backing array is requested.
+ * Uniform arrays are expanded at most once, even when several threads expand them at the same time.
+ * <p>
+ * Arrays returned by {@link #share()} use the backing array of the array they were shared from
+ * until they're written to or their backing array is requested, they copy it at that point.
  */
 public class NibbleArray {
 
-    private final byte[] backing;
+    private final int length;
+    private volatile byte[] backing;
+    private final int uniformValue;
+    private volatile boolean shared;
 
     public NibbleArray(int size) {
-        this(new byte[size / 2]);
+        this(size / 2, null, 0);
     }
 
     public NibbleArray(byte[] backing) {
+        this(backing.length, backing, 0);
+    }
+
+    private NibbleArray(int length, byte[] backing, int uniformValue) {
+        this.length = length;
         this.backing = backing;
+        this.uniformValue = uniformValue;
+    }
+
+    /**
+     * Creates an array where every nibble has the same value, without allocating its backing array.
+     *
+     * @param size  the amount of nibbles
+     * @param value the value of every nibble
+     * @return the array
+     */
+    public static NibbleArray uniform(int size, int value) {
+        return new NibbleArray(size / 2, null, value & 0xF);
     }
 
     public int get(int index) {
-        int value = this.backing[index / 2];
+        byte[] backing = this.backing;
+        if (backing == null) {
+            return this.uniformValue;
+        }
+
+        int value = backing[index / 2];
 
         return index % 2 == 0 ? value & 0xF : (value & 0xF0) >> 4;
     }
 
     public void set(int index, int value) {
         int nibble = value & 0xF;
+        byte[] backing = this.backing;
+        if (backing == null) {
+            if (nibble == this.uniformValue) {
+                return;
+            }
+
+            backing = expand();
+        } else if (this.shared) {
+            backing = unshare();
+        }
+
         int halfIndex = index / 2;
-        int previous = this.backing[halfIndex];
+        int previous = backing[halfIndex];
 
         if (index % 2 == 0) {
-            this.backing[halfIndex] = (byte) (previous & 0xF0 | nibble);
+            backing[halfIndex] = (byte) (previous & 0xF0 | nibble);
         } else {
-            this.backing[halfIndex] = (byte) (previous & 0xF | nibble << 4);
+            backing[halfIndex] = (byte) (previous & 0xF | nibble << 4);
         }
     }
 
+    /**
+     * Returns the value every nibble of this array has in common.
+     *
+     * @return the value of every nibble, or <code>-1</code> if they're not all the same
+     */
+    public int getUniformValue() {
+        byte[] backing = this.backing;
+        if (backing == null) {
+            return this.uniformValue;
+        }
+
+        if (backing.length == 0) {
+            return 0;
+        }
+
+        byte first = backing[0];
+        if ((first & 0xF) != (first >> 4 & 0xF)) {
+            return -1;
+        }
+
+        for (byte value : backing) {
+            if (value != first) {
+                return -1;
+            }
+        }
+
+        return first & 0xF;
+    }
+
+    /**
+     * Returns the backing array. Uniform arrays are expanded into a full array first.
+     *
+     * @return the backing array
+     */
     public byte[] getBacking() {
-        return backing;
+        byte[] backing = this.backing;
+        if (backing == null) {
+            return expand();
+        }
+
+        return this.shared ? unshare() : backing;
+    }
+
+    /**
+     * Returns the nibbles as a byte array. Unlike {@link #getBacking()}, uniform arrays stay uniform
+     * and return a new array filled with their value instead.
+     *
+     * @return the backing array, or a new array if this array is uniform
+     */
+    public byte[] toByteArray() {
+        byte[] backing = this.backing;
+        if (backing == null) {
+            return fill(this.length, this.uniformValue);
+        }
+
+        return this.shared ? unshare() : backing;
     }
 
     public NibbleArray clone() {
-        return new NibbleArray(this.backing.clone());
+        byte[] backing = this.backing;
+        return new NibbleArray(this.length, backing == null ? null : backing.clone(), this.uniformValue);
+    }
+
+    /**
+     * Returns an array with the same nibbles that doesn't copy them until it's written to or its backing
+     * array is requested. This array must not be written to afterwards, as the shared array would see the change.
+     *
+     * @return the shared array
+     */
+    public NibbleArray share() {
+        byte[] backing = this.backing;
+        NibbleArray shared = new NibbleArray(this.length, backing, this.uniformValue);
+        shared.shared = backing != null;
+        return shared;
+    }
+
+    private synchronized byte[] unshare() {
+        byte[] backing = this.backing;
+        if (this.shared) {
+            backing = backing.clone();
+            this.backing = backing;
+            this.shared = false;
+        }
+
+        return backing;
+    }
+
+    private synchronized byte[] expand() {
+        byte[] backing = this.backing;
+        if (backing == null) {
+            backing = fill(this.length, this.uniformValue);
+            this.backing = backing;
+        }
+
+        return backing;
+    }
+
+    private static byte[] fill(int length, int value) {
+        byte[] filled = new byte[length];
+        Arrays.fill(filled, (byte) (value | value << 4));
+        return filled;
     }
 }
@@ -6,6 +6,9 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * In-memory representation of a SRF chunk section.
+ * <p>
+ * Identical sections of a world may share their block state and biome tags, so those tags
+ * must not be modified in place. Light arrays copy shared data before they're written to.
  */
 public interface SlimeChunkSection {
 
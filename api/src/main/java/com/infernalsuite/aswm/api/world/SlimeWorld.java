@@ -123,4 +123,14 @@ public interface SlimeWorld {
     }
 
     int getDataVersion();
+
+    /**
+     * Returns the fencing token of the lock this world was loaded with, which has to be handed
+     * to {@link SlimeLoader#saveWorld(String, byte[], long)} when the world is saved.
+     *
+     * @return the fencing token, or 0 if the world wasn't loaded with a lock
+     */
+    default long getLockToken() {
+        return 0;
+    }
 }
@@ -99,5 +99,46 @@ public class SlimeProperties {
     @ApiStatus.Experimental
     public static final SlimeProperty<Integer> CHUNK_SECTION_MAX = new SlimePropertyInt("chunkSectionMin", 19);
 
+    /**
+     * The id of the zstd dictionary the world is compressed with, or 0 to not use a dictionary.
+     * The dictionary has to be stored in the data source of the world, and is only used by the zstd codec.
+     */
+    @ApiStatus.Experimental
+    public static final SlimeProperty<Integer> DICTIONARY = new SlimePropertyInt("dictionary", 0);
+
+    /**
+     * The codec used to compress the world, either "zstd", "lz4" or "none"
+     */
+    @ApiStatus.Experimental
+    public static final SlimeProperty<String> COMPRESSION = new SlimePropertyString("compression", "zstd", (value) ->
+        value.equalsIgnoreCase("zstd") || value.equalsIgnoreCase("lz4") || value.equalsIgnoreCase("none")
+    );
+
+    /**
+     * The compression level, 0 to use the default level of the codec.
+     * Zstd supports levels up to 22 and negative levels for faster compression,
+     * LZ4 uses its high compression mode for levels from 1 to 17.
+     */
+    @ApiStatus.Experimental
+    public static final SlimeProperty<Integer> COMPRESSION_LEVEL = new SlimePropertyInt("compressionLevel", 0, (value) -> value <= 22);
+
+    /**
+     * Whether identical chunk sections, like the empty sections or flat layers of a generated world,
+     * are stored once in a section table and referenced by the chunks using them. Loaded chunks share the
+     * table's sections in memory too. Chunks reference the table by index, so every save re-encodes all chunks
+     * instead of reusing the frames of unchanged chunks
+     */
+    @ApiStatus.Experimental
+    public static final SlimeProperty<Boolean> DEDUPLICATE_SECTIONS = new SlimePropertyBoolean("deduplicateSections", false);
+
+    /**
+     * What to do with chunks whose checksum doesn't match when the world is loaded, either "fail" to not load
+     * the world, or "skip" to load it without them. Skipped chunks are generated again by the world generator
+     */
+    @ApiStatus.Experimental
+    public static final SlimeProperty<String> CHUNK_RECOVERY = new SlimePropertyString("chunkRecovery", "fail", (value) ->
+        value.equalsIgnoreCase("fail") || value.equalsIgnoreCase("skip")
+    );
+
 
 }
@@ -1,7 +1,22 @@
 plugins {
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 dependencies {
     compileOnly(project(":api"))
     implementation("com.github.luben:zstd-jni:1.5.2-2")
+    implementation("org.lz4:lz4-java:1.8.0")
+
+    jmh(project(":api"))
+
+    testImplementation(project(":api"))
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
+}
+
+jmh {
+    jmhVersion.set("1.36")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
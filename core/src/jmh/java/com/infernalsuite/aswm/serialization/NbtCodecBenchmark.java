@@ -0,0 +1,117 @@
+package com.infernalsuite.aswm.serialization;
+
+import com.flowpowered.nbt.ByteTag;
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.FloatTag;
+import com.flowpowered.nbt.IntArrayTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.ShortTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.flowpowered.nbt.stream.NBTInputStream;
+import com.flowpowered.nbt.stream.NBTOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link NbtCodec} with flow-nbt's streams, on a list of entity-like compounds
+ * similar to the entities section of a world.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NbtCodecBenchmark {
+
+    private static final String[] ENTITY_IDS = {"minecraft:pig", "minecraft:cow", "minecraft:sheep", "minecraft:item_frame", "minecraft:armor_stand"};
+
+    @Param({"16", "1024"})
+    private int entities;
+
+    private CompoundTag compound;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        this.compound = createEntities(this.entities);
+        this.serialized = NbtCodec.serializeCompound(this.compound);
+    }
+
+    @Benchmark
+    public byte[] writeNbtCodec() throws IOException {
+        return NbtCodec.serializeCompound(this.compound);
+    }
+
+    @Benchmark
+    public byte[] writeFlowNbt() throws IOException {
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        NBTOutputStream outStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+        outStream.writeTag(this.compound);
+
+        return outByteStream.toByteArray();
+    }
+
+    @Benchmark
+    public CompoundTag readNbtCodec() throws IOException {
+        return NbtCodec.readCompound(this.serialized);
+    }
+
+    @Benchmark
+    public CompoundTag readFlowNbt() throws IOException {
+        NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(this.serialized), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
+        return (CompoundTag) stream.readTag();
+    }
+
+    private static CompoundTag createEntities(int count) {
+        Random random = new Random(0);
+        List<CompoundTag> entities = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            CompoundMap entity = new CompoundMap();
+            entity.put(new StringTag("id", ENTITY_IDS[random.nextInt(ENTITY_IDS.length)]));
+            entity.put(new ListTag<>("Pos", TagType.TAG_DOUBLE, List.of(new DoubleTag("", random.nextDouble() * 512),
+                    new DoubleTag("", 64 + random.nextDouble() * 16), new DoubleTag("", random.nextDouble() * 512))));
+            entity.put(new ListTag<>("Motion", TagType.TAG_DOUBLE, List.of(new DoubleTag("", 0), new DoubleTag("", -0.0784), new DoubleTag("", 0))));
+            entity.put(new ListTag<>("Rotation", TagType.TAG_FLOAT, List.of(new FloatTag("", random.nextFloat() * 360), new FloatTag("", 0))));
+            entity.put(new FloatTag("Health", 10));
+            entity.put(new ShortTag("Air", (short) 300));
+            entity.put(new ByteTag("OnGround", (byte) 1));
+            entity.put(new IntTag("PortalCooldown", 0));
+            entity.put(new IntArrayTag("UUID", new int[]{random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt()}));
+
+            CompoundMap brain = new CompoundMap();
+            brain.put(new CompoundTag("memories", new CompoundMap()));
+            entity.put(new CompoundTag("Brain", brain));
+
+            entities.add(new CompoundTag("", entity));
+        }
+
+        CompoundMap root = new CompoundMap();
+        root.put(new ListTag<>("entities", TagType.TAG_COMPOUND, entities));
+        return new CompoundTag("", root);
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.github.luben.zstd.Zstd;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per chunk frames of the current format, which are compressed and decompressed in parallel
+ * and store palettes in binary, with the single zstd frame of nbt chunks that v10 worlds use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SlimeSerializerBenchmark {
+
+    private static final String[] BLOCKS = {"minecraft:air", "minecraft:stone", "minecraft:dirt", "minecraft:grass_block", "minecraft:oak_log"};
+
+    @Param({"8", "16"})
+    private int radius;
+
+    private SlimeWorld world;
+    private byte[] framedWorld;
+    private byte[] singleFrameWorld;
+
+    @Setup
+    public void setup() throws IOException {
+        this.world = createWorld(this.radius);
+        this.framedWorld = SlimeSerializer.serialize(this.world);
+        this.singleFrameWorld = serializeSingleFrame(this.world);
+    }
+
+    @Benchmark
+    public byte[] serializeFrames() {
+        return SlimeSerializer.serialize(this.world);
+    }
+
+    @Benchmark
+    public byte[] serializeSingleFrame() throws IOException {
+        return serializeSingleFrame(this.world);
+    }
+
+    @Benchmark
+    public int readFrames() throws Exception {
+        return readAllChunks(this.framedWorld);
+    }
+
+    @Benchmark
+    public int readSingleFrame() throws Exception {
+        return readAllChunks(this.singleFrameWorld);
+    }
+
+    private static int readAllChunks(byte[] serializedWorld) throws Exception {
+        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(null, "benchmark", serializedWorld, new SlimePropertyMap());
+
+        // Iterating decodes every chunk
+        int sections = 0;
+        for (SlimeChunk chunk : world.getChunkStorage()) {
+            sections += chunk.getSections().length;
+        }
+
+        return sections;
+    }
+
+    // Same layout as the v10 serializer, all chunks are compressed as a single zstd frame
+    private static byte[] serializeSingleFrame(SlimeWorld world) throws IOException {
+        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
+        DataOutputStream outStream = new DataOutputStream(outByteStream);
+        outStream.write(SlimeFormat.SLIME_HEADER);
+        outStream.writeByte(10);
+        outStream.writeInt(world.getDataVersion());
+
+        ByteArrayOutputStream chunkByteStream = new ByteArrayOutputStream();
+        DataOutputStream chunkStream = new DataOutputStream(chunkByteStream);
+        List<CompoundTag> tileEntities = new ArrayList<>();
+        List<CompoundTag> entities = new ArrayList<>();
+        chunkStream.writeInt(world.getChunkStorage().size());
+        for (SlimeChunk chunk : world.getChunkStorage()) {
+            serializeNbtChunk(chunkStream, chunk);
+            tileEntities.addAll(chunk.getTileEntities());
+            entities.addAll(chunk.getEntities());
+        }
+
+        writeCompressed(outStream, chunkByteStream.toByteArray());
+        writeCompressed(outStream, SlimeSerializer.serializeCompoundTag(listCompound("tiles", tileEntities)));
+        writeCompressed(outStream, SlimeSerializer.serializeCompoundTag(listCompound("entities", entities)));
+        writeCompressed(outStream, SlimeSerializer.serializeCompoundTag(world.getExtraData()));
+
+        return outByteStream.toByteArray();
+    }
+
+    // v10 chunk layout, every tag is stored as nbt
+    private static void serializeNbtChunk(DataOutputStream outStream, SlimeChunk chunk) throws IOException {
+        outStream.writeInt(chunk.getX());
+        outStream.writeInt(chunk.getZ());
+        writeTag(outStream, chunk.getHeightMaps());
+
+        outStream.writeInt(chunk.getSections().length);
+        for (SlimeChunkSection section : chunk.getSections()) {
+            outStream.writeBoolean(section.getBlockLight() != null);
+            if (section.getBlockLight() != null) {
+                outStream.write(section.getBlockLight().getBacking());
+            }
+
+            outStream.writeBoolean(section.getSkyLight() != null);
+            if (section.getSkyLight() != null) {
+                outStream.write(section.getSkyLight().getBacking());
+            }
+
+            writeTag(outStream, section.getBlockStatesTag());
+            writeTag(outStream, section.getBiomeTag());
+        }
+    }
+
+    private static void writeTag(DataOutputStream outStream, CompoundTag tag) throws IOException {
+        byte[] serializedTag = SlimeSerializer.serializeCompoundTag(tag);
+        outStream.writeInt(serializedTag.length);
+        outStream.write(serializedTag);
+    }
+
+    private static void writeCompressed(DataOutputStream outStream, byte[] data) throws IOException {
+        byte[] compressed = Zstd.compress(data);
+        outStream.writeInt(compressed.length);
+        outStream.writeInt(data.length);
+        outStream.write(compressed);
+    }
+
+    private static CompoundTag listCompound(String name, List<CompoundTag> tags) {
+        CompoundMap map = new CompoundMap();
+        map.put(name, new ListTag<>(name, TagType.TAG_COMPOUND, tags));
+        return new CompoundTag("", map);
+    }
+
+    private static SlimeWorld createWorld(int radius) {
+        Random random = new Random(0);
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>();
+
+        for (int x = -radius; x < radius; x++) {
+            for (int z = -radius; z < radius; z++) {
+                SlimeChunkSection[] sections = new SlimeChunkSection[24];
+                for (int i = 0; i < sections.length; i++) {
+                    sections[i] = new SlimeChunkSectionSkeleton(blockStates(random, i), biomes(), light(random, i), light(random, i + 1));
+                }
+
+                CompoundMap heightMaps = new CompoundMap();
+                heightMaps.put(new LongArrayTag("MOTION_BLOCKING", new long[37]));
+
+                List<CompoundTag> tileEntities = new ArrayList<>();
+                List<CompoundTag> entities = new ArrayList<>();
+                if ((x + z) % 3 == 0) {
+                    CompoundMap tileEntity = new CompoundMap();
+                    tileEntity.put(new StringTag("id", "minecraft:chest"));
+                    tileEntity.put(new IntTag("x", x * 16 + 3));
+                    tileEntity.put(new IntTag("y", 64));
+                    tileEntity.put(new IntTag("z", z * 16 + 5));
+                    tileEntities.add(new CompoundTag("", tileEntity));
+
+                    CompoundMap entity = new CompoundMap();
+                    entity.put(new StringTag("id", "minecraft:pig"));
+                    entity.put(new ListTag<>("Pos", TagType.TAG_DOUBLE, List.of(new DoubleTag("", x * 16 + 1.5),
+                            new DoubleTag("", 70), new DoubleTag("", z * 16 + 2.5))));
+                    entities.add(new CompoundTag("", entity));
+                }
+
+                chunks.put(new ChunkPos(x, z), new SlimeChunkSkeleton(x, z, sections, new CompoundTag("", heightMaps), tileEntities, entities));
+            }
+        }
+
+        return new SkeletonSlimeWorld("benchmark", null, chunks, new CompoundTag("", new CompoundMap()), new SlimePropertyMap(), 3120);
+    }
+
+    private static CompoundTag blockStates(Random random, int section) {
+        CompoundMap blockStates = new CompoundMap();
+        List<CompoundTag> palette = new ArrayList<>();
+        int paletteSize = section > 12 ? 1 : 1 + random.nextInt(BLOCKS.length);
+        for (int i = 0; i < paletteSize; i++) {
+            CompoundMap block = new CompoundMap();
+            block.put(new StringTag("Name", BLOCKS[(i + section) % BLOCKS.length]));
+            palette.add(new CompoundTag("", block));
+        }
+
+        blockStates.put(new ListTag<>("palette", TagType.TAG_COMPOUND, palette));
+        if (paletteSize > 1) {
+            // Mostly repeating block data, like natural terrain
+            long[] data = new long[256];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = i % 8 == 0 ? random.nextLong() : data[Math.max(0, i - 1)];
+            }
+            blockStates.put(new LongArrayTag("data", data));
+        }
+
+        return new CompoundTag("", blockStates);
+    }
+
+    private static CompoundTag biomes() {
+        CompoundMap biomes = new CompoundMap();
+        biomes.put(new ListTag<>("palette", TagType.TAG_STRING, List.of(new StringTag("", "minecraft:plains"))));
+        return new CompoundTag("", biomes);
+    }
+
+    private static NibbleArray light(Random random, int section) {
+        if (section % 3 == 0) {
+            return null;
+        }
+
+        byte[] light = new byte[2048];
+        if (section % 3 == 1) {
+            light[random.nextInt(light.length)] = (byte) 0xFF;
+        }
+        return new NibbleArray(light);
+    }
+
+}
@@ -2,4 +2,12 @@ package com.infernalsuite.aswm;
 
 public record ChunkPos(int x, int z) {
 
+    public static ChunkPos fromKey(long key) {
+        return new ChunkPos((int) key, (int) (key >>> 32));
+    }
+
+    public long toKey() {
+        return (this.x & 0xFFFFFFFFL) | ((this.z & 0xFFFFFFFFL) << 32);
+    }
+
 }
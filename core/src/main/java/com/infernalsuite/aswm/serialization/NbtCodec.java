@@ -0,0 +1,384 @@
+package com.infernalsuite.aswm.serialization;
+
+import com.flowpowered.nbt.ByteArrayTag;
+import com.flowpowered.nbt.ByteTag;
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.FloatTag;
+import com.flowpowered.nbt.IntArrayTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.LongTag;
+import com.flowpowered.nbt.ShortTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.Tag;
+import com.flowpowered.nbt.TagType;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads and writes uncompressed, big endian nbt compounds, in the same format as flow-nbt's streams.
+ * <p>
+ * Tags are read straight out of a {@link ByteBuffer} and written to a {@link DataOutput}, so no stream
+ * objects are created per compound. Every thread reuses its own output buffer, and short strings,
+ * which are mostly compound keys and ids, are resolved through a per thread cache instead of being decoded again.
+ */
+public final class NbtCodec {
+
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_SHORT = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+
+    private static final int MAX_DEPTH = 512;
+    private static final int MAX_STRING_LENGTH = 0xFFFF;
+    private static final int MAX_CACHED_STRING_LENGTH = 64;
+    private static final int STRING_CACHE_SIZE = 1024; // Has to be a power of two
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private NbtCodec() {
+    }
+
+    /**
+     * Serializes a compound, including its type and name.
+     *
+     * @param tag the compound to serialize
+     * @return the serialized compound, or an empty array if the compound is <code>null</code> or empty
+     * @throws IOException if the compound contains a tag that can't be serialized
+     */
+    public static byte[] serializeCompound(CompoundTag tag) throws IOException {
+        if (tag == null || tag.getValue().isEmpty()) {
+            return new byte[0];
+        }
+
+        Buffers buffers = BUFFERS.get();
+        buffers.output.reset();
+        try {
+            writeCompound(buffers.dataOutput, tag);
+            return buffers.output.toByteArray();
+        } finally {
+            buffers.output.trim();
+        }
+    }
+
+    /**
+     * Writes a compound, including its type and name.
+     *
+     * @param out the output the compound is written to
+     * @param tag the compound to write
+     * @throws IOException if the output can't be written to, or the compound contains a tag that can't be serialized
+     */
+    public static void writeCompound(DataOutput out, CompoundTag tag) throws IOException {
+        out.writeByte(TAG_COMPOUND);
+        writeString(out, tag.getName());
+        writePayload(out, tag, 0);
+    }
+
+    /**
+     * Reads a compound serialized by {@link #serializeCompound(CompoundTag)}.
+     *
+     * @param bytes the serialized compound
+     * @return the compound, or <code>null</code> if the array is empty
+     * @throws IOException if the data isn't a valid compound
+     */
+    public static CompoundTag readCompound(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return null;
+        }
+
+        return readCompound(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads a compound, including its type and name, starting at the position of the buffer.
+     * The position of the buffer is moved past the compound.
+     *
+     * @param buffer the buffer the compound is read from
+     * @return the compound
+     * @throws IOException if the data isn't a valid compound
+     */
+    public static CompoundTag readCompound(ByteBuffer buffer) throws IOException {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        Buffers buffers = BUFFERS.get();
+
+        try {
+            int type = Byte.toUnsignedInt(in.get());
+            if (type != TAG_COMPOUND) {
+                throw new IOException("Root tag is of type " + type + ", not a compound");
+            }
+
+            String name = readString(in, buffers);
+            CompoundTag tag = new CompoundTag(name, readCompoundPayload(in, buffers, 0));
+            buffer.position(in.position());
+            return tag;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IOException("Truncated nbt data", ex);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Tag<?> readTag(ByteBuffer in, Buffers buffers, int type, String name, int depth) throws IOException {
+        switch (type) {
+            case TAG_BYTE -> {
+                return new ByteTag(name, in.get());
+            }
+            case TAG_SHORT -> {
+                return new ShortTag(name, in.getShort());
+            }
+            case TAG_INT -> {
+                return new IntTag(name, in.getInt());
+            }
+            case TAG_LONG -> {
+                return new LongTag(name, in.getLong());
+            }
+            case TAG_FLOAT -> {
+                return new FloatTag(name, in.getFloat());
+            }
+            case TAG_DOUBLE -> {
+                return new DoubleTag(name, in.getDouble());
+            }
+            case TAG_BYTE_ARRAY -> {
+                byte[] bytes = new byte[readArrayLength(in, Byte.BYTES)];
+                in.get(bytes);
+                return new ByteArrayTag(name, bytes);
+            }
+            case TAG_STRING -> {
+                return new StringTag(name, readString(in, buffers));
+            }
+            case TAG_LIST -> {
+                checkDepth(depth);
+                int elementType = Byte.toUnsignedInt(in.get());
+                int size = in.getInt();
+                if (size < 0 || (size > 0 && elementType == TAG_END)) {
+                    throw new IOException("Invalid list of " + size + " elements of type " + elementType);
+                }
+
+                List<Tag<?>> elements = new ArrayList<>(Math.min(size, in.remaining()));
+                for (int i = 0; i < size; i++) {
+                    elements.add(readTag(in, buffers, elementType, "", depth + 1));
+                }
+
+                return new ListTag(name, TagType.getById(elementType), elements);
+            }
+            case TAG_COMPOUND -> {
+                return new CompoundTag(name, readCompoundPayload(in, buffers, depth + 1));
+            }
+            case TAG_INT_ARRAY -> {
+                int[] ints = new int[readArrayLength(in, Integer.BYTES)];
+                in.asIntBuffer().get(ints);
+                in.position(in.position() + ints.length * Integer.BYTES);
+                return new IntArrayTag(name, ints);
+            }
+            case TAG_LONG_ARRAY -> {
+                long[] longs = new long[readArrayLength(in, Long.BYTES)];
+                in.asLongBuffer().get(longs);
+                in.position(in.position() + longs.length * Long.BYTES);
+                return new LongArrayTag(name, longs);
+            }
+            default -> throw new IOException("Unknown tag type " + type);
+        }
+    }
+
+    private static CompoundMap readCompoundPayload(ByteBuffer in, Buffers buffers, int depth) throws IOException {
+        checkDepth(depth);
+
+        CompoundMap map = new CompoundMap();
+        int type;
+        while ((type = Byte.toUnsignedInt(in.get())) != TAG_END) {
+            String name = readString(in, buffers);
+            map.put(readTag(in, buffers, type, name, depth));
+        }
+
+        return map;
+    }
+
+    private static int readArrayLength(ByteBuffer in, int elementSize) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / elementSize) {
+            throw new IOException("Invalid array length " + length);
+        }
+
+        return length;
+    }
+
+    private static String readString(ByteBuffer in, Buffers buffers) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length > MAX_CACHED_STRING_LENGTH) {
+            if (in.hasArray()) {
+                String string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+                return string;
+            }
+
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        byte[] scratch = buffers.stringScratch;
+        in.get(scratch, 0, length);
+
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + scratch[i];
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+        byte[] cachedBytes = buffers.cachedBytes[slot];
+        if (cachedBytes != null && Arrays.equals(cachedBytes, 0, cachedBytes.length, scratch, 0, length)) {
+            return buffers.cachedStrings[slot];
+        }
+
+        String string = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        buffers.cachedBytes[slot] = Arrays.copyOf(scratch, length);
+        buffers.cachedStrings[slot] = string;
+        return string;
+    }
+
+    private static void writePayload(DataOutput out, Tag<?> tag, int depth) throws IOException {
+        switch (tag.getType()) {
+            case TAG_BYTE -> out.writeByte(((ByteTag) tag).getValue());
+            case TAG_SHORT -> out.writeShort(((ShortTag) tag).getValue());
+            case TAG_INT -> out.writeInt(((IntTag) tag).getValue());
+            case TAG_LONG -> out.writeLong(((LongTag) tag).getValue());
+            case TAG_FLOAT -> out.writeFloat(((FloatTag) tag).getValue());
+            case TAG_DOUBLE -> out.writeDouble(((DoubleTag) tag).getValue());
+            case TAG_BYTE_ARRAY -> {
+                byte[] bytes = ((ByteArrayTag) tag).getValue();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            case TAG_STRING -> writeString(out, ((StringTag) tag).getValue());
+            case TAG_LIST -> {
+                checkDepth(depth);
+                ListTag<?> list = (ListTag<?>) tag;
+                out.writeByte(list.getElementType().getId());
+                out.writeInt(list.getValue().size());
+                for (Tag<?> element : list.getValue()) {
+                    writePayload(out, element, depth + 1);
+                }
+            }
+            case TAG_COMPOUND -> {
+                checkDepth(depth);
+                for (Tag<?> child : ((CompoundTag) tag).getValue().values()) {
+                    out.writeByte(child.getType().getId());
+                    writeString(out, child.getName());
+                    writePayload(out, child, depth + 1);
+                }
+                out.writeByte(TAG_END);
+            }
+            case TAG_INT_ARRAY -> {
+                int[] ints = ((IntArrayTag) tag).getValue();
+                out.writeInt(ints.length);
+                for (int value : ints) {
+                    out.writeInt(value);
+                }
+            }
+            case TAG_LONG_ARRAY -> {
+                long[] longs = ((LongArrayTag) tag).getValue();
+                out.writeInt(longs.length);
+                for (long value : longs) {
+                    out.writeLong(value);
+                }
+            }
+            default -> throw new IOException("Unsupported tag type " + tag.getType());
+        }
+    }
+
+    private static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IOException("String of " + bytes.length + " bytes is too long");
+        }
+
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void checkDepth(int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("Nbt is nested deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+
+    private static final class Buffers {
+
+        private final OutputBuffer output = new OutputBuffer();
+        private final DataOutputStream dataOutput = new DataOutputStream(this.output);
+        private final byte[] stringScratch = new byte[MAX_CACHED_STRING_LENGTH];
+        private final byte[][] cachedBytes = new byte[STRING_CACHE_SIZE][];
+        private final String[] cachedStrings = new String[STRING_CACHE_SIZE];
+
+    }
+
+    // Unsynchronized ByteArrayOutputStream, which drops its array after growing too large
+    private static final class OutputBuffer extends OutputStream {
+
+        private static final int INITIAL_SIZE = 8 * 1024;
+        private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+        private byte[] buffer = new byte[INITIAL_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(this.count + 1);
+            this.buffer[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(this.count + len);
+            System.arraycopy(b, off, this.buffer, this.count, len);
+            this.count += len;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity < 0) {
+                throw new OutOfMemoryError("Serialized nbt is too big");
+            }
+
+            if (capacity > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length * 2));
+            }
+        }
+
+        private void reset() {
+            this.count = 0;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.count);
+        }
+
+        private void trim() {
+            if (this.buffer.length > MAX_RETAINED_SIZE) {
+                this.buffer = new byte[INITIAL_SIZE];
+            }
+        }
+
+    }
+
+}
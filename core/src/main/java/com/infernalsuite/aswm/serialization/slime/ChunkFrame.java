@@ -0,0 +1,24 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+/**
+ * A compressed chunk, as stored in the chunk frames of a world.
+ *
+ * @param key        the key of the chunk position
+ * @param length     the uncompressed size of the chunk
+ * @param compressed the compressed chunk
+ */
+public record ChunkFrame(long key, int length, byte[] compressed) {
+
+    private static final XXHash64 HASH = XXHashFactory.fastestInstance().hash64();
+
+    /**
+     * @return the xxHash64 of the compressed chunk
+     */
+    public long hash() {
+        return HASH.hash(this.compressed, 0, this.compressed.length, 0);
+    }
+
+}
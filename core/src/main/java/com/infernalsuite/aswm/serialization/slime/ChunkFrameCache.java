@@ -0,0 +1,64 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compressed frames of the chunks written by the last save of a world. Saving the same chunk object again reuses its
+ * frame instead of serializing and compressing the chunk, so chunks must not be modified in place once they're saved.
+ */
+public final class ChunkFrameCache {
+
+    private final Map<ChunkPos, Entry> frames = new ConcurrentHashMap<>();
+    private volatile Compression compression;
+
+    /**
+     * Drops every cached frame if the world is now compressed with a different codec, dictionary or level.
+     */
+    void prepare(SlimeCodec codec, int level) {
+        Compression compression = new Compression(codec.getId(), codec.getDictionaryId(), level);
+        if (!compression.equals(this.compression)) {
+            this.frames.clear();
+            this.compression = compression;
+        }
+    }
+
+    ChunkFrame get(SlimeChunk chunk) {
+        Entry entry = this.frames.get(new ChunkPos(chunk.getX(), chunk.getZ()));
+        return entry != null && entry.chunk() == chunk ? entry.frame() : null;
+    }
+
+    void put(SlimeChunk chunk, ChunkFrame frame) {
+        this.frames.put(new ChunkPos(chunk.getX(), chunk.getZ()), new Entry(chunk, frame));
+    }
+
+    /**
+     * Drops the frames of the chunks that weren't written by the last save.
+     *
+     * @param writtenKeys the keys of the chunks written by the last save
+     */
+    void retain(Set<Long> writtenKeys) {
+        this.frames.keySet().removeIf(pos -> !writtenKeys.contains(pos.toKey()));
+    }
+
+    /**
+     * Drops every cached frame.
+     */
+    public void clear() {
+        this.frames.clear();
+    }
+
+    private record Entry(SlimeChunk chunk, ChunkFrame frame) {
+
+    }
+
+    private record Compression(int codecId, int dictionaryId, int level) {
+
+    }
+
+}
@@ -11,6 +11,19 @@ public class ChunkPruner {
 
     public static boolean canBePruned(SlimeWorld world, SlimeChunk chunk) {
         SlimePropertyMap propertyMap = world.getPropertyMap();
+        if (isOutsideSaveBounds(propertyMap, chunk.getX(), chunk.getZ())) {
+            return true;
+        }
+
+        String pruningSetting = world.getPropertyMap().getValue(SlimeProperties.CHUNK_PRUNING);
+        if (pruningSetting.equals("aggressive")) {
+            return chunk.getTileEntities().isEmpty() && chunk.getEntities().isEmpty() && areSectionsEmpty(chunk.getSections());
+        }
+
+        return false;
+    }
+
+    public static boolean isOutsideSaveBounds(SlimePropertyMap propertyMap, int chunkX, int chunkZ) {
         if (propertyMap.getValue(SlimeProperties.SHOULD_LIMIT_SAVE)) {
             int minX = propertyMap.getValue(SlimeProperties.SAVE_MIN_X);
             int maxX = propertyMap.getValue(SlimeProperties.SAVE_MAX_X);
@@ -18,9 +31,6 @@ public class ChunkPruner {
             int minZ = propertyMap.getValue(SlimeProperties.SAVE_MIN_Z);
             int maxZ = propertyMap.getValue(SlimeProperties.SAVE_MAX_Z);
 
-            int chunkX = chunk.getX();
-            int chunkZ = chunk.getZ();
-
             if (chunkX < minX || chunkX > maxX) {
                 return true;
             }
@@ -30,11 +40,6 @@ public class ChunkPruner {
             }
         }
 
-        String pruningSetting = world.getPropertyMap().getValue(SlimeProperties.CHUNK_PRUNING);
-        if (pruningSetting.equals("aggressive")) {
-            return chunk.getTileEntities().isEmpty() && chunk.getEntities().isEmpty() && areSectionsEmpty(chunk.getSections());
-        }
-
         return false;
     }
 
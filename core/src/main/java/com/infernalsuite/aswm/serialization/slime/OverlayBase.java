@@ -0,0 +1,361 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.LongTag;
+import com.flowpowered.nbt.StringTag;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.exceptions.NewerFormatException;
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Template world of overlay worlds. Overlays reference their template by name and by the hash of its chunk content,
+ * and only store the chunks that differ from it. The hash doesn't depend on how the template is stored, so saving it
+ * again with another codec or layout keeps its overlays readable.
+ * <p>
+ * Templates are loaded once per data source and shared by every overlay using them, chunks of the template are
+ * decoded once and then shared with the overlays. Templates must not change while overlays reference them,
+ * so templates referenced by loaded overlays can't be loaded for writing or deleted.
+ */
+public final class OverlayBase {
+
+    public static final String OVERLAY_TAG = "overlay";
+
+    private static final XXHash64 HASH = XXHashFactory.fastestInstance().hash64();
+    private static final Map<BaseKey, WeakReference<OverlayBase>> BASES = new HashMap<>();
+
+    private final String name;
+    private final long hash;
+    private final SlimeWorld world;
+    private final Set<ChunkPos> positions;
+    private final Map<ChunkPos, Long> chunkHashes;
+
+    private OverlayBase(String name, SlimeWorld world) throws IOException {
+        this.name = name;
+        this.world = world;
+
+        if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage) {
+            this.positions = Set.copyOf(storage.positions());
+        } else {
+            Set<ChunkPos> positions = new HashSet<>();
+            for (SlimeChunk chunk : world.getChunkStorage()) {
+                positions.add(new ChunkPos(chunk.getX(), chunk.getZ()));
+            }
+
+            this.positions = Set.copyOf(positions);
+        }
+
+        // Every chunk is hashed once when the template is loaded, in parallel on the common fork join pool
+        try {
+            this.chunkHashes = this.positions.parallelStream().collect(Collectors.toUnmodifiableMap(pos -> pos, this::hashChunk));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        this.hash = hashContent(world.getDataVersion(), this.chunkHashes);
+    }
+
+    /**
+     * Returns the template with the provided name, loading it from the data source if it isn't loaded already.
+     *
+     * @param loader the data source of the template
+     * @param name   the name of the template
+     * @return the template
+     */
+    public static synchronized OverlayBase load(SlimeLoader loader, String name)
+            throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException {
+        OverlayBase base = getLoaded(loader, name);
+        return base != null ? base : read(loader, name);
+    }
+
+    /**
+     * Returns the template with the provided name and content hash, loading it from the data source if it isn't loaded already.
+     *
+     * @param loader the data source of the template
+     * @param name   the name of the template
+     * @param hash   the content hash the template is expected to have
+     * @return the template
+     * @throws IOException if the template doesn't have the expected content hash
+     */
+    public static synchronized OverlayBase load(SlimeLoader loader, String name, long hash)
+            throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException {
+        OverlayBase base = getLoaded(loader, name);
+        if (base == null || base.hash != hash) {
+            base = read(loader, name);
+        }
+
+        if (base.hash != hash) {
+            throw new IOException("Template " + name + " has changed since the overlay was created");
+        }
+
+        return base;
+    }
+
+    /**
+     * Checks whether overlays loaded on this server still reference a template. Such a template must not be saved
+     * or deleted, as its overlays can't be read anymore once it changes.
+     *
+     * @param loader the data source of the template
+     * @param name   the name of the template
+     * @return <code>true</code> if the template is referenced by loaded overlays
+     */
+    public static synchronized boolean isReferenced(SlimeLoader loader, String name) {
+        return getLoaded(loader, name) != null;
+    }
+
+    /**
+     * Returns the template of an overlay world.
+     *
+     * @param world the world
+     * @return the template of the world, or <code>null</code> if it isn't an overlay
+     */
+    public static OverlayBase of(SlimeWorld world) {
+        if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage
+                && storage.getDecoder() instanceof Decoder overlay) {
+            return overlay.getBase();
+        }
+
+        return null;
+    }
+
+    private static OverlayBase getLoaded(SlimeLoader loader, String name) {
+        WeakReference<OverlayBase> reference = BASES.get(new BaseKey(loader, name));
+        return reference == null ? null : reference.get();
+    }
+
+    private static OverlayBase read(SlimeLoader loader, String name)
+            throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException {
+        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(loader, name, loader.loadWorldBuffer(name), new SlimePropertyMap());
+
+        OverlayBase base = new OverlayBase(name, world);
+        BASES.values().removeIf(reference -> reference.get() == null);
+        BASES.put(new BaseKey(loader, name), new WeakReference<>(base));
+        return base;
+    }
+
+    /**
+     * Creates an overlay world on top of this template, which doesn't store any chunks yet.
+     *
+     * @param worldName   the name of the overlay
+     * @param loader      the data source the overlay is stored in, or <code>null</code> if it's read-only
+     * @param propertyMap the properties of the overlay
+     * @return the overlay world
+     */
+    public SlimeWorld createOverlay(String worldName, SlimeLoader loader, SlimePropertyMap propertyMap) {
+        return new SkeletonSlimeWorld(worldName, loader,
+                createStorage(List.of(), pos -> null, List.of()),
+                this.world.getExtraData().clone(),
+                propertyMap,
+                this.world.getDataVersion());
+    }
+
+    /**
+     * Creates the chunk storage of an overlay. Chunks stored by the overlay are decoded by the provided decoder,
+     * every other chunk that wasn't removed from the template is shared with it.
+     *
+     * @param stored  the chunks stored by the overlay
+     * @param decoder the decoder of the chunks stored by the overlay
+     * @param removed the template chunks removed by the overlay
+     * @return the chunk storage
+     */
+    public LazyChunkStorage createStorage(Collection<ChunkPos> stored, LazyChunkStorage.ChunkDecoder decoder, Collection<ChunkPos> removed) {
+        Set<ChunkPos> positions = new HashSet<>(this.positions);
+        removed.forEach(positions::remove);
+        positions.addAll(stored);
+
+        return new LazyChunkStorage(positions, new Decoder(this, Set.copyOf(stored), decoder));
+    }
+
+    /**
+     * Reads the overlay tag of the extra data of a world, and creates its chunk storage.
+     *
+     * @return the chunk storage of the overlay
+     */
+    public static LazyChunkStorage readOverlay(SlimeLoader loader, CompoundTag overlay, Collection<ChunkPos> stored, LazyChunkStorage.ChunkDecoder decoder)
+            throws UnknownWorldException, IOException, CorruptedWorldException, NewerFormatException {
+        String template = overlay.getStringValue("template").orElseThrow(() -> new IOException("Overlay is missing its template"));
+        long hash = overlay.getLongValue("hash").orElseThrow(() -> new IOException("Overlay is missing its template hash"));
+        if (loader == null) {
+            throw new IOException("Overlay of " + template + " can't be read without a data source");
+        }
+
+        List<ChunkPos> removed = new ArrayList<>();
+        for (long key : overlay.getLongArrayValue("removed").orElse(new long[0])) {
+            removed.add(ChunkPos.fromKey(key));
+        }
+
+        return load(loader, template, hash).createStorage(stored, decoder, removed);
+    }
+
+    CompoundTag toCompound(Collection<ChunkPos> removed) {
+        long[] removedKeys = new long[removed.size()];
+        int i = 0;
+        for (ChunkPos pos : removed) {
+            removedKeys[i++] = pos.toKey();
+        }
+
+        CompoundMap map = new CompoundMap();
+        map.put(new StringTag("template", this.name));
+        map.put(new LongTag("hash", this.hash));
+        map.put(new LongArrayTag("removed", removedKeys));
+        return new CompoundTag(OVERLAY_TAG, map);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getHash() {
+        return this.hash;
+    }
+
+    Set<ChunkPos> getPositions() {
+        return this.positions;
+    }
+
+    /**
+     * Checks whether a chunk is the same as the template chunk at its position, by comparing the content hashes of both.
+     *
+     * @param serializedChunk the chunk, as written by {@link SlimeSerializer#serializeChunk(DataOutputStream, SlimeChunk)}
+     */
+    boolean matches(ChunkPos pos, byte[] serializedChunk) {
+        if (!this.positions.contains(pos)) {
+            return false;
+        }
+
+        return this.chunkHashes.get(pos) == HASH.hash(serializedChunk, 0, serializedChunk.length, 0);
+    }
+
+    // Chunks are only peeked at, so hashing them doesn't keep the whole template decoded
+    private long hashChunk(ChunkPos pos) {
+        SlimeChunk chunk = this.world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage
+                ? storage.peek(pos) : this.world.getChunk(pos.x(), pos.z());
+        if (chunk == null) {
+            return 0;
+        }
+
+        try {
+            ByteArrayOutputStream chunkByteStream = new ByteArrayOutputStream(16384);
+            SlimeSerializer.serializeChunk(new DataOutputStream(chunkByteStream), chunk);
+
+            byte[] chunkBytes = chunkByteStream.toByteArray();
+            return HASH.hash(chunkBytes, 0, chunkBytes.length, 0);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Chunks are identified by their position, the hashes of their content are combined in position order
+    private static long hashContent(int dataVersion, Map<ChunkPos, Long> chunkHashes) {
+        List<ChunkPos> positions = new ArrayList<>(chunkHashes.keySet());
+        positions.sort(Comparator.comparingLong(ChunkPos::toKey));
+
+        ByteBuffer content = ByteBuffer.allocate(Integer.BYTES + positions.size() * 2 * Long.BYTES);
+        content.putInt(dataVersion);
+        for (ChunkPos pos : positions) {
+            content.putLong(pos.toKey());
+            content.putLong(chunkHashes.get(pos));
+        }
+
+        return HASH.hash(content.array(), 0, content.capacity(), 0);
+    }
+
+    // Overlays share the tags of template chunks, which are never modified in place. The light arrays are written
+    // to by the server, so each overlay gets arrays that only copy the template's light once they're written to
+    private SlimeChunk shareChunk(ChunkPos pos) {
+        SlimeChunk chunk = this.world.getChunk(pos.x(), pos.z());
+        if (chunk == null) {
+            return null;
+        }
+
+        SlimeChunkSection[] sections = chunk.getSections();
+        SlimeChunkSection[] shared = new SlimeChunkSection[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            SlimeChunkSection section = sections[i];
+            if (section != null) {
+                shared[i] = new SlimeChunkSectionSkeleton(section.getBlockStatesTag(), section.getBiomeTag(),
+                        section.getBlockLight() == null ? null : section.getBlockLight().share(),
+                        section.getSkyLight() == null ? null : section.getSkyLight().share());
+            }
+        }
+
+        return new SlimeChunkSkeleton(chunk.getX(), chunk.getZ(), shared, chunk.getHeightMaps(),
+                new ArrayList<>(chunk.getTileEntities()), new ArrayList<>(chunk.getEntities()));
+    }
+
+    /**
+     * Decodes the chunks of an overlay, either from the overlay itself or by sharing them with its template.
+     */
+    static final class Decoder implements LazyChunkStorage.ChunkDecoder {
+
+        private final OverlayBase base;
+        private final Set<ChunkPos> stored;
+        private final LazyChunkStorage.ChunkDecoder decoder;
+
+        private Decoder(OverlayBase base, Set<ChunkPos> stored, LazyChunkStorage.ChunkDecoder decoder) {
+            this.base = base;
+            this.stored = stored;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public SlimeChunk decode(ChunkPos pos) throws IOException {
+            return this.stored.contains(pos) ? this.decoder.decode(pos) : this.base.shareChunk(pos);
+        }
+
+        @Override
+        public ChunkFrame encodedFrame(ChunkPos pos, SlimeCodec codec) {
+            return this.stored.contains(pos) ? this.decoder.encodedFrame(pos, codec) : null;
+        }
+
+        @Override
+        public boolean hasEncodedFrame(ChunkPos pos, SlimeCodec codec) {
+            return this.stored.contains(pos) && this.decoder.hasEncodedFrame(pos, codec);
+        }
+
+        OverlayBase getBase() {
+            return this.base;
+        }
+
+        boolean isStored(ChunkPos pos) {
+            return this.stored.contains(pos);
+        }
+
+    }
+
+    private record BaseKey(SlimeLoader loader, String name) {
+
+    }
+
+}
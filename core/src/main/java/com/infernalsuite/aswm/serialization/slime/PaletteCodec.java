@@ -0,0 +1,360 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.Tag;
+import com.flowpowered.nbt.TagType;
+import com.infernalsuite.aswm.serialization.NbtCodec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding for the compound tags stored inside chunks: paletted block state and biome
+ * containers, and height maps. Palettes are stored as ids into a string table shared by the whole
+ * chunk, and the packed data is stored as raw longs, so no nbt stream is needed for them.
+ * <p>
+ * Tags that don't have the shape of a paletted container or a height map are stored as plain nbt.
+ */
+public final class PaletteCodec {
+
+    static final int ABSENT = 0;
+    static final int BLOCK_PALETTE = 1;
+    static final int STRING_PALETTE = 2;
+    static final int LONG_ARRAYS = 3;
+    static final int NBT = 4;
+
+    private PaletteCodec() {
+    }
+
+    /**
+     * Writes the tags of a single chunk. Every tag has to be added before the string
+     * table is written, and tags are written afterwards in the order they're read back.
+     */
+    public static final class Writer {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        public void add(CompoundTag tag) {
+            int type = typeOf(tag);
+            if (type == ABSENT || type == NBT) {
+                return;
+            }
+
+            intern(tag.getName());
+            for (Tag<?> child : tag.getValue().values()) {
+                intern(child.getName());
+            }
+
+            if (type == BLOCK_PALETTE) {
+                for (CompoundTag state : paletteOf(tag, CompoundTag.class)) {
+                    intern(((StringTag) state.getValue().get("Name")).getValue());
+
+                    Tag<?> properties = state.getValue().get("Properties");
+                    if (properties != null) {
+                        for (Tag<?> property : ((CompoundTag) properties).getValue().values()) {
+                            intern(property.getName());
+                            intern(((StringTag) property).getValue());
+                        }
+                    }
+                }
+            } else if (type == STRING_PALETTE) {
+                for (StringTag entry : paletteOf(tag, StringTag.class)) {
+                    intern(entry.getValue());
+                }
+            }
+        }
+
+        public void writeStrings(DataOutput out) throws IOException {
+            writeVarInt(out, this.strings.size());
+            for (String string : this.strings) {
+                out.writeUTF(string);
+            }
+        }
+
+        public void write(DataOutput out, CompoundTag tag) throws IOException {
+            int type = typeOf(tag);
+            out.writeByte(type);
+
+            switch (type) {
+                case ABSENT -> {
+                }
+                case BLOCK_PALETTE -> {
+                    writeVarInt(out, id(tag.getName()));
+                    List<CompoundTag> palette = paletteOf(tag, CompoundTag.class);
+                    writeVarInt(out, palette.size());
+                    for (CompoundTag state : palette) {
+                        writeVarInt(out, id(((StringTag) state.getValue().get("Name")).getValue()));
+
+                        Tag<?> properties = state.getValue().get("Properties");
+                        if (properties == null) {
+                            writeVarInt(out, 0);
+                            continue;
+                        }
+
+                        CompoundMap propertyMap = ((CompoundTag) properties).getValue();
+                        writeVarInt(out, propertyMap.size());
+                        for (Tag<?> property : propertyMap.values()) {
+                            writeVarInt(out, id(property.getName()));
+                            writeVarInt(out, id(((StringTag) property).getValue()));
+                        }
+                    }
+
+                    writeData(out, tag);
+                }
+                case STRING_PALETTE -> {
+                    writeVarInt(out, id(tag.getName()));
+                    List<StringTag> palette = paletteOf(tag, StringTag.class);
+                    writeVarInt(out, palette.size());
+                    for (StringTag entry : palette) {
+                        writeVarInt(out, id(entry.getValue()));
+                    }
+
+                    writeData(out, tag);
+                }
+                case LONG_ARRAYS -> {
+                    writeVarInt(out, id(tag.getName()));
+                    writeVarInt(out, tag.getValue().size());
+                    for (Tag<?> array : tag.getValue().values()) {
+                        writeVarInt(out, id(array.getName()));
+                        writeLongs(out, ((LongArrayTag) array).getValue());
+                    }
+                }
+                default -> {
+                    byte[] nbt = SlimeSerializer.serializeCompoundTag(tag);
+                    writeVarInt(out, nbt.length);
+                    out.write(nbt);
+                }
+            }
+        }
+
+        private void writeData(DataOutput out, CompoundTag tag) throws IOException {
+            Tag<?> data = tag.getValue().get("data");
+            out.writeBoolean(data != null);
+            if (data != null) {
+                writeLongs(out, ((LongArrayTag) data).getValue());
+            }
+        }
+
+        private void intern(String string) {
+            if (!this.ids.containsKey(string)) {
+                this.ids.put(string, this.strings.size());
+                this.strings.add(string);
+            }
+        }
+
+        private int id(String string) {
+            Integer id = this.ids.get(string);
+            if (id == null) {
+                throw new IllegalStateException("Tag wasn't added before being written");
+            }
+
+            return id;
+        }
+
+    }
+
+    /**
+     * Reads the tags of a single chunk, after its string table has been read.
+     */
+    public static final class Reader {
+
+        private final String[] strings;
+
+        public Reader(DataInput in) throws IOException {
+            // Every string is prefixed by its length
+            int count = readSize(in, 2);
+
+            this.strings = new String[count];
+            for (int i = 0; i < count; i++) {
+                this.strings[i] = in.readUTF();
+            }
+        }
+
+        public CompoundTag read(DataInput in) throws IOException {
+            int type = in.readUnsignedByte();
+
+            switch (type) {
+                case ABSENT -> {
+                    return null;
+                }
+                case BLOCK_PALETTE -> {
+                    String name = string(in);
+                    int size = readSize(in, 2);
+                    List<CompoundTag> palette = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        CompoundMap state = new CompoundMap();
+                        state.put(new StringTag("Name", string(in)));
+
+                        int propertyCount = readSize(in, 2);
+                        if (propertyCount > 0) {
+                            CompoundMap properties = new CompoundMap();
+                            for (int j = 0; j < propertyCount; j++) {
+                                properties.put(new StringTag(string(in), string(in)));
+                            }
+
+                            state.put(new CompoundTag("Properties", properties));
+                        }
+
+                        palette.add(new CompoundTag("", state));
+                    }
+
+                    return container(in, name, new ListTag<>("palette", TagType.TAG_COMPOUND, palette));
+                }
+                case STRING_PALETTE -> {
+                    String name = string(in);
+                    int size = readSize(in, 1);
+                    List<StringTag> palette = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        palette.add(new StringTag("", string(in)));
+                    }
+
+                    return container(in, name, new ListTag<>("palette", TagType.TAG_STRING, palette));
+                }
+                case LONG_ARRAYS -> {
+                    String name = string(in);
+                    int size = readSize(in, 2);
+                    CompoundMap arrays = new CompoundMap();
+                    for (int i = 0; i < size; i++) {
+                        arrays.put(new LongArrayTag(string(in), readLongs(in)));
+                    }
+
+                    return new CompoundTag(name, arrays);
+                }
+                case NBT -> {
+                    byte[] nbt = new byte[readSize(in, 1)];
+                    in.readFully(nbt);
+                    return NbtCodec.readCompound(nbt);
+                }
+                default -> throw new IOException("Unknown tag type " + type);
+            }
+        }
+
+        private CompoundTag container(DataInput in, String name, ListTag<?> palette) throws IOException {
+            CompoundMap container = new CompoundMap();
+            container.put(palette);
+            if (in.readBoolean()) {
+                container.put(new LongArrayTag("data", readLongs(in)));
+            }
+
+            return new CompoundTag(name, container);
+        }
+
+        private String string(DataInput in) throws IOException {
+            int id = readVarInt(in);
+            if (id < 0 || id >= this.strings.length) {
+                throw new IOException("Invalid string id " + id);
+            }
+
+            return this.strings[id];
+        }
+
+    }
+
+    private static int typeOf(CompoundTag tag) {
+        if (tag == null || tag.getValue().isEmpty()) {
+            return ABSENT;
+        }
+
+        CompoundMap map = tag.getValue();
+        Tag<?> palette = map.get("palette");
+        Tag<?> data = map.get("data");
+        int size = data == null ? 1 : 2;
+
+        if (map.size() == size && palette instanceof ListTag<?> list && (data == null || data instanceof LongArrayTag)) {
+            if (list.getElementType() == TagType.TAG_STRING) {
+                return STRING_PALETTE;
+            }
+
+            if (list.getElementType() == TagType.TAG_COMPOUND && list.getValue().stream().allMatch(state -> isBlockState((CompoundTag) state))) {
+                return BLOCK_PALETTE;
+            }
+        }
+
+        if (map.values().stream().allMatch(child -> child instanceof LongArrayTag)) {
+            return LONG_ARRAYS;
+        }
+
+        return NBT;
+    }
+
+    private static boolean isBlockState(CompoundTag state) {
+        CompoundMap map = state.getValue();
+        if (!(map.get("Name") instanceof StringTag)) {
+            return false;
+        }
+
+        Tag<?> properties = map.get("Properties");
+        if (properties == null) {
+            return map.size() == 1;
+        }
+
+        // An empty properties compound couldn't be told apart from a missing one
+        return map.size() == 2 && properties instanceof CompoundTag compound && !compound.getValue().isEmpty()
+                && compound.getValue().values().stream().allMatch(property -> property instanceof StringTag);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Tag<?>> List<T> paletteOf(CompoundTag tag, Class<T> type) {
+        return ((ListTag<T>) tag.getValue().get("palette")).getValue();
+    }
+
+    private static void writeLongs(DataOutput out, long[] longs) throws IOException {
+        writeVarInt(out, longs.length);
+        for (long value : longs) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readLongs(DataInput in) throws IOException {
+        long[] longs = new long[readSize(in, Long.BYTES)];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = in.readLong();
+        }
+
+        return longs;
+    }
+
+    // Chunks are read from memory, so a size whose elements don't fit in the bytes left can only come from corrupted data
+    private static int readSize(DataInput in, int minElementSize) throws IOException {
+        int size = readVarInt(in);
+        if (size < 0 || in instanceof InputStream stream && (long) size * minElementSize > stream.available()) {
+            throw new IOException("Invalid size " + size);
+        }
+
+        return size;
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("VarInt is too big");
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-world table of the chunk sections that are used more than once. Sections are keyed by the
+ * xxHash64 of their serialized form, and chunks reference table sections by their index
+ * instead of storing them again.
+ */
+final class SectionTable {
+
+    static final SectionTable EMPTY = new SectionTable(Collections.emptyMap(), Collections.emptyList());
+
+    private static final XXHash64 HASH = XXHashFactory.fastestInstance().hash64();
+
+    private final Map<SlimeChunk, ChunkSections> chunks;
+    private final List<byte[]> sections;
+
+    private SectionTable(Map<SlimeChunk, ChunkSections> chunks, List<byte[]> sections) {
+        this.chunks = chunks;
+        this.sections = sections;
+    }
+
+    static SectionTable build(List<SlimeChunk> chunks) throws IOException {
+        // Every section is serialized and hashed in parallel, identical sections share an entry
+        Map<SectionKey, Entry> entries = new ConcurrentHashMap<>();
+        List<ChunkSections> chunkSections;
+        try {
+            chunkSections = chunks.parallelStream().map(chunk -> hashSections(chunk, entries)).toList();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        // Sections used more than once go into the table, in the order they're first used
+        Map<SlimeChunk, ChunkSections> sectionsByChunk = new IdentityHashMap<>(chunks.size());
+        List<byte[]> sections = new ArrayList<>();
+        for (ChunkSections chunk : chunkSections) {
+            for (Entry entry : chunk.entries()) {
+                if (entry.index == -1 && entry.uses.get() > 1) {
+                    entry.index = sections.size();
+                    sections.add(entry.data);
+                }
+            }
+
+            sectionsByChunk.put(chunk.chunk(), chunk);
+        }
+
+        return new SectionTable(sectionsByChunk, sections);
+    }
+
+    private static ChunkSections hashSections(SlimeChunk chunk, Map<SectionKey, Entry> entries) {
+        try {
+            SlimeChunkSection[] sections = chunk.getSections();
+            Entry[] chunkEntries = new Entry[sections.length];
+            for (int i = 0; i < sections.length; i++) {
+                byte[] data = serializeSection(sections[i]);
+                Entry entry = entries.computeIfAbsent(new SectionKey(HASH.hash(data, 0, data.length, 0), data), key -> new Entry(key.data()));
+                entry.uses.incrementAndGet();
+                chunkEntries[i] = entry;
+            }
+
+            return new ChunkSections(chunk, sections, chunkEntries);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Table sections are self-contained, each one has its own string table
+    private static byte[] serializeSection(SlimeChunkSection section) throws IOException {
+        ByteArrayOutputStream sectionByteStream = new ByteArrayOutputStream(4096);
+        DataOutputStream sectionStream = new DataOutputStream(sectionByteStream);
+
+        PaletteCodec.Writer tagWriter = new PaletteCodec.Writer();
+        tagWriter.add(section.getBlockStatesTag());
+        tagWriter.add(section.getBiomeTag());
+        tagWriter.writeStrings(sectionStream);
+        SlimeSerializer.serializeSection(sectionStream, section, tagWriter);
+
+        return sectionByteStream.toByteArray();
+    }
+
+    ChunkSections sectionsOf(SlimeChunk chunk) {
+        ChunkSections sections = this.chunks.get(chunk);
+        return sections != null ? sections : new ChunkSections(chunk, chunk.getSections(), null);
+    }
+
+    void write(DataOutputStream outStream) throws IOException {
+        outStream.writeInt(this.sections.size());
+        for (byte[] section : this.sections) {
+            outStream.writeInt(section.length);
+            outStream.write(section);
+        }
+    }
+
+    record ChunkSections(SlimeChunk chunk, SlimeChunkSection[] sections, Entry[] entries) {
+
+        /**
+         * @return the index of the section inside the table, or <code>-1</code> if the chunk stores it itself
+         */
+        int tableIndex(int section) {
+            return this.entries == null ? -1 : this.entries[section].index;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final byte[] data;
+        private final AtomicInteger uses = new AtomicInteger();
+        private int index = -1;
+
+        private Entry(byte[] data) {
+            this.data = data;
+        }
+
+    }
+
+    private record SectionKey(long hash, byte[] data) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SectionKey other && this.hash == other.hash && Arrays.equals(this.data, other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.hash);
+        }
+
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A zstd dictionary shared by worlds with similar contents, e.g. clones of the same template.
+ * Dictionaries are stored by their id inside the data source, next to the worlds that use them.
+ */
+public final class SlimeDictionary {
+
+    /** Default dictionary size, same as the zstd cli **/
+    public static final int DEFAULT_SIZE = 112640;
+
+    private static final Map<Integer, SlimeDictionary> DICTIONARIES = new ConcurrentHashMap<>();
+
+    private final int id;
+    private final byte[] data;
+    private final Map<Integer, ZstdDictCompress> compressDictionaries = new ConcurrentHashMap<>();
+    private final ZstdDictDecompress decompressDictionary;
+
+    private SlimeDictionary(int id, byte[] data) {
+        this.id = id;
+        this.data = data;
+        this.decompressDictionary = new ZstdDictDecompress(data);
+    }
+
+    /**
+     * Wraps a raw zstd dictionary.
+     *
+     * @param data the dictionary
+     * @return the dictionary
+     * @throws IllegalArgumentException if the data isn't a zstd dictionary
+     */
+    public static SlimeDictionary fromBytes(byte[] data) {
+        int id = (int) Zstd.getDictIdFromDict(data);
+        if (id == 0) {
+            throw new IllegalArgumentException("Data is not a zstd dictionary");
+        }
+
+        return DICTIONARIES.computeIfAbsent(id, key -> new SlimeDictionary(key, data));
+    }
+
+    /**
+     * Returns the dictionary with the given id, loading it from the data source if it isn't cached already.
+     *
+     * @param loader data source the dictionary is stored in, may be null if the dictionary is already cached
+     * @param id the dictionary id
+     * @return the dictionary
+     * @throws IOException if the dictionary can't be found or loaded
+     */
+    public static SlimeDictionary load(@Nullable SlimeLoader loader, int id) throws IOException {
+        SlimeDictionary dictionary = DICTIONARIES.get(id);
+        if (dictionary != null) {
+            return dictionary;
+        }
+
+        byte[] data = loader == null ? null : loader.loadDictionary(id);
+        if (data == null) {
+            throw new IOException("Unknown dictionary " + id);
+        }
+
+        dictionary = fromBytes(data);
+        if (dictionary.id != id) {
+            throw new IOException("Dictionary " + id + " is stored with id " + dictionary.id);
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Trains a new dictionary from the chunks, tile entities and entities of the provided worlds.
+     *
+     * @param worlds worlds to take the samples from
+     * @param size maximum size of the dictionary
+     * @return the trained dictionary
+     * @throws IOException if the worlds can't be sampled
+     * @throws IllegalArgumentException if the worlds don't provide enough samples
+     */
+    public static SlimeDictionary train(Collection<SlimeWorld> worlds, int size) throws IOException {
+        Trainer trainer = new Trainer(size);
+        for (SlimeWorld world : worlds) {
+            if (!trainer.addWorld(world)) {
+                break;
+            }
+        }
+
+        return trainer.train();
+    }
+
+    /**
+     * Returns the dictionary id recorded in the header of a serialized world.
+     *
+     * @param serializedWorld the serialized world
+     * @return the dictionary id, or 0 if the world doesn't use a dictionary
+     */
+    public static int getDictionaryId(byte[] serializedWorld) {
+        // Header, version, world version and, since v13, the codec id come first
+        int offset = serializedWorld.length > 2 && serializedWorld[2] >= 13 ? 8 : 7;
+        if (serializedWorld.length < offset + 4 || serializedWorld[0] != SlimeFormat.SLIME_HEADER[0]
+                || serializedWorld[1] != SlimeFormat.SLIME_HEADER[1] || serializedWorld[2] < 12) {
+            return 0;
+        }
+
+        return (serializedWorld[offset] & 0xFF) << 24 | (serializedWorld[offset + 1] & 0xFF) << 16
+                | (serializedWorld[offset + 2] & 0xFF) << 8 | serializedWorld[offset + 3] & 0xFF;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /**
+     * Returns the dictionary prepared for compressing at the given zstd level.
+     *
+     * @param level the zstd compression level
+     * @return the compression dictionary
+     */
+    public ZstdDictCompress getCompressDictionary(int level) {
+        return this.compressDictionaries.computeIfAbsent(level, key -> new ZstdDictCompress(this.data, key));
+    }
+
+    public ZstdDictDecompress getDecompressDictionary() {
+        return this.decompressDictionary;
+    }
+
+    /**
+     * Trains a new dictionary from worlds sampled one at a time. Only the samples are kept,
+     * so a world can be dropped as soon as it was added.
+     */
+    public static final class Trainer {
+
+        private final ZstdDictTrainer trainer;
+
+        /**
+         * @param size maximum size of the dictionary
+         */
+        public Trainer(int size) {
+            // zstd recommends around 100 times the dictionary size worth of samples
+            this.trainer = new ZstdDictTrainer(size * 100, size);
+        }
+
+        /**
+         * Adds the chunks, tile entities and entities of a world as samples.
+         *
+         * @param world the world to take the samples from
+         * @return <code>false</code> if the trainer can't take any more samples
+         * @throws IOException if the world can't be sampled
+         */
+        public boolean addWorld(SlimeWorld world) throws IOException {
+            return SlimeSerializer.addDictionarySamples(world, this.trainer);
+        }
+
+        /**
+         * @return the trained dictionary
+         * @throws IllegalArgumentException if the worlds don't provide enough samples
+         */
+        public SlimeDictionary train() {
+            try {
+                return fromBytes(this.trainer.trainSamples());
+            } catch (ZstdException ex) {
+                throw new IllegalArgumentException("Failed to train dictionary, the worlds might not provide enough samples", ex);
+            }
+        }
+
+    }
+
+}
@@ -4,27 +4,99 @@ import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.ListTag;
 import com.flowpowered.nbt.TagType;
-import com.flowpowered.nbt.stream.NBTInputStream;
-import com.flowpowered.nbt.stream.NBTOutputStream;
-import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.SlimeLogger;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
 import com.infernalsuite.aswm.api.utils.SlimeFormat;
 import com.infernalsuite.aswm.api.world.SlimeChunk;
 import com.infernalsuite.aswm.api.world.SlimeChunkSection;
 import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
 import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.NbtCodec;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.nio.ByteOrder;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class SlimeSerializer {
 
+    private static final int SECTION_BUFFER_SIZE = 64 * 1024;
+    private static final int FRAME_BATCH_SIZE = 256;
+    private static final int MAX_CHUNK_BUFFER_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ScratchOutputStream> CHUNK_BUFFER = ThreadLocal.withInitial(ScratchOutputStream::new);
+
+    public static final int LIGHT_ABSENT = 0;
+    public static final int LIGHT_ARRAY = 1;
+    public static final int LIGHT_UNIFORM = 2;
+
+    public static final int SECTION_INLINE = 0;
+    public static final int SECTION_REFERENCE = 1;
+
     public static byte[] serialize(SlimeWorld world) {
+        return serialize(world, (ChunkFrameCache) null);
+    }
+
+    /**
+     * Serializes a world, reusing the frames of the chunks that didn't change since the last save.
+     *
+     * @param world world to serialize
+     * @param frameCache frames of the chunks written by the last save, or <code>null</code> to serialize every chunk
+     * @return the serialized world
+     */
+    public static byte[] serialize(SlimeWorld world, @Nullable ChunkFrameCache frameCache) {
+        BlockOutputStream outStream = new BlockOutputStream();
+
+        try {
+            serialize(world, outStream, frameCache);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        return outStream.toByteArray();
+    }
+
+    public static void serialize(SlimeWorld world, WritableByteChannel channel) throws IOException {
+        serialize(world, Channels.newOutputStream(channel));
+    }
+
+    public static void serialize(SlimeWorld world, OutputStream out) throws IOException {
+        serialize(world, out, null);
+    }
+
+    /**
+     * Serializes a world straight into the provided stream.
+     * <p>
+     * The section table and the extra tag are run through a streaming compressor, and chunk frames are written
+     * as soon as they're compressed, a few at a time. The chunk index is only written after the frames,
+     * so the whole world is never held in memory at once. The stream is flushed, but not closed.
+     * <p>
+     * Chunks that haven't been decoded since the world was loaded are copied in their compressed form when possible,
+     * and chunks that were already written by the last save reuse their frame from the cache.
+     *
+     * @param world world to serialize
+     * @param out stream the serialized world is written to
+     * @param frameCache frames of the chunks written by the last save, or <code>null</code> to serialize every chunk
+     * @throws IOException if the stream can't be written to
+     */
+    public static void serialize(SlimeWorld world, OutputStream out, @Nullable ChunkFrameCache frameCache) throws IOException {
         CompoundTag extraData = world.getExtraData();
         SlimePropertyMap propertyMap = world.getPropertyMap();
 
@@ -35,138 +107,478 @@ public class SlimeSerializer {
             extraData.getValue().replace("properties", propertyMap.toCompound());
         }
 
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
+        SlimeCodec codec = SlimeCodec.forWorld(world);
+        boolean deduplicateSections = propertyMap.getValue(SlimeProperties.DEDUPLICATE_SECTIONS);
 
-        try {
-            // File Header and Slime version
-            outStream.write(SlimeFormat.SLIME_HEADER);
-            outStream.writeByte(SlimeFormat.SLIME_VERSION);
+        // Frames reference the section table by index, so they can only be reused if there isn't one
+        if (deduplicateSections) {
+            frameCache = null;
+        } else if (frameCache != null) {
+            frameCache.prepare(codec, propertyMap.getValue(SlimeProperties.COMPRESSION_LEVEL));
+        }
+
+        // Overlays only store the chunks that differ from their template, and reference it in the extra tag
+        List<SlimeChunk> chunks;
+        List<ChunkPos> copiedChunks;
+        LazyChunkStorage.ChunkDecoder copiedDecoder = null;
+        if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage
+                && storage.getDecoder() instanceof OverlayBase.Decoder overlay) {
+            copiedChunks = deduplicateSections ? List.of() : getEncodedChunks(world, storage, codec);
+            copiedDecoder = overlay;
+            List<SlimeChunk> savedChunks = getSavedChunks(world, getOverlayChunks(storage, overlay, Set.copyOf(copiedChunks)));
+            extraData = extraData.clone();
+            extraData.getValue().put(overlay.getBase().toCompound(getRemovedChunks(overlay.getBase(), storage, savedChunks)));
+            chunks = getChangedChunks(overlay.getBase(), savedChunks, frameCache);
+        } else if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage && !deduplicateSections) {
+            copiedChunks = getEncodedChunks(world, storage, codec);
+            copiedDecoder = storage.getDecoder();
+            chunks = getSavedChunks(world, storage.decodeExcept(Set.copyOf(copiedChunks)));
+        } else {
+            chunks = getSavedChunks(world, world.getChunkStorage());
+            copiedChunks = List.of();
+        }
+
+        DataOutputStream outStream = new DataOutputStream(out);
 
-            // World version
-            outStream.writeInt(world.getDataVersion());
+        // File Header and Slime version
+        outStream.write(SlimeFormat.SLIME_HEADER);
+        outStream.writeByte(SlimeFormat.SLIME_VERSION);
 
-            // Chunks
-            byte[] chunkData = serializeChunks(world, world.getChunkStorage());
-            byte[] compressedChunkData = Zstd.compress(chunkData);
+        // World version
+        outStream.writeInt(world.getDataVersion());
 
-            outStream.writeInt(compressedChunkData.length);
-            outStream.writeInt(chunkData.length);
-            outStream.write(compressedChunkData);
+        // Codec and dictionary used by all compressed data
+        outStream.writeByte(codec.getId());
+        outStream.writeInt(codec.getDictionaryId());
 
-            // Tile entities
-            List<CompoundTag> tileEntitiesList = new ArrayList<>();
-            for (SlimeChunk chunk : world.getChunkStorage()) {
-                tileEntitiesList.addAll(chunk.getTileEntities());
+        // Sections shared by several chunks, their sizes are stored in the trailer
+        SectionTable sectionTable = deduplicateSections ? SectionTable.build(chunks) : SectionTable.EMPTY;
+        CompressedSize sectionTableSize = writeCompressed(outStream, codec, sectionTable::write);
+
+        // Extra Tag
+        byte[] extra = serializeCompoundTag(extraData);
+        CompressedSize extraSize = writeCompressed(outStream, codec, extraStream -> extraStream.write(extra));
+
+        // Chunk frames, only their index entries are kept until the chunk index is written after them.
+        // Tile entities and entities are stored inside the chunk frames
+        List<IndexEntry> chunkIndex = new ArrayList<>(chunks.size() + copiedChunks.size());
+        for (int i = 0; i < chunks.size(); i += FRAME_BATCH_SIZE) {
+            List<SlimeChunk> batch = chunks.subList(i, Math.min(i + FRAME_BATCH_SIZE, chunks.size()));
+            for (ChunkFrame frame : compressChunks(batch, codec, sectionTable, frameCache)) {
+                writeFrame(outStream, frame, chunkIndex);
             }
-            ListTag<CompoundTag> tileEntitiesNbtList = new ListTag<>("tiles", TagType.TAG_COMPOUND, tileEntitiesList);
-            CompoundTag tileEntitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(tileEntitiesNbtList)));
-            byte[] tileEntitiesData = serializeCompoundTag(tileEntitiesCompound);
-            byte[] compressedTileEntitiesData = Zstd.compress(tileEntitiesData);
-
-            outStream.writeInt(compressedTileEntitiesData.length);
-            outStream.writeInt(tileEntitiesData.length);
-            outStream.write(compressedTileEntitiesData);
-
-            // Entities
-            List<CompoundTag> entitiesList = new ArrayList<>();
-            for (SlimeChunk chunk : world.getChunkStorage()) {
-                entitiesList.addAll(chunk.getEntities());
+        }
+
+        for (ChunkPos pos : copiedChunks) {
+            ChunkFrame frame = copiedDecoder.encodedFrame(pos, codec);
+            if (frame != null) {
+                writeFrame(outStream, frame, chunkIndex);
             }
-            ListTag<CompoundTag> entitiesNbtList = new ListTag<>("entities", TagType.TAG_COMPOUND, entitiesList);
-            CompoundTag entitiesCompound = new CompoundTag("", new CompoundMap(Collections.singletonList(entitiesNbtList)));
-            byte[] entitiesData = serializeCompoundTag(entitiesCompound);
-            byte[] compressedEntitiesData = Zstd.compress(entitiesData);
-
-            outStream.writeInt(compressedEntitiesData.length);
-            outStream.writeInt(entitiesData.length);
-            outStream.write(compressedEntitiesData);
-            
-            // Extra Tag
-            {
-                byte[] extra = serializeCompoundTag(extraData);
-                byte[] compressedExtra = Zstd.compress(extra);
-
-                outStream.writeInt(compressedExtra.length);
-                outStream.writeInt(extra.length);
-                outStream.write(compressedExtra);
+        }
+
+        if (frameCache != null) {
+            Set<Long> writtenKeys = new HashSet<>(chunkIndex.size());
+            for (IndexEntry entry : chunkIndex) {
+                writtenKeys.add(entry.key());
             }
 
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            frameCache.retain(writtenKeys);
+        }
+
+        // Chunk index
+        int frameOffset = 0;
+        for (IndexEntry entry : chunkIndex) {
+            outStream.writeLong(entry.key());
+            outStream.writeInt(frameOffset);
+            outStream.writeInt(entry.compressedLength());
+            outStream.writeInt(entry.length());
+            outStream.writeLong(entry.hash());
+            frameOffset += entry.compressedLength();
+        }
+
+        // Trailer
+        outStream.writeInt(sectionTableSize.compressed());
+        outStream.writeInt(sectionTableSize.uncompressed());
+        outStream.writeInt(extraSize.compressed());
+        outStream.writeInt(extraSize.uncompressed());
+        outStream.writeInt(chunkIndex.size());
+
+        outStream.flush();
+    }
+
+    private static void writeFrame(DataOutputStream outStream, ChunkFrame frame, List<IndexEntry> chunkIndex) throws IOException {
+        outStream.write(frame.compressed());
+        chunkIndex.add(new IndexEntry(frame.key(), frame.compressed().length, frame.length(), frame.hash()));
+    }
+
+    /**
+     * Serializes and compresses every chunk into its own frame. Frames don't depend on
+     * each other, so they're compressed in parallel on the common fork join pool.
+     */
+    private static List<ChunkFrame> compressChunks(List<SlimeChunk> chunks, SlimeCodec codec, SectionTable sectionTable,
+                                                   @Nullable ChunkFrameCache frameCache) throws IOException {
+        try {
+            return chunks.parallelStream().map(chunk -> {
+                ChunkFrame frame = frameCache == null ? null : frameCache.get(chunk);
+                if (frame == null) {
+                    frame = compressChunk(sectionTable.sectionsOf(chunk), codec);
+                    if (frameCache != null) {
+                        frameCache.put(chunk, frame);
+                    }
+                }
+
+                return frame;
+            }).toList();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    // Chunks are serialized into a scratch array of the current thread, only the compressed frame is allocated
+    private static ChunkFrame compressChunk(SectionTable.ChunkSections sections, SlimeCodec codec) {
+        ScratchOutputStream chunkByteStream = CHUNK_BUFFER.get();
+        try {
+            SlimeChunk chunk = sections.chunk();
+            chunkByteStream.reset();
+            serializeChunk(new DataOutputStream(chunkByteStream), sections);
+
+            byte[] compressedChunk = codec.compress(chunkByteStream.buffer(), 0, chunkByteStream.size());
+            return new ChunkFrame(new ChunkPos(chunk.getX(), chunk.getZ()).toKey(), chunkByteStream.size(), compressedChunk);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            if (chunkByteStream.buffer().length > MAX_CHUNK_BUFFER_SIZE) {
+                CHUNK_BUFFER.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the chunks that are still in their serialized form and whose frames can be copied without decoding them.
+     * Those chunks didn't change since they were written, so they were already pruned back then, only the save bounds are checked again.
+     */
+    private static List<ChunkPos> getEncodedChunks(SlimeWorld world, LazyChunkStorage storage, SlimeCodec codec) {
+        SlimePropertyMap propertyMap = world.getPropertyMap();
+        List<ChunkPos> positions = new ArrayList<>();
+        for (ChunkPos pos : List.copyOf(storage.encodedChunks())) {
+            if (!ChunkPruner.isOutsideSaveBounds(propertyMap, pos.x(), pos.z()) && storage.getDecoder().hasEncodedFrame(pos, codec)) {
+                positions.add(pos);
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Adds the serialized chunks of a world, which include their tile entities and entities, as samples to a dictionary trainer.
+     *
+     * @return <code>false</code> if the trainer can't take any more samples
+     */
+    static boolean addDictionarySamples(SlimeWorld world, ZstdDictTrainer trainer) throws IOException {
+        ByteArrayOutputStream sampleByteStream = new ByteArrayOutputStream(16384);
+        DataOutputStream sampleStream = new DataOutputStream(sampleByteStream);
+        // Chunks of worlds read from a data source are only decoded one at a time, and aren't kept decoded
+        if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage) {
+            for (ChunkPos pos : storage.positions()) {
+                SlimeChunk chunk = storage.peek(pos);
+                if (chunk != null && !addDictionarySample(trainer, sampleByteStream, sampleStream, chunk)) {
+                    return false;
+                }
+            }
+
+            return true;
         }
 
+        for (SlimeChunk chunk : world.getChunkStorage()) {
+            if (!addDictionarySample(trainer, sampleByteStream, sampleStream, chunk)) {
+                return false;
+            }
+        }
 
-        return outByteStream.toByteArray();
+        return true;
     }
 
-    static byte[] serializeChunks(SlimeWorld world, Collection<SlimeChunk> chunks) throws IOException {
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream(16384);
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
+    private static boolean addDictionarySample(ZstdDictTrainer trainer, ByteArrayOutputStream sampleByteStream,
+                                               DataOutputStream sampleStream, SlimeChunk chunk) throws IOException {
+        sampleByteStream.reset();
+        serializeChunk(sampleStream, chunk);
+        return trainer.addSample(sampleByteStream.toByteArray());
+    }
 
-        List<SlimeChunk> emptyChunks = new ArrayList<>(chunks);
+    private static List<SlimeChunk> getSavedChunks(SlimeWorld world, Collection<SlimeChunk> chunks) {
+        List<SlimeChunk> savedChunks = new ArrayList<>(chunks.size());
         for (SlimeChunk chunk : chunks) {
             if (!ChunkPruner.canBePruned(world, chunk)) {
-                emptyChunks.add(chunk);
+                savedChunks.add(chunk);
             } else {
-                System.out.println("PRUNED: " + chunk);
+                SlimeLogger.debug("Pruned chunk " + chunk.getX() + ", " + chunk.getZ());
             }
         }
 
-        outStream.writeInt(chunks.size());
-        for (SlimeChunk chunk : emptyChunks) {
-            outStream.writeInt(chunk.getX());
-            outStream.writeInt(chunk.getZ());
+        return savedChunks;
+    }
 
-            // Height Maps
-            byte[] heightMaps = serializeCompoundTag(chunk.getHeightMaps());
-            outStream.writeInt(heightMaps.length);
-            outStream.write(heightMaps);
+    /**
+     * Returns the chunks of an overlay that may differ from its template. Template chunks that were never accessed aren't decoded,
+     * and neither are stored chunks whose frames are copied.
+     */
+    private static List<SlimeChunk> getOverlayChunks(LazyChunkStorage storage, OverlayBase.Decoder overlay, Set<ChunkPos> copied) {
+        List<SlimeChunk> candidates = new ArrayList<>();
+        for (ChunkPos pos : storage.positions()) {
+            if (!copied.contains(pos) && (overlay.isStored(pos) || !storage.encodedChunks().contains(pos))) {
+                SlimeChunk chunk = storage.get(pos);
+                if (chunk != null) {
+                    candidates.add(chunk);
+                }
+            }
+        }
 
-            // Chunk sections
-            SlimeChunkSection[] sections = chunk.getSections();
+        return candidates;
+    }
 
-            outStream.writeInt(sections.length);
-            for (SlimeChunkSection slimeChunkSection : sections) {
-                // Block Light
-                boolean hasBlockLight = slimeChunkSection.getBlockLight() != null;
-                outStream.writeBoolean(hasBlockLight);
+    /**
+     * Skips the chunks that are the same as the template chunk at their position. Chunks written by the last save
+     * already differed from the template back then, and the template can't change.
+     */
+    private static List<SlimeChunk> getChangedChunks(OverlayBase base, List<SlimeChunk> chunks, @Nullable ChunkFrameCache frameCache) throws IOException {
+        try {
+            return chunks.parallelStream()
+                    .filter(chunk -> (frameCache != null && frameCache.get(chunk) != null) || !matchesTemplate(base, chunk))
+                    .toList();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
 
-                if (hasBlockLight) {
-                    outStream.write(slimeChunkSection.getBlockLight().getBacking());
-                }
+    /**
+     * Returns the template chunks an overlay removed, either because they're no longer in its storage or because they were pruned.
+     */
+    private static List<ChunkPos> getRemovedChunks(OverlayBase base, LazyChunkStorage storage, List<SlimeChunk> savedChunks) {
+        Set<ChunkPos> kept = new HashSet<>(storage.encodedChunks());
+        for (SlimeChunk chunk : savedChunks) {
+            kept.add(new ChunkPos(chunk.getX(), chunk.getZ()));
+        }
 
-                // Sky Light
-                boolean hasSkyLight = slimeChunkSection.getSkyLight() != null;
-                outStream.writeBoolean(hasSkyLight);
+        List<ChunkPos> removed = new ArrayList<>();
+        for (ChunkPos pos : base.getPositions()) {
+            if (!kept.contains(pos)) {
+                removed.add(pos);
+            }
+        }
 
-                if (hasSkyLight) {
-                    outStream.write(slimeChunkSection.getSkyLight().getBacking());
-                }
+        return removed;
+    }
+
+    private static boolean matchesTemplate(OverlayBase base, SlimeChunk chunk) {
+        try {
+            ByteArrayOutputStream chunkByteStream = new ByteArrayOutputStream(16384);
+            serializeChunk(new DataOutputStream(chunkByteStream), chunk);
+            return base.matches(new ChunkPos(chunk.getX(), chunk.getZ()), chunkByteStream.toByteArray());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes a compressed section straight into the stream. Unless the codec needs the whole input,
+     * neither the uncompressed nor the compressed data is ever fully materialized.
+     *
+     * @return the compressed and uncompressed size of the section
+     */
+    private static CompressedSize writeCompressed(DataOutputStream outStream, SlimeCodec codec, SectionWriter writer) throws IOException {
+        int start = outStream.size();
+
+        int uncompressedLength;
+        try (DataOutputStream sectionStream = new DataOutputStream(new BufferedOutputStream(codec.compress(new UnclosedOutputStream(outStream)), SECTION_BUFFER_SIZE))) {
+            writer.write(sectionStream);
+            uncompressedLength = sectionStream.size();
+        }
+
+        return new CompressedSize(outStream.size() - start, uncompressedLength);
+    }
+
+    private static void writeCompoundList(DataOutputStream outStream, String name, List<CompoundTag> tags) throws IOException {
+        if (tags.isEmpty()) {
+            outStream.writeInt(0);
+            return;
+        }
+
+        ListTag<CompoundTag> nbtList = new ListTag<>(name, TagType.TAG_COMPOUND, tags);
+        byte[] compound = serializeCompoundTag(new CompoundTag("", new CompoundMap(Collections.singletonList(nbtList))));
+        outStream.writeInt(compound.length);
+        outStream.write(compound);
+    }
+
+    static void serializeChunk(DataOutputStream outStream, SlimeChunk chunk) throws IOException {
+        serializeChunk(outStream, SectionTable.EMPTY.sectionsOf(chunk));
+    }
+
+    private static void serializeChunk(DataOutputStream outStream, SectionTable.ChunkSections chunkSections) throws IOException {
+        SlimeChunk chunk = chunkSections.chunk();
+        SlimeChunkSection[] sections = chunkSections.sections();
 
-                // Block Data
-                byte[] serializedBlockStates = serializeCompoundTag(slimeChunkSection.getBlockStatesTag());
-                outStream.writeInt(serializedBlockStates.length);
-                outStream.write(serializedBlockStates);
+        outStream.writeInt(chunk.getX());
+        outStream.writeInt(chunk.getZ());
 
-                byte[] serializedBiomes = serializeCompoundTag(slimeChunkSection.getBiomeTag());
-                outStream.writeInt(serializedBiomes.length);
-                outStream.write(serializedBiomes);
+        // Strings used by the height maps and the palettes of the sections stored in this chunk
+        PaletteCodec.Writer tagWriter = new PaletteCodec.Writer();
+        tagWriter.add(chunk.getHeightMaps());
+        for (int i = 0; i < sections.length; i++) {
+            if (chunkSections.tableIndex(i) == -1) {
+                tagWriter.add(sections[i].getBlockStatesTag());
+                tagWriter.add(sections[i].getBiomeTag());
             }
         }
 
-        return outByteStream.toByteArray();
+        tagWriter.writeStrings(outStream);
+
+        // Height Maps
+        tagWriter.write(outStream, chunk.getHeightMaps());
+
+        // Chunk sections, either stored inline or referencing the section table
+        outStream.writeInt(sections.length);
+        for (int i = 0; i < sections.length; i++) {
+            int tableIndex = chunkSections.tableIndex(i);
+            if (tableIndex != -1) {
+                outStream.writeByte(SECTION_REFERENCE);
+                outStream.writeInt(tableIndex);
+            } else {
+                outStream.writeByte(SECTION_INLINE);
+                serializeSection(outStream, sections[i], tagWriter);
+            }
+        }
+
+        // Tile Entities and Entities
+        writeCompoundList(outStream, "tiles", chunk.getTileEntities());
+        writeCompoundList(outStream, "entities", chunk.getEntities());
+    }
+
+    static void serializeSection(DataOutputStream outStream, SlimeChunkSection section, PaletteCodec.Writer tagWriter) throws IOException {
+        // Block and Sky Light
+        writeLight(outStream, section.getBlockLight());
+        writeLight(outStream, section.getSkyLight());
+
+        // Block Data
+        tagWriter.write(outStream, section.getBlockStatesTag());
+        tagWriter.write(outStream, section.getBiomeTag());
+    }
+
+    // Fully lit or fully dark light data only stores the value of its nibbles
+    private static void writeLight(DataOutputStream outStream, NibbleArray light) throws IOException {
+        if (light == null) {
+            outStream.writeByte(LIGHT_ABSENT);
+            return;
+        }
+
+        int uniformValue = light.getUniformValue();
+        if (uniformValue != -1) {
+            outStream.writeByte(LIGHT_UNIFORM);
+            outStream.writeByte(uniformValue);
+        } else {
+            outStream.writeByte(LIGHT_ARRAY);
+            outStream.write(light.getBacking());
+        }
     }
 
     protected static byte[] serializeCompoundTag(CompoundTag tag) throws IOException {
-        if (tag == null || tag.getValue().isEmpty()) {
-            return new byte[0];
+        return NbtCodec.serializeCompound(tag);
+    }
+
+    @FunctionalInterface
+    private interface SectionWriter {
+
+        void write(DataOutputStream stream) throws IOException;
+    }
+
+    private record CompressedSize(int compressed, int uncompressed) {
+
+    }
+
+    private record IndexEntry(long key, int compressedLength, int length, long hash) {
+
+    }
+
+    // Keeps the codec from closing the world stream once a section is complete
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+
+        private UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class ScratchOutputStream extends ByteArrayOutputStream {
+
+        private ScratchOutputStream() {
+            super(16384);
+        }
+
+        private byte[] buffer() {
+            return this.buf;
+        }
+    }
+
+    /**
+     * Collects a serialized world in blocks that are never grown, so the world is only copied once, into the returned array.
+     */
+    private static final class BlockOutputStream extends OutputStream {
+
+        private static final int MIN_BLOCK_SIZE = 64 * 1024;
+        private static final int MAX_BLOCK_SIZE = 4 * 1024 * 1024;
+
+        private final List<byte[]> blocks = new ArrayList<>();
+        private byte[] block = new byte[0];
+        private int position;
+        private int size;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity();
+            this.block[this.position++] = (byte) b;
+            this.size++;
         }
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        NBTOutputStream outStream = new NBTOutputStream(outByteStream, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
-        outStream.writeTag(tag);
 
-        return outByteStream.toByteArray();
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                ensureCapacity();
+                int written = Math.min(len, this.block.length - this.position);
+                System.arraycopy(b, off, this.block, this.position, written);
+                this.position += written;
+                this.size += written;
+                off += written;
+                len -= written;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (this.position == this.block.length) {
+                this.block = new byte[Math.min(MAX_BLOCK_SIZE, Math.max(MIN_BLOCK_SIZE, this.size))];
+                this.blocks.add(this.block);
+                this.position = 0;
+            }
+        }
+
+        private byte[] toByteArray() {
+            byte[] bytes = new byte[this.size];
+            int offset = 0;
+            for (byte[] block : this.blocks) {
+                int length = Math.min(block.length, this.size - offset);
+                System.arraycopy(block, 0, bytes, offset, length);
+                offset += length;
+            }
+
+            return bytes;
+        }
     }
 
 }
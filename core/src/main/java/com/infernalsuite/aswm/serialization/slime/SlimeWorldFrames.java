@@ -0,0 +1,205 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A serialized world split into its chunk frames and everything else, its metadata. Data sources use this to store
+ * frames on their own, so chunks that didn't change between two saves don't have to be written again.
+ * <p>
+ * Only worlds in the latest formats can be split, older worlds have to be stored as a whole.
+ */
+public final class SlimeWorldFrames {
+
+    // Header, version, data version, codec and dictionary
+    private static final int PREFIX_LENGTH = SlimeFormat.SLIME_HEADER.length + 1 + 4 + 1 + 4;
+    // Worlds have had the same layout since the section table was added, checksums were added to the chunk index afterwards
+    private static final int MIN_VERSION = 17;
+    private static final int CHECKSUM_VERSION = 18;
+    private static final int TRAILER_VERSION = 19;
+    private static final int INDEX_ENTRY_LENGTH = 8 + 4 + 4 + 4 + 8;
+    // Section sizes and chunk count
+    private static final int TRAILER_LENGTH = 5 * 4;
+
+    private final byte[] metadata;
+    private final List<ChunkFrame> frames;
+
+    private SlimeWorldFrames(byte[] metadata, List<ChunkFrame> frames) {
+        this.metadata = metadata;
+        this.frames = frames;
+    }
+
+    /**
+     * Checks whether a serialized world is in one of the latest formats, and so can be split.
+     *
+     * @param serializedWorld the serialized world
+     * @return <code>true</code> if the world can be split
+     */
+    public static boolean canSplit(byte[] serializedWorld) {
+        return serializedWorld.length >= PREFIX_LENGTH
+                && Arrays.equals(serializedWorld, 0, SlimeFormat.SLIME_HEADER.length, SlimeFormat.SLIME_HEADER, 0, SlimeFormat.SLIME_HEADER.length)
+                && serializedWorld[SlimeFormat.SLIME_HEADER.length] >= MIN_VERSION
+                && serializedWorld[SlimeFormat.SLIME_HEADER.length] <= SlimeFormat.SLIME_VERSION;
+    }
+
+    /**
+     * Splits a serialized world into its metadata and its chunk frames.
+     *
+     * @param serializedWorld the serialized world, which must be in one of the latest formats
+     * @return the split world
+     * @throws IOException if the world is corrupted
+     */
+    public static SlimeWorldFrames split(byte[] serializedWorld) throws IOException {
+        if (!canSplit(serializedWorld)) {
+            throw new IOException("Only worlds in the latest formats can be split");
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(serializedWorld);
+            buffer.position(PREFIX_LENGTH);
+
+            // Since v19 the chunk index follows the chunk frames, and the sizes of the section table and extra tag are in the trailer
+            boolean trailer = hasTrailer(serializedWorld);
+            int trailerStart = serializedWorld.length - TRAILER_LENGTH;
+            int chunkCount = trailer ? buffer.getInt(trailerStart + 16) : buffer.getInt();
+            int indexLength = Math.multiplyExact(chunkCount, hasChecksums(serializedWorld) ? INDEX_ENTRY_LENGTH : 8 + 4 + 4 + 4);
+            if (chunkCount < 0 || indexLength > serializedWorld.length) {
+                throw new IOException("Invalid chunk count " + chunkCount);
+            }
+
+            ByteBuffer index = trailer ? buffer.slice(trailerStart - indexLength, indexLength) : buffer;
+            long[] keys = new long[chunkCount];
+            int[] offsets = new int[chunkCount];
+            int[] compressedLengths = new int[chunkCount];
+            int[] lengths = new int[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                keys[i] = index.getLong();
+                offsets[i] = index.getInt();
+                compressedLengths[i] = index.getInt();
+                lengths[i] = index.getInt();
+                if (hasChecksums(serializedWorld)) {
+                    index.getLong();
+                }
+            }
+
+            // Section table and extra tag, stored in the metadata prefixed by their compressed and uncompressed size
+            ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+            metadata.write(serializedWorld, 0, PREFIX_LENGTH);
+            for (int i = 0; i < 2; i++) {
+                int compressedLength = trailer ? buffer.getInt(trailerStart + i * 8) : buffer.getInt();
+                int length = trailer ? buffer.getInt(trailerStart + i * 8 + 4) : buffer.getInt();
+                if (compressedLength < 0) {
+                    throw new IOException("Negative section size");
+                }
+
+                metadata.write(ByteBuffer.allocate(8).putInt(compressedLength).putInt(length).array());
+                metadata.write(serializedWorld, buffer.position(), compressedLength);
+                buffer.position(buffer.position() + compressedLength);
+            }
+
+            int framesStart = buffer.position();
+            List<ChunkFrame> frames = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                byte[] compressed = Arrays.copyOfRange(serializedWorld, framesStart + offsets[i], framesStart + offsets[i] + compressedLengths[i]);
+                if (compressed.length != compressedLengths[i] || offsets[i] < 0) {
+                    throw new IOException("Chunk frame out of bounds");
+                }
+
+                frames.add(new ChunkFrame(keys[i], lengths[i], compressed));
+            }
+
+            return new SlimeWorldFrames(metadata.toByteArray(), frames);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | ArithmeticException ex) {
+            throw new IOException("Corrupted world", ex);
+        }
+    }
+
+    /**
+     * Joins the metadata and the chunk frames of a world back into a serialized world.
+     *
+     * @param metadata the metadata of the world, as returned by {@link #getMetadata()}
+     * @param frames   the chunk frames of the world
+     * @return the serialized world
+     */
+    public static byte[] join(byte[] metadata, List<ChunkFrame> frames) {
+        boolean checksums = hasChecksums(metadata);
+        boolean trailer = hasTrailer(metadata);
+        int framesLength = 0;
+        for (ChunkFrame frame : frames) {
+            framesLength += frame.compressed().length;
+        }
+
+        int indexEntryLength = checksums ? INDEX_ENTRY_LENGTH : 8 + 4 + 4 + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(metadata.length + 4 + frames.size() * indexEntryLength + framesLength);
+        buffer.put(metadata, 0, PREFIX_LENGTH);
+
+        if (trailer) {
+            // The section sizes move from the metadata to the trailer
+            ByteBuffer sections = ByteBuffer.wrap(metadata, PREFIX_LENGTH, metadata.length - PREFIX_LENGTH);
+            int[] sizes = new int[4];
+            for (int i = 0; i < 2; i++) {
+                sizes[i * 2] = sections.getInt();
+                sizes[i * 2 + 1] = sections.getInt();
+                buffer.put(metadata, sections.position(), sizes[i * 2]);
+                sections.position(sections.position() + sizes[i * 2]);
+            }
+
+            frames.forEach(frame -> buffer.put(frame.compressed()));
+            writeIndex(buffer, frames, true);
+            for (int size : sizes) {
+                buffer.putInt(size);
+            }
+
+            buffer.putInt(frames.size());
+        } else {
+            buffer.putInt(frames.size());
+            writeIndex(buffer, frames, checksums);
+            buffer.put(metadata, PREFIX_LENGTH, metadata.length - PREFIX_LENGTH);
+            frames.forEach(frame -> buffer.put(frame.compressed()));
+        }
+
+        return buffer.array();
+    }
+
+    private static void writeIndex(ByteBuffer buffer, List<ChunkFrame> frames, boolean checksums) {
+        int frameOffset = 0;
+        for (ChunkFrame frame : frames) {
+            buffer.putLong(frame.key());
+            buffer.putInt(frameOffset);
+            buffer.putInt(frame.compressed().length);
+            buffer.putInt(frame.length());
+            if (checksums) {
+                buffer.putLong(frame.hash());
+            }
+
+            frameOffset += frame.compressed().length;
+        }
+    }
+
+    private static boolean hasTrailer(byte[] serializedWorld) {
+        return serializedWorld[SlimeFormat.SLIME_HEADER.length] >= TRAILER_VERSION;
+    }
+
+    private static boolean hasChecksums(byte[] serializedWorld) {
+        return serializedWorld[SlimeFormat.SLIME_HEADER.length] >= CHECKSUM_VERSION;
+    }
+
+    /**
+     * @return everything but the chunk frames and the chunk index
+     */
+    public byte[] getMetadata() {
+        return this.metadata;
+    }
+
+    public List<ChunkFrame> getFrames() {
+        return this.frames;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.infernalsuite.aswm.serialization.slime.compression;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-thread pool of scratch arrays for data that's only needed while a world is read or written,
+ * like compressed frames and decompressed chunks.
+ * <p>
+ * Arrays are borrowed with {@link #acquire(int)} and given back with {@link #release(byte[])} once they're not used
+ * anymore, they may be larger than requested. Arrays that are never released are simply collected.
+ */
+public final class BufferPool {
+
+    private static final int MIN_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    private static final int MAX_RETAINED_BUFFERS = 4;
+
+    private static final ThreadLocal<ArrayDeque<byte[]>> BUFFERS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder ALLOCATED_BYTES = new LongAdder();
+
+    private BufferPool() {
+    }
+
+    /**
+     * Borrows an array of at least the given size. Its contents are undefined.
+     *
+     * @param size the minimum size of the array
+     * @return the array
+     */
+    public static byte[] acquire(int size) {
+        ArrayDeque<byte[]> buffers = BUFFERS.get();
+        for (Iterator<byte[]> iterator = buffers.iterator(); iterator.hasNext(); ) {
+            byte[] buffer = iterator.next();
+            if (buffer.length >= size) {
+                iterator.remove();
+                HITS.increment();
+                return buffer;
+            }
+        }
+
+        // Retained arrays grow in powers of two, so a slightly larger request doesn't miss again
+        int allocated = size > MAX_RETAINED_SIZE ? size : Math.max(MIN_SIZE, Integer.highestOneBit(Math.max(size - 1, 1)) << 1);
+        MISSES.increment();
+        ALLOCATED_BYTES.add(allocated);
+        return new byte[allocated];
+    }
+
+    /**
+     * Gives a borrowed array back to the pool of the current thread.
+     *
+     * @param buffer the array, which must not be used anymore
+     */
+    public static void release(byte[] buffer) {
+        if (buffer.length > MAX_RETAINED_SIZE) {
+            return;
+        }
+
+        ArrayDeque<byte[]> buffers = BUFFERS.get();
+        if (buffers.size() >= MAX_RETAINED_BUFFERS) {
+            // Keep the larger arrays, they can serve any request the smaller ones could
+            byte[] smallest = buffers.stream().min((a, b) -> Integer.compare(a.length, b.length)).orElseThrow();
+            if (smallest.length >= buffer.length) {
+                return;
+            }
+
+            buffers.remove(smallest);
+        }
+
+        buffers.push(buffer);
+    }
+
+    /**
+     * Returns how often borrowed arrays could be taken from the pool, across all threads.
+     *
+     * @return the pool metrics
+     */
+    public static Metrics getMetrics() {
+        return new Metrics(HITS.sum(), MISSES.sum(), ALLOCATED_BYTES.sum());
+    }
+
+    /**
+     * @param hits           the amount of arrays taken from the pool
+     * @param misses         the amount of arrays that had to be allocated
+     * @param allocatedBytes the total size of the allocated arrays
+     */
+    public record Metrics(long hits, long misses, long allocatedBytes) {
+
+        /**
+         * @return the share of arrays taken from the pool, between 0 and 1
+         */
+        public double hitRate() {
+            long total = this.hits + this.misses;
+            return total == 0 ? 0 : (double) this.hits / total;
+        }
+
+    }
+
+}
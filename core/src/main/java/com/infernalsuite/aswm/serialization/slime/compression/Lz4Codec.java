@@ -0,0 +1,92 @@
+package com.infernalsuite.aswm.serialization.slime.compression;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * LZ4 codec, storing raw LZ4 blocks. Levels below 1 use the fast compressor,
+ * higher levels use the high compression one.
+ */
+final class Lz4Codec implements SlimeCodec {
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+    private final LZ4Compressor compressor;
+
+    Lz4Codec(int level) {
+        this.compressor = level < 1 ? FACTORY.fastCompressor() : FACTORY.highCompressor(level);
+    }
+
+    @Override
+    public int getId() {
+        return LZ4;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        // LZ4 blocks need the whole input, so it's compressed once the stream is closed
+        return new ByteArrayOutputStream() {
+
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!this.closed) {
+                    this.closed = true;
+                    out.write(Lz4Codec.this.compressor.compress(this.buf, 0, this.count));
+                    out.close();
+                }
+            }
+        };
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) {
+        byte[] buffer = BufferPool.acquire(this.compressor.maxCompressedLength(length));
+        try {
+            int compressedLength = this.compressor.compress(data, offset, length, buffer, 0, buffer.length);
+            return Arrays.copyOf(buffer, compressedLength);
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException {
+        int decompressed;
+        try {
+            decompressed = FACTORY.safeDecompressor().decompress(src, srcOffset, srcLength, dst, 0, dstLength);
+        } catch (LZ4Exception ex) {
+            throw new IOException(ex);
+        }
+
+        checkLength(decompressed, dstLength);
+    }
+
+    @Override
+    public void decompress(ByteBuffer src, byte[] dst, int dstLength) throws IOException {
+        // LZ4 reads from direct buffers as well, so mapped worlds don't need to be copied
+        int decompressed;
+        try {
+            decompressed = FACTORY.safeDecompressor().decompress(src, src.position(), src.remaining(), ByteBuffer.wrap(dst), 0, dstLength);
+        } catch (LZ4Exception ex) {
+            throw new IOException(ex);
+        }
+
+        checkLength(decompressed, dstLength);
+    }
+
+    private static void checkLength(int decompressed, int length) throws IOException {
+        if (decompressed != length) {
+            throw new IOException("Expected " + length + " bytes, got " + decompressed);
+        }
+    }
+
+}
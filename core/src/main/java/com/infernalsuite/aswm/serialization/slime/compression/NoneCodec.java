@@ -0,0 +1,64 @@
+package com.infernalsuite.aswm.serialization.slime.compression;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Codec that stores everything uncompressed.
+ */
+final class NoneCodec implements SlimeCodec {
+
+    static final NoneCodec INSTANCE = new NoneCodec();
+
+    private NoneCodec() {
+
+    }
+
+    @Override
+    public int getId() {
+        return NONE;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) {
+        return new FilterOutputStream(out) {
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+        };
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        return data;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException {
+        if (srcLength != dstLength) {
+            throw new IOException("Expected " + dstLength + " bytes, got " + srcLength);
+        }
+
+        System.arraycopy(src, srcOffset, dst, 0, srcLength);
+    }
+
+    @Override
+    public void decompress(ByteBuffer src, byte[] dst, int dstLength) throws IOException {
+        if (src.remaining() != dstLength) {
+            throw new IOException("Expected " + dstLength + " bytes, got " + src.remaining());
+        }
+
+        src.get(src.position(), dst, 0, dstLength);
+    }
+
+}
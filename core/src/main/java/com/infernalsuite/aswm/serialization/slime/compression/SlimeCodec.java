@@ -0,0 +1,184 @@
+package com.infernalsuite.aswm.serialization.slime.compression;
+
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.SlimeDictionary;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compression codec used for all compressed parts of a slime world.
+ * The codec id is stored in the world header, so every world can use a different codec.
+ */
+public interface SlimeCodec {
+
+    int NONE = 0;
+    int ZSTD = 1;
+    int LZ4 = 2;
+
+    /**
+     * Returns the id of this codec, as stored in the world header.
+     *
+     * @return the codec id
+     */
+    int getId();
+
+    /**
+     * Returns the id of the dictionary this codec compresses with.
+     *
+     * @return the dictionary id, or 0 if no dictionary is used
+     */
+    default int getDictionaryId() {
+        return 0;
+    }
+
+    /**
+     * Wraps a stream, so everything written to the returned stream is compressed into the provided one.
+     * The compressed data is only complete once the returned stream is closed.
+     *
+     * @param out stream the compressed data is written to
+     * @return the compressing stream
+     * @throws IOException if the stream can't be created
+     */
+    OutputStream compress(OutputStream out) throws IOException;
+
+    /**
+     * Compresses an array.
+     *
+     * @param data the uncompressed data
+     * @return the compressed data
+     * @throws IOException if the data can't be compressed
+     */
+    default byte[] compress(byte[] data) throws IOException {
+        return compress(data, 0, data.length);
+    }
+
+    /**
+     * Compresses the given part of an array, e.g. of a scratch array that's reused once this returns.
+     * The returned array never shares its contents with the provided one.
+     *
+     * @param data array holding the uncompressed data
+     * @param offset offset of the uncompressed data
+     * @param length length of the uncompressed data
+     * @return the compressed data
+     * @throws IOException if the data can't be compressed
+     */
+    default byte[] compress(byte[] data, int offset, int length) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+        try (OutputStream stream = compress(compressed)) {
+            stream.write(data, offset, length);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Decompresses the given part of an array. The whole destination array is filled.
+     *
+     * @param src array holding the compressed data
+     * @param srcOffset offset of the compressed data
+     * @param srcLength length of the compressed data
+     * @param dst array the uncompressed data is written to, with the exact uncompressed length
+     * @throws IOException if the data is corrupted
+     */
+    default void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst) throws IOException {
+        decompress(src, srcOffset, srcLength, dst, dst.length);
+    }
+
+    /**
+     * Decompresses the given part of an array into the start of the destination array,
+     * which may be larger than the uncompressed data, e.g. an array borrowed from the {@link BufferPool}.
+     *
+     * @param src array holding the compressed data
+     * @param srcOffset offset of the compressed data
+     * @param srcLength length of the compressed data
+     * @param dst array the uncompressed data is written to
+     * @param dstLength the exact uncompressed length
+     * @throws IOException if the data is corrupted
+     */
+    void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException;
+
+    /**
+     * Decompresses the remaining bytes of a buffer, without changing its position. The whole destination array is filled.
+     *
+     * @param src buffer holding the compressed data
+     * @param dst array the uncompressed data is written to, with the exact uncompressed length
+     * @throws IOException if the data is corrupted
+     */
+    default void decompress(ByteBuffer src, byte[] dst) throws IOException {
+        decompress(src, dst, dst.length);
+    }
+
+    /**
+     * Decompresses the remaining bytes of a buffer into the start of the destination array, without changing its position.
+     * Unless the codec can read it directly, the compressed data is copied out of direct buffers first.
+     *
+     * @param src buffer holding the compressed data
+     * @param dst array the uncompressed data is written to
+     * @param dstLength the exact uncompressed length
+     * @throws IOException if the data is corrupted
+     */
+    default void decompress(ByteBuffer src, byte[] dst, int dstLength) throws IOException {
+        if (src.hasArray()) {
+            decompress(src.array(), src.arrayOffset() + src.position(), src.remaining(), dst, dstLength);
+        } else {
+            byte[] compressed = BufferPool.acquire(src.remaining());
+            try {
+                src.get(src.position(), compressed, 0, src.remaining());
+                decompress(compressed, 0, src.remaining(), dst, dstLength);
+            } finally {
+                BufferPool.release(compressed);
+            }
+        }
+    }
+
+    /**
+     * Returns the codec configured through the properties of a world.
+     *
+     * @param world the world
+     * @return the codec to save the world with
+     * @throws IOException if the world dictionary can't be loaded
+     */
+    static SlimeCodec forWorld(SlimeWorld world) throws IOException {
+        SlimePropertyMap propertyMap = world.getPropertyMap();
+        int level = propertyMap.getValue(SlimeProperties.COMPRESSION_LEVEL);
+
+        return switch (propertyMap.getValue(SlimeProperties.COMPRESSION).toLowerCase()) {
+            case "none" -> NoneCodec.INSTANCE;
+            case "lz4" -> new Lz4Codec(level);
+            default -> {
+                int dictionaryId = propertyMap.getValue(SlimeProperties.DICTIONARY);
+                yield new ZstdCodec(level, dictionaryId == 0 ? null : SlimeDictionary.load(world.getLoader(), dictionaryId));
+            }
+        };
+    }
+
+    /**
+     * Returns the codec to decompress a world with.
+     *
+     * @param id the codec id stored in the world header
+     * @param loader data source the world dictionary is stored in
+     * @param dictionaryId the dictionary id stored in the world header, 0 if none
+     * @return the codec
+     * @throws IOException if the codec is unknown or the dictionary can't be loaded
+     */
+    static SlimeCodec forId(int id, @Nullable SlimeLoader loader, int dictionaryId) throws IOException {
+        if (id != ZSTD && dictionaryId != 0) {
+            throw new IOException("Codec " + id + " doesn't support dictionaries");
+        }
+
+        return switch (id) {
+            case NONE -> NoneCodec.INSTANCE;
+            case ZSTD -> new ZstdCodec(0, dictionaryId == 0 ? null : SlimeDictionary.load(loader, dictionaryId));
+            case LZ4 -> new Lz4Codec(0);
+            default -> throw new IOException("Unknown compression codec " + id);
+        };
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.infernalsuite.aswm.serialization.slime.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.infernalsuite.aswm.serialization.slime.SlimeDictionary;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Zstd codec, optionally using a trained dictionary. Level 0 uses the default zstd level,
+ * negative levels trade compression ratio for speed.
+ * <p>
+ * Zstd only decompresses direct buffers into direct buffers, so compressed data read from a direct buffer is copied
+ * into a pooled array and decompressed straight into the destination array. The compressed data is the smaller of
+ * the two, so that copies less than decompressing into a direct buffer and copying its output to the heap.
+ */
+final class ZstdCodec implements SlimeCodec {
+
+    // Creating a context allocates its native state, so every thread reuses its own. A context can't drop a dictionary
+    // once it has one, so contexts used with dictionaries are kept apart
+    private static final ThreadLocal<ZstdCompressCtx> COMPRESS_CONTEXT = ThreadLocal.withInitial(ZstdCompressCtx::new);
+    private static final ThreadLocal<ZstdCompressCtx> DICTIONARY_COMPRESS_CONTEXT = ThreadLocal.withInitial(ZstdCompressCtx::new);
+    private static final ThreadLocal<ZstdDecompressCtx> DECOMPRESS_CONTEXT = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+    private static final ThreadLocal<ZstdDecompressCtx> DICTIONARY_DECOMPRESS_CONTEXT = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    private final int level;
+    private final SlimeDictionary dictionary;
+
+    ZstdCodec(int level, @Nullable SlimeDictionary dictionary) {
+        this.level = level;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int getId() {
+        return ZSTD;
+    }
+
+    @Override
+    public int getDictionaryId() {
+        return this.dictionary == null ? 0 : this.dictionary.getId();
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out) throws IOException {
+        ZstdOutputStream zstdStream = new ZstdOutputStream(out, this.level);
+        if (this.dictionary != null) {
+            zstdStream.setDict(this.dictionary.getCompressDictionary(this.level));
+        }
+
+        return zstdStream;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        byte[] buffer = BufferPool.acquire((int) Zstd.compressBound(length));
+        try {
+            int compressedLength = compressContext().compressByteArray(buffer, 0, buffer.length, data, offset, length);
+            return Arrays.copyOf(buffer, compressedLength);
+        } catch (ZstdException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstLength) throws IOException {
+        int decompressed;
+        try {
+            decompressed = decompressContext().decompressByteArray(dst, 0, dstLength, src, srcOffset, srcLength);
+        } catch (ZstdException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+
+        checkLength(decompressed, dstLength);
+    }
+
+    private ZstdCompressCtx compressContext() {
+        if (this.dictionary == null) {
+            return COMPRESS_CONTEXT.get().setLevel(this.level);
+        }
+
+        return DICTIONARY_COMPRESS_CONTEXT.get().setLevel(this.level).loadDict(this.dictionary.getCompressDictionary(this.level));
+    }
+
+    private ZstdDecompressCtx decompressContext() {
+        if (this.dictionary == null) {
+            return DECOMPRESS_CONTEXT.get();
+        }
+
+        return DICTIONARY_DECOMPRESS_CONTEXT.get().loadDict(this.dictionary.getDecompressDictionary());
+    }
+
+    private static void checkLength(int decompressed, int length) throws IOException {
+        if (decompressed != length) {
+            throw new IOException("Expected " + length + " bytes, got " + decompressed);
+        }
+    }
+
+}
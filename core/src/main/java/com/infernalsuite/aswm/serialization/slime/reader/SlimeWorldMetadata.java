@@ -0,0 +1,20 @@
+package com.infernalsuite.aswm.serialization.slime.reader;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+
+/**
+ * Everything stored in a serialized world apart from its chunks, as read by
+ * {@link SlimeWorldReaderRegistry#readMetadata(com.infernalsuite.aswm.api.loaders.SlimeLoader, String, byte[])}.
+ *
+ * @param version     the slime format version the world is stored in
+ * @param dataVersion the Minecraft data version of the world
+ * @param chunkCount  the amount of chunks stored by the world
+ * @param size        the size of the serialized world, in bytes
+ * @param extraData   the extra data of the world, including its properties
+ * @param properties  the properties stored by the world
+ */
+public record SlimeWorldMetadata(byte version, int dataVersion, int chunkCount, int size, CompoundTag extraData,
+                                 SlimePropertyMap properties) {
+
+}
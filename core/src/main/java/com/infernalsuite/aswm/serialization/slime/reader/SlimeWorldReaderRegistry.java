@@ -8,10 +8,11 @@ import com.infernalsuite.aswm.api.world.SlimeWorld;
 import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
 import com.infernalsuite.aswm.serialization.slime.reader.impl.v19.v1_9WorldFormat;
 import com.infernalsuite.aswm.serialization.slime.reader.impl.v10.v10WorldFormat;
+import com.infernalsuite.aswm.serialization.slime.reader.impl.v11.v11WorldFormat;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -23,6 +24,7 @@ public class SlimeWorldReaderRegistry {
     static {
         register(v1_9WorldFormat.FORMAT, 1, 2, 3, 4, 5, 6, 7, 8, 9);
         register(v10WorldFormat.FORMAT, 10);
+        register(v11WorldFormat.FORMAT, 11, 12, 13, 14, 15, 16, 17, 18, 19);
     }
 
     private static void register(VersionedByteSlimeWorldReader<SlimeWorld> format, int... bytes) {
@@ -32,23 +34,65 @@ public class SlimeWorldReaderRegistry {
     }
 
     public static SlimeWorld readWorld(SlimeLoader loader, String worldName, byte[] serializedWorld, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException, NewerFormatException {
-        DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(serializedWorld));
+        return readWorld(loader, worldName, ByteBuffer.wrap(serializedWorld), propertyMap);
+    }
+
+    /**
+     * Reads a world from a buffer, e.g. a memory-mapped file. Chunks may be decoded lazily
+     * from the buffer, so it must not change while the world is in use.
+     */
+    public static SlimeWorld readWorld(SlimeLoader loader, String worldName, ByteBuffer serializedWorld, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException, NewerFormatException {
+        ByteBuffer buffer = serializedWorld.duplicate().order(ByteOrder.BIG_ENDIAN);
+        byte version = readVersion(worldName, buffer);
+
+        VersionedByteSlimeWorldReader<SlimeWorld> reader = FORMATS.get(version);
+        return reader.deserializeWorld(version, loader, worldName, buffer, propertyMap);
+    }
+
+    public static SlimeWorldMetadata readMetadata(SlimeLoader loader, String worldName, byte[] serializedWorld) throws IOException, CorruptedWorldException, NewerFormatException {
+        return readMetadata(loader, worldName, ByteBuffer.wrap(serializedWorld));
+    }
+
+    /**
+     * Reads the data version, properties and extra data of a world without decompressing its chunks.
+     * Worlds stored in formats older than v11 are read as a whole.
+     */
+    public static SlimeWorldMetadata readMetadata(SlimeLoader loader, String worldName, ByteBuffer serializedWorld) throws IOException, CorruptedWorldException, NewerFormatException {
+        ByteBuffer buffer = serializedWorld.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int size = buffer.remaining();
+        byte version = readVersion(worldName, buffer);
+
+        VersionedByteSlimeWorldReader<SlimeWorld> reader = FORMATS.get(version);
+        SlimeWorldMetadata metadata = reader.readMetadata(version, loader, worldName, buffer.duplicate());
+        if (metadata != null) {
+            return metadata;
+        }
+
+        SlimeWorld world = reader.deserializeWorld(version, loader, worldName, buffer, new SlimePropertyMap());
+        return new SlimeWorldMetadata(version, world.getDataVersion(), world.getChunkStorage().size(), size,
+                world.getExtraData(), world.getPropertyMap());
+    }
+
+    private static byte readVersion(String worldName, ByteBuffer buffer) throws CorruptedWorldException, NewerFormatException {
+        if (buffer.remaining() <= SlimeFormat.SLIME_HEADER.length) {
+            throw new CorruptedWorldException(worldName);
+        }
+
         byte[] fileHeader = new byte[SlimeFormat.SLIME_HEADER.length];
-        dataStream.read(fileHeader);
+        buffer.get(fileHeader);
 
         if (!Arrays.equals(SlimeFormat.SLIME_HEADER, fileHeader)) {
             throw new CorruptedWorldException(worldName);
         }
 
         // File version
-        byte version = dataStream.readByte();
+        byte version = buffer.get();
 
         if (version > SlimeFormat.SLIME_VERSION) {
             throw new NewerFormatException(version);
         }
 
-        VersionedByteSlimeWorldReader<SlimeWorld> reader = FORMATS.get(version);
-        return reader.deserializeWorld(version, loader, worldName, dataStream, propertyMap);
+        return version;
     }
 
 }
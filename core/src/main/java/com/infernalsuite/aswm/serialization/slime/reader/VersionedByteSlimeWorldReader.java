@@ -6,10 +6,38 @@ import com.infernalsuite.aswm.api.loaders.SlimeLoader;
 import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface VersionedByteSlimeWorldReader<T> {
 
     T deserializeWorld(byte version, @Nullable SlimeLoader loader, String worldName, DataInputStream dataStream, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException, NewerFormatException;
+
+    /**
+     * Reads a world from a buffer, positioned right after the format version.
+     * By default, the buffer is read through a stream. Readers that read from the buffer directly
+     * may keep a reference to it, so the buffer must not change while the world is in use.
+     */
+    default T deserializeWorld(byte version, @Nullable SlimeLoader loader, String worldName, ByteBuffer buffer, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException, NewerFormatException {
+        ByteArrayInputStream byteStream;
+        if (buffer.hasArray()) {
+            byteStream = new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            byteStream = new ByteArrayInputStream(data);
+        }
+
+        return deserializeWorld(version, loader, worldName, new DataInputStream(byteStream), propertyMap);
+    }
+
+    /**
+     * Reads everything but the chunks of a world from a buffer, positioned right after the format version.
+     * Formats that can't skip their chunks return <code>null</code>, the whole world is read instead.
+     */
+    default @Nullable SlimeWorldMetadata readMetadata(byte version, @Nullable SlimeLoader loader, String worldName, ByteBuffer buffer) throws IOException, CorruptedWorldException {
+        return null;
+    }
 }
@@ -4,6 +4,7 @@ import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
 import com.infernalsuite.aswm.api.exceptions.NewerFormatException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
 import com.infernalsuite.aswm.serialization.SlimeWorldReader;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldMetadata;
 import com.infernalsuite.aswm.serialization.slime.reader.VersionedByteSlimeWorldReader;
 import com.infernalsuite.aswm.api.world.SlimeWorld;
 import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
@@ -11,6 +12,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class SimpleWorldFormat<S> implements VersionedByteSlimeWorldReader<SlimeWorld> {
 
@@ -26,4 +28,14 @@ public class SimpleWorldFormat<S> implements VersionedByteSlimeWorldReader<Slime
     public SlimeWorld deserializeWorld(byte version, @Nullable SlimeLoader loader, String worldName, DataInputStream dataStream, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException, NewerFormatException {
         return this.data.readFromData(this.reader.deserializeWorld(version, loader, worldName, dataStream, propertyMap));
     }
+
+    @Override
+    public SlimeWorld deserializeWorld(byte version, @Nullable SlimeLoader loader, String worldName, ByteBuffer buffer, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException, NewerFormatException {
+        return this.data.readFromData(this.reader.deserializeWorld(version, loader, worldName, buffer, propertyMap));
+    }
+
+    @Override
+    public @Nullable SlimeWorldMetadata readMetadata(byte version, @Nullable SlimeLoader loader, String worldName, ByteBuffer buffer) throws IOException, CorruptedWorldException {
+        return this.reader.readMetadata(version, loader, worldName, buffer);
+    }
 }
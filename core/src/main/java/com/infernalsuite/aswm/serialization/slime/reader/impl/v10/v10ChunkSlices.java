@@ -0,0 +1,184 @@
+package com.infernalsuite.aswm.serialization.slime.reader.impl.v10;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes single chunks out of the uncompressed chunk data of a v10 world.
+ * The chunk data is only scanned for chunk boundaries up front, no nbt is parsed until a chunk is accessed.
+ */
+class v10ChunkSlices implements LazyChunkStorage.ChunkDecoder {
+
+    public static final int ARRAY_SIZE = 16 * 16 * 16 / (8 / 4); // blocks / bytes per block
+
+    private final SlimePropertyMap propertyMap;
+    private final byte[] data;
+    private final Map<ChunkPos, Slice> slices;
+    private final Map<ChunkPos, List<CompoundTag>> tileEntities;
+    private final Map<ChunkPos, List<CompoundTag>> entities;
+
+    v10ChunkSlices(SlimePropertyMap propertyMap, byte[] data, Map<ChunkPos, Slice> slices,
+                   Map<ChunkPos, List<CompoundTag>> tileEntities, Map<ChunkPos, List<CompoundTag>> entities) {
+        this.propertyMap = propertyMap;
+        this.data = data;
+        this.slices = slices;
+        this.tileEntities = tileEntities;
+        this.entities = entities;
+    }
+
+    static Map<ChunkPos, Slice> scan(String worldName, byte[] chunkData) throws CorruptedWorldException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunkData);
+
+        try {
+            int chunks = buffer.getInt();
+            Map<ChunkPos, Slice> slices = new HashMap<>(chunks * 2);
+            for (int i = 0; i < chunks; i++) {
+                int start = buffer.position();
+                ChunkPos pos = new ChunkPos(buffer.getInt(), buffer.getInt());
+
+                // Height Maps
+                skip(buffer, buffer.getInt());
+
+                int sectionCount = buffer.getInt();
+                for (int sectionId = 0; sectionId < sectionCount; sectionId++) {
+                    // Block and Sky Light
+                    if (buffer.get() != 0) {
+                        skip(buffer, ARRAY_SIZE);
+                    }
+                    if (buffer.get() != 0) {
+                        skip(buffer, ARRAY_SIZE);
+                    }
+
+                    // Block and Biome Data
+                    skip(buffer, buffer.getInt());
+                    skip(buffer, buffer.getInt());
+                }
+
+                slices.put(pos, new Slice(start, buffer.position() - start));
+            }
+
+            return slices;
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            throw new CorruptedWorldException(worldName, ex);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    @Override
+    public SlimeChunk decode(ChunkPos pos) throws IOException {
+        Slice slice = this.slices.get(pos);
+        if (slice == null) {
+            return null;
+        }
+
+        DataInputStream chunkData = new DataInputStream(new ByteArrayInputStream(this.data, slice.offset(), slice.length()));
+
+        // coords
+        int x = chunkData.readInt();
+        int z = chunkData.readInt();
+
+        // Height Maps
+        CompoundTag heightMaps = v10SlimeWorldDeSerializer.readCompound(readSized(chunkData));
+
+        // Chunk Sections
+        // See WorldUtils
+        int sectionAmount = this.propertyMap.getValue(SlimeProperties.CHUNK_SECTION_MAX) - this.propertyMap.getValue(SlimeProperties.CHUNK_SECTION_MIN) + 1;
+        SlimeChunkSection[] chunkSectionArray = new SlimeChunkSection[sectionAmount];
+
+        int sectionCount = chunkData.readInt();
+        if (sectionCount < 0 || sectionCount > sectionAmount) {
+            throw new IOException("Chunk " + x + ", " + z + " has " + sectionCount + " sections, at most " + sectionAmount + " are supported");
+        }
+
+        for (int sectionId = 0; sectionId < sectionCount; sectionId++) {
+            // Block Light Nibble Array
+            NibbleArray blockLightArray;
+            if (chunkData.readBoolean()) {
+                byte[] blockLightByteArray = new byte[ARRAY_SIZE];
+                chunkData.readFully(blockLightByteArray);
+                blockLightArray = new NibbleArray(blockLightByteArray);
+            } else {
+                blockLightArray = null;
+            }
+
+            // Sky Light Nibble Array
+            NibbleArray skyLightArray;
+            if (chunkData.readBoolean()) {
+                byte[] skyLightByteArray = new byte[ARRAY_SIZE];
+                chunkData.readFully(skyLightByteArray);
+                skyLightArray = new NibbleArray(skyLightByteArray);
+            } else {
+                skyLightArray = null;
+            }
+
+            // Block data
+            CompoundTag blockStateTag = v10SlimeWorldDeSerializer.readCompound(readSized(chunkData));
+
+            // Biome Data
+            CompoundTag biomeTag = v10SlimeWorldDeSerializer.readCompound(readSized(chunkData));
+
+            chunkSectionArray[sectionId] = new SlimeChunkSectionSkeleton(
+                    blockStateTag,
+                    biomeTag,
+                    blockLightArray,
+                    skyLightArray);
+        }
+
+        return new SlimeChunkSkeleton(x, z, chunkSectionArray, heightMaps,
+                cloneTags(this.tileEntities.get(pos)),
+                cloneTags(this.entities.get(pos)));
+    }
+
+    // Chunks are read from memory, so a size larger than the rest of the chunk can only come from corrupted data
+    private static byte[] readSized(DataInputStream chunkData) throws IOException {
+        int size = chunkData.readInt();
+        if (size < 0 || size > chunkData.available()) {
+            throw new IOException("Invalid tag size " + size);
+        }
+
+        byte[] bytes = new byte[size];
+        chunkData.readFully(bytes);
+        return bytes;
+    }
+
+    // Storage copies share this decoder, so every decoded chunk gets its own tags
+    private static List<CompoundTag> cloneTags(List<CompoundTag> tags) {
+        if (tags == null) {
+            return new ArrayList<>();
+        }
+
+        List<CompoundTag> cloned = new ArrayList<>(tags.size());
+        for (CompoundTag tag : tags) {
+            cloned.add(tag.clone());
+        }
+
+        return cloned;
+    }
+
+    record Slice(int offset, int length) {
+
+    }
+
+}
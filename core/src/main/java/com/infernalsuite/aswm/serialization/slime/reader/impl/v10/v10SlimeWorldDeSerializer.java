@@ -5,25 +5,22 @@ import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.DoubleTag;
 import com.flowpowered.nbt.IntTag;
 import com.flowpowered.nbt.ListTag;
-import com.flowpowered.nbt.stream.NBTInputStream;
-import com.github.luben.zstd.Zstd;
 import com.infernalsuite.aswm.ChunkPos;
 import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.serialization.NbtCodec;
+import com.infernalsuite.aswm.serialization.slime.compression.BufferPool;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
 import com.infernalsuite.aswm.serialization.slime.reader.VersionedByteSlimeWorldReader;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
 import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
-import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
-import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
-import com.infernalsuite.aswm.api.utils.NibbleArray;
 import com.infernalsuite.aswm.api.world.SlimeChunk;
-import com.infernalsuite.aswm.api.world.SlimeChunkSection;
 import com.infernalsuite.aswm.api.world.SlimeWorld;
-import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
 import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
@@ -35,9 +32,6 @@ import java.util.Optional;
 
 class v10SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWorld> {
 
-    public static final int ARRAY_SIZE = 16 * 16 * 16 / (8 / 4); // blocks / bytes per block
-
-    @SuppressWarnings("unchecked")
     @Override
     public SlimeWorld deserializeWorld(byte version, SlimeLoader loader, String worldName, DataInputStream dataStream, SlimePropertyMap propertyMap)
             throws IOException, CorruptedWorldException {
@@ -47,14 +41,44 @@ class v10SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWo
         // Chunk Data
 
         byte[] chunkBytes = readCompressed(dataStream);
-        Map<ChunkPos, SlimeChunk> chunks = readChunks(propertyMap, chunkBytes);
+        com.flowpowered.nbt.CompoundTag tileEntities = readCompressedCompound(dataStream);
+        com.flowpowered.nbt.CompoundTag entities = readCompressedCompound(dataStream);
+        com.flowpowered.nbt.CompoundTag extra = readCompressedCompound(dataStream);
+
+        return readWorld(loader, worldName, worldVersion, chunkBytes, tileEntities, entities, extra, propertyMap);
+    }
 
-        byte[] tileEntities = readCompressed(dataStream);
-        byte[] entities = readCompressed(dataStream);
-        byte[] extra = readCompressed(dataStream);
+    @Override
+    public SlimeWorld deserializeWorld(byte version, SlimeLoader loader, String worldName, ByteBuffer buffer, SlimePropertyMap propertyMap)
+            throws IOException, CorruptedWorldException {
+        int worldVersion;
+        byte[] chunkBytes;
+        com.flowpowered.nbt.CompoundTag tileEntities;
+        com.flowpowered.nbt.CompoundTag entities;
+        com.flowpowered.nbt.CompoundTag extra;
+
+        // Compressed data is read straight out of the buffer
+        try {
+            worldVersion = buffer.getInt();
+            chunkBytes = readCompressed(buffer);
+            tileEntities = readCompressedCompound(buffer);
+            entities = readCompressedCompound(buffer);
+            extra = readCompressedCompound(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new CorruptedWorldException(worldName, ex);
+        }
+
+        return readWorld(loader, worldName, worldVersion, chunkBytes, tileEntities, entities, extra, propertyMap);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SlimeWorld readWorld(SlimeLoader loader, String worldName, int worldVersion, byte[] chunkBytes,
+                                        com.flowpowered.nbt.CompoundTag tileEntitiesCompound, com.flowpowered.nbt.CompoundTag entitiesCompound,
+                                        com.flowpowered.nbt.CompoundTag extraCompound, SlimePropertyMap propertyMap) throws IOException, CorruptedWorldException {
+        Map<ChunkPos, v10ChunkSlices.Slice> slices = v10ChunkSlices.scan(worldName, chunkBytes);
 
         // Entity deserialization
-        com.flowpowered.nbt.CompoundTag entitiesCompound = readCompound(entities);
+        Map<ChunkPos, List<CompoundTag>> entityStorage = new HashMap<>();
         {
             List<CompoundTag> serializedEntities = ((ListTag<CompoundTag>) entitiesCompound.getValue().get("entities")).getValue();
             for (CompoundTag entityCompound : serializedEntities) {
@@ -63,31 +87,26 @@ class v10SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWo
                 int chunkX = listTag.getValue().get(0).getValue().intValue() >> 4;
                 int chunkZ = listTag.getValue().get(2).getValue().intValue() >> 4;
                 ChunkPos chunkKey = new ChunkPos(chunkX, chunkZ);
-                SlimeChunk chunk = chunks.get(chunkKey);
-                if (chunk != null) {
-                    chunk.getEntities().add(entityCompound);
+                if (slices.containsKey(chunkKey)) {
+                    entityStorage.computeIfAbsent(chunkKey, pos -> new ArrayList<>()).add(entityCompound);
                 }
             }
         }
 
         // Tile Entity deserialization
-        com.flowpowered.nbt.CompoundTag tileEntitiesCompound = readCompound(tileEntities);
+        Map<ChunkPos, List<CompoundTag>> tileEntityStorage = new HashMap<>();
         for (CompoundTag tileEntityCompound : ((com.flowpowered.nbt.ListTag<com.flowpowered.nbt.CompoundTag>) tileEntitiesCompound.getValue().get("tiles")).getValue()) {
             int chunkX = ((IntTag) tileEntityCompound.getValue().get("x")).getValue() >> 4;
             int chunkZ = ((IntTag) tileEntityCompound.getValue().get("z")).getValue() >> 4;
             ChunkPos pos = new ChunkPos(chunkX, chunkZ);
-            SlimeChunk chunk = chunks.get(pos);
 
-            if (chunk == null) {
+            if (!slices.containsKey(pos)) {
                 throw new CorruptedWorldException(worldName);
             }
 
-            chunk.getTileEntities().add(tileEntityCompound);
+            tileEntityStorage.computeIfAbsent(pos, key -> new ArrayList<>()).add(tileEntityCompound);
         }
 
-        // Extra Data
-        com.flowpowered.nbt.CompoundTag extraCompound = readCompound(extra);
-
         // World properties
         SlimePropertyMap worldPropertyMap = propertyMap;
         Optional<CompoundMap> propertiesMap = extraCompound
@@ -99,6 +118,10 @@ class v10SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWo
             worldPropertyMap.merge(propertyMap); // Override world properties
         }
 
+        // Chunks are only decoded once they're accessed
+        v10ChunkSlices chunkSlices = new v10ChunkSlices(propertyMap, chunkBytes, slices, tileEntityStorage, entityStorage);
+        Map<ChunkPos, SlimeChunk> chunks = new LazyChunkStorage(slices.keySet(), chunkSlices);
+
         return new SkeletonSlimeWorld(worldName, loader, chunks,
                 extraCompound,
                 worldPropertyMap,
@@ -106,75 +129,6 @@ class v10SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWo
         );
     }
 
-    private static Map<ChunkPos, SlimeChunk> readChunks(SlimePropertyMap slimePropertyMap, byte[] bytes) throws IOException {
-        Map<ChunkPos, SlimeChunk> chunkMap = new HashMap<>();
-        DataInputStream chunkData = new DataInputStream(new ByteArrayInputStream(bytes));
-
-        int chunks = chunkData.readInt();
-        for (int i = 0; i < chunks; i++) {
-            // coords
-            int x = chunkData.readInt();
-            int z = chunkData.readInt();
-
-            // Height Maps
-            byte[] heightMapData = new byte[chunkData.readInt()];
-            chunkData.read(heightMapData);
-            com.flowpowered.nbt.CompoundTag heightMaps = readCompound(heightMapData);
-
-            // Chunk Sections
-            {
-                // See WorldUtils
-                int sectionAmount = slimePropertyMap.getValue(SlimeProperties.CHUNK_SECTION_MAX) - slimePropertyMap.getValue(SlimeProperties.CHUNK_SECTION_MIN) + 1;
-                SlimeChunkSection[] chunkSectionArray = new SlimeChunkSection[sectionAmount];
-
-                int sectionCount = chunkData.readInt();
-                for (int sectionId = 0; sectionId < sectionCount; sectionId++) {
-                    // Block Light Nibble Array
-                    NibbleArray blockLightArray;
-                    if (chunkData.readBoolean()) {
-                        byte[] blockLightByteArray = new byte[ARRAY_SIZE];
-                        chunkData.read(blockLightByteArray);
-                        blockLightArray = new NibbleArray(blockLightByteArray);
-                    } else {
-                        blockLightArray = null;
-                    }
-
-                    // Sky Light Nibble Array
-                    NibbleArray skyLightArray;
-                    if (chunkData.readBoolean()) {
-                        byte[] skyLightByteArray = new byte[ARRAY_SIZE];
-                        chunkData.read(skyLightByteArray);
-                        skyLightArray = new NibbleArray(skyLightByteArray);
-                    } else {
-                        skyLightArray = null;
-                    }
-
-                    // Block data
-                    byte[] blockStateData = new byte[chunkData.readInt()];
-                    chunkData.read(blockStateData);
-                    com.flowpowered.nbt.CompoundTag blockStateTag = readCompound(blockStateData);
-
-                    // Biome Data
-                    byte[] biomeData = new byte[chunkData.readInt()];
-                    chunkData.read(biomeData);
-                    com.flowpowered.nbt.CompoundTag biomeTag = readCompound(biomeData);
-
-                    chunkSectionArray[sectionId] = new SlimeChunkSectionSkeleton(
-                            blockStateTag,
-                            biomeTag,
-                            blockLightArray,
-                            skyLightArray);
-                }
-
-                chunkMap.put(new ChunkPos(x, z),
-                        new SlimeChunkSkeleton(x, z, chunkSectionArray, heightMaps, new ArrayList<>(), new ArrayList<>())
-                );
-            }
-        }
-
-        return chunkMap;
-    }
-
     private static int[] toIntArray(byte[] buf) {
         ByteBuffer buffer = ByteBuffer.wrap(buf).order(ByteOrder.BIG_ENDIAN);
         int[] ret = new int[buf.length / 4];
@@ -184,24 +138,88 @@ class v10SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWo
         return ret;
     }
 
+    // Chunks are decoded lazily from the decompressed array, so it's decompressed into an array of its own that's kept
     private static byte[] readCompressed(DataInputStream stream) throws IOException {
         int compressedLength = stream.readInt();
         int normalLength = stream.readInt();
-        byte[] compressed = new byte[compressedLength];
+        checkLengths(compressedLength, normalLength);
+        byte[] compressed = BufferPool.acquire(compressedLength);
         byte[] normal = new byte[normalLength];
 
-        stream.read(compressed);
-        Zstd.decompress(normal, compressed);
+        try {
+            stream.readFully(compressed, 0, compressedLength);
+            SlimeCodec.forId(SlimeCodec.ZSTD, null, 0).decompress(compressed, 0, compressedLength, normal);
+        } finally {
+            BufferPool.release(compressed);
+        }
+
         return normal;
     }
 
-    private static com.flowpowered.nbt.CompoundTag readCompound(byte[] bytes) throws IOException {
+    private static byte[] readCompressed(ByteBuffer buffer) throws IOException {
+        int compressedLength = buffer.getInt();
+        int normalLength = buffer.getInt();
+        checkLengths(compressedLength, normalLength);
+        byte[] normal = new byte[normalLength];
+
+        SlimeCodec.forId(SlimeCodec.ZSTD, null, 0).decompress(buffer.slice(buffer.position(), compressedLength), normal);
+        buffer.position(buffer.position() + compressedLength);
+        return normal;
+    }
+
+    // The other tags are parsed right away, so they're decompressed into pooled arrays instead
+    private static com.flowpowered.nbt.CompoundTag readCompressedCompound(DataInputStream stream) throws IOException {
+        int compressedLength = stream.readInt();
+        int normalLength = stream.readInt();
+        checkLengths(compressedLength, normalLength);
+        byte[] compressed = BufferPool.acquire(compressedLength);
+        byte[] normal = BufferPool.acquire(normalLength);
+
+        try {
+            stream.readFully(compressed, 0, compressedLength);
+            SlimeCodec.forId(SlimeCodec.ZSTD, null, 0).decompress(compressed, 0, compressedLength, normal, normalLength);
+            return readCompound(normal, normalLength);
+        } finally {
+            BufferPool.release(compressed);
+            BufferPool.release(normal);
+        }
+    }
+
+    private static com.flowpowered.nbt.CompoundTag readCompressedCompound(ByteBuffer buffer) throws IOException {
+        int compressedLength = buffer.getInt();
+        int normalLength = buffer.getInt();
+        checkLengths(compressedLength, normalLength);
+        byte[] normal = BufferPool.acquire(normalLength);
+
+        try {
+            SlimeCodec.forId(SlimeCodec.ZSTD, null, 0).decompress(buffer.slice(buffer.position(), compressedLength), normal, normalLength);
+            buffer.position(buffer.position() + compressedLength);
+            return readCompound(normal, normalLength);
+        } finally {
+            BufferPool.release(normal);
+        }
+    }
+
+    private static void checkLengths(int compressedLength, int normalLength) throws IOException {
+        if (compressedLength < 0 || normalLength < 0) {
+            throw new IOException("Invalid compressed size " + compressedLength + " or uncompressed size " + normalLength);
+        }
+    }
+
+    private static com.flowpowered.nbt.CompoundTag readCompound(byte[] bytes, int length) throws IOException {
+        if (length == 0) {
+            return null;
+        }
+
+        return NbtCodec.readCompound(ByteBuffer.wrap(bytes, 0, length));
+    }
+
+    static com.flowpowered.nbt.CompoundTag readCompound(byte[] bytes) throws IOException {
         if (bytes.length == 0) {
             return null;
         }
 
-        NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(bytes), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN);
-        return (com.flowpowered.nbt.CompoundTag) stream.readTag();
+        return NbtCodec.readCompound(bytes);
     }
 
 
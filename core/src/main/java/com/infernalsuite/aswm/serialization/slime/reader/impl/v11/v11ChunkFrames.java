@@ -0,0 +1,329 @@
+package com.infernalsuite.aswm.serialization.slime.reader.impl.v11;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.Tag;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.SlimeLogger;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.ChunkFrame;
+import com.infernalsuite.aswm.serialization.slime.PaletteCodec;
+import com.infernalsuite.aswm.serialization.slime.SlimeSerializer;
+import com.infernalsuite.aswm.serialization.slime.compression.BufferPool;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes single chunks out of the independently compressed chunk frames of a v11 world.
+ */
+class v11ChunkFrames implements LazyChunkStorage.ChunkDecoder {
+
+    public static final int ARRAY_SIZE = 16 * 16 * 16 / (8 / 4); // blocks / bytes per block
+
+    // Chunks have been encoded the same way since section references were added
+    private static final int CHUNK_FORMAT_VERSION = 17;
+
+    private static final XXHash64 HASH = XXHashFactory.fastestInstance().hash64();
+
+    private final byte version;
+    private final String worldName;
+    private final SlimePropertyMap propertyMap;
+    private final ByteBuffer data;
+    private final Map<ChunkPos, Frame> frames;
+    private final SlimeCodec codec;
+    private final SlimeChunkSection[] sectionTable;
+    private final Map<ChunkPos, List<CompoundTag>> tileEntities;
+    private final Map<ChunkPos, List<CompoundTag>> entities;
+    private final boolean skipDamaged;
+
+    v11ChunkFrames(byte version, String worldName, SlimePropertyMap propertyMap, ByteBuffer data, Map<ChunkPos, Frame> frames, SlimeCodec codec,
+                   SlimeChunkSection[] sectionTable, Map<ChunkPos, List<CompoundTag>> tileEntities, Map<ChunkPos, List<CompoundTag>> entities) {
+        this.version = version;
+        this.worldName = worldName;
+        this.propertyMap = propertyMap;
+        this.data = data;
+        this.frames = frames;
+        this.codec = codec;
+        this.sectionTable = sectionTable;
+        this.tileEntities = tileEntities;
+        this.entities = entities;
+        this.skipDamaged = skipsDamagedChunks(propertyMap);
+    }
+
+    static boolean skipsDamagedChunks(SlimePropertyMap propertyMap) {
+        return propertyMap.getValue(SlimeProperties.CHUNK_RECOVERY).equalsIgnoreCase("skip");
+    }
+
+    /**
+     * Returns the chunks whose frame lies outside the chunk data or doesn't match its checksum. Frames are verified
+     * in parallel, without decompressing them.
+     *
+     * @param data      the chunk frames
+     * @param frames    the chunk index
+     * @param checksums whether the chunk index holds checksums, which it does since v18
+     * @return the positions of the damaged chunks
+     */
+    static List<ChunkPos> findDamagedFrames(ByteBuffer data, Map<ChunkPos, Frame> frames, boolean checksums) {
+        return frames.entrySet().parallelStream().filter(entry -> {
+            Frame frame = entry.getValue();
+            if ((long) frame.offset() + frame.compressedLength() > data.limit()) {
+                return true;
+            }
+
+            return checksums && HASH.hash(data, frame.offset(), frame.compressedLength(), 0) != frame.checksum();
+        }).map(Map.Entry::getKey).toList();
+    }
+
+    @Override
+    public SlimeChunk decode(ChunkPos pos) throws IOException {
+        Frame frame = this.frames.get(pos);
+        if (frame == null) {
+            return null;
+        }
+
+        if (!this.skipDamaged) {
+            return decodeFrame(pos, frame);
+        }
+
+        // Older worlds don't have checksums, so damaged chunks are only noticed once they're decoded
+        try {
+            return decodeFrame(pos, frame);
+        } catch (IOException | RuntimeException ex) {
+            SlimeLogger.warn("Skipped damaged chunk " + pos.x() + ", " + pos.z() + " of world " + this.worldName + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    // The decompressed chunk is only read through the stream, which copies everything out of it, so the array is pooled
+    private SlimeChunk decodeFrame(ChunkPos pos, Frame frame) throws IOException {
+        byte[] chunkBytes = BufferPool.acquire(frame.length());
+        try {
+            try {
+                this.codec.decompress(this.data.slice(frame.offset(), frame.compressedLength()), chunkBytes, frame.length());
+            } catch (IOException ex) {
+                throw new IOException("Chunk " + pos.x() + ", " + pos.z() + " of world " + this.worldName + " is corrupted", ex);
+            }
+
+            return readChunk(pos, new DataInputStream(new ByteArrayInputStream(chunkBytes, 0, frame.length())));
+        } finally {
+            BufferPool.release(chunkBytes);
+        }
+    }
+
+    private SlimeChunk readChunk(ChunkPos pos, DataInputStream chunkData) throws IOException {
+        // coords
+        int x = chunkData.readInt();
+        int z = chunkData.readInt();
+        if (x != pos.x() || z != pos.z()) {
+            throw new IOException("Chunk " + pos.x() + ", " + pos.z() + " of world " + this.worldName + " is stored as " + x + ", " + z);
+        }
+
+        // Strings used by the height maps and palettes
+        PaletteCodec.Reader tagReader = this.version >= 14 ? new PaletteCodec.Reader(chunkData) : null;
+
+        // Height Maps
+        CompoundTag heightMaps = readTag(chunkData, tagReader);
+
+        // Chunk Sections
+        // See WorldUtils
+        int sectionAmount = this.propertyMap.getValue(SlimeProperties.CHUNK_SECTION_MAX) - this.propertyMap.getValue(SlimeProperties.CHUNK_SECTION_MIN) + 1;
+        SlimeChunkSection[] chunkSectionArray = new SlimeChunkSection[sectionAmount];
+
+        int sectionCount = chunkData.readInt();
+        if (sectionCount < 0 || sectionCount > sectionAmount) {
+            throw new IOException("Chunk " + x + ", " + z + " of world " + this.worldName + " has " + sectionCount + " sections, at most " + sectionAmount + " are supported");
+        }
+
+        for (int sectionId = 0; sectionId < sectionCount; sectionId++) {
+            int sectionType = this.version >= 17 ? chunkData.readUnsignedByte() : SlimeSerializer.SECTION_INLINE;
+            chunkSectionArray[sectionId] = switch (sectionType) {
+                case SlimeSerializer.SECTION_INLINE -> readSection(chunkData, tagReader);
+                case SlimeSerializer.SECTION_REFERENCE -> {
+                    int tableIndex = chunkData.readInt();
+                    if (tableIndex < 0 || tableIndex >= this.sectionTable.length) {
+                        throw new IOException("Chunk " + x + ", " + z + " of world " + this.worldName + " references missing section " + tableIndex);
+                    }
+
+                    yield shareSection(this.sectionTable[tableIndex]);
+                }
+                default -> throw new IOException("Unknown section type " + sectionType);
+            };
+        }
+
+        // Tile Entities and Entities, stored in world-global lists before v15
+        if (this.version >= 15) {
+            List<CompoundTag> tileEntities = readCompoundList(chunkData, "tiles");
+            List<CompoundTag> entities = readCompoundList(chunkData, "entities");
+            return new SlimeChunkSkeleton(x, z, chunkSectionArray, heightMaps, tileEntities, entities);
+        }
+
+        return new SlimeChunkSkeleton(x, z, chunkSectionArray, heightMaps,
+                cloneTags(this.tileEntities.get(pos)),
+                cloneTags(this.entities.get(pos)));
+    }
+
+    private static SlimeChunkSection readSection(DataInputStream chunkData, PaletteCodec.Reader tagReader) throws IOException {
+        // Block and Sky Light Nibble Arrays
+        NibbleArray blockLightArray = readLight(chunkData);
+        NibbleArray skyLightArray = readLight(chunkData);
+
+        // Block and Biome Data
+        CompoundTag blockStateTag = readTag(chunkData, tagReader);
+        CompoundTag biomeTag = readTag(chunkData, tagReader);
+
+        return new SlimeChunkSectionSkeleton(blockStateTag, biomeTag, blockLightArray, skyLightArray);
+    }
+
+    /**
+     * Reads the sections shared by several chunks, each one is stored with its own string table.
+     */
+    static SlimeChunkSection[] readSectionTable(byte[] table) throws IOException {
+        DataInputStream tableData = new DataInputStream(new ByteArrayInputStream(table));
+        int sectionCount = tableData.readInt();
+        // Every section is prefixed by its size, so the table can't hold more sections than that
+        if (sectionCount < 0 || sectionCount > table.length / 4) {
+            throw new IOException("Invalid section table size " + sectionCount);
+        }
+
+        SlimeChunkSection[] sections = new SlimeChunkSection[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            int sectionSize = tableData.readInt();
+            if (sectionSize < 0 || sectionSize > tableData.available()) {
+                throw new IOException("Invalid section size " + sectionSize);
+            }
+
+            byte[] sectionBytes = new byte[sectionSize];
+            tableData.readFully(sectionBytes);
+
+            DataInputStream sectionData = new DataInputStream(new ByteArrayInputStream(sectionBytes));
+            sections[i] = readSection(sectionData, new PaletteCodec.Reader(sectionData));
+        }
+
+        return sections;
+    }
+
+    // Chunks referencing a table section share its tags, which are never modified in place. The light arrays are
+    // written to by the server, so each chunk gets arrays that only copy the table's light once they're written to
+    private static SlimeChunkSection shareSection(SlimeChunkSection section) {
+        return new SlimeChunkSectionSkeleton(section.getBlockStatesTag(), section.getBiomeTag(),
+                section.getBlockLight() == null ? null : section.getBlockLight().share(),
+                section.getSkyLight() == null ? null : section.getSkyLight().share());
+    }
+
+    @Override
+    public ChunkFrame encodedFrame(ChunkPos pos, SlimeCodec codec) {
+        if (!hasEncodedFrame(pos, codec)) {
+            return null;
+        }
+
+        Frame frame = this.frames.get(pos);
+        byte[] compressed = new byte[frame.compressedLength()];
+        this.data.get(frame.offset(), compressed);
+        return new ChunkFrame(pos.toKey(), frame.length(), compressed);
+    }
+
+    // Frames written before the chunk format last changed have to be serialized again,
+    // and so do frames that may reference this world's section table
+    @Override
+    public boolean hasEncodedFrame(ChunkPos pos, SlimeCodec codec) {
+        return this.frames.containsKey(pos) && this.version >= CHUNK_FORMAT_VERSION && this.sectionTable.length == 0
+                && codec.getId() == this.codec.getId() && codec.getDictionaryId() == this.codec.getDictionaryId();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<CompoundTag> readCompoundList(DataInputStream chunkData, String name) throws IOException {
+        CompoundTag compound = v11SlimeWorldDeSerializer.readCompound(readSized(chunkData));
+        if (compound == null) {
+            return new ArrayList<>();
+        }
+
+        Tag<?> list = compound.getValue().get(name);
+        if (!(list instanceof ListTag<?>)) {
+            throw new IOException("Chunk is missing its " + name + " list");
+        }
+
+        return new ArrayList<>(((ListTag<CompoundTag>) list).getValue());
+    }
+
+    // Before v16 light is either absent or a full array, which share their ids with the uniform light of v16
+    private static NibbleArray readLight(DataInputStream chunkData) throws IOException {
+        int lightType = chunkData.readUnsignedByte();
+        switch (lightType) {
+            case SlimeSerializer.LIGHT_ABSENT -> {
+                return null;
+            }
+            case SlimeSerializer.LIGHT_ARRAY -> {
+                byte[] lightByteArray = new byte[ARRAY_SIZE];
+                chunkData.readFully(lightByteArray);
+
+                // Worlds saved before v16 store uniform light as full arrays too
+                NibbleArray light = new NibbleArray(lightByteArray);
+                int uniformValue = light.getUniformValue();
+                return uniformValue == -1 ? light : NibbleArray.uniform(ARRAY_SIZE * 2, uniformValue);
+            }
+            case SlimeSerializer.LIGHT_UNIFORM -> {
+                return NibbleArray.uniform(ARRAY_SIZE * 2, chunkData.readUnsignedByte());
+            }
+            default -> throw new IOException("Unknown light type " + lightType);
+        }
+    }
+
+    // Before v14 every tag is stored as nbt, prefixed by its size
+    private static CompoundTag readTag(DataInputStream chunkData, PaletteCodec.Reader tagReader) throws IOException {
+        if (tagReader != null) {
+            return tagReader.read(chunkData);
+        }
+
+        return v11SlimeWorldDeSerializer.readCompound(readSized(chunkData));
+    }
+
+    // Chunks are read from memory, so a size larger than the rest of the chunk can only come from corrupted data
+    private static byte[] readSized(DataInputStream chunkData) throws IOException {
+        int size = chunkData.readInt();
+        if (size < 0 || size > chunkData.available()) {
+            throw new IOException("Invalid tag size " + size);
+        }
+
+        byte[] bytes = new byte[size];
+        chunkData.readFully(bytes);
+        return bytes;
+    }
+
+    // Storage copies share this decoder, so every decoded chunk gets its own tags
+    private static List<CompoundTag> cloneTags(List<CompoundTag> tags) {
+        if (tags == null) {
+            return new ArrayList<>();
+        }
+
+        List<CompoundTag> cloned = new ArrayList<>(tags.size());
+        for (CompoundTag tag : tags) {
+            cloned.add(tag.clone());
+        }
+
+        return cloned;
+    }
+
+    /**
+     * @param checksum the xxHash64 of the compressed frame, or 0 before v18
+     */
+    record Frame(int offset, int compressedLength, int length, long checksum) {
+
+    }
+
+}
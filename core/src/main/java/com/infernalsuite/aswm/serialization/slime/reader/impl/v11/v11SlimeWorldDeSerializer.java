@@ -0,0 +1,339 @@
+package com.infernalsuite.aswm.serialization.slime.reader.impl.v11;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.SlimeLogger;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.exceptions.NewerFormatException;
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.NbtCodec;
+import com.infernalsuite.aswm.serialization.slime.OverlayBase;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldMetadata;
+import com.infernalsuite.aswm.serialization.slime.reader.VersionedByteSlimeWorldReader;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class v11SlimeWorldDeSerializer implements VersionedByteSlimeWorldReader<SlimeWorld> {
+
+    // Since v19 the chunk index and the section sizes are written after the chunk frames
+    private static final int TRAILER_VERSION = 19;
+    private static final int INDEX_ENTRY_LENGTH = 8 + 4 + 4 + 4 + 8;
+
+    @Override
+    public SlimeWorld deserializeWorld(byte version, SlimeLoader loader, String worldName, DataInputStream dataStream, SlimePropertyMap propertyMap)
+            throws IOException, CorruptedWorldException {
+        return deserializeWorld(version, loader, worldName, ByteBuffer.wrap(dataStream.readAllBytes()), propertyMap);
+    }
+
+    @Override
+    public SlimeWorld deserializeWorld(byte version, SlimeLoader loader, String worldName, ByteBuffer buffer, SlimePropertyMap propertyMap)
+            throws IOException, CorruptedWorldException {
+        try {
+            return readWorld(version, loader, worldName, buffer, propertyMap);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ArithmeticException ex) {
+            throw new CorruptedWorldException(worldName, ex);
+        }
+    }
+
+    @Override
+    public SlimeWorldMetadata readMetadata(byte version, SlimeLoader loader, String worldName, ByteBuffer buffer)
+            throws IOException, CorruptedWorldException {
+        try {
+            int size = SlimeFormat.SLIME_HEADER.length + 1 + buffer.remaining();
+            int worldVersion = buffer.getInt();
+
+            int codecId = version >= 13 ? Byte.toUnsignedInt(buffer.get()) : SlimeCodec.ZSTD;
+            int dictionaryId = version >= 12 ? buffer.getInt() : 0;
+            SlimeCodec codec = SlimeCodec.forId(codecId, loader, dictionaryId);
+
+            // Only the extra tag is decompressed, the chunk index and everything before the extra tag are skipped
+            int chunkCount;
+            byte[] extra;
+            if (version >= TRAILER_VERSION) {
+                Trailer trailer = Trailer.read(worldName, buffer);
+                chunkCount = trailer.chunkCount();
+                skip(worldName, buffer, trailer.sectionTableLength());
+                extra = readCompressed(buffer, codec, trailer.extraLength(), trailer.extraSize());
+            } else {
+                chunkCount = buffer.getInt();
+                if (chunkCount < 0) {
+                    throw new CorruptedWorldException(worldName);
+                }
+
+                skip(worldName, buffer, Math.multiplyExact(chunkCount, version >= 18 ? 28 : 20));
+                int skipped = (version < 15 ? 2 : 0) + (version >= 17 ? 1 : 0);
+                for (int i = 0; i < skipped; i++) {
+                    int compressedLength = buffer.getInt();
+                    buffer.getInt();
+                    skip(worldName, buffer, compressedLength);
+                }
+
+                extra = readCompressed(buffer, codec);
+            }
+
+            CompoundTag extraCompound = readCompound(extra);
+            if (extraCompound == null) {
+                extraCompound = new CompoundTag("", new CompoundMap());
+            }
+
+            SlimePropertyMap properties = extraCompound.getAsCompoundTag("properties")
+                    .map(tag -> new SlimePropertyMap(tag.getValue()))
+                    .orElseGet(SlimePropertyMap::new);
+            return new SlimeWorldMetadata(version, worldVersion, chunkCount, size, extraCompound, properties);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | ArithmeticException ex) {
+            throw new CorruptedWorldException(worldName, ex);
+        }
+    }
+
+    // Sizes read from the world are checked against the buffer, so they can't wrap around into earlier data
+    private static void skip(String worldName, ByteBuffer buffer, int length) throws CorruptedWorldException {
+        if (length < 0 || Math.addExact(buffer.position(), length) > buffer.limit()) {
+            throw new CorruptedWorldException(worldName);
+        }
+
+        buffer.position(buffer.position() + length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SlimeWorld readWorld(byte version, SlimeLoader loader, String worldName, ByteBuffer buffer, SlimePropertyMap propertyMap)
+            throws IOException, CorruptedWorldException {
+
+        // World version
+        int worldVersion = buffer.getInt();
+
+        // Codec and dictionary
+        int codecId = version >= 13 ? Byte.toUnsignedInt(buffer.get()) : SlimeCodec.ZSTD;
+        int dictionaryId = version >= 12 ? buffer.getInt() : 0;
+        SlimeCodec codec = SlimeCodec.forId(codecId, loader, dictionaryId);
+
+        // Chunk index, which follows the chunk frames since v19
+        Trailer trailer = null;
+        ByteBuffer index = buffer;
+        int framesEnd = buffer.limit();
+        int chunkCount;
+        if (version >= TRAILER_VERSION) {
+            trailer = Trailer.read(worldName, buffer);
+            chunkCount = trailer.chunkCount();
+            framesEnd = trailer.indexStart();
+            index = buffer.slice(trailer.indexStart(), chunkCount * INDEX_ENTRY_LENGTH);
+        } else {
+            chunkCount = buffer.getInt();
+            if (chunkCount < 0 || Math.multiplyExact(chunkCount, version >= 18 ? 28 : 20) > buffer.remaining()) {
+                throw new CorruptedWorldException(worldName);
+            }
+        }
+
+        Map<ChunkPos, v11ChunkFrames.Frame> frames = new HashMap<>(chunkCount * 2);
+        int framesLength = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            ChunkPos pos = ChunkPos.fromKey(index.getLong());
+            v11ChunkFrames.Frame frame = new v11ChunkFrames.Frame(index.getInt(), index.getInt(), index.getInt(), version >= 18 ? index.getLong() : 0);
+            if (frame.offset() < 0 || frame.compressedLength() < 0 || frame.length() < 0) {
+                throw new CorruptedWorldException(worldName);
+            }
+
+            frames.put(pos, frame);
+            framesLength = Math.max(framesLength, Math.addExact(frame.offset(), frame.compressedLength()));
+        }
+
+        // Before v15, tile entities and entities are stored in world-global lists instead of inside the chunk frames
+        Map<ChunkPos, List<CompoundTag>> entityStorage = new HashMap<>();
+        Map<ChunkPos, List<CompoundTag>> tileEntityStorage = new HashMap<>();
+        if (version < 15) {
+            byte[] tileEntities = readCompressed(buffer, codec);
+            byte[] entities = readCompressed(buffer, codec);
+            readGlobalLists(worldName, frames.keySet(), tileEntities, entities, tileEntityStorage, entityStorage);
+        }
+
+        // Since v17, sections shared by several chunks are stored once in a section table
+        SlimeChunkSection[] sectionTable;
+        byte[] extra;
+        if (trailer != null) {
+            sectionTable = v11ChunkFrames.readSectionTable(readCompressed(buffer, codec, trailer.sectionTableLength(), trailer.sectionTableSize()));
+            extra = readCompressed(buffer, codec, trailer.extraLength(), trailer.extraSize());
+        } else {
+            sectionTable = version >= 17 ? v11ChunkFrames.readSectionTable(readCompressed(buffer, codec)) : new SlimeChunkSection[0];
+            extra = readCompressed(buffer, codec);
+        }
+
+        int framesStart = buffer.position();
+
+        // Extra Data
+        CompoundTag extraCompound = readCompound(extra);
+        if (extraCompound == null) {
+            extraCompound = new CompoundTag("", new CompoundMap());
+        }
+
+        // World properties
+        SlimePropertyMap worldPropertyMap = propertyMap;
+        Optional<CompoundMap> propertiesMap = extraCompound
+                .getAsCompoundTag("properties")
+                .map(CompoundTag::getValue);
+
+        if (propertiesMap.isPresent()) {
+            worldPropertyMap = new SlimePropertyMap(propertiesMap.get());
+            worldPropertyMap.merge(propertyMap); // Override world properties
+        }
+
+        // Chunk frames, only decompressed once the chunk is accessed. They're not copied out of the buffer
+        boolean skipDamaged = v11ChunkFrames.skipsDamagedChunks(worldPropertyMap);
+        int availableLength = Math.min(framesLength, framesEnd - framesStart);
+        if (availableLength < framesLength && !skipDamaged) {
+            throw new CorruptedWorldException(worldName);
+        }
+
+        ByteBuffer chunkData = buffer.slice(framesStart, availableLength);
+        List<ChunkPos> damagedChunks = v11ChunkFrames.findDamagedFrames(chunkData, frames, version >= 18);
+        if (!damagedChunks.isEmpty()) {
+            String damaged = damagedChunks.stream().map(pos -> pos.x() + ", " + pos.z()).collect(Collectors.joining("; "));
+            if (!skipDamaged) {
+                throw new CorruptedWorldException(worldName, new IOException("Damaged chunks: " + damaged));
+            }
+
+            // Skipped chunks are missing from the world, so the generator creates them again
+            damagedChunks.forEach(frames::remove);
+            SlimeLogger.warn("Skipped " + damagedChunks.size() + " damaged chunks of world " + worldName + ": " + damaged);
+        }
+
+        v11ChunkFrames chunkFrames = new v11ChunkFrames(version, worldName, worldPropertyMap, chunkData, frames, codec, sectionTable,
+                tileEntityStorage, entityStorage);
+        Map<ChunkPos, SlimeChunk> chunks;
+        Optional<CompoundTag> overlay = extraCompound.getAsCompoundTag(OverlayBase.OVERLAY_TAG);
+        if (overlay.isPresent()) {
+            // Overlays only store the chunks that differ from their template, the tag is written again when saving
+            extraCompound.getValue().remove(OverlayBase.OVERLAY_TAG);
+            try {
+                chunks = OverlayBase.readOverlay(loader, overlay.get(), frames.keySet(), chunkFrames);
+            } catch (UnknownWorldException | NewerFormatException | IOException ex) {
+                throw new CorruptedWorldException(worldName, ex);
+            }
+        } else {
+            chunks = new LazyChunkStorage(frames.keySet(), chunkFrames);
+        }
+
+        return new SkeletonSlimeWorld(worldName, loader, chunks,
+                extraCompound,
+                worldPropertyMap,
+                worldVersion
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void readGlobalLists(String worldName, Set<ChunkPos> chunks, byte[] tileEntities, byte[] entities,
+                                        Map<ChunkPos, List<CompoundTag>> tileEntityStorage,
+                                        Map<ChunkPos, List<CompoundTag>> entityStorage) throws IOException, CorruptedWorldException {
+        // Entity deserialization
+        CompoundTag entitiesCompound = readCompound(entities);
+        if (entitiesCompound != null) {
+            List<CompoundTag> serializedEntities = ((ListTag<CompoundTag>) entitiesCompound.getValue().get("entities")).getValue();
+            for (CompoundTag entityCompound : serializedEntities) {
+                ListTag<DoubleTag> listTag = (ListTag<DoubleTag>) entityCompound.getAsListTag("Pos").get();
+
+                int chunkX = listTag.getValue().get(0).getValue().intValue() >> 4;
+                int chunkZ = listTag.getValue().get(2).getValue().intValue() >> 4;
+                ChunkPos chunkKey = new ChunkPos(chunkX, chunkZ);
+                if (chunks.contains(chunkKey)) {
+                    entityStorage.computeIfAbsent(chunkKey, pos -> new ArrayList<>()).add(entityCompound);
+                }
+            }
+        }
+
+        // Tile Entity deserialization
+        CompoundTag tileEntitiesCompound = readCompound(tileEntities);
+        if (tileEntitiesCompound != null) {
+            for (CompoundTag tileEntityCompound : ((ListTag<CompoundTag>) tileEntitiesCompound.getValue().get("tiles")).getValue()) {
+                int chunkX = ((IntTag) tileEntityCompound.getValue().get("x")).getValue() >> 4;
+                int chunkZ = ((IntTag) tileEntityCompound.getValue().get("z")).getValue() >> 4;
+                ChunkPos pos = new ChunkPos(chunkX, chunkZ);
+
+                if (!chunks.contains(pos)) {
+                    throw new CorruptedWorldException(worldName);
+                }
+
+                tileEntityStorage.computeIfAbsent(pos, key -> new ArrayList<>()).add(tileEntityCompound);
+            }
+        }
+    }
+
+    private static byte[] readCompressed(ByteBuffer buffer, SlimeCodec codec) throws IOException {
+        return readCompressed(buffer, codec, buffer.getInt(), buffer.getInt());
+    }
+
+    private static byte[] readCompressed(ByteBuffer buffer, SlimeCodec codec, int compressedLength, int normalLength) throws IOException {
+        if (compressedLength < 0 || normalLength < 0) {
+            throw new IOException("Invalid compressed size " + compressedLength + " or uncompressed size " + normalLength);
+        }
+
+        byte[] normal = new byte[normalLength];
+
+        codec.decompress(buffer.slice(buffer.position(), compressedLength), normal);
+        buffer.position(buffer.position() + compressedLength);
+        return normal;
+    }
+
+    /**
+     * Sizes stored in the last bytes of a world since v19, after the chunk frames and the chunk index.
+     *
+     * @param indexStart absolute position of the chunk index in the world buffer
+     */
+    private record Trailer(int sectionTableLength, int sectionTableSize, int extraLength, int extraSize, int chunkCount, int indexStart) {
+
+        private static final int LENGTH = 5 * 4;
+
+        private static Trailer read(String worldName, ByteBuffer buffer) throws CorruptedWorldException {
+            int trailerStart = buffer.limit() - LENGTH;
+            if (trailerStart < buffer.position()) {
+                throw new CorruptedWorldException(worldName);
+            }
+
+            int sectionTableLength = buffer.getInt(trailerStart);
+            int sectionTableSize = buffer.getInt(trailerStart + 4);
+            int extraLength = buffer.getInt(trailerStart + 8);
+            int extraSize = buffer.getInt(trailerStart + 12);
+            int chunkCount = buffer.getInt(trailerStart + 16);
+            if (sectionTableLength < 0 || sectionTableSize < 0 || extraLength < 0 || extraSize < 0 || chunkCount < 0) {
+                throw new CorruptedWorldException(worldName);
+            }
+
+            // Everything between the header and the chunk index has to fit in the world
+            long indexStart = trailerStart - (long) chunkCount * INDEX_ENTRY_LENGTH;
+            if (indexStart < (long) buffer.position() + sectionTableLength + extraLength) {
+                throw new CorruptedWorldException(worldName);
+            }
+
+            return new Trailer(sectionTableLength, sectionTableSize, extraLength, extraSize, chunkCount, (int) indexStart);
+        }
+    }
+
+    static CompoundTag readCompound(byte[] bytes) throws IOException {
+        if (bytes.length == 0) {
+            return null;
+        }
+
+        return NbtCodec.readCompound(bytes);
+    }
+
+}
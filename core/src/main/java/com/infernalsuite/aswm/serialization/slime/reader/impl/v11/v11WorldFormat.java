@@ -0,0 +1,11 @@
+package com.infernalsuite.aswm.serialization.slime.reader.impl.v11;
+
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.serialization.slime.reader.impl.SimpleWorldFormat;
+
+public interface v11WorldFormat {
+
+    // Latest, returns same
+    SimpleWorldFormat<SlimeWorld> FORMAT = new SimpleWorldFormat<>(data -> data, new v11SlimeWorldDeSerializer());
+
+}
@@ -0,0 +1,262 @@
+package com.infernalsuite.aswm.skeleton;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.SlimeLogger;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.serialization.slime.ChunkFrame;
+import com.infernalsuite.aswm.serialization.slime.compression.SlimeCodec;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunk storage that keeps chunks in their serialized form and only decodes them once they're first accessed.
+ * Decoded chunks are cached, so lookups decode every chunk at most once per storage.
+ * <p>
+ * Lookups, {@link #containsKey(Object)} and {@link #size()} never decode anything, iterating over
+ * the entries or values decodes every chunk that hasn't been decoded yet, in parallel. Callers that only need
+ * to go through the chunks once should iterate over {@link #positions()} and {@link #peek(ChunkPos)} them instead.
+ * <p>
+ * Chunks that can't be decoded are logged and left out of the storage.
+ */
+public class LazyChunkStorage extends AbstractMap<ChunkPos, SlimeChunk> {
+
+    private final Set<ChunkPos> encoded = ConcurrentHashMap.newKeySet();
+    private final Map<ChunkPos, SlimeChunk> decoded = new ConcurrentHashMap<>();
+    private final ChunkDecoder decoder;
+
+    public LazyChunkStorage(Collection<ChunkPos> positions, ChunkDecoder decoder) {
+        this.encoded.addAll(positions);
+        this.decoder = decoder;
+    }
+
+    @Override
+    public SlimeChunk get(Object key) {
+        SlimeChunk chunk = this.decoded.get(key);
+        if (chunk == null && this.encoded.contains(key)) {
+            chunk = decode((ChunkPos) key);
+        }
+
+        return chunk;
+    }
+
+    // Only lookups of the same position wait for each other. Decoders may skip chunks they can't read,
+    // which are then no longer part of the storage
+    private SlimeChunk decode(ChunkPos pos) {
+        return this.decoded.computeIfAbsent(pos, key -> {
+            if (!this.encoded.contains(key)) {
+                return null;
+            }
+
+            SlimeChunk chunk = decodeChunk(key);
+            this.encoded.remove(key);
+            return chunk;
+        });
+    }
+
+    /**
+     * Returns the chunk at the provided position without keeping it decoded, e.g. to go through every chunk
+     * of a world once without holding all of them in memory.
+     *
+     * @param pos the chunk position
+     * @return the chunk, or <code>null</code> if there is none
+     */
+    public SlimeChunk peek(ChunkPos pos) {
+        SlimeChunk chunk = this.decoded.get(pos);
+        if (chunk == null && this.encoded.contains(pos)) {
+            chunk = decodeChunk(pos);
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Decodes every chunk that hasn't been decoded yet. Chunks don't depend on each
+     * other, so they're decoded in parallel on the common fork join pool.
+     */
+    private void decodeAll(Set<ChunkPos> excluded) {
+        if (this.encoded.isEmpty()) {
+            return;
+        }
+
+        List<ChunkPos> positions = List.copyOf(this.encoded).stream().filter(pos -> !excluded.contains(pos)).toList();
+        Map<ChunkPos, SlimeChunk> chunks = new ConcurrentHashMap<>(positions.size());
+        positions.parallelStream().forEach(pos -> {
+            SlimeChunk chunk = decodeChunk(pos);
+            if (chunk != null) {
+                chunks.put(pos, chunk);
+            }
+        });
+
+        synchronized (this) {
+            // Chunks looked up, replaced or removed in the meantime are kept as they are
+            for (ChunkPos pos : positions) {
+                SlimeChunk chunk = chunks.get(pos);
+                if (this.encoded.remove(pos) && chunk != null) {
+                    this.decoded.putIfAbsent(pos, chunk);
+                }
+            }
+        }
+    }
+
+    // Frames are checked against their checksums when the world is read, so this only happens to worlds saved without them.
+    // The chunk is left out instead of failing whoever accessed it, so the server generates it again
+    private SlimeChunk decodeChunk(ChunkPos pos) {
+        try {
+            return this.decoder.decode(pos);
+        } catch (IOException | RuntimeException ex) {
+            SlimeLogger.warn("Failed to decode chunk " + pos.x() + ", " + pos.z() + ", it's left out of the world: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized SlimeChunk put(ChunkPos key, SlimeChunk value) {
+        this.encoded.remove(key);
+        return this.decoded.put(key, value);
+    }
+
+    @Override
+    public synchronized SlimeChunk remove(Object key) {
+        this.encoded.remove(key);
+        return this.decoded.remove(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.decoded.containsKey(key) || this.encoded.contains(key);
+    }
+
+    @Override
+    public int size() {
+        return this.decoded.size() + this.encoded.size();
+    }
+
+    /**
+     * Returns a view of the chunks that have already been decoded or were put into this storage.
+     *
+     * @return unmodifiable view of the decoded chunks
+     */
+    public Map<ChunkPos, SlimeChunk> decodedChunks() {
+        return Collections.unmodifiableMap(this.decoded);
+    }
+
+    /**
+     * Returns a view of the chunks that are still in their serialized form.
+     *
+     * @return unmodifiable view of the positions of the encoded chunks
+     */
+    public Set<ChunkPos> encodedChunks() {
+        return Collections.unmodifiableSet(this.encoded);
+    }
+
+    /**
+     * Returns the positions of every chunk in this storage, without decoding any of them.
+     *
+     * @return snapshot of the chunk positions
+     */
+    public synchronized Set<ChunkPos> positions() {
+        Set<ChunkPos> positions = new HashSet<>(this.encoded);
+        positions.addAll(this.decoded.keySet());
+        return positions;
+    }
+
+    /**
+     * Returns every chunk except the ones at the provided positions, which are left in their serialized form if they haven't been decoded yet.
+     *
+     * @param excluded the positions of the chunks to skip
+     * @return the chunks
+     */
+    public List<SlimeChunk> decodeExcept(Set<ChunkPos> excluded) {
+        decodeAll(excluded);
+
+        List<SlimeChunk> chunks = new ArrayList<>(this.decoded.size());
+        this.decoded.forEach((pos, chunk) -> {
+            if (!excluded.contains(pos)) {
+                chunks.add(chunk);
+            }
+        });
+
+        return chunks;
+    }
+
+    public ChunkDecoder getDecoder() {
+        return this.decoder;
+    }
+
+    /**
+     * Creates a shallow copy of this storage. Chunks that haven't been decoded yet
+     * stay encoded in the copy and share their serialized data with this storage.
+     *
+     * @return copy of this storage
+     */
+    public synchronized LazyChunkStorage copy() {
+        LazyChunkStorage copy = new LazyChunkStorage(this.encoded, this.decoder);
+        copy.decoded.putAll(this.decoded);
+        return copy;
+    }
+
+    /**
+     * Creates a shallow copy of the chunk storage of the provided world, keeping
+     * chunks that haven't been decoded yet in their serialized form.
+     *
+     * @param world world to copy the chunks from
+     * @return copy of the world chunk storage
+     */
+    public static LazyChunkStorage copyOf(SlimeWorld world) {
+        if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage) {
+            return storage.copy();
+        }
+
+        LazyChunkStorage copy = new LazyChunkStorage(List.of(), pos -> null);
+        for (SlimeChunk chunk : world.getChunkStorage()) {
+            copy.decoded.put(new ChunkPos(chunk.getX(), chunk.getZ()), chunk);
+        }
+
+        return copy;
+    }
+
+    @Override
+    public Set<Entry<ChunkPos, SlimeChunk>> entrySet() {
+        decodeAll(Set.of());
+        return this.decoded.entrySet();
+    }
+
+    @FunctionalInterface
+    public interface ChunkDecoder {
+
+        SlimeChunk decode(ChunkPos pos) throws IOException;
+
+        /**
+         * Returns the compressed frame of a chunk, if it can be copied as it is into a world compressed with the provided codec.
+         *
+         * @param pos   the chunk position
+         * @param codec the codec of the world the frame is copied into
+         * @return the frame, or <code>null</code> if the chunk has to be decoded and serialized again
+         */
+        default ChunkFrame encodedFrame(ChunkPos pos, SlimeCodec codec) {
+            return null;
+        }
+
+        /**
+         * Checks whether the compressed frame of a chunk can be copied as it is, without copying it yet.
+         *
+         * @param pos   the chunk position
+         * @param codec the codec of the world the frame is copied into
+         * @return <code>true</code> if {@link #encodedFrame(ChunkPos, SlimeCodec)} returns the frame of the chunk
+         */
+        default boolean hasEncodedFrame(ChunkPos pos, SlimeCodec codec) {
+            return encodedFrame(pos, codec) != null;
+        }
+    }
+
+}
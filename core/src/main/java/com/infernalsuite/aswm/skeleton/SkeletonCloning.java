@@ -8,7 +8,6 @@ import com.infernalsuite.aswm.api.world.SlimeChunkSection;
 import com.infernalsuite.aswm.api.world.SlimeWorld;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,63 +17,68 @@ public class SkeletonCloning {
     public static SkeletonSlimeWorld fullClone(String worldName, SlimeWorld world) {
         return new SkeletonSlimeWorld(worldName,
                 world.getLoader(),
-                cloneChunkStorage(world.getChunkStorage()),
+                cloneChunkStorage(world),
                 world.getExtraData().clone(),
                 world.getPropertyMap().clone(),
                 world.getDataVersion());
     }
 
     public static SkeletonSlimeWorld weakCopy(SlimeWorld world) {
-        Map<ChunkPos, SlimeChunk> cloned = new HashMap<>();
-        for (SlimeChunk chunk : world.getChunkStorage()) {
-            ChunkPos pos = new ChunkPos(chunk.getX(), chunk.getZ());
-
-            cloned.put(pos, chunk);
-        }
-
         return new SkeletonSlimeWorld(world.getName(),
                 world.getLoader(),
-                cloned,
+                LazyChunkStorage.copyOf(world),
                 world.getExtraData().clone(),
                 world.getPropertyMap().clone(),
-                world.getDataVersion());
+                world.getDataVersion(),
+                world.getLockToken());
     }
 
 
-    private static Map<ChunkPos, SlimeChunk> cloneChunkStorage(Collection<SlimeChunk> slimeChunkMap) {
-        Map<ChunkPos, SlimeChunk> cloned = new HashMap<>();
-        for (SlimeChunk chunk : slimeChunkMap) {
-            ChunkPos pos = new ChunkPos(chunk.getX(), chunk.getZ());
-
-            SlimeChunkSection[] copied = new SlimeChunkSection[chunk.getSections().length];
-            for (int i = 0; i < copied.length; i++) {
-                SlimeChunkSection original = chunk.getSections()[i];
-
-                NibbleArray blockLight = original.getBlockLight();
-                NibbleArray skyLight = original.getSkyLight();
-
-                copied[i] = new SlimeChunkSectionSkeleton(
-                        original.getBlockStatesTag().clone(),
-                        original.getBiomeTag().clone(),
-                        blockLight == null ? null : blockLight.clone(),
-                        skyLight == null ? null : skyLight.clone()
-                );
+    private static Map<ChunkPos, SlimeChunk> cloneChunkStorage(SlimeWorld world) {
+        // Chunks that were never decoded can keep sharing their serialized form, decoding gives each copy its own chunks
+        if (world instanceof SkeletonSlimeWorld skeleton && skeleton.chunkStorage() instanceof LazyChunkStorage storage) {
+            LazyChunkStorage cloned = storage.copy();
+            for (Map.Entry<ChunkPos, SlimeChunk> entry : cloned.decodedChunks().entrySet()) {
+                cloned.put(entry.getKey(), cloneChunk(entry.getValue()));
             }
 
-            cloned.put(pos,
-                    new SlimeChunkSkeleton(
-                            chunk.getX(),
-                            chunk.getZ(),
-                            copied,
-                            chunk.getHeightMaps().clone(),
-                            deepClone(chunk.getTileEntities()),
-                            deepClone(chunk.getEntities())
-                    ));
+            return cloned;
+        }
+
+        Map<ChunkPos, SlimeChunk> cloned = new HashMap<>();
+        for (SlimeChunk chunk : world.getChunkStorage()) {
+            cloned.put(new ChunkPos(chunk.getX(), chunk.getZ()), cloneChunk(chunk));
         }
 
         return cloned;
     }
 
+    private static SlimeChunk cloneChunk(SlimeChunk chunk) {
+        SlimeChunkSection[] copied = new SlimeChunkSection[chunk.getSections().length];
+        for (int i = 0; i < copied.length; i++) {
+            SlimeChunkSection original = chunk.getSections()[i];
+
+            NibbleArray blockLight = original.getBlockLight();
+            NibbleArray skyLight = original.getSkyLight();
+
+            copied[i] = new SlimeChunkSectionSkeleton(
+                    original.getBlockStatesTag().clone(),
+                    original.getBiomeTag().clone(),
+                    blockLight == null ? null : blockLight.clone(),
+                    skyLight == null ? null : skyLight.clone()
+            );
+        }
+
+        return new SlimeChunkSkeleton(
+                chunk.getX(),
+                chunk.getZ(),
+                copied,
+                chunk.getHeightMaps().clone(),
+                deepClone(chunk.getTileEntities()),
+                deepClone(chunk.getEntities())
+        );
+    }
+
     private static List<CompoundTag> deepClone(List<CompoundTag> tags) {
         List<CompoundTag> cloned = new ArrayList<>(tags.size());
         for (CompoundTag tag : tags) {
@@ -20,9 +20,26 @@ public record SkeletonSlimeWorld(
         Map<ChunkPos, SlimeChunk> chunkStorage,
         CompoundTag extraSerialized,
         SlimePropertyMap slimePropertyMap,
-        int dataVersion
+        int dataVersion,
+        long lockToken
 ) implements SlimeWorld {
 
+    public SkeletonSlimeWorld(String name, @Nullable SlimeLoader loader, Map<ChunkPos, SlimeChunk> chunkStorage,
+                              CompoundTag extraSerialized, SlimePropertyMap slimePropertyMap, int dataVersion) {
+        this(name, loader, chunkStorage, extraSerialized, slimePropertyMap, dataVersion, 0);
+    }
+
+    /**
+     * Returns this world, holding the fencing token of the lock it was loaded with.
+     *
+     * @param lockToken the fencing token
+     * @return the world holding the token
+     */
+    public SkeletonSlimeWorld withLockToken(long lockToken) {
+        return new SkeletonSlimeWorld(this.name, this.loader, this.chunkStorage, this.extraSerialized,
+                this.slimePropertyMap, this.dataVersion, lockToken);
+    }
+
     @Override
     public String getName() {
         return this.name;
@@ -68,6 +85,11 @@ public record SkeletonSlimeWorld(
         return this.dataVersion;
     }
 
+    @Override
+    public long getLockToken() {
+        return this.lockToken;
+    }
+
     @Override
     public SlimeWorld clone(String worldName) {
         try {
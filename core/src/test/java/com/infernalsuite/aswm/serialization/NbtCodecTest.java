@@ -0,0 +1,136 @@
+package com.infernalsuite.aswm.serialization;
+
+import com.flowpowered.nbt.ByteArrayTag;
+import com.flowpowered.nbt.ByteTag;
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.FloatTag;
+import com.flowpowered.nbt.IntArrayTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.LongTag;
+import com.flowpowered.nbt.ShortTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.flowpowered.nbt.stream.NBTInputStream;
+import com.flowpowered.nbt.stream.NBTOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NbtCodecTest {
+
+    private static CompoundTag everyTag() {
+        CompoundMap nested = new CompoundMap();
+        nested.put(new StringTag("Name", "minecraft:oak_log"));
+        nested.put(new StringTag("unicode", "slïme ☃"));
+
+        CompoundMap map = new CompoundMap();
+        map.put(new ByteTag("byte", (byte) -3));
+        map.put(new ShortTag("short", (short) 1234));
+        map.put(new IntTag("int", Integer.MIN_VALUE));
+        map.put(new LongTag("long", Long.MAX_VALUE));
+        map.put(new FloatTag("float", 1.5f));
+        map.put(new DoubleTag("double", -2.25));
+        map.put(new ByteArrayTag("bytes", new byte[]{1, 2, 3}));
+        map.put(new StringTag("string", "value"));
+        map.put(new StringTag("empty", ""));
+        map.put(new ListTag<>("doubles", TagType.TAG_DOUBLE, List.of(new DoubleTag("", 1), new DoubleTag("", 2))));
+        map.put(new ListTag<>("compounds", TagType.TAG_COMPOUND, List.of(new CompoundTag("", nested))));
+        map.put(new CompoundTag("compound", nested));
+        map.put(new IntArrayTag("ints", new int[]{-1, 0, 1}));
+        map.put(new LongArrayTag("longs", new long[]{Long.MIN_VALUE, 0, Long.MAX_VALUE}));
+        return new CompoundTag("root", map);
+    }
+
+    private static byte[] writeWithStreams(CompoundTag tag) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NBTOutputStream stream = new NBTOutputStream(out, NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN)) {
+            stream.writeTag(tag);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static CompoundTag readWithStreams(byte[] bytes) throws IOException {
+        try (NBTInputStream stream = new NBTInputStream(new ByteArrayInputStream(bytes), NBTInputStream.NO_COMPRESSION, ByteOrder.BIG_ENDIAN)) {
+            return (CompoundTag) stream.readTag();
+        }
+    }
+
+    @Test
+    void writesTheSameBytesAsStreams() throws IOException {
+        CompoundTag tag = everyTag();
+        byte[] serialized = NbtCodec.serializeCompound(tag);
+        assertArrayEquals(writeWithStreams(tag), serialized);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtCodec.writeCompound(new DataOutputStream(out), tag);
+        assertArrayEquals(serialized, out.toByteArray());
+    }
+
+    @Test
+    void readsWhatStreamsWrite() throws IOException {
+        byte[] serialized = writeWithStreams(everyTag());
+        CompoundTag read = NbtCodec.readCompound(serialized);
+
+        assertEquals("root", read.getName());
+        assertArrayEquals(serialized, writeWithStreams(read));
+        assertArrayEquals(serialized, writeWithStreams(readWithStreams(NbtCodec.serializeCompound(read))));
+    }
+
+    @Test
+    void readsFromBuffers() throws IOException {
+        byte[] serialized = NbtCodec.serializeCompound(everyTag());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(serialized.length * 2 + 3);
+        buffer.put(new byte[3]).put(serialized).put(serialized).flip().position(3);
+
+        assertArrayEquals(serialized, NbtCodec.serializeCompound(NbtCodec.readCompound(buffer)));
+        assertEquals(3 + serialized.length, buffer.position());
+        assertArrayEquals(serialized, NbtCodec.serializeCompound(NbtCodec.readCompound(buffer)));
+        assertEquals(buffer.limit(), buffer.position());
+    }
+
+    @Test
+    void serializesEmptyCompoundsAsNothing() throws IOException {
+        assertEquals(0, NbtCodec.serializeCompound(null).length);
+        assertEquals(0, NbtCodec.serializeCompound(new CompoundTag("", new CompoundMap())).length);
+        assertNull(NbtCodec.readCompound(new byte[0]));
+    }
+
+    @Test
+    void rejectsInvalidData() throws IOException {
+        byte[] serialized = NbtCodec.serializeCompound(everyTag());
+
+        assertThrows(IOException.class, () -> NbtCodec.readCompound(Arrays.copyOf(serialized, serialized.length - 1)));
+        assertThrows(IOException.class, () -> NbtCodec.readCompound(Arrays.copyOf(serialized, serialized.length / 2)));
+        assertThrows(IOException.class, () -> NbtCodec.readCompound(new byte[]{8, 0, 0}));
+    }
+
+    @Test
+    void rejectsDeeplyNestedCompounds() throws IOException {
+        CompoundTag tag = new CompoundTag("", new CompoundMap());
+        for (int i = 0; i < 600; i++) {
+            CompoundMap map = new CompoundMap();
+            map.put(new CompoundTag("child", tag.getValue()));
+            tag = new CompoundTag("", map);
+        }
+
+        CompoundTag deep = tag;
+        assertThrows(IOException.class, () -> NbtCodec.serializeCompound(deep));
+    }
+}
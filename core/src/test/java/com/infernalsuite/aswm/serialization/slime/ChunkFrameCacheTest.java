@@ -0,0 +1,111 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.LongArrayTag;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import com.infernalsuite.aswm.skeleton.LazyChunkStorage;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.infernalsuite.aswm.serialization.slime.WorldAssertions.assertSameWorld;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkFrameCacheTest {
+
+    private static SkeletonSlimeWorld withChunks(SkeletonSlimeWorld world, Map<ChunkPos, SlimeChunk> chunks) {
+        return new SkeletonSlimeWorld(world.getName(), null, chunks, world.getExtraData(), world.getPropertyMap(), world.getDataVersion());
+    }
+
+    @Test
+    void reusesFramesOfTheSameChunks() {
+        SkeletonSlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        ChunkFrameCache cache = new ChunkFrameCache();
+        byte[] serialized = SlimeSerializer.serialize(world, cache);
+        assertArrayEquals(serialized, SlimeSerializer.serialize(world, cache));
+
+        // Saved chunks must not change in place, because their frame is written again without looking at them
+        SlimeChunk chunk = world.getChunk(0, 0);
+        assertNotNull(cache.get(chunk));
+        chunk.getHeightMaps().getValue().put(new LongArrayTag("WORLD_SURFACE", new long[]{1}));
+        assertArrayEquals(serialized, SlimeSerializer.serialize(world, cache));
+        assertFalse(Arrays.equals(serialized, SlimeSerializer.serialize(world)));
+    }
+
+    @Test
+    void writesReplacedChunksAgain() throws Exception {
+        SkeletonSlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        ChunkFrameCache cache = new ChunkFrameCache();
+        SlimeSerializer.serialize(world, cache);
+
+        // Replacing a chunk must not reuse the frame of the chunk it replaced
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>(world.chunkStorage());
+        SlimeChunk replacement = TestWorlds.chunk(1, 1);
+        chunks.put(new ChunkPos(0, 0), new SlimeChunkSkeleton(0, 0, replacement.getSections(),
+                replacement.getHeightMaps(), replacement.getTileEntities(), replacement.getEntities()));
+        SkeletonSlimeWorld changed = withChunks(world, chunks);
+        byte[] changedSerialized = SlimeSerializer.serialize(changed, cache);
+        assertArrayEquals(SlimeSerializer.serialize(changed), changedSerialized);
+        assertNull(cache.get(world.getChunk(0, 0)));
+
+        SlimeWorld read = SlimeWorldReaderRegistry.readWorld(null, "test", changedSerialized, new SlimePropertyMap());
+        assertSameWorld(changed, read);
+        assertEquals(SlimeFormat.SLIME_VERSION, changedSerialized[SlimeFormat.SLIME_HEADER.length]);
+    }
+
+    @Test
+    void dropsFramesOfRemovedChunks() {
+        SkeletonSlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        ChunkFrameCache cache = new ChunkFrameCache();
+        SlimeSerializer.serialize(world, cache);
+
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>(world.chunkStorage());
+        SlimeChunk removed = chunks.remove(new ChunkPos(1, 1));
+        SlimeSerializer.serialize(withChunks(world, chunks), cache);
+        assertNull(cache.get(removed));
+        assertNotNull(cache.get(world.getChunk(0, 0)));
+    }
+
+    @Test
+    void dropsFramesWhenTheCompressionChanges() {
+        SkeletonSlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        ChunkFrameCache cache = new ChunkFrameCache();
+        SlimeSerializer.serialize(world, cache);
+
+        world.getPropertyMap().setValue(SlimeProperties.COMPRESSION, "lz4");
+        byte[] serialized = SlimeSerializer.serialize(world, cache);
+        assertArrayEquals(SlimeSerializer.serialize(world), serialized);
+
+        world.getPropertyMap().setValue(SlimeProperties.COMPRESSION, "zstd");
+        world.getPropertyMap().setValue(SlimeProperties.COMPRESSION_LEVEL, 12);
+        assertArrayEquals(SlimeSerializer.serialize(world), SlimeSerializer.serialize(world, cache));
+    }
+
+    @Test
+    void copiesFramesOfChunksThatWereNeverDecoded() throws Exception {
+        byte[] serialized = SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()));
+        SkeletonSlimeWorld read = (SkeletonSlimeWorld) SlimeWorldReaderRegistry.readWorld(null, "test", serialized, new SlimePropertyMap());
+        LazyChunkStorage storage = (LazyChunkStorage) read.chunkStorage();
+        read.getChunk(0, 0);
+
+        byte[] saved = SlimeSerializer.serialize(read, new ChunkFrameCache());
+        assertEquals(1, storage.decodedChunks().size(), "saving decoded chunks that didn't change");
+        assertTrue(storage.encodedChunks().contains(new ChunkPos(1, 1)));
+        assertSameWorld(TestWorlds.create("test", null, new SlimePropertyMap()),
+                SlimeWorldReaderRegistry.readWorld(null, "test", saved, new SlimePropertyMap()));
+    }
+}
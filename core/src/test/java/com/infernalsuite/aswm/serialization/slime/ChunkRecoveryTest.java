@@ -0,0 +1,133 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Damages serialized worlds and checks that {@link SlimeProperties#CHUNK_RECOVERY} either fails the load or skips
+ * the damaged chunks.
+ */
+class ChunkRecoveryTest {
+
+    private static final ChunkPos DAMAGED = new ChunkPos(0, 0);
+
+    private static SlimePropertyMap recovery(String mode) {
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.CHUNK_RECOVERY, mode);
+        return properties;
+    }
+
+    private static byte[] damageChunk(byte[] serialized, ChunkPos pos) throws Exception {
+        for (ChunkFrame frame : SlimeWorldFrames.split(serialized).getFrames()) {
+            if (frame.key() != pos.toKey()) {
+                continue;
+            }
+
+            byte[] compressed = frame.compressed();
+            for (int offset = 0; offset <= serialized.length - compressed.length; offset++) {
+                if (Arrays.equals(serialized, offset, offset + compressed.length, compressed, 0, compressed.length)) {
+                    byte[] damaged = serialized.clone();
+                    damaged[offset + compressed.length / 2] ^= 0x55;
+                    return damaged;
+                }
+            }
+        }
+
+        return fail("No frame for chunk " + pos);
+    }
+
+    private static SlimeWorld loadFully(byte[] serialized, SlimePropertyMap properties) throws Exception {
+        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(null, "test", serialized, properties);
+        // Chunks may be decoded lazily
+        world.getChunkStorage().forEach(SlimeChunk::getSections);
+        return world;
+    }
+
+    @Test
+    void failsOnDamagedChunks() throws Exception {
+        byte[] serialized = damageChunk(SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap())), DAMAGED);
+
+        assertThrows(CorruptedWorldException.class, () -> loadFully(serialized, new SlimePropertyMap()));
+        assertThrows(CorruptedWorldException.class, () -> loadFully(serialized, recovery("fail")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {17, 18, 19})
+    void skipsDamagedChunks(int version) throws Exception {
+        byte[] serialized = version == 19
+                ? SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()))
+                : SlimeFormatVersionsTest.readFixture(version);
+
+        SlimeWorld world = loadFully(damageChunk(serialized, DAMAGED), recovery("skip"));
+        SlimeWorld expected = TestWorlds.create("test", null, new SlimePropertyMap());
+        assertEquals(expected.getChunkStorage().size() - 1, world.getChunkStorage().size());
+        assertNull(world.getChunk(DAMAGED.x(), DAMAGED.z()));
+        for (SlimeChunk chunk : expected.getChunkStorage()) {
+            if (chunk.getX() != DAMAGED.x() || chunk.getZ() != DAMAGED.z()) {
+                WorldAssertions.assertSameChunk(chunk, world.getChunk(chunk.getX(), chunk.getZ()));
+            }
+        }
+    }
+
+    @Test
+    void leavesOutChunksWithCorruptedSizes() throws Exception {
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.COMPRESSION, "none");
+        SlimeWorldFrames frames = SlimeWorldFrames.split(SlimeSerializer.serialize(TestWorlds.create("test", null, properties)));
+        ChunkPos stringTable = new ChunkPos(1, 0);
+        ChunkPos entities = new ChunkPos(0, 1);
+
+        // The frames get new checksums, so only decoding the chunks can notice the damage
+        List<ChunkFrame> damaged = new ArrayList<>();
+        for (ChunkFrame frame : frames.getFrames()) {
+            byte[] chunk = frame.compressed().clone();
+            if (frame.key() == stringTable.toKey()) {
+                // The string table size follows the chunk coordinates, make it the largest varint
+                byte[] huge = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+                byte[] resized = new byte[chunk.length + huge.length];
+                System.arraycopy(chunk, 0, resized, 0, 8);
+                System.arraycopy(huge, 0, resized, 8, huge.length);
+                System.arraycopy(chunk, 8, resized, 8 + huge.length, chunk.length - 8);
+                chunk = resized;
+            } else if (frame.key() == entities.toKey()) {
+                // The chunk doesn't have entities, so it ends with an empty entity list
+                ByteBuffer.wrap(chunk).putInt(chunk.length - 4, Integer.MAX_VALUE);
+            }
+
+            damaged.add(new ChunkFrame(frame.key(), chunk.length, chunk));
+        }
+
+        SlimeWorld world = loadFully(SlimeWorldFrames.join(frames.getMetadata(), damaged), new SlimePropertyMap());
+        assertNull(world.getChunk(stringTable.x(), stringTable.z()));
+        assertNull(world.getChunk(entities.x(), entities.z()));
+        WorldAssertions.assertSameChunk(TestWorlds.chunk(0, 0), world.getChunk(0, 0));
+    }
+
+    @Test
+    void failsOnTruncatedWorlds() throws Exception {
+        byte[] serialized = SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()));
+
+        for (int length : new int[]{serialized.length / 4, serialized.length / 2, serialized.length - 1}) {
+            byte[] truncated = Arrays.copyOf(serialized, length);
+            assertThrows(CorruptedWorldException.class, () -> loadFully(truncated, recovery("skip")));
+        }
+    }
+}
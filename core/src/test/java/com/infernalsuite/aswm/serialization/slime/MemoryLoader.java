@@ -0,0 +1,78 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Data source keeping worlds and dictionaries in memory.
+ */
+public class MemoryLoader implements SlimeLoader {
+
+    private final Map<String, byte[]> worlds = new ConcurrentHashMap<>();
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+    @Override
+    public byte[] loadWorld(String worldName) throws UnknownWorldException {
+        byte[] serializedWorld = this.worlds.get(worldName);
+        if (serializedWorld == null) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        return serializedWorld;
+    }
+
+    @Override
+    public boolean worldExists(String worldName) {
+        return this.worlds.containsKey(worldName);
+    }
+
+    @Override
+    public List<String> listWorlds() {
+        return new ArrayList<>(this.worlds.keySet());
+    }
+
+    @Override
+    public void saveWorld(String worldName, byte[] serializedWorld) {
+        this.worlds.put(worldName, serializedWorld);
+    }
+
+    @Override
+    public void deleteWorld(String worldName) throws UnknownWorldException {
+        if (this.worlds.remove(worldName) == null) {
+            throw new UnknownWorldException(worldName);
+        }
+    }
+
+    @Override
+    public void acquireLock(String worldName) {
+    }
+
+    @Override
+    public boolean isWorldLocked(String worldName) {
+        return false;
+    }
+
+    @Override
+    public void unlockWorld(String worldName) {
+    }
+
+    @Override
+    public boolean supportsDictionaries() {
+        return true;
+    }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) {
+        return this.dictionaries.get(dictionaryId);
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) {
+        this.dictionaries.put(dictionaryId, dictionary);
+    }
+}
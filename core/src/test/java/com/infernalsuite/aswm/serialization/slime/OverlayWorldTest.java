@@ -0,0 +1,122 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.infernalsuite.aswm.serialization.slime.WorldAssertions.assertSameWorld;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saves overlay worlds and reads them back through the data source of their template.
+ */
+class OverlayWorldTest {
+
+    private final MemoryLoader loader = new MemoryLoader();
+
+    private OverlayBase saveTemplate(String name) throws Exception {
+        this.loader.saveWorld(name, SlimeSerializer.serialize(TestWorlds.create(name, this.loader, new SlimePropertyMap())));
+        return OverlayBase.load(this.loader, name);
+    }
+
+    private SlimeWorld read(String name, byte[] serializedWorld) throws Exception {
+        return SlimeWorldReaderRegistry.readWorld(this.loader, name, serializedWorld, new SlimePropertyMap());
+    }
+
+    @Test
+    void readsEmptyOverlaysFromTheirTemplate() throws Exception {
+        OverlayBase base = saveTemplate("template");
+        byte[] overlay = SlimeSerializer.serialize(base.createOverlay("overlay", this.loader, new SlimePropertyMap()));
+        assertTrue(overlay.length < this.loader.loadWorld("template").length / 4, "empty overlay stores template chunks");
+
+        SlimeWorld world = read("overlay", overlay);
+        assertSameWorld(TestWorlds.create("template", null, new SlimePropertyMap()), world);
+        assertSame(base, OverlayBase.of(world));
+        assertTrue(OverlayBase.isReferenced(this.loader, "template"));
+    }
+
+    @Test
+    void storesChangedAndRemovedChunks() throws Exception {
+        OverlayBase base = saveTemplate("template");
+        SlimeWorld overlay = read("overlay", SlimeSerializer.serialize(base.createOverlay("overlay", this.loader, new SlimePropertyMap())));
+
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>();
+        overlay.getChunkStorage().forEach(chunk -> chunks.put(new ChunkPos(chunk.getX(), chunk.getZ()), chunk));
+        SlimeChunk donor = TestWorlds.chunk(1, 1);
+        chunks.put(new ChunkPos(0, 0), new SlimeChunkSkeleton(0, 0, donor.getSections(), donor.getHeightMaps(),
+                donor.getTileEntities(), donor.getEntities()));
+        chunks.remove(new ChunkPos(-1, -1));
+        SlimeWorld changed = new SkeletonSlimeWorld("overlay", this.loader, chunks, overlay.getExtraData(),
+                overlay.getPropertyMap(), overlay.getDataVersion());
+
+        SlimeWorld read = read("overlay", SlimeSerializer.serialize(changed));
+        assertSameWorld(changed, read);
+        assertNull(read.getChunk(-1, -1));
+        assertEquals(chunks.size(), read.getChunkStorage().size());
+
+        // Saving it again keeps the same chunks
+        assertSameWorld(changed, read("overlay", SlimeSerializer.serialize(read)));
+    }
+
+    @Test
+    void readsOverlaysOfResavedTemplates() throws Exception {
+        OverlayBase base = saveTemplate("template");
+        byte[] overlay = SlimeSerializer.serialize(base.createOverlay("overlay", this.loader, new SlimePropertyMap()));
+
+        // The same chunks stored with another codec and a section table still match the overlay
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.COMPRESSION, "lz4");
+        properties.setValue(SlimeProperties.DEDUPLICATE_SECTIONS, true);
+        MemoryLoader resaved = new MemoryLoader();
+        resaved.saveWorld("template", SlimeSerializer.serialize(TestWorlds.create("template", resaved, properties)));
+        assertEquals(base.getHash(), OverlayBase.load(resaved, "template").getHash());
+
+        assertSameWorld(TestWorlds.create("template", null, new SlimePropertyMap()),
+                SlimeWorldReaderRegistry.readWorld(resaved, "overlay", overlay, new SlimePropertyMap()));
+    }
+
+    @Test
+    void sharesTemplateChunksUntilTheirLightChanges() throws Exception {
+        OverlayBase base = saveTemplate("template");
+        SlimeWorld first = read("first", SlimeSerializer.serialize(base.createOverlay("first", this.loader, new SlimePropertyMap())));
+        SlimeWorld second = read("second", SlimeSerializer.serialize(base.createOverlay("second", this.loader, new SlimePropertyMap())));
+
+        SlimeChunk firstChunk = first.getChunk(0, 0);
+        SlimeChunk secondChunk = second.getChunk(0, 0);
+        assertSame(firstChunk.getSections()[0].getBlockStatesTag(), secondChunk.getSections()[0].getBlockStatesTag());
+        for (SlimeChunkSection section : firstChunk.getSections()) {
+            NibbleArray light = section.getSkyLight();
+            if (light != null) {
+                light.set(0, light.get(0) ^ 0xF);
+            }
+        }
+
+        WorldAssertions.assertSameChunk(TestWorlds.chunk(0, 0), secondChunk);
+    }
+
+    @Test
+    void rejectsMissingOrChangedTemplates() throws Exception {
+        OverlayBase base = saveTemplate("template");
+
+        assertThrows(IOException.class, () -> OverlayBase.load(this.loader, "template", base.getHash() + 1));
+        byte[] overlay = SlimeSerializer.serialize(base.createOverlay("overlay", this.loader, new SlimePropertyMap()));
+        assertThrows(CorruptedWorldException.class, () -> SlimeWorldReaderRegistry.readWorld(null, "overlay", overlay, new SlimePropertyMap()));
+    }
+}
@@ -0,0 +1,124 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.serialization.NbtCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PaletteCodecTest {
+
+    private static byte[] write(List<CompoundTag> tags) throws IOException {
+        PaletteCodec.Writer writer = new PaletteCodec.Writer();
+        tags.forEach(writer::add);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(out);
+        writer.writeStrings(dataOut);
+        for (CompoundTag tag : tags) {
+            writer.write(dataOut, tag);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static List<CompoundTag> read(byte[] bytes, int count) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        PaletteCodec.Reader reader = new PaletteCodec.Reader(in);
+        List<CompoundTag> tags = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tags.add(reader.read(in));
+        }
+
+        assertEquals(-1, in.read(), "trailing data");
+        return tags;
+    }
+
+    private static void assertRoundTrips(List<CompoundTag> tags) throws IOException {
+        List<CompoundTag> read = read(write(tags), tags.size());
+        for (int i = 0; i < tags.size(); i++) {
+            assertArrayEquals(NbtCodec.serializeCompound(tags.get(i)), NbtCodec.serializeCompound(read.get(i)), "tag " + i);
+        }
+    }
+
+    @Test
+    void roundTripsChunkTags() throws IOException {
+        SlimeChunk chunk = TestWorlds.chunk(0, 0);
+        List<CompoundTag> tags = new ArrayList<>();
+        tags.add(chunk.getHeightMaps());
+        for (SlimeChunkSection section : chunk.getSections()) {
+            tags.add(section.getBlockStatesTag());
+            tags.add(section.getBiomeTag());
+        }
+
+        assertRoundTrips(tags);
+    }
+
+    @Test
+    void storesOtherTagsAsNbt() throws IOException {
+        CompoundMap emptyProperties = new CompoundMap();
+        emptyProperties.put(new StringTag("Name", "minecraft:stone"));
+        emptyProperties.put(new CompoundTag("Properties", new CompoundMap()));
+        CompoundMap blockStates = new CompoundMap();
+        blockStates.put(new ListTag<>("palette", TagType.TAG_COMPOUND, List.of(new CompoundTag("", emptyProperties))));
+
+        CompoundMap extraEntry = new CompoundMap();
+        extraEntry.put(new ListTag<>("palette", TagType.TAG_STRING, List.of(new StringTag("", "minecraft:plains"))));
+        extraEntry.put(new IntTag("unexpected", 1));
+
+        CompoundMap intData = new CompoundMap();
+        intData.put(new ListTag<>("palette", TagType.TAG_STRING, List.of(new StringTag("", "minecraft:plains"))));
+        intData.put(new IntTag("data", 1));
+
+        assertRoundTrips(List.of(new CompoundTag("", blockStates), new CompoundTag("", extraEntry), new CompoundTag("named", intData)));
+    }
+
+    @Test
+    void roundTripsNamedContainers() throws IOException {
+        CompoundMap biomes = new CompoundMap();
+        biomes.put(new ListTag<>("palette", TagType.TAG_STRING, List.of(new StringTag("", "minecraft:plains"))));
+        CompoundMap heightMaps = new CompoundMap();
+        heightMaps.put(new LongArrayTag("WORLD_SURFACE", new long[]{1, 2, 3}));
+        heightMaps.put(new LongArrayTag("OCEAN_FLOOR", new long[0]));
+
+        assertRoundTrips(List.of(new CompoundTag("biomes", biomes), new CompoundTag("Heightmaps", heightMaps)));
+    }
+
+    @Test
+    void readsMissingTagsAsNull() throws IOException {
+        List<CompoundTag> read = read(write(Arrays.asList(null, new CompoundTag("", new CompoundMap()))), 2);
+
+        assertNull(read.get(0));
+        assertNull(read.get(1));
+    }
+
+    @Test
+    void rejectsInvalidData() throws IOException {
+        byte[] bytes = write(List.of(TestWorlds.chunk(0, 0).getSections()[0].getBlockStatesTag()));
+
+        // An empty string table followed by a block palette, or by an unknown type
+        assertThrows(IOException.class, () -> read(new byte[]{0, PaletteCodec.BLOCK_PALETTE, 0}, 1));
+        assertThrows(IOException.class, () -> read(new byte[]{0, 9}, 1));
+        assertThrows(IOException.class, () -> read(Arrays.copyOf(bytes, bytes.length - 1), 1));
+    }
+}
@@ -0,0 +1,93 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionTableTest {
+
+    // Every chunk of the test world has the same sections from this one up
+    private static final int FIRST_SHARED_SECTION = 4;
+
+    private static List<SlimeChunk> chunks() {
+        return new ArrayList<>(TestWorlds.create("test", null, new SlimePropertyMap()).getChunkStorage());
+    }
+
+    private static byte[] write(SectionTable table) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+
+    @Test
+    void sharesIdenticalSections() throws IOException {
+        List<SlimeChunk> chunks = chunks();
+        SectionTable table = SectionTable.build(chunks);
+
+        SectionTable.ChunkSections first = table.sectionsOf(chunks.get(0));
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = FIRST_SHARED_SECTION; i < TestWorlds.SECTIONS; i++) {
+            assertTrue(first.tableIndex(i) >= 0, "section " + i + " isn't shared");
+            indexes.add(first.tableIndex(i));
+        }
+
+        assertEquals(TestWorlds.SECTIONS - FIRST_SHARED_SECTION, indexes.size());
+        for (SlimeChunk chunk : chunks) {
+            SectionTable.ChunkSections sections = table.sectionsOf(chunk);
+            assertArrayEquals(chunk.getSections(), sections.sections());
+            for (int i = FIRST_SHARED_SECTION; i < TestWorlds.SECTIONS; i++) {
+                assertEquals(first.tableIndex(i), sections.tableIndex(i), "section " + i);
+            }
+        }
+    }
+
+    @Test
+    void storesUnknownChunksInline() throws IOException {
+        SectionTable table = SectionTable.build(chunks());
+        SectionTable.ChunkSections sections = table.sectionsOf(TestWorlds.chunk(0, 0));
+
+        for (int i = 0; i < TestWorlds.SECTIONS; i++) {
+            assertEquals(-1, sections.tableIndex(i));
+            assertEquals(-1, SectionTable.EMPTY.sectionsOf(TestWorlds.chunk(0, 0)).tableIndex(i));
+        }
+    }
+
+    @Test
+    void writesEverySharedSectionOnce() throws IOException {
+        List<SlimeChunk> chunks = chunks();
+        SectionTable table = SectionTable.build(chunks);
+        Set<Integer> indexes = new HashSet<>();
+        for (SlimeChunk chunk : chunks) {
+            for (int i = 0; i < TestWorlds.SECTIONS; i++) {
+                if (table.sectionsOf(chunk).tableIndex(i) >= 0) {
+                    indexes.add(table.sectionsOf(chunk).tableIndex(i));
+                }
+            }
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(write(table)));
+        int count = in.readInt();
+        assertEquals(indexes.size(), count);
+        for (int i = 0; i < count; i++) {
+            assertTrue(indexes.contains(i), "index " + i + " isn't used");
+            in.skipNBytes(in.readInt());
+        }
+
+        assertEquals(-1, in.read(), "trailing data");
+        assertArrayEquals(new byte[4], write(SectionTable.EMPTY));
+    }
+}
@@ -0,0 +1,117 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.StringTag;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.exceptions.NewerFormatException;
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldMetadata;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.infernalsuite.aswm.serialization.slime.WorldAssertions.assertSameWorld;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Reads the worlds written by every earlier version of the serializer, and upgrades them to the current one.
+ */
+class SlimeFormatVersionsTest {
+
+    static byte[] readFixture(int version) throws IOException {
+        try (InputStream in = SlimeFormatVersionsTest.class.getResourceAsStream("/worlds/world-v" + version + ".slime")) {
+            assertNotNull(in, "missing world for v" + version);
+            return in.readAllBytes();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 11, 12, 13, 14, 15, 16, 17, 18})
+    void readsOlderVersions(int version) throws Exception {
+        byte[] serialized = readFixture(version);
+        assertEquals(version, serialized[SlimeFormat.SLIME_HEADER.length]);
+
+        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(null, "test", serialized, new SlimePropertyMap());
+        assertSameWorld(TestWorlds.create("test", null, new SlimePropertyMap()), world);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 11, 12, 13, 14, 15, 16, 17, 18})
+    void readsOlderVersionsFromDirectBuffers(int version) throws Exception {
+        byte[] serialized = readFixture(version);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(serialized.length).put(serialized).flip();
+
+        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(null, "test", buffer, new SlimePropertyMap());
+        assertSameWorld(TestWorlds.create("test", null, new SlimePropertyMap()), world);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 11, 12, 13, 14, 15, 16, 17, 18})
+    void upgradesOlderVersions(int version) throws Exception {
+        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(null, "test", readFixture(version), new SlimePropertyMap());
+        byte[] upgraded = SlimeSerializer.serialize(world);
+        assertEquals(SlimeFormat.SLIME_VERSION, upgraded[SlimeFormat.SLIME_HEADER.length]);
+
+        SlimeWorld upgradedWorld = SlimeWorldReaderRegistry.readWorld(null, "test", upgraded, new SlimePropertyMap());
+        assertSameWorld(TestWorlds.create("test", null, new SlimePropertyMap()), upgradedWorld);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 11, 12, 13, 14, 15, 16, 17, 18})
+    void readsOlderMetadata(int version) throws Exception {
+        SlimeWorldMetadata metadata = SlimeWorldReaderRegistry.readMetadata(null, "test", readFixture(version));
+
+        assertEquals(version, metadata.version());
+        assertEquals(TestWorlds.DATA_VERSION, metadata.dataVersion());
+        assertEquals((TestWorlds.RADIUS * 2 + 1) * (TestWorlds.RADIUS * 2 + 1), metadata.chunkCount());
+        assertEquals(new StringTag("custom", "value"), metadata.extraData().getValue().get("custom"));
+    }
+
+    @Test
+    void roundTripsCurrentVersion() throws Exception {
+        SlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        byte[] serialized = SlimeSerializer.serialize(world);
+        assertEquals(SlimeFormat.SLIME_VERSION, serialized[SlimeFormat.SLIME_HEADER.length]);
+
+        SlimeWorld read = SlimeWorldReaderRegistry.readWorld(null, "test", serialized, new SlimePropertyMap());
+        assertSameWorld(world, read);
+
+        // Serializing a world that was read back must not change it
+        SlimeWorld reread = SlimeWorldReaderRegistry.readWorld(null, "test", SlimeSerializer.serialize(read), new SlimePropertyMap());
+        assertSameWorld(world, reread);
+        assertSameWorld(world, read.clone("copy"));
+
+        SlimeWorldMetadata metadata = SlimeWorldReaderRegistry.readMetadata(null, "test", serialized);
+        assertEquals(SlimeFormat.SLIME_VERSION, metadata.version());
+        assertEquals(world.getChunkStorage().size(), metadata.chunkCount());
+        assertEquals(serialized.length, metadata.size());
+    }
+
+    @Test
+    void rejectsNewerVersions() throws Exception {
+        byte[] serialized = SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()));
+        serialized[SlimeFormat.SLIME_HEADER.length] = SlimeFormat.SLIME_VERSION + 1;
+
+        assertThrows(NewerFormatException.class, () -> SlimeWorldReaderRegistry.readWorld(null, "test", serialized, new SlimePropertyMap()));
+    }
+
+    @Test
+    void rejectsInvalidHeaders() throws Exception {
+        byte[] serialized = SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()));
+        byte[] invalidHeader = serialized.clone();
+        invalidHeader[0] ^= 1;
+
+        assertThrows(CorruptedWorldException.class, () -> SlimeWorldReaderRegistry.readWorld(null, "test", invalidHeader, new SlimePropertyMap()));
+        assertThrows(CorruptedWorldException.class, () -> SlimeWorldReaderRegistry.readWorld(null, "test",
+                Arrays.copyOf(serialized, SlimeFormat.SLIME_HEADER.length), new SlimePropertyMap()));
+    }
+}
@@ -0,0 +1,112 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.infernalsuite.aswm.serialization.slime.WorldAssertions.assertSameWorld;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlimeSerializerTest {
+
+    private static SlimeWorld roundTrip(SlimeWorld world) throws Exception {
+        return SlimeWorldReaderRegistry.readWorld(world.getLoader(), world.getName(), SlimeSerializer.serialize(world), new SlimePropertyMap());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"none", "zstd", "lz4"})
+    void roundTripsWithEveryCodec(String codec) throws Exception {
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.COMPRESSION, codec);
+        SlimeWorld world = TestWorlds.create("test", null, properties);
+
+        assertSameWorld(world, roundTrip(world));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-5, 1, 12, 22})
+    void roundTripsWithEveryZstdLevel(int level) throws Exception {
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.COMPRESSION_LEVEL, level);
+        SlimeWorld world = TestWorlds.create("test", null, properties);
+
+        assertSameWorld(world, roundTrip(world));
+    }
+
+    @Test
+    void streamsTheSameWorld() throws Exception {
+        SlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        byte[] serialized = SlimeSerializer.serialize(world);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        SlimeSerializer.serialize(world, stream);
+        assertArrayEquals(serialized, stream.toByteArray());
+
+        ByteArrayOutputStream channel = new ByteArrayOutputStream();
+        SlimeSerializer.serialize(world, Channels.newChannel(channel));
+        assertArrayEquals(serialized, channel.toByteArray());
+        assertSameWorld(world, roundTrip(world));
+    }
+
+    @Test
+    void roundTripsDeduplicatedSections() throws Exception {
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.DEDUPLICATE_SECTIONS, true);
+        SlimeWorld world = TestWorlds.create("test", null, properties);
+        byte[] deduplicated = SlimeSerializer.serialize(world);
+        byte[] inline = SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()));
+        assertTrue(deduplicated.length < inline.length, "deduplicated world isn't smaller");
+
+        SlimeWorld read = SlimeWorldReaderRegistry.readWorld(null, "test", deduplicated, new SlimePropertyMap());
+        assertSameWorld(world, read);
+        assertSameWorld(world, roundTrip(read));
+
+        // Chunks share the tags of table sections, their light is only copied once it's written to
+        SlimeChunk first = read.getChunk(0, 0);
+        SlimeChunk second = read.getChunk(1, 0);
+        assertSame(first.getSections()[20].getBlockStatesTag(), second.getSections()[20].getBlockStatesTag());
+        for (int section = 0; section < first.getSections().length; section++) {
+            NibbleArray light = first.getSections()[section].getSkyLight();
+            if (light != null && first.getSections()[section].getBlockStatesTag() == second.getSections()[section].getBlockStatesTag()) {
+                light.set(0, light.get(0) ^ 0xF);
+                light.getBacking()[1] ^= 0x0F;
+            }
+        }
+
+        WorldAssertions.assertSameChunk(TestWorlds.chunk(1, 0), second);
+    }
+
+    @Test
+    void roundTripsWithDictionaries() throws Exception {
+        List<SlimeWorld> samples = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            samples.add(TestWorlds.create("sample" + i, null, new SlimePropertyMap()));
+        }
+
+        SlimeDictionary dictionary = SlimeDictionary.train(samples, 16 * 1024);
+        assertSame(dictionary, SlimeDictionary.fromBytes(dictionary.getData()));
+
+        SlimePropertyMap properties = new SlimePropertyMap();
+        properties.setValue(SlimeProperties.DICTIONARY, dictionary.getId());
+        SlimeWorld world = TestWorlds.create("test", null, properties);
+        byte[] serialized = SlimeSerializer.serialize(world);
+        assertEquals(dictionary.getId(), SlimeDictionary.getDictionaryId(serialized));
+        assertEquals(0, SlimeDictionary.getDictionaryId(SlimeSerializer.serialize(samples.get(0))));
+
+        assertSameWorld(world, SlimeWorldReaderRegistry.readWorld(null, "test", serialized, new SlimePropertyMap()));
+    }
+}
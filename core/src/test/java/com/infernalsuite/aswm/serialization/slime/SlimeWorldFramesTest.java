@@ -0,0 +1,124 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.infernalsuite.aswm.serialization.slime.WorldAssertions.assertSameWorld;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlimeWorldFramesTest {
+
+    private static final ChunkPos REPLACED = new ChunkPos(-1, 1);
+
+    private static byte[] serialized(int version) throws IOException {
+        return version == 19 ? SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap()))
+                : SlimeFormatVersionsTest.readFixture(version);
+    }
+
+    private static SkeletonSlimeWorld withReplacedChunk() {
+        SkeletonSlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>(world.chunkStorage());
+        SlimeChunk donor = TestWorlds.chunk(1, 1);
+        chunks.put(REPLACED, new SlimeChunkSkeleton(REPLACED.x(), REPLACED.z(), donor.getSections(), donor.getHeightMaps(),
+                donor.getTileEntities(), donor.getEntities()));
+        return new SkeletonSlimeWorld("test", null, chunks, world.getExtraData(), world.getPropertyMap(), TestWorlds.DATA_VERSION);
+    }
+
+    @Test
+    void splitsOnlyLatestFormats() throws IOException {
+        for (int version = 10; version <= 16; version++) {
+            assertFalse(SlimeWorldFrames.canSplit(serialized(version)), "v" + version);
+            byte[] serialized = serialized(version);
+            assertThrows(IOException.class, () -> SlimeWorldFrames.split(serialized));
+        }
+
+        for (int version = 17; version <= 19; version++) {
+            assertTrue(SlimeWorldFrames.canSplit(serialized(version)), "v" + version);
+        }
+
+        assertFalse(SlimeWorldFrames.canSplit(new byte[0]));
+        assertFalse(SlimeWorldFrames.canSplit(new byte[64]));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {17, 18, 19})
+    void joinsSplitWorlds(int version) throws IOException {
+        byte[] serialized = serialized(version);
+        SlimeWorldFrames frames = SlimeWorldFrames.split(serialized);
+        assertEquals((TestWorlds.RADIUS * 2 + 1) * (TestWorlds.RADIUS * 2 + 1), frames.getFrames().size());
+
+        assertArrayEquals(serialized, SlimeWorldFrames.join(frames.getMetadata(), frames.getFrames()));
+    }
+
+    @Test
+    void compressesFramesInParallelDeterministically() throws Exception {
+        SkeletonSlimeWorld world = TestWorlds.create("test", null, new SlimePropertyMap());
+        byte[] serialized = SlimeSerializer.serialize(world);
+
+        // Frames are compressed on the common pool, saves running at the same time must still write the same bytes
+        List<CompletableFuture<byte[]>> saves = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            saves.add(CompletableFuture.supplyAsync(() -> SlimeSerializer.serialize(world)));
+        }
+
+        for (CompletableFuture<byte[]> save : saves) {
+            assertArrayEquals(serialized, save.get());
+        }
+    }
+
+    @Test
+    void joinsReplacedFrames() throws Exception {
+        SlimeWorldFrames original = SlimeWorldFrames.split(SlimeSerializer.serialize(TestWorlds.create("test", null, new SlimePropertyMap())));
+        SkeletonSlimeWorld changed = withReplacedChunk();
+        SlimeWorldFrames replacement = SlimeWorldFrames.split(SlimeSerializer.serialize(changed));
+
+        List<ChunkFrame> frames = new ArrayList<>();
+        for (ChunkFrame frame : original.getFrames()) {
+            if (frame.key() == REPLACED.toKey()) {
+                frame = replacement.getFrames().stream().filter(other -> other.key() == REPLACED.toKey()).findFirst().orElseThrow();
+            }
+
+            frames.add(frame);
+        }
+
+        byte[] joined = SlimeWorldFrames.join(original.getMetadata(), frames);
+        assertSameWorld(changed, SlimeWorldReaderRegistry.readWorld(null, "test", joined, new SlimePropertyMap()));
+
+        // Dropping a frame drops its chunk
+        frames.removeIf(frame -> frame.key() == REPLACED.toKey());
+        SlimeWorld dropped = SlimeWorldReaderRegistry.readWorld(null, "test", SlimeWorldFrames.join(original.getMetadata(), frames), new SlimePropertyMap());
+        assertEquals(frames.size(), dropped.getChunkStorage().size());
+        assertNull(dropped.getChunk(REPLACED.x(), REPLACED.z()));
+    }
+
+    @Test
+    void rejectsTruncatedWorlds() throws IOException {
+        byte[] serialized = serialized(19);
+
+        for (int length : new int[]{serialized.length / 2, serialized.length - 8}) {
+            byte[] truncated = Arrays.copyOf(serialized, length);
+            assertThrows(IOException.class, () -> SlimeWorldFrames.split(truncated));
+        }
+    }
+}
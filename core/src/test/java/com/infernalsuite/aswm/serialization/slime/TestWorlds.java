@@ -0,0 +1,157 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.DoubleTag;
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds the deterministic world the format tests write and read back.
+ * <p>
+ * The worlds in <code>src/test/resources/worlds</code> were written from this same world by every
+ * earlier version of the serializer, so this class must only use APIs that existed since format v10
+ * and its output must never change.
+ */
+public final class TestWorlds {
+
+    public static final int DATA_VERSION = 3120;
+    public static final int RADIUS = 1;
+    public static final int SECTIONS = 24;
+
+    private static final String[] BLOCKS = {"minecraft:air", "minecraft:stone", "minecraft:dirt", "minecraft:grass_block", "minecraft:oak_log"};
+
+    private TestWorlds() {
+    }
+
+    public static SkeletonSlimeWorld create(String name, SlimeLoader loader, SlimePropertyMap properties) {
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>();
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                chunks.put(new ChunkPos(x, z), chunk(x, z));
+            }
+        }
+
+        CompoundMap extra = new CompoundMap();
+        extra.put(new StringTag("custom", "value"));
+        return new SkeletonSlimeWorld(name, loader, chunks, new CompoundTag("", extra), properties, DATA_VERSION);
+    }
+
+    public static SlimeChunk chunk(int x, int z) {
+        Random random = new Random(x * 31L + z);
+        SlimeChunkSection[] sections = new SlimeChunkSection[SECTIONS];
+        for (int i = 0; i < sections.length; i++) {
+            // Upper sections are the same in every chunk, so deduplication has something to share
+            Random sectionRandom = i < 4 ? random : new Random(i);
+            sections[i] = new SlimeChunkSectionSkeleton(blockStates(sectionRandom, i), biomes(sectionRandom, i),
+                    light(i), light(i + 1));
+        }
+
+        CompoundMap heightMaps = new CompoundMap();
+        heightMaps.put(new LongArrayTag("MOTION_BLOCKING", new long[]{random.nextLong(), x, z}));
+
+        List<CompoundTag> tileEntities = new ArrayList<>();
+        List<CompoundTag> entities = new ArrayList<>();
+        if ((x + z) % 2 == 0) {
+            CompoundMap tileEntity = new CompoundMap();
+            tileEntity.put(new StringTag("id", "minecraft:chest"));
+            tileEntity.put(new IntTag("x", x * 16 + 3));
+            tileEntity.put(new IntTag("y", 64));
+            tileEntity.put(new IntTag("z", z * 16 + 5));
+            tileEntities.add(new CompoundTag("", tileEntity));
+
+            CompoundMap entity = new CompoundMap();
+            entity.put(new StringTag("id", "minecraft:pig"));
+            entity.put(new ListTag<>("Pos", TagType.TAG_DOUBLE, List.of(new DoubleTag("", x * 16 + 1.5),
+                    new DoubleTag("", 70), new DoubleTag("", z * 16 + 2.5))));
+            entities.add(new CompoundTag("", entity));
+        }
+
+        return new SlimeChunkSkeleton(x, z, sections, new CompoundTag("", heightMaps), tileEntities, entities);
+    }
+
+    private static CompoundTag blockStates(Random random, int section) {
+        CompoundMap blockStates = new CompoundMap();
+        List<CompoundTag> palette = new ArrayList<>();
+        int size = section < 4 || section == 8 ? 1 + random.nextInt(BLOCKS.length) : 1;
+        for (int i = 0; i < size; i++) {
+            CompoundMap state = new CompoundMap();
+            state.put(new StringTag("Name", BLOCKS[(i + section) % BLOCKS.length]));
+            if (BLOCKS[(i + section) % BLOCKS.length].equals("minecraft:oak_log")) {
+                CompoundMap properties = new CompoundMap();
+                properties.put(new StringTag("axis", "y"));
+                state.put(new CompoundTag("Properties", properties));
+            }
+
+            palette.add(new CompoundTag("", state));
+        }
+
+        blockStates.put(new ListTag<>("palette", TagType.TAG_COMPOUND, palette));
+        if (size > 1) {
+            long[] data = new long[4096 * 4 / 64];
+            for (int i = 0; i < data.length; i++) {
+                for (int entry = 0; entry < 16; entry++) {
+                    data[i] |= (long) random.nextInt(size) << entry * 4;
+                }
+            }
+
+            blockStates.put(new LongArrayTag("data", data));
+        }
+
+        return new CompoundTag("", blockStates);
+    }
+
+    private static CompoundTag biomes(Random random, int section) {
+        CompoundMap biomes = new CompoundMap();
+        List<StringTag> palette = new ArrayList<>();
+        palette.add(new StringTag("", "minecraft:plains"));
+        if (section % 5 == 0) {
+            palette.add(new StringTag("", "minecraft:river"));
+        }
+
+        biomes.put(new ListTag<>("palette", TagType.TAG_STRING, palette));
+        if (palette.size() > 1) {
+            biomes.put(new LongArrayTag("data", new long[]{random.nextLong()}));
+        }
+
+        return new CompoundTag("", biomes);
+    }
+
+    private static NibbleArray light(int kind) {
+        byte[] light = new byte[2048];
+        switch (kind % 4) {
+            case 0:
+                return null;
+            case 1:
+                Arrays.fill(light, (byte) 0xFF);
+                break;
+            case 2:
+                break;
+            default:
+                for (int i = 0; i < light.length; i++) {
+                    light[i] = (byte) (i / 128 * 0x11);
+                }
+        }
+
+        return new NibbleArray(light);
+    }
+}
@@ -0,0 +1,84 @@
+package com.infernalsuite.aswm.serialization.slime;
+
+import com.flowpowered.nbt.CompoundTag;
+import com.infernalsuite.aswm.api.utils.NibbleArray;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.serialization.NbtCodec;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class WorldAssertions {
+
+    private WorldAssertions() {
+    }
+
+    public static void assertSameWorld(SlimeWorld expected, SlimeWorld actual) throws IOException {
+        assertEquals(expected.getDataVersion(), actual.getDataVersion(), "data version");
+        assertEquals(expected.getChunkStorage().size(), actual.getChunkStorage().size(), "chunk count");
+        for (SlimeChunk chunk : expected.getChunkStorage()) {
+            SlimeChunk actualChunk = actual.getChunk(chunk.getX(), chunk.getZ());
+            assertNotNull(actualChunk, "chunk " + chunk.getX() + ", " + chunk.getZ());
+            assertSameChunk(chunk, actualChunk);
+        }
+
+        CompoundTag expectedExtra = expected.getExtraData().clone();
+        CompoundTag actualExtra = actual.getExtraData().clone();
+        expectedExtra.getValue().remove("properties");
+        actualExtra.getValue().remove("properties");
+        assertSameTag(expectedExtra, actualExtra, "extra data");
+    }
+
+    public static void assertSameChunk(SlimeChunk expected, SlimeChunk actual) throws IOException {
+        String chunk = "chunk " + expected.getX() + ", " + expected.getZ();
+        assertEquals(expected.getX(), actual.getX(), chunk);
+        assertEquals(expected.getZ(), actual.getZ(), chunk);
+        assertSameTag(expected.getHeightMaps(), actual.getHeightMaps(), chunk + " height maps");
+        assertSameTags(expected.getTileEntities(), actual.getTileEntities(), chunk + " tile entities");
+        assertSameTags(expected.getEntities(), actual.getEntities(), chunk + " entities");
+
+        SlimeChunkSection[] expectedSections = expected.getSections();
+        SlimeChunkSection[] actualSections = actual.getSections();
+        assertEquals(expectedSections.length, actualSections.length, chunk + " section count");
+        for (int i = 0; i < expectedSections.length; i++) {
+            String section = chunk + " section " + i;
+            if (expectedSections[i] == null) {
+                assertNull(actualSections[i], section);
+                continue;
+            }
+
+            assertNotNull(actualSections[i], section);
+            assertSameTag(expectedSections[i].getBlockStatesTag(), actualSections[i].getBlockStatesTag(), section + " block states");
+            assertSameTag(expectedSections[i].getBiomeTag(), actualSections[i].getBiomeTag(), section + " biomes");
+            assertSameLight(expectedSections[i].getBlockLight(), actualSections[i].getBlockLight(), section + " block light");
+            assertSameLight(expectedSections[i].getSkyLight(), actualSections[i].getSkyLight(), section + " sky light");
+        }
+    }
+
+    private static void assertSameTags(List<CompoundTag> expected, List<CompoundTag> actual, String message) throws IOException {
+        assertEquals(expected.size(), actual.size(), message);
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameTag(expected.get(i), actual.get(i), message);
+        }
+    }
+
+    private static void assertSameTag(CompoundTag expected, CompoundTag actual, String message) throws IOException {
+        assertArrayEquals(NbtCodec.serializeCompound(expected), NbtCodec.serializeCompound(actual), message);
+    }
+
+    private static void assertSameLight(NibbleArray expected, NibbleArray actual, String message) {
+        if (expected == null) {
+            assertNull(actual, message);
+        } else {
+            assertNotNull(actual, message);
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray(), message);
+        }
+    }
+}
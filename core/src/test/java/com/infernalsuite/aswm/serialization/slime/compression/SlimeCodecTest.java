@@ -0,0 +1,146 @@
+package com.infernalsuite.aswm.serialization.slime.compression;
+
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimeProperties;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.SlimeDictionary;
+import com.infernalsuite.aswm.serialization.slime.TestWorlds;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlimeCodecTest {
+
+    private static byte[] data(int length) {
+        String[] words = {"minecraft:", "stone", "dirt", "palette", "Name", "data", "block_states", "biomes"};
+        Random random = new Random(length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        while (out.size() < length) {
+            if (random.nextBoolean()) {
+                out.writeBytes(words[random.nextInt(words.length)].getBytes());
+            } else {
+                out.write(random.nextInt(256));
+            }
+        }
+
+        return Arrays.copyOf(out.toByteArray(), length);
+    }
+
+    private static List<SlimeCodec> codecs() throws IOException {
+        List<SlimeWorld> samples = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            samples.add(TestWorlds.create("sample" + i, null, new SlimePropertyMap()));
+        }
+
+        SlimeDictionary dictionary = SlimeDictionary.train(samples, 16 * 1024);
+        return List.of(NoneCodec.INSTANCE, new ZstdCodec(-5, null), new ZstdCodec(3, null), new ZstdCodec(19, null),
+                new ZstdCodec(3, dictionary), new Lz4Codec(0), new Lz4Codec(9));
+    }
+
+    @Test
+    void roundTripsArrays() throws IOException {
+        for (SlimeCodec codec : codecs()) {
+            for (int length : new int[]{0, 1, 1000, 200_000, 4 * 1024 * 1024}) {
+                byte[] data = data(length);
+                byte[] compressed = codec.compress(data);
+                byte[] decompressed = new byte[length];
+                codec.decompress(compressed, 0, compressed.length, decompressed);
+                assertArrayEquals(data, decompressed, codec + " " + length);
+            }
+        }
+    }
+
+    @Test
+    void roundTripsPartsOfArrays() throws IOException {
+        byte[] data = data(100_000);
+        for (SlimeCodec codec : codecs()) {
+            byte[] compressed = codec.compress(data, 1000, 50_000);
+
+            // Decompress from the middle of a larger array into the start of a larger array
+            byte[] src = new byte[compressed.length + 20];
+            System.arraycopy(compressed, 0, src, 10, compressed.length);
+            byte[] dst = new byte[60_000];
+            codec.decompress(src, 10, compressed.length, dst, 50_000);
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, 51_000), Arrays.copyOf(dst, 50_000), codec.toString());
+        }
+    }
+
+    @Test
+    void roundTripsStreams() throws IOException {
+        byte[] data = data(300_000);
+        for (SlimeCodec codec : codecs()) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = codec.compress(compressed)) {
+                for (int offset = 0; offset < data.length; offset += 7000) {
+                    out.write(data, offset, Math.min(7000, data.length - offset));
+                }
+            }
+
+            byte[] decompressed = new byte[data.length];
+            codec.decompress(compressed.toByteArray(), 0, compressed.size(), decompressed);
+            assertArrayEquals(data, decompressed, codec.toString());
+        }
+    }
+
+    @Test
+    void roundTripsBuffers() throws IOException {
+        List<SlimeCodec> codecs = codecs();
+        for (int length : new int[]{100_000, 3 * 1024 * 1024}) {
+            byte[] data = data(length);
+            for (SlimeCodec codec : codecs) {
+                byte[] compressed = codec.compress(data);
+
+                // A heap buffer with an array offset, and a direct buffer read from the middle
+                ByteBuffer heap = ByteBuffer.allocate(compressed.length + 5).position(5).slice().put(compressed).flip();
+                ByteBuffer direct = ByteBuffer.allocateDirect(compressed.length + 5).position(5).put(compressed).position(5);
+
+                for (ByteBuffer buffer : List.of(heap, direct)) {
+                    int position = buffer.position();
+                    byte[] decompressed = new byte[data.length + 7];
+                    codec.decompress(buffer, decompressed, data.length);
+                    assertArrayEquals(data, Arrays.copyOf(decompressed, data.length), codec + " " + buffer);
+                    assertEquals(position, buffer.position(), "buffer position changed");
+                }
+            }
+        }
+    }
+
+    @Test
+    void rejectsWrongLengths() throws IOException {
+        byte[] data = data(10_000);
+        for (SlimeCodec codec : codecs()) {
+            byte[] compressed = codec.compress(data);
+            assertThrows(IOException.class, () -> codec.decompress(compressed, 0, compressed.length, new byte[data.length - 1]), codec.toString());
+            assertThrows(IOException.class, () -> codec.decompress(compressed, 0, compressed.length, new byte[data.length + 1]), codec.toString());
+        }
+    }
+
+    @Test
+    void resolvesCodecs() throws IOException {
+        assertEquals(SlimeCodec.NONE, SlimeCodec.forId(SlimeCodec.NONE, null, 0).getId());
+        assertEquals(SlimeCodec.ZSTD, SlimeCodec.forId(SlimeCodec.ZSTD, null, 0).getId());
+        assertEquals(SlimeCodec.LZ4, SlimeCodec.forId(SlimeCodec.LZ4, null, 0).getId());
+        assertThrows(IOException.class, () -> SlimeCodec.forId(3, null, 0));
+        assertThrows(IOException.class, () -> SlimeCodec.forId(SlimeCodec.LZ4, null, 1));
+        assertThrows(IOException.class, () -> SlimeCodec.forId(SlimeCodec.ZSTD, null, 0x7fff_fff0));
+
+        for (String name : new String[]{"none", "zstd", "lz4"}) {
+            SlimePropertyMap properties = new SlimePropertyMap();
+            properties.setValue(SlimeProperties.COMPRESSION, name);
+            SlimeCodec codec = SlimeCodec.forWorld(TestWorlds.create("test", null, properties));
+            assertTrue(codec.getClass().getSimpleName().equalsIgnoreCase(name + "Codec"), name);
+        }
+    }
+}
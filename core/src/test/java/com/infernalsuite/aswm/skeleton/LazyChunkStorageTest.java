@@ -0,0 +1,174 @@
+package com.infernalsuite.aswm.skeleton;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.serialization.slime.TestWorlds;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyChunkStorageTest {
+
+    private static final ChunkPos BROKEN = new ChunkPos(5, 5);
+
+    private final Map<ChunkPos, AtomicInteger> decodes = new ConcurrentHashMap<>();
+
+    private LazyChunkStorage storage(int radius) {
+        List<ChunkPos> positions = new ArrayList<>();
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                positions.add(new ChunkPos(x, z));
+            }
+        }
+
+        return storage(positions);
+    }
+
+    private LazyChunkStorage storage(List<ChunkPos> positions) {
+        return new LazyChunkStorage(positions, pos -> {
+            this.decodes.computeIfAbsent(pos, key -> new AtomicInteger()).incrementAndGet();
+            if (pos.equals(BROKEN)) {
+                throw new IOException("broken chunk");
+            }
+
+            return TestWorlds.chunk(pos.x(), pos.z());
+        });
+    }
+
+    private int decodes(ChunkPos pos) {
+        AtomicInteger count = this.decodes.get(pos);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    void decodesChunksOnceOnFirstLookup() {
+        LazyChunkStorage storage = storage(1);
+        ChunkPos pos = new ChunkPos(1, 0);
+
+        assertEquals(9, storage.size());
+        assertTrue(storage.containsKey(pos));
+        assertTrue(this.decodes.isEmpty(), "size and containsKey decoded chunks");
+
+        SlimeChunk chunk = storage.get(pos);
+        assertSame(chunk, storage.get(pos));
+        assertEquals(1, decodes(pos));
+        assertEquals(Set.of(pos), storage.decodedChunks().keySet());
+        assertFalse(storage.encodedChunks().contains(pos));
+        assertNull(storage.get(new ChunkPos(7, 7)));
+        assertEquals(1, this.decodes.size());
+    }
+
+    @Test
+    void decodesEveryChunkOnceUnderConcurrentLookups() throws Exception {
+        LazyChunkStorage storage = storage(2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> lookups = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    for (ChunkPos pos : storage.positions()) {
+                        assertNotNull(storage.get(pos));
+                    }
+
+                    storage.decodeExcept(Set.of());
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> lookup : lookups) {
+                lookup.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(25, storage.decodedChunks().size());
+        assertTrue(storage.encodedChunks().isEmpty());
+        for (ChunkPos pos : storage.positions()) {
+            assertEquals(1, decodes(pos), "chunk " + pos + " was decoded more than once");
+        }
+    }
+
+    @Test
+    void peeksWithoutKeepingChunksDecoded() {
+        LazyChunkStorage storage = storage(1);
+        ChunkPos pos = new ChunkPos(0, 0);
+
+        assertNotNull(storage.peek(pos));
+        assertNotNull(storage.peek(pos));
+        assertEquals(2, decodes(pos));
+        assertTrue(storage.decodedChunks().isEmpty());
+        assertTrue(storage.encodedChunks().contains(pos));
+
+        // Decoded chunks are returned as they are
+        SlimeChunk chunk = storage.get(pos);
+        assertSame(chunk, storage.peek(pos));
+        assertEquals(3, decodes(pos));
+        assertNull(storage.peek(new ChunkPos(7, 7)));
+    }
+
+    @Test
+    void decodesEverythingExceptExcludedChunks() {
+        LazyChunkStorage storage = storage(1);
+        ChunkPos excluded = new ChunkPos(-1, -1);
+        ChunkPos replaced = new ChunkPos(1, 1);
+        SlimeChunk replacement = TestWorlds.chunk(0, 0);
+        storage.put(replaced, replacement);
+
+        List<SlimeChunk> chunks = storage.decodeExcept(Set.of(excluded));
+        assertEquals(8, chunks.size());
+        assertTrue(chunks.contains(replacement));
+        assertEquals(Set.of(excluded), storage.encodedChunks());
+        assertEquals(0, decodes(excluded));
+        assertEquals(0, decodes(replaced), "replaced chunk was decoded");
+        assertEquals(9, storage.size());
+    }
+
+    @Test
+    void leavesOutChunksThatCantBeDecoded() {
+        LazyChunkStorage storage = storage(List.of(new ChunkPos(0, 0), BROKEN));
+
+        assertNull(storage.get(BROKEN));
+        assertFalse(storage.containsKey(BROKEN));
+        assertEquals(1, storage.size());
+        assertEquals(1, storage.decodeExcept(Set.of()).size());
+        assertEquals(1, decodes(BROKEN));
+    }
+
+    @Test
+    void copiesShareEncodedChunks() {
+        LazyChunkStorage storage = storage(1);
+        SlimeChunk decoded = storage.get(new ChunkPos(0, 0));
+
+        LazyChunkStorage copy = storage.copy();
+        assertSame(decoded, copy.get(new ChunkPos(0, 0)));
+        assertEquals(storage.encodedChunks(), copy.encodedChunks());
+
+        copy.remove(new ChunkPos(1, 0));
+        assertFalse(copy.containsKey(new ChunkPos(1, 0)));
+        assertTrue(storage.containsKey(new ChunkPos(1, 0)));
+        assertEquals(1, this.decodes.size(), "copying decoded chunks");
+    }
+}
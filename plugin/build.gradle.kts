@@ -14,6 +14,11 @@ dependencies {
     implementation("org.bstats:bstats-bukkit:3.0.0")
     implementation("commons-io:commons-io:2.11.0")
     compileOnly("io.papermc.paper:paper-api:1.18.2-R0.1-SNAPSHOT")
+
+    testImplementation(project(":api"))
+    testImplementation(project(":core"))
+    testImplementation("io.papermc.paper:paper-api:1.18.2-R0.1-SNAPSHOT")
+    testImplementation("org.junit.jupiter:junit-jupiter:5.9.2")
 }
 
 tasks {
@@ -33,6 +38,10 @@ tasks {
         dependsOn(shadowJar)
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
     runServer {
         minecraftVersion("1.19.2")
     }
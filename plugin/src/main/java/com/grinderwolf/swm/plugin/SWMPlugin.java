@@ -3,15 +3,26 @@ package com.grinderwolf.swm.plugin;
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.grinderwolf.swm.plugin.commands.CommandManager;
 import com.grinderwolf.swm.plugin.config.ConfigManager;
 import com.grinderwolf.swm.plugin.config.WorldData;
 import com.grinderwolf.swm.plugin.config.WorldsConfig;
 import com.grinderwolf.swm.plugin.listeners.WorldUnlocker;
+import com.grinderwolf.swm.plugin.loaders.LeaseStore;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
 import com.infernalsuite.aswm.api.SlimeNMSBridge;
 import com.infernalsuite.aswm.api.SlimePlugin;
+import com.infernalsuite.aswm.api.events.AsyncPostCreateEmptyWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPostGetWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPostImportWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPostLoadWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPostMigrateWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPreCreateEmptyWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPreGetWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPreImportWorldEvent;
+import com.infernalsuite.aswm.api.events.AsyncPreLoadWorldEvent;
 import com.infernalsuite.aswm.api.events.LoadSlimeWorldEvent;
 import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
 import com.infernalsuite.aswm.api.exceptions.InvalidWorldException;
@@ -23,6 +34,8 @@ import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
 import com.infernalsuite.aswm.api.exceptions.WorldTooBigException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
 import com.infernalsuite.aswm.serialization.anvil.AnvilWorldReader;
+import com.infernalsuite.aswm.serialization.slime.OverlayBase;
+import com.infernalsuite.aswm.serialization.slime.SlimeDictionary;
 import com.infernalsuite.aswm.serialization.slime.SlimeSerializer;
 import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
 import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
@@ -38,22 +51,36 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
 
     private static final SlimeNMSBridge BRIDGE_INSTANCE = SlimeNMSBridge.instance();
+    private static final int IO_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    // Enough of a serialized world to read its dictionary id
+    private static final int MIGRATION_HEADER_SIZE = 12;
 
     private final Map<String, SlimeWorld> loadedWorlds = new ConcurrentHashMap<>();
 
+    // Worlds are fetched, parsed and upgraded here, only generating them has to happen on the server thread
+    private final ExecutorService ioExecutor = Executors.newFixedThreadPool(IO_THREADS, new ThreadFactoryBuilder()
+            .setNameFormat("SWM I/O Thread #%1$d").setDaemon(true).build());
+
     private static boolean isPaperMC = false;
 
     private static boolean checkIsPaper() {
@@ -79,6 +106,7 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
         }
 
         LoaderUtils.registerLoaders();
+        LoaderUtils.getLeaseManager().addLostLeaseListener(this::onLockLost);
 
         List<String> erroredWorlds = loadWorlds();
 
@@ -141,6 +169,9 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
 
     @Override
     public void onDisable() {
+        this.ioExecutor.shutdown();
+        LoaderUtils.getLeaseManager().releaseAll();
+
 //        Bukkit.getWorlds().stream()
 //                .map(world -> bridge.getSlimeWorld(world))
 //                .filter(Objects::nonNull)
@@ -239,18 +270,42 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
         Objects.requireNonNull(worldName, "World name cannot be null");
         Objects.requireNonNull(propertyMap, "Properties cannot be null");
 
-        if (!readOnly) {
-            loader.acquireLock(worldName);
+        if (!readOnly && OverlayBase.isReferenced(loader, worldName)) {
+            throw new IllegalArgumentException("World " + worldName + " is the template of loaded overlay worlds, it can only be loaded read-only!");
         }
 
+        // The token is kept by the world, so saves are rejected once another server takes its lock over
+        long lockToken = readOnly ? 0 : loader.acquireLockToken(worldName);
+
         long start = System.currentTimeMillis();
+        SlimeWorld slimeWorld;
 
-        Logging.info("Loading world " + worldName + ".");
-        byte[] serializedWorld = loader.loadWorld(worldName);
+        try {
+            Logging.info("Loading world " + worldName + ".");
+            ByteBuffer serializedWorld = loader.loadWorldBuffer(worldName);
 
-        SlimeWorld slimeWorld = SlimeWorldReaderRegistry.readWorld(loader, worldName, serializedWorld, propertyMap);
-        Logging.info("Applying datafixers for " + worldName + ".");
-        SlimeNMSBridge.instance().applyDataFixers(slimeWorld);
+            slimeWorld = SlimeWorldReaderRegistry.readWorld(loader, worldName, serializedWorld, propertyMap);
+
+            // Only the world itself tells whether it's an overlay, so this can't be checked before it's read
+            OverlayBase template = OverlayBase.of(slimeWorld);
+            if (template != null) {
+                checkTemplateReadOnly(loader, template.getName());
+            }
+
+            // Worlds of an older version are decoded and fixed as a whole on this thread, up to date worlds
+            // are returned as they are and only decode their chunks once the server accesses them
+            Logging.info("Applying datafixers for " + worldName + ".");
+            slimeWorld = SlimeNMSBridge.instance().applyDataFixers(slimeWorld);
+            if (slimeWorld instanceof SkeletonSlimeWorld skeleton) {
+                slimeWorld = skeleton.withLockToken(lockToken);
+            }
+        } catch (Throwable ex) {
+            if (!readOnly) {
+                unlockFailedWorld(loader, worldName, ex);
+            }
+
+            throw ex;
+        }
 
         Logging.info("World " + worldName + " loaded in " + (System.currentTimeMillis() - start) + "ms.");
 
@@ -258,6 +313,23 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
         return slimeWorld;
     }
 
+    // The lock of a world that failed to load is released, otherwise the lease manager would keep renewing it
+    private static void unlockFailedWorld(SlimeLoader loader, String worldName, Throwable cause) {
+        try {
+            loader.unlockWorld(worldName);
+        } catch (UnknownWorldException | IOException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+
+    // A template loaded for writing would be saved again, which breaks its overlays
+    private void checkTemplateReadOnly(SlimeLoader loader, String templateName) {
+        SlimeWorld template = loadedWorlds.get(templateName);
+        if (template != null && template.getLoader() == loader) {
+            throw new IllegalArgumentException("Template " + templateName + " is loaded on this server without being read-only!");
+        }
+    }
+
     @Override
     public SlimeWorld getWorld(String worldName) {
         return loadedWorlds.get(worldName);
@@ -289,6 +361,36 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
         return blackhole;
     }
 
+    @Override
+    public SlimeWorld createOverlayWorld(SlimeLoader loader, String templateName, String worldName, boolean readOnly, SlimePropertyMap propertyMap)
+            throws WorldAlreadyExistsException, UnknownWorldException, CorruptedWorldException, NewerFormatException, IOException {
+        Objects.requireNonNull(loader, "Loader cannot be null");
+        Objects.requireNonNull(templateName, "Template name cannot be null");
+        Objects.requireNonNull(worldName, "World name cannot be null");
+        Objects.requireNonNull(propertyMap, "Properties cannot be null");
+
+        if (templateName.equals(worldName)) {
+            throw new IllegalArgumentException("The overlay world cannot have the same name as its template!");
+        }
+
+        if (loader.worldExists(worldName)) {
+            throw new WorldAlreadyExistsException(worldName);
+        }
+
+        checkTemplateReadOnly(loader, templateName);
+
+        Logging.info("Creating overlay world " + worldName + " of " + templateName + ".");
+        long start = System.currentTimeMillis();
+        SlimeWorld overlay = OverlayBase.load(loader, templateName).createOverlay(worldName, readOnly ? null : loader, propertyMap);
+
+        loader.saveWorld(worldName, SlimeSerializer.serialize(overlay));
+
+        Logging.info("World " + worldName + " created in " + (System.currentTimeMillis() - start) + "ms.");
+
+        registerWorld(overlay);
+        return overlay;
+    }
+
     /**
      * Utility method to register a <b>loaded</b> {@link SlimeWorld} with the internal map (for {@link #getWorld} calls)
      *
@@ -299,6 +401,28 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
     }
 
 
+    /*
+    Another server may own a world whose lock was lost, so this server stops saving it. Its saves would be rejected
+    by the data source anyway, as they're made with a fencing token that isn't current anymore.
+     */
+    private void onLockLost(LeaseStore store, String worldName) {
+        SlimeWorld world = loadedWorlds.get(worldName);
+        if (world == null || world.getLoader() != store) {
+            return;
+        }
+
+        Logging.error("The lock of world " + worldName + " has been lost, it won't be saved anymore. Unload it and load it again to save it.");
+
+        if (isEnabled()) {
+            Bukkit.getScheduler().runTask(this, () -> {
+                World bukkitWorld = Bukkit.getWorld(worldName);
+                if (bukkitWorld != null) {
+                    bukkitWorld.setAutoSave(false);
+                }
+            });
+        }
+    }
+
     /**
      * Ensure worlds are removed from the loadedWorlds map when {@link Bukkit#unloadWorld} is called.
      */
@@ -330,8 +454,30 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
             throw new WorldAlreadyExistsException(worldName);
         }
 
-        byte[] serializedWorld = currentLoader.loadWorld(worldName);
-        newLoader.saveWorld(worldName, serializedWorld);
+        // The world is streamed between both data sources, so it never has to be held in memory as a whole
+        try (InputStream serializedWorld = new BufferedInputStream(currentLoader.loadWorldStream(worldName))) {
+            serializedWorld.mark(MIGRATION_HEADER_SIZE);
+            byte[] header = serializedWorld.readNBytes(MIGRATION_HEADER_SIZE);
+            serializedWorld.reset();
+
+            // The new data source needs the dictionary to read the world
+            int dictionaryId = SlimeDictionary.getDictionaryId(header);
+            if (dictionaryId != 0 && newLoader.loadDictionary(dictionaryId) == null) {
+                if (!newLoader.supportsDictionaries()) {
+                    throw new IOException("World " + worldName + " uses dictionary " + dictionaryId + ", which the new data source can't store");
+                }
+
+                byte[] dictionary = currentLoader.loadDictionary(dictionaryId);
+                if (dictionary == null) {
+                    throw new IOException("Unknown dictionary " + dictionaryId + " for world " + worldName);
+                }
+
+                newLoader.saveDictionary(dictionaryId, dictionary);
+            }
+
+            newLoader.saveWorldStream(worldName, serializedWorld);
+        }
+
         currentLoader.deleteWorld(worldName);
     }
 
@@ -380,6 +526,110 @@ public class SWMPlugin extends JavaPlugin implements SlimePlugin, Listener {
     }
 
 
+    @Override
+    public CompletableFuture<Optional<SlimeWorld>> asyncLoadWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) {
+        AsyncPreLoadWorldEvent preEvent = new AsyncPreLoadWorldEvent(loader, worldName, readOnly, propertyMap);
+
+        return supplyAsync(() -> {
+            Bukkit.getPluginManager().callEvent(preEvent);
+            if (preEvent.isCancelled()) {
+                return Optional.empty();
+            }
+
+            SlimeWorld world = loadWorld(preEvent.getSlimeLoader(), preEvent.getWorldName(), preEvent.isReadOnly(), preEvent.getSlimePropertyMap());
+            Bukkit.getPluginManager().callEvent(new AsyncPostLoadWorldEvent(world));
+            return Optional.of(world);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<SlimeWorld>> asyncGetWorld(String worldName) {
+        AsyncPreGetWorldEvent preEvent = new AsyncPreGetWorldEvent(worldName);
+
+        return supplyAsync(() -> {
+            Bukkit.getPluginManager().callEvent(preEvent);
+            if (preEvent.isCancelled()) {
+                return Optional.empty();
+            }
+
+            SlimeWorld world = getWorld(preEvent.getWorldName());
+            if (world != null) {
+                Bukkit.getPluginManager().callEvent(new AsyncPostGetWorldEvent(world));
+            }
+
+            return Optional.ofNullable(world);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<SlimeWorld>> asyncCreateEmptyWorld(SlimeLoader loader, String worldName, boolean readOnly, SlimePropertyMap propertyMap) {
+        AsyncPreCreateEmptyWorldEvent preEvent = new AsyncPreCreateEmptyWorldEvent(loader, worldName, readOnly, propertyMap);
+
+        return supplyAsync(() -> {
+            Bukkit.getPluginManager().callEvent(preEvent);
+            if (preEvent.isCancelled()) {
+                return Optional.empty();
+            }
+
+            SlimeWorld world = createEmptyWorld(preEvent.getSlimeLoader(), preEvent.getWorldName(), preEvent.isReadOnly(), preEvent.getSlimePropertyMap());
+            Bukkit.getPluginManager().callEvent(new AsyncPostCreateEmptyWorldEvent(world));
+            return Optional.of(world);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> asyncMigrateWorld(String worldName, SlimeLoader currentLoader, SlimeLoader newLoader) {
+        Objects.requireNonNull(worldName, "World name cannot be null");
+        Objects.requireNonNull(currentLoader, "Current loader cannot be null");
+        Objects.requireNonNull(newLoader, "New loader cannot be null");
+
+        return supplyAsync(() -> {
+            migrateWorld(worldName, currentLoader, newLoader);
+            Bukkit.getPluginManager().callEvent(new AsyncPostMigrateWorldEvent(worldName, currentLoader, newLoader));
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> asyncImportWorld(File worldDir, String worldName, SlimeLoader loader) {
+        AsyncPreImportWorldEvent preEvent = new AsyncPreImportWorldEvent(worldDir, worldName, loader);
+
+        return supplyAsync(() -> {
+            Bukkit.getPluginManager().callEvent(preEvent);
+            if (preEvent.isCancelled()) {
+                return null;
+            }
+
+            importWorld(preEvent.getWorldDir(), preEvent.getWorldName(), preEvent.getSlimeLoader());
+            Bukkit.getPluginManager().callEvent(new AsyncPostImportWorldEvent(preEvent.getWorldDir(), preEvent.getWorldName(), preEvent.getSlimeLoader()));
+            return null;
+        });
+    }
+
+    /**
+     * Runs a task on the I/O executor. The returned future completes exceptionally with the exception thrown by the task,
+     * without wrapping it.
+     */
+    private <T> CompletableFuture<T> supplyAsync(IoTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.ioExecutor.execute(() -> {
+            try {
+                future.complete(task.run());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface IoTask<T> {
+
+        T run() throws Exception;
+
+    }
+
     public static boolean isPaperMC() {
         return isPaperMC;
     }
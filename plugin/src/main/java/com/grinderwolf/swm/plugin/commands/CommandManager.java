@@ -37,6 +37,8 @@ public class CommandManager implements TabExecutor {
         commands.put("reload", new ReloadConfigCmd());
         commands.put("create", new CreateWorldCmd());
         commands.put("debug", new DebugCmd());
+        commands.put("traindict", new TrainDictionaryCmd());
+        commands.put("status", new StatusCmd());
     }
 
     public static CommandManager getInstance() {
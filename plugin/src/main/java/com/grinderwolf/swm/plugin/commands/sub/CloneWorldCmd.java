@@ -28,9 +28,11 @@ import java.util.List;
 
 public class CloneWorldCmd implements Subcommand {
 
+    private static final String OVERLAY_FLAG = "--overlay";
+
     @Override
     public String getUsage() {
-        return "clone-world <template-world> <world-name> [new-data-source]";
+        return "clone-world <template-world> <world-name> [new-data-source] [--overlay]";
     }
 
     @Override
@@ -78,7 +80,9 @@ public class CloneWorldCmd implements Subcommand {
                 return true;
             }
 
-            String dataSource = args.length > 2 ? args[2] : worldData.getDataSource();
+            // Overlays only store the chunks that differ from the template
+            boolean overlay = args.length > 2 && args[args.length - 1].equalsIgnoreCase(OVERLAY_FLAG);
+            String dataSource = args.length > (overlay ? 3 : 2) ? args[2] : worldData.getDataSource();
             SlimeLoader initLoader = SWMPlugin.getInstance().getLoader(worldData.getDataSource());
             SlimeLoader loader = SWMPlugin.getInstance().getLoader(dataSource);
 
@@ -88,6 +92,12 @@ public class CloneWorldCmd implements Subcommand {
                 return true;
             }
 
+            if (overlay && !dataSource.equals(worldData.getDataSource())) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Overlay worlds have to be stored in the data source of their template!");
+
+                return true;
+            }
+
             CommandManager.getInstance().getWorldsInUse().add(worldName);
             sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Creating world " + ChatColor.YELLOW + worldName
                     + ChatColor.GRAY + " using " + ChatColor.YELLOW + templateWorldName + ChatColor.GRAY + " as a template...");
@@ -98,7 +108,9 @@ public class CloneWorldCmd implements Subcommand {
                 try {
                     long start = System.currentTimeMillis();
 
-                    SlimeWorld slimeWorld = SWMPlugin.getInstance().loadWorld(initLoader, templateWorldName, true, worldData.toPropertyMap()).clone(worldName, loader);
+                    SlimeWorld slimeWorld = overlay
+                            ? SWMPlugin.getInstance().createOverlayWorld(loader, templateWorldName, worldName, worldData.isReadOnly(), worldData.toPropertyMap())
+                            : SWMPlugin.getInstance().loadWorld(initLoader, templateWorldName, true, worldData.toPropertyMap()).clone(worldName, loader);
                     Bukkit.getScheduler().runTask(SWMPlugin.getInstance(), () -> {
                         try {
                             SWMPlugin.getInstance().loadWorld(slimeWorld);
@@ -156,7 +168,13 @@ public class CloneWorldCmd implements Subcommand {
     @Override
     public List<String> onTabComplete(CommandSender sender, String[] args) {
         if (args.length == 4) {
-            return new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+            List<String> toReturn = new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+            toReturn.add(OVERLAY_FLAG);
+            return toReturn;
+        }
+
+        if (args.length == 5) {
+            return List.of(OVERLAY_FLAG);
         }
 
         return Collections.emptyList();
@@ -11,6 +11,7 @@ import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.log.Logging;
 import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.serialization.slime.OverlayBase;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
@@ -81,6 +82,13 @@ public class DeleteWorldCmd implements Subcommand {
                 return true;
             }
 
+            if (OverlayBase.isReferenced(loader, worldName)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " is the template of overlay worlds loaded on this server! " +
+                        "Unload them before deleting it.");
+
+                return true;
+            }
+
             if (CommandManager.getInstance().getWorldsInUse().contains(worldName)) {
                 sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "World " + worldName + " is already being used on another command! Wait some time and try again.");
 
@@ -12,14 +12,12 @@ import com.infernalsuite.aswm.api.exceptions.NewerFormatException;
 import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
-import com.infernalsuite.aswm.api.world.SlimeWorld;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
 
-import java.io.IOException;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -71,62 +69,43 @@ public class LoadWorldCmd implements Subcommand {
             CommandManager.getInstance().getWorldsInUse().add(worldName);
             sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GRAY + "Loading world " + ChatColor.YELLOW + worldName + ChatColor.GRAY + "...");
 
-            // It's best to load the world async, and then just go back to the server thread and add it to the world list
-            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+            SlimeLoader loader = SWMPlugin.getInstance().getLoader(worldData.getDataSource());
 
-                try {
-                    // ATTEMPT TO LOAD WORLD
-                    long start = System.currentTimeMillis();
-                    SlimeLoader loader = SWMPlugin.getInstance().getLoader(worldData.getDataSource());
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                        ": invalid data source " + worldData.getDataSource());
+                CommandManager.getInstance().getWorldsInUse().remove(worldName);
 
-                    if (loader == null) {
-                        throw new IllegalArgumentException("invalid data source " + worldData.getDataSource());
-                    }
+                return true;
+            }
 
-                    SlimeWorld slimeWorld = SWMPlugin.getInstance().loadWorld(loader, worldName, worldData.isReadOnly(), worldData.toPropertyMap());
-                    Bukkit.getScheduler().runTask(SWMPlugin.getInstance(), () -> {
-                        try {
-                            SWMPlugin.getInstance().loadWorld(slimeWorld);
-                        } catch (IllegalArgumentException ex) {
-                            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to generate world " + worldName + ": " + ex.getMessage() + ".");
-
-                            return;
-                        }
-
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "World " + ChatColor.YELLOW + worldName
-                                + ChatColor.GREEN + " loaded and generated in " + (System.currentTimeMillis() - start) + "ms!");
-                    });
-                } catch (CorruptedWorldException ex) {
-                    if (!(sender instanceof ConsoleCommandSender)) {
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                                ": world seems to be corrupted.");
-                    }
+            // The world is loaded on an I/O thread, and then we just go back to the server thread and add it to the world list
+            long start = System.currentTimeMillis();
+            SWMPlugin.getInstance().asyncLoadWorld(loader, worldName, worldData.isReadOnly(), worldData.toPropertyMap()).whenComplete((slimeWorld, throwable) -> {
+                CommandManager.getInstance().getWorldsInUse().remove(worldName);
 
-                    Logging.error("Failed to load world " + worldName + ": world seems to be corrupted.");
-                    ex.printStackTrace();
-                } catch (NewerFormatException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName + ": this world" +
-                            " was serialized with a newer version of the Slime Format (" + ex.getMessage() + ") that SWM cannot understand.");
-                } catch (UnknownWorldException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                            ": world could not be found (using data source '" + worldData.getDataSource() + "').");
-                } catch (IllegalArgumentException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                            ": " + ex.getMessage());
-                } catch (IOException ex) {
-                    if (!(sender instanceof ConsoleCommandSender)) {
-                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName
-                                + ". Take a look at the server console for more information.");
-                    }
+                if (throwable != null) {
+                    handleError(sender, worldName, worldData, throwable);
+                    return;
+                }
 
-                    Logging.error("Failed to load world " + worldName + ":");
-                    ex.printStackTrace();
-                } catch (WorldLockedException ex) {
-                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
-                            ": world is already in use. If you think this is a mistake, please wait some time and try again.");
-                } finally {
-                    CommandManager.getInstance().getWorldsInUse().remove(worldName);
+                if (slimeWorld.isEmpty()) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Loading world " + worldName + " was cancelled.");
+                    return;
                 }
+
+                Bukkit.getScheduler().runTask(SWMPlugin.getInstance(), () -> {
+                    try {
+                        SWMPlugin.getInstance().loadWorld(slimeWorld.get());
+                    } catch (IllegalArgumentException ex) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to generate world " + worldName + ": " + ex.getMessage() + ".");
+
+                        return;
+                    }
+
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "World " + ChatColor.YELLOW + worldName
+                            + ChatColor.GREEN + " loaded and generated in " + (System.currentTimeMillis() - start) + "ms!");
+                });
             });
 
             return true;
@@ -135,6 +114,38 @@ public class LoadWorldCmd implements Subcommand {
         return false;
     }
 
+    private static void handleError(CommandSender sender, String worldName, WorldData worldData, Throwable ex) {
+        if (ex instanceof CorruptedWorldException) {
+            if (!(sender instanceof ConsoleCommandSender)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                        ": world seems to be corrupted.");
+            }
+
+            Logging.error("Failed to load world " + worldName + ": world seems to be corrupted.");
+            ex.printStackTrace();
+        } else if (ex instanceof NewerFormatException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName + ": this world" +
+                    " was serialized with a newer version of the Slime Format (" + ex.getMessage() + ") that SWM cannot understand.");
+        } else if (ex instanceof UnknownWorldException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                    ": world could not be found (using data source '" + worldData.getDataSource() + "').");
+        } else if (ex instanceof IllegalArgumentException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                    ": " + ex.getMessage());
+        } else if (ex instanceof WorldLockedException) {
+            sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName +
+                    ": world is already in use. If you think this is a mistake, please wait some time and try again.");
+        } else {
+            if (!(sender instanceof ConsoleCommandSender)) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to load world " + worldName
+                        + ". Take a look at the server console for more information.");
+            }
+
+            Logging.error("Failed to load world " + worldName + ":");
+            ex.printStackTrace();
+        }
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, String[] args) {
         List<String> toReturn = null;
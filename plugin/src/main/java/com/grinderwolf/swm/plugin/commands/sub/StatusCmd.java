@@ -0,0 +1,54 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.plugin.loaders.LeaseManager;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
+import com.grinderwolf.swm.plugin.log.Logging;
+import com.infernalsuite.aswm.serialization.slime.compression.BufferPool;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Collections;
+import java.util.List;
+
+public class StatusCmd implements Subcommand {
+
+    @Override
+    public String getUsage() {
+        return "status";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Shows how well the world locks of this server are kept alive, and how often scratch buffers are reused.";
+    }
+
+    @Override
+    public String getPermission() {
+        return "swm.status";
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        LeaseManager.Metrics leases = LoaderUtils.getLeaseManager().getMetrics();
+
+        sender.sendMessage(Logging.COMMAND_PREFIX + "World locks: " + (leases.isHealthy() ? ChatColor.GREEN + "healthy" : ChatColor.RED + "at risk"));
+        sender.sendMessage(ChatColor.GRAY + " - Held: " + ChatColor.YELLOW + leases.heldLeases()
+                + ChatColor.GRAY + ", oldest renewed " + ChatColor.YELLOW + leases.oldestLeaseAge() / 1000 + "s" + ChatColor.GRAY + " ago");
+        sender.sendMessage(ChatColor.GRAY + " - Renewals: " + ChatColor.YELLOW + leases.renewals()
+                + ChatColor.GRAY + ", failed: " + ChatColor.YELLOW + leases.failedRenewals()
+                + ChatColor.GRAY + ", lost locks: " + ChatColor.YELLOW + leases.lostLeases());
+
+        BufferPool.Metrics buffers = BufferPool.getMetrics();
+        sender.sendMessage(Logging.COMMAND_PREFIX + "Scratch buffers: " + ChatColor.YELLOW + Math.round(buffers.hitRate() * 100) + "%" + ChatColor.GRAY + " reused");
+        sender.sendMessage(ChatColor.GRAY + " - Reused: " + ChatColor.YELLOW + buffers.hits()
+                + ChatColor.GRAY + ", allocated: " + ChatColor.YELLOW + buffers.misses()
+                + ChatColor.GRAY + " (" + ChatColor.YELLOW + buffers.allocatedBytes() / (1024 * 1024) + " MB" + ChatColor.GRAY + ")");
+
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,113 @@
+package com.grinderwolf.swm.plugin.commands.sub;
+
+import com.grinderwolf.swm.plugin.SWMPlugin;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
+import com.grinderwolf.swm.plugin.log.Logging;
+import com.infernalsuite.aswm.api.exceptions.CorruptedWorldException;
+import com.infernalsuite.aswm.api.exceptions.NewerFormatException;
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.world.SlimeWorld;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.SlimeDictionary;
+import com.infernalsuite.aswm.serialization.slime.reader.SlimeWorldReaderRegistry;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+public class TrainDictionaryCmd implements Subcommand {
+
+    @Override
+    public String getUsage() {
+        return "traindict <data-source> [world...]";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Train a compression dictionary from the worlds inside a data source.";
+    }
+
+    @Override
+    public String getPermission() {
+        return "swm.traindict";
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, String[] args) {
+        if (args.length > 0) {
+            String source = args[0];
+            SlimeLoader loader = LoaderUtils.getLoader(source);
+
+            if (loader == null) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Unknown data source " + source + ".");
+
+                return true;
+            }
+
+            if (!loader.supportsDictionaries()) {
+                sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Data source " + source + " can't store dictionaries.");
+
+                return true;
+            }
+
+            Bukkit.getScheduler().runTaskAsynchronously(SWMPlugin.getInstance(), () -> {
+
+                try {
+                    long start = System.currentTimeMillis();
+                    List<String> worldNames = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : loader.listWorlds();
+                    SlimeDictionary.Trainer trainer = new SlimeDictionary.Trainer(SlimeDictionary.DEFAULT_SIZE);
+                    int sampledWorlds = 0;
+
+                    // Worlds are sampled one at a time, only their samples are kept in memory
+                    for (String worldName : worldNames) {
+                        SlimeWorld world = SlimeWorldReaderRegistry.readWorld(loader, worldName, loader.loadWorldBuffer(worldName), new SlimePropertyMap());
+                        sampledWorlds++;
+
+                        if (!trainer.addWorld(world)) {
+                            break;
+                        }
+                    }
+
+                    SlimeDictionary dictionary = trainer.train();
+                    loader.saveDictionary(dictionary.getId(), dictionary.getData());
+
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.GREEN + "Dictionary " + ChatColor.YELLOW + dictionary.getId() + ChatColor.GREEN
+                            + " trained from " + sampledWorlds + " worlds in " + (System.currentTimeMillis() - start) + "ms! Set it as the dictionary of a world to use it.");
+                } catch (IllegalArgumentException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to train dictionary: " + ex.getMessage() + ".");
+                } catch (UnknownWorldException ex) {
+                    sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + ex.getMessage() + " in data source " + source + ".");
+                } catch (IOException | CorruptedWorldException | NewerFormatException ex) {
+                    if (!(sender instanceof ConsoleCommandSender)) {
+                        sender.sendMessage(Logging.COMMAND_PREFIX + ChatColor.RED + "Failed to train dictionary (using data source " + source
+                                + "). Take a look at the server console for more information.");
+                    }
+
+                    Logging.error("Failed to train dictionary (using data source " + source + "):");
+                    ex.printStackTrace();
+                }
+
+            });
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, String[] args) {
+        if (args.length == 2) {
+            return new LinkedList<>(LoaderUtils.getAvailableLoadersNames());
+        }
+
+        return Collections.emptyList();
+    }
+}
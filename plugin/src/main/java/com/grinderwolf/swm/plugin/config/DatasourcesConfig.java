@@ -8,6 +8,8 @@ public class DatasourcesConfig {
 
     @Setting("file")
     private FileConfig fileConfig = new FileConfig();
+    @Setting("log")
+    private LogConfig logConfig = new LogConfig();
     @Setting("mysql")
     private MysqlConfig mysqlConfig = new MysqlConfig();
     @Setting("mongodb")
@@ -216,6 +218,36 @@ public class DatasourcesConfig {
         }
     }
 
+    @ConfigSerializable
+    public static class LogConfig {
+
+        @Setting("enabled")
+        private boolean enabled = false;
+        @Setting("path")
+        private String path = "slime_worlds_log";
+
+        @Setting("compactionRatio")
+        private double compactionRatio = 0.5;
+        @Setting("minCompactionSize")
+        private long minCompactionSize = 16 * 1024 * 1024;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public double getCompactionRatio() {
+            return compactionRatio;
+        }
+
+        public long getMinCompactionSize() {
+            return minCompactionSize;
+        }
+    }
+
     @ConfigSerializable
     public static class RedisConfig {
 
@@ -241,6 +273,14 @@ public class DatasourcesConfig {
         this.fileConfig = fileConfig;
     }
 
+    public LogConfig getLogConfig() {
+        return logConfig;
+    }
+
+    public void setLogConfig(LogConfig logConfig) {
+        this.logConfig = logConfig;
+    }
+
     public MysqlConfig getMysqlConfig() {
         return mysqlConfig;
     }
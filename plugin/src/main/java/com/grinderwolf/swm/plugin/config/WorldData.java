@@ -38,6 +38,17 @@ public class WorldData {
     @Setting("defaultBiome")
     private String defaultBiome = "minecraft:plains";
 
+    @Setting("compression")
+    private String compression = "zstd";
+    @Setting("compressionLevel")
+    private int compressionLevel = 0;
+    @Setting("dictionary")
+    private int dictionary = 0;
+    @Setting("deduplicateSections")
+    private boolean deduplicateSections = false;
+    @Setting("chunkRecovery")
+    private String chunkRecovery = "fail";
+
     @Setting("loadOnStartup")
     private boolean loadOnStartup = true;
     @Setting("readOnly")
@@ -94,6 +105,11 @@ public class WorldData {
         propertyMap.setValue(ENVIRONMENT, environment);
         propertyMap.setValue(WORLD_TYPE, worldType);
         propertyMap.setValue(DEFAULT_BIOME, defaultBiome);
+        propertyMap.setValue(COMPRESSION, compression);
+        propertyMap.setValue(COMPRESSION_LEVEL, compressionLevel);
+        propertyMap.setValue(DICTIONARY, dictionary);
+        propertyMap.setValue(DEDUPLICATE_SECTIONS, deduplicateSections);
+        propertyMap.setValue(CHUNK_RECOVERY, chunkRecovery);
 
         return propertyMap;
     }
@@ -187,6 +203,46 @@ public class WorldData {
         this.defaultBiome = defaultBiome;
     }
 
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getDictionary() {
+        return dictionary;
+    }
+
+    public void setDictionary(int dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public boolean isDeduplicateSections() {
+        return deduplicateSections;
+    }
+
+    public void setDeduplicateSections(boolean deduplicateSections) {
+        this.deduplicateSections = deduplicateSections;
+    }
+
+    public String getChunkRecovery() {
+        return chunkRecovery;
+    }
+
+    public void setChunkRecovery(String chunkRecovery) {
+        this.chunkRecovery = chunkRecovery;
+    }
+
     public void setLoadOnStartup(boolean loadOnStartup) {
         this.loadOnStartup = loadOnStartup;
     }
@@ -0,0 +1,278 @@
+package com.grinderwolf.swm.plugin.loaders;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.grinderwolf.swm.plugin.log.Logging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps the world locks held by this server alive. Instead of renewing every lock on its own, all locks held in a
+ * data source are renewed together, with a single batched statement per data source and interval.
+ */
+public final class LeaseManager {
+
+    private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("SWM Lease Renewal Thread").setDaemon(true).build());
+
+    // Each map is guarded by its own monitor, which is never held while talking to the data source
+    private final Map<LeaseStore, Map<String, Lease>> leases = new ConcurrentHashMap<>();
+
+    private final List<BiConsumer<LeaseStore, String>> lostLeaseListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder renewals = new LongAdder();
+    private final LongAdder failedRenewals = new LongAdder();
+    private final LongAdder lostLeases = new LongAdder();
+    private boolean healthy = true;
+
+    public LeaseManager(long renewInterval) {
+        service.scheduleWithFixedDelay(this::renewAll, renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts renewing the lock of a world, which has just been acquired.
+     *
+     * @param store     the data source holding the lock
+     * @param worldName the name of the world
+     * @param token     the fencing token the lock was acquired with
+     */
+    public void acquire(LeaseStore store, String worldName, long token) {
+        Map<String, Lease> worlds = leases.computeIfAbsent(store, key -> new HashMap<>());
+
+        synchronized (worlds) {
+            worlds.put(worldName, new Lease(token, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Stops renewing the lock of a world. Once this returns, the lock can be released. A renewal that was already in
+     * progress releases the lock again once it's done, in case it renewed it after it was released.
+     *
+     * @param store     the data source holding the lock
+     * @param worldName the name of the world
+     * @return the fencing token the lock was acquired with, or 0 if the lock isn't held by this server
+     */
+    public long release(LeaseStore store, String worldName) {
+        Map<String, Lease> worlds = leases.get(store);
+        if (worlds == null) {
+            return 0;
+        }
+
+        synchronized (worlds) {
+            Lease lease = worlds.remove(worldName);
+            return lease != null ? lease.token() : 0;
+        }
+    }
+
+    /**
+     * @param store     the data source holding the lock
+     * @param worldName the name of the world
+     * @return <code>true</code> if this server holds the lock of the world
+     */
+    public boolean isHeld(LeaseStore store, String worldName) {
+        Map<String, Lease> worlds = leases.get(store);
+        if (worlds == null) {
+            return false;
+        }
+
+        synchronized (worlds) {
+            return worlds.containsKey(worldName);
+        }
+    }
+
+    /**
+     * Registers a listener called when the lock of a world can't be kept anymore, either because another server has
+     * taken it over or because it expired while it couldn't be renewed. The lock isn't held by this server anymore once
+     * the listener is called, which happens on the renewal thread.
+     *
+     * @param listener the listener, receiving the data source and the name of the world
+     */
+    public void addLostLeaseListener(BiConsumer<LeaseStore, String> listener) {
+        lostLeaseListeners.add(listener);
+    }
+
+    private void renewAll() {
+        for (Map.Entry<LeaseStore, Map<String, Lease>> entry : leases.entrySet()) {
+            LeaseStore store = entry.getKey();
+            Map<String, Lease> worlds = entry.getValue();
+            Map<String, Long> tokens;
+
+            synchronized (worlds) {
+                tokens = getTokens(worlds);
+            }
+
+            if (tokens.isEmpty()) {
+                continue;
+            }
+
+            // The data source is only called outside the monitor, so acquiring and releasing locks never waits for it
+            long now = System.currentTimeMillis();
+            Set<String> renewed;
+
+            try {
+                renewed = store.renewLeases(tokens);
+                renewals.increment();
+            } catch (IOException | RuntimeException ex) {
+                failedRenewals.increment();
+                Logging.error("Failed to renew the locks of " + tokens.size() + " worlds:");
+                ex.printStackTrace();
+                renewed = null;
+            }
+
+            List<String> lost = new ArrayList<>();
+            Map<String, Long> released = new HashMap<>();
+
+            synchronized (worlds) {
+                for (Map.Entry<String, Long> token : tokens.entrySet()) {
+                    Lease lease = worlds.get(token.getKey());
+
+                    // Locks released while renewing may have been renewed after they were released, so they're released again
+                    if (lease == null || lease.token() != token.getValue()) {
+                        if (renewed != null && renewed.contains(token.getKey())) {
+                            released.put(token.getKey(), token.getValue());
+                        }
+
+                        continue;
+                    }
+
+                    if (renewed != null && renewed.contains(token.getKey())) {
+                        worlds.put(token.getKey(), new Lease(lease.token(), now));
+                    } else if (renewed != null || now - lease.renewedMillis() > LoaderUtils.MAX_LOCK_TIME) {
+                        // Either another server took the lock over, or it expired and any server may take it
+                        worlds.remove(token.getKey());
+                        lost.add(token.getKey());
+                    }
+                }
+            }
+
+            if (!released.isEmpty()) {
+                try {
+                    store.releaseLeases(released);
+                } catch (IOException | RuntimeException ex) {
+                    Logging.error("Failed to release the locks of " + released.size() + " worlds:");
+                    ex.printStackTrace();
+                }
+            }
+
+            if (!lost.isEmpty()) {
+                lostLeases.add(lost.size());
+                Logging.warning(lost.size() + " world locks have been lost: " + String.join(", ", lost));
+
+                for (String worldName : lost) {
+                    for (BiConsumer<LeaseStore, String> listener : lostLeaseListeners) {
+                        try {
+                            listener.accept(store, worldName);
+                        } catch (RuntimeException ex) {
+                            Logging.error("Failed to handle the lost lock of world " + worldName + ":");
+                            ex.printStackTrace();
+                        }
+                    }
+                }
+            }
+        }
+
+        // Only changes are reported, so failing renewals don't warn on every attempt
+        Metrics metrics = getMetrics();
+        if (metrics.isHealthy() != healthy) {
+            healthy = metrics.isHealthy();
+
+            if (healthy) {
+                Logging.info("World locks are being renewed again.");
+            } else {
+                Logging.warning("World locks haven't been renewed for " + metrics.oldestLeaseAge() / 1000 + " seconds, they'll be lost unless the next renewal succeeds. "
+                        + metrics.failedRenewals() + " renewals have failed so far.");
+            }
+        }
+    }
+
+    /**
+     * Stops renewing locks and releases every lock still held by this server, in one batch per data source.
+     */
+    public void releaseAll() {
+        service.shutdownNow();
+
+        for (Map.Entry<LeaseStore, Map<String, Lease>> entry : leases.entrySet()) {
+            Map<String, Lease> worlds = entry.getValue();
+            Map<String, Long> tokens;
+
+            synchronized (worlds) {
+                tokens = getTokens(worlds);
+                worlds.clear();
+            }
+
+            if (tokens.isEmpty()) {
+                continue;
+            }
+
+            try {
+                entry.getKey().releaseLeases(tokens);
+            } catch (IOException | RuntimeException ex) {
+                Logging.error("Failed to release the locks of " + tokens.size() + " worlds:");
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private static Map<String, Long> getTokens(Map<String, Lease> worlds) {
+        Map<String, Long> tokens = new HashMap<>(worlds.size());
+        worlds.forEach((worldName, lease) -> tokens.put(worldName, lease.token()));
+        return tokens;
+    }
+
+    /**
+     * Returns how well the locks held by this server are being kept alive.
+     *
+     * @return the lease metrics
+     */
+    public Metrics getMetrics() {
+        long now = System.currentTimeMillis();
+        int heldLeases = 0;
+        long oldestLeaseAge = 0;
+
+        for (Map<String, Lease> worlds : leases.values()) {
+            synchronized (worlds) {
+                heldLeases += worlds.size();
+
+                for (Lease lease : worlds.values()) {
+                    oldestLeaseAge = Math.max(oldestLeaseAge, now - lease.renewedMillis());
+                }
+            }
+        }
+
+        return new Metrics(heldLeases, renewals.sum(), failedRenewals.sum(), lostLeases.sum(), oldestLeaseAge);
+    }
+
+    /**
+     * @param heldLeases     the amount of world locks held by this server
+     * @param renewals       the amount of batches that renewed locks
+     * @param failedRenewals the amount of batches that failed to renew locks
+     * @param lostLeases     the amount of locks that were taken over by another server or expired before they could be renewed
+     * @param oldestLeaseAge the time since the least recently renewed lock was renewed, in milliseconds
+     */
+    public record Metrics(int heldLeases, long renewals, long failedRenewals, long lostLeases, long oldestLeaseAge) {
+
+        /**
+         * @return <code>true</code> if every lock held by this server would still be held if the next renewal failed
+         */
+        public boolean isHealthy() {
+            return this.oldestLeaseAge <= LoaderUtils.MAX_LOCK_TIME - LoaderUtils.LOCK_INTERVAL;
+        }
+
+    }
+
+    private record Lease(long token, long renewedMillis) {
+
+    }
+
+}
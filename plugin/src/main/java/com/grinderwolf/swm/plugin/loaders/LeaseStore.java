@@ -0,0 +1,31 @@
+package com.grinderwolf.swm.plugin.loaders;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A data source whose world locks expire unless the server holding them keeps renewing them. Locks are renewed and
+ * released in batches by the {@link LeaseManager}, and only as long as they're still held with the fencing token they
+ * were acquired with.
+ */
+public interface LeaseStore {
+
+    /**
+     * Renews the locks of the given worlds, unless another server has taken them over in the meantime.
+     *
+     * @param leases the names of the worlds mapped to the fencing tokens of their locks
+     * @return the names of the worlds whose locks were renewed
+     * @throws IOException if the locks couldn't be renewed
+     */
+    Set<String> renewLeases(Map<String, Long> leases) throws IOException;
+
+    /**
+     * Releases the locks of the given worlds, unless another server has taken them over in the meantime.
+     *
+     * @param leases the names of the worlds mapped to the fencing tokens of their locks
+     * @throws IOException if the locks couldn't be released
+     */
+    void releaseLeases(Map<String, Long> leases) throws IOException;
+
+}
@@ -1,9 +1,13 @@
 package com.grinderwolf.swm.plugin.loaders;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.api.utils.SlimeFormat;
 import com.grinderwolf.swm.plugin.config.ConfigManager;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
 import com.grinderwolf.swm.plugin.loaders.file.FileLoader;
+import com.grinderwolf.swm.plugin.loaders.file.LogFileLoader;
 import com.grinderwolf.swm.plugin.loaders.mongo.MongoLoader;
 import com.grinderwolf.swm.plugin.loaders.mysql.MysqlLoader;
 import com.grinderwolf.swm.plugin.loaders.redis.RedisLoader;
@@ -11,20 +15,31 @@ import com.grinderwolf.swm.plugin.log.Logging;
 import com.mongodb.MongoException;
 import io.lettuce.core.RedisException;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class LoaderUtils {
 
     public static final long MAX_LOCK_TIME = 300000L; // Max time difference between current time millis and world lock
     public static final long LOCK_INTERVAL = 60000L;
+    public static final long METADATA_CACHE_TIME = 2000L; // Max time world metadata is cached by data sources
+    public static final int WORLD_PREFIX_LENGTH = SlimeFormat.SLIME_HEADER.length + 1 + 4; // Header, format version and data version
+
+    private static final int METADATA_CACHE_SIZE = 1024;
 
     private static final Map<String, SlimeLoader> loaderMap = new HashMap<>();
+    private static final LeaseManager leaseManager = new LeaseManager(LOCK_INTERVAL);
 
     public static void registerLoaders() {
         DatasourcesConfig config = ConfigManager.getDatasourcesConfig();
@@ -33,6 +48,12 @@ public class LoaderUtils {
         DatasourcesConfig.FileConfig fileConfig = config.getFileConfig();
         registerLoader("file", new FileLoader(new File(fileConfig.getPath())));
 
+        // Log-structured file loader
+        DatasourcesConfig.LogConfig logConfig = config.getLogConfig();
+        if (logConfig.isEnabled()) {
+            registerLoader("log", new LogFileLoader(new File(logConfig.getPath()), logConfig.getCompactionRatio(), logConfig.getMinCompactionSize()));
+        }
+
         // Mysql loader
         DatasourcesConfig.MysqlConfig mysqlConfig = config.getMysqlConfig();
         if (mysqlConfig.isEnabled()) {
@@ -98,4 +119,68 @@ public class LoaderUtils {
         loaderMap.put(dataSource, loader);
     }
 
+    /**
+     * Returns the lease manager renewing the world locks held by this server.
+     *
+     * @return the lease manager
+     */
+    public static LeaseManager getLeaseManager() {
+        return leaseManager;
+    }
+
+    /**
+     * Reads a world of known size from a stream into a direct buffer, so it's never held on the heap as a whole.
+     *
+     * @param stream the stream of the world's data file
+     * @param length the size of the world's data file
+     * @return the buffer holding the world
+     * @throws IOException if the stream ends before the world has been read
+     */
+    public static ByteBuffer readDirect(InputStream stream, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("World is too big!");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+        ReadableByteChannel channel = Channels.newChannel(stream);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("World ended after " + buffer.position() + " of " + length + " bytes");
+            }
+        }
+
+        return buffer.flip();
+    }
+
+    /**
+     * Creates a cache for the metadata of stored worlds. Entries expire after {@link #METADATA_CACHE_TIME}, so changes
+     * made by other servers are picked up soon enough.
+     *
+     * @return the cache, keyed by world name
+     */
+    public static Cache<String, WorldMetadata> newMetadataCache() {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(METADATA_CACHE_TIME, TimeUnit.MILLISECONDS)
+                .maximumSize(METADATA_CACHE_SIZE)
+                .build();
+    }
+
+    /**
+     * Reads the Minecraft data version from the start of a serialized world.
+     *
+     * @param serializedWorld the serialized world, or at least its first bytes
+     * @return the data version, or 0 if the world is in a format that doesn't store it up front
+     */
+    public static int readDataVersion(byte[] serializedWorld) {
+        // Since v10 the data version directly follows the header and the format version
+        int offset = SlimeFormat.SLIME_HEADER.length + 1;
+        if (serializedWorld.length < WORLD_PREFIX_LENGTH || serializedWorld[0] != SlimeFormat.SLIME_HEADER[0]
+                || serializedWorld[1] != SlimeFormat.SLIME_HEADER[1] || serializedWorld[2] < 10) {
+            return 0;
+        }
+
+        return (serializedWorld[offset] & 0xFF) << 24 | (serializedWorld[offset + 1] & 0xFF) << 16
+                | (serializedWorld[offset + 2] & 0xFF) << 8 | serializedWorld[offset + 3] & 0xFF;
+    }
+
 }
@@ -0,0 +1,21 @@
+package com.grinderwolf.swm.plugin.loaders;
+
+/**
+ * What a data source knows about a stored world, without having to read the world itself.
+ *
+ * @param name         the name of the world
+ * @param size         the size of the serialized world, in bytes, or 0 if unknown
+ * @param lockedMillis the last time the lock of the world was renewed, or 0 if it isn't locked
+ * @param dataVersion  the Minecraft data version of the world, or 0 if unknown
+ * @param lastModified the last time the world was saved, or 0 if unknown
+ */
+public record WorldMetadata(String name, long size, long lockedMillis, int dataVersion, long lastModified) {
+
+    /**
+     * @return <code>true</code> if the lock of the world was renewed recently enough to still be held
+     */
+    public boolean isLocked() {
+        return System.currentTimeMillis() - this.lockedMillis <= LoaderUtils.MAX_LOCK_TIME;
+    }
+
+}
@@ -4,27 +4,38 @@ import com.grinderwolf.swm.plugin.log.Logging;
 import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class FileLoader implements SlimeLoader {
 
     private static final FilenameFilter WORLD_FILE_FILTER = (dir, name) -> name.endsWith(".slime");
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).startsWith("windows");
+    private static final long STREAM_TRANSFER_SIZE = 1024 * 1024;
 
-    private final Map<String, RandomAccessFile> worldFiles = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, FileLock> worldLocks = new ConcurrentHashMap<>();
     private final File worldDir;
 
     public FileLoader(File worldDir) {
@@ -71,6 +82,37 @@ public class FileLoader implements SlimeLoader {
         return serializedWorld;
     }
 
+    @Override
+    public ByteBuffer loadWorldBuffer(String worldName) throws UnknownWorldException, IOException {
+        // Windows doesn't allow replacing a file while it's mapped
+        if (WINDOWS) {
+            return SlimeLoader.super.loadWorldBuffer(worldName);
+        }
+
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        // The mapping stays valid after the channel is closed, and as saves replace
+        // the file instead of writing over it, the mapped data never changes
+        try (FileChannel channel = FileChannel.open(new File(worldDir, worldName + ".slime").toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IndexOutOfBoundsException("World is too big!");
+            }
+
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public InputStream loadWorldStream(String worldName) throws UnknownWorldException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        return Channels.newInputStream(FileChannel.open(new File(worldDir, worldName + ".slime").toPath(), StandardOpenOption.READ));
+    }
+
     @Override
     public boolean worldExists(String worldName) {
         return new File(worldDir, worldName + ".slime").exists();
@@ -89,13 +131,16 @@ public class FileLoader implements SlimeLoader {
 
     @Override
     public void saveWorld(String worldName, byte[] serializedWorld) throws IOException {
-        RandomAccessFile worldFile = worldFiles.get(worldName);
-        boolean tempFile = worldFile == null;
+        if (!WINDOWS) {
+            Path tempFile = new File(worldDir, worldName + ".slime.tmp").toPath();
+            Files.write(tempFile, serializedWorld);
+            replaceWorldFile(worldName, tempFile);
 
-        if (tempFile) {
-            worldFile = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
+            return;
         }
 
+        RandomAccessFile worldFile = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
+
         worldFile.seek(0); // Make sure we're at the start of the file
         worldFile.setLength(0); // Delete old data
         worldFile.write(serializedWorld);
@@ -104,79 +149,146 @@ public class FileLoader implements SlimeLoader {
         worldFile.close();
     }
 
+    @Override
+    public void saveWorldStream(String worldName, InputStream serializedWorld) throws IOException {
+        // Windows keeps the world file open, so it's written over like saveWorld does
+        if (WINDOWS) {
+            SlimeLoader.super.saveWorldStream(worldName, serializedWorld);
+            return;
+        }
+
+        Path tempFile = new File(worldDir, worldName + ".slime.tmp").toPath();
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ReadableByteChannel source = Channels.newChannel(serializedWorld);
+            long position = 0;
+            long transferred;
+            while ((transferred = channel.transferFrom(source, position, STREAM_TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+        }
+
+        replaceWorldFile(worldName, tempFile);
+    }
+
+    private void replaceWorldFile(String worldName, Path tempFile) throws IOException {
+        Path worldFile = new File(worldDir, worldName + ".slime").toPath();
+
+        try {
+            Files.move(tempFile, worldFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tempFile, worldFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public boolean supportsDictionaries() {
+        return true;
+    }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        File file = new File(worldDir, dictionaryId + ".zdict");
+        if (!file.exists()) {
+            return null;
+        }
+
+        return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        Files.write(new File(worldDir, dictionaryId + ".zdict").toPath(), dictionary);
+    }
+
     @Override
     public void unlockWorld(String worldName) throws UnknownWorldException, IOException {
         if (!worldExists(worldName)) {
             throw new UnknownWorldException(worldName);
         }
 
-        RandomAccessFile file = worldFiles.remove(worldName);
+        FileLock lock = worldLocks.remove(worldName);
 
-        if (file != null) {
-            FileChannel channel = file.getChannel();
-            if (channel.isOpen()) {
-                file.close();
-            }
+        if (lock != null) {
+            lock.channel().close(); // Closing the channel releases the lock
         }
     }
 
     @Override
     public boolean isWorldLocked(String worldName) throws IOException {
-        RandomAccessFile file = worldFiles.get(worldName);
+        if (worldLocks.containsKey(worldName)) {
+            return true;
+        }
 
-        if (file == null) {
-            file = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
+        Path lockFile = getLockFile(worldName);
+        if (!Files.exists(lockFile)) {
+            return false;
         }
 
-        if (file.getChannel().isOpen()) {
-            file.close();
-        } else {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException ex) {
             return true;
         }
-        return false;
     }
 
     @Override
-    public void deleteWorld(String worldName) throws UnknownWorldException {
+    public void deleteWorld(String worldName) throws UnknownWorldException, IOException {
         if (!worldExists(worldName)) {
             throw new UnknownWorldException(worldName);
-        } else {
-            try (RandomAccessFile randomAccessFile = worldFiles.get(worldName)) {
-                System.out.println("Deleting world.. " + worldName + ".");
-                unlockWorld(worldName);
-                FileUtils.forceDelete(new File(worldDir, worldName + ".slime"));
-                if (randomAccessFile != null) {
-                    System.out.print("Attempting to delete worldData " + worldName + ".");
-
-                    randomAccessFile.seek(0); // Make sure we're at the start of the file
-                    randomAccessFile.setLength(0); // Delete old data
-                    randomAccessFile.write(null);
-                    randomAccessFile.close();
-
-                    worldFiles.remove(worldName);
-                }
-                System.out.println("World.. " + worldName + " deleted.");
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
         }
+
+        unlockWorld(worldName);
+        Files.delete(new File(worldDir, worldName + ".slime").toPath());
+        Files.deleteIfExists(getLockFile(worldName));
     }
 
     @Override
     public void acquireLock(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
-        RandomAccessFile worldFile = worldFiles.get(worldName);
-        boolean tempFile = worldFile == null;
+        acquireLockToken(worldName);
+    }
 
-        if (tempFile) {
-            worldFile = new RandomAccessFile(new File(worldDir, worldName + ".slime"), "rw");
+    @Override
+    public long acquireLockToken(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
         }
 
-        FileChannel channel = worldFile.getChannel();
+        // Saves replace the world file, so the lock is held on a file next to it for as long as the world is locked
+        FileChannel channel = FileChannel.open(getLockFile(worldName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
 
         try {
-            channel.tryLock();
-        } catch (OverlappingFileLockException ignored) {
-            throw new WorldLockedException(worldName);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null;
+            }
+
+            if (lock == null) {
+                throw new WorldLockedException(worldName);
+            }
+
+            // The lock file holds the last fencing token handed out, only the holder of the lock can change it
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            long token = channel.read(buffer, 0) == Long.BYTES ? buffer.flip().getLong() + 1 : 1;
+            channel.write(buffer.clear().putLong(token).flip(), 0);
+
+            worldLocks.put(worldName, lock);
+            return token;
+        } catch (IOException | WorldLockedException | RuntimeException ex) {
+            channel.close();
+            throw ex;
         }
     }
+
+    private Path getLockFile(String worldName) {
+        return new File(worldDir, worldName + ".slime.lock").toPath();
+    }
+
 }
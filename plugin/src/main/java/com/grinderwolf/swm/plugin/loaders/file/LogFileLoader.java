@@ -0,0 +1,616 @@
+package com.grinderwolf.swm.plugin.loaders.file;
+
+import com.grinderwolf.swm.plugin.log.Logging;
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
+import com.infernalsuite.aswm.api.loaders.SlimeLoader;
+import com.infernalsuite.aswm.serialization.slime.ChunkFrame;
+import com.infernalsuite.aswm.serialization.slime.SlimeWorldFrames;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Data source storing every world in an append-only log. Saves only append the chunk frames that changed since
+ * the previous save, followed by a manifest listing every frame of the world. The manifest of the last complete
+ * save is always left untouched, so a crash while saving never damages the world as it was saved before.
+ * <p>
+ * Logs mostly made of outdated frames are compacted in the background. Worlds that aren't in the latest format
+ * are stored as a whole inside their manifest.
+ * <p>
+ * Several servers may share the directory of the logs. Only the server holding the lock of a world repairs or
+ * compacts its log, every other server only reads it and skips whatever a save in progress appended so far.
+ */
+public class LogFileLoader implements SlimeLoader {
+
+    private static final String LOG_EXTENSION = ".slimelog";
+    private static final FilenameFilter WORLD_FILE_FILTER = (dir, name) -> name.endsWith(LOG_EXTENSION);
+
+    private static final int LOG_MAGIC = 0x534C4F47;
+    private static final byte LOG_VERSION = 1;
+    private static final int LOG_HEADER_LENGTH = 4 + 1;
+
+    private static final byte FRAME_RECORD = 1;
+    private static final byte MANIFEST_RECORD = 2;
+    private static final int RECORD_HEADER_LENGTH = 1 + 4;
+
+    // Every manifest ends with its checksum and a trailer pointing back to it, so the last one is found from the end of the log
+    private static final int TRAILER_MAGIC = 0x534C4D46;
+    private static final int TRAILER_LENGTH = 8 + 4;
+    private static final int MANIFEST_FOOTER_LENGTH = 4 + TRAILER_LENGTH;
+    private static final int FRAME_REF_LENGTH = 8 + 4 + 8 + 4 + 8;
+
+    private static final byte MANIFEST_FRAMES = 0;
+    private static final byte MANIFEST_RAW = 1;
+
+    private static final ExecutorService COMPACTION_SERVICE = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SWM Log Compaction Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, WorldLog> logs = new ConcurrentHashMap<>();
+    private final Map<String, FileLock> worldLocks = new ConcurrentHashMap<>();
+    private final File worldDir;
+    private final double compactionRatio;
+    private final long minCompactionSize;
+
+    /**
+     * @param worldDir          directory the world logs are stored in
+     * @param compactionRatio   logs are compacted once the frames of their last save take up less than this fraction of them
+     * @param minCompactionSize logs smaller than this amount of bytes are never compacted
+     */
+    public LogFileLoader(File worldDir, double compactionRatio, long minCompactionSize) {
+        this.worldDir = worldDir;
+        this.compactionRatio = compactionRatio;
+        this.minCompactionSize = minCompactionSize;
+
+        if (worldDir.exists() && !worldDir.isDirectory()) {
+            Logging.warning("A file named '" + worldDir.getName() + "' has been deleted, as this is the name used for the worlds directory.");
+            worldDir.delete();
+        }
+
+        worldDir.mkdirs();
+    }
+
+    @Override
+    public byte[] loadWorld(String worldName) throws UnknownWorldException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        WorldLog log = getLog(worldName);
+        synchronized (log) {
+            try (FileChannel channel = FileChannel.open(getLogFile(worldName), StandardOpenOption.READ)) {
+                Manifest manifest = log.open(channel, false);
+                if (manifest.type() == MANIFEST_RAW) {
+                    return manifest.metadata().clone();
+                }
+
+                List<ChunkFrame> frames = new ArrayList<>(manifest.frames().size());
+                for (FrameRef ref : manifest.frames()) {
+                    ChunkFrame frame = new ChunkFrame(ref.key(), ref.length(), readFully(channel, ref.offset(), ref.compressedLength()));
+                    if (frame.hash() != ref.hash()) {
+                        throw new IOException("Chunk frame at " + ref.offset() + " of world " + worldName + " is corrupted");
+                    }
+
+                    frames.add(frame);
+                }
+
+                return SlimeWorldFrames.join(manifest.metadata(), frames);
+            }
+        }
+    }
+
+    @Override
+    public boolean worldExists(String worldName) {
+        return Files.exists(getLogFile(worldName));
+    }
+
+    @Override
+    public List<String> listWorlds() throws NotDirectoryException {
+        String[] worlds = worldDir.list(WORLD_FILE_FILTER);
+
+        if (worlds == null) {
+            throw new NotDirectoryException(worldDir.getPath());
+        }
+
+        return Arrays.stream(worlds).map((c) -> c.substring(0, c.length() - LOG_EXTENSION.length())).collect(Collectors.toList());
+    }
+
+    @Override
+    public void saveWorld(String worldName, byte[] serializedWorld) throws IOException {
+        WorldLog log = getLog(worldName);
+        synchronized (log) {
+            try (FileChannel channel = FileChannel.open(getLogFile(worldName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Manifest previous = channel.size() == 0 ? null : log.open(channel, worldLocks.containsKey(worldName));
+                long size = channel.size();
+
+                // Frames that didn't change since the last save are referenced again instead of being appended
+                ByteArrayOutputStream appendedBytes = new ByteArrayOutputStream();
+                DataOutputStream appended = new DataOutputStream(appendedBytes);
+                if (size == 0) {
+                    appended.writeInt(LOG_MAGIC);
+                    appended.writeByte(LOG_VERSION);
+                }
+
+                Manifest manifest;
+                if (SlimeWorldFrames.canSplit(serializedWorld)) {
+                    Map<Long, FrameRef> previousFrames = new HashMap<>();
+                    if (previous != null) {
+                        for (FrameRef ref : previous.frames()) {
+                            previousFrames.put(ref.key(), ref);
+                        }
+                    }
+
+                    SlimeWorldFrames worldFrames = SlimeWorldFrames.split(serializedWorld);
+                    List<FrameRef> frames = new ArrayList<>(worldFrames.getFrames().size());
+                    for (ChunkFrame frame : worldFrames.getFrames()) {
+                        long hash = frame.hash();
+                        FrameRef ref = previousFrames.get(frame.key());
+                        if (ref == null || ref.hash() != hash || ref.length() != frame.length() || ref.compressedLength() != frame.compressed().length) {
+                            appended.writeByte(FRAME_RECORD);
+                            appended.writeInt(frame.compressed().length);
+                            ref = new FrameRef(frame.key(), frame.length(), size + appended.size(), frame.compressed().length, hash);
+                            appended.write(frame.compressed());
+                        }
+
+                        frames.add(ref);
+                    }
+
+                    manifest = new Manifest(MANIFEST_FRAMES, worldFrames.getMetadata(), frames);
+                } else {
+                    manifest = new Manifest(MANIFEST_RAW, serializedWorld, List.of());
+                }
+
+                // Frames have to be on disk before the manifest referencing them
+                try {
+                    writeFully(channel, size, appendedBytes.toByteArray());
+                    channel.force(false);
+
+                    byte[] manifestRecord = writeManifest(manifest, size + appended.size());
+                    writeFully(channel, size + appended.size(), manifestRecord);
+                    channel.force(false);
+
+                    log.update(manifest, size + appended.size() + manifestRecord.length);
+                } catch (IOException ex) {
+                    // The log is read again on the next access, which drops whatever was appended
+                    log.reset();
+                    throw ex;
+                }
+            }
+
+            // Compaction replaces the log file, which would lose saves appended by the server holding the lock
+            if (worldLocks.containsKey(worldName) && log.shouldCompact()) {
+                log.compacting = true;
+                COMPACTION_SERVICE.execute(() -> compact(worldName, log));
+            }
+        }
+    }
+
+    /**
+     * Rewrites a log so it only holds the frames of its last save. Frames are copied without holding the lock of
+     * the log, the compacted log only replaces it if the world wasn't saved again in the meantime.
+     */
+    private void compact(String worldName, WorldLog log) {
+        Path logFile = getLogFile(worldName);
+        Path tempFile = new File(worldDir, worldName + LOG_EXTENSION + ".tmp").toPath();
+
+        try {
+            Manifest manifest;
+            long size;
+            synchronized (log) {
+                manifest = log.manifest;
+                size = log.size;
+            }
+
+            if (manifest == null) {
+                return;
+            }
+
+            Manifest compacted;
+            long compactedSize;
+            try (FileChannel source = FileChannel.open(logFile, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteArrayOutputStream header = new ByteArrayOutputStream(LOG_HEADER_LENGTH);
+                DataOutputStream headerStream = new DataOutputStream(header);
+                headerStream.writeInt(LOG_MAGIC);
+                headerStream.writeByte(LOG_VERSION);
+                writeFully(target, 0, header.toByteArray());
+
+                long position = LOG_HEADER_LENGTH;
+                List<FrameRef> frames = new ArrayList<>(manifest.frames().size());
+                for (FrameRef ref : manifest.frames()) {
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + ref.compressedLength());
+                    record.put(FRAME_RECORD);
+                    record.putInt(ref.compressedLength());
+                    record.put(readFully(source, ref.offset(), ref.compressedLength()));
+                    writeFully(target, position, record.array());
+
+                    frames.add(new FrameRef(ref.key(), ref.length(), position + RECORD_HEADER_LENGTH, ref.compressedLength(), ref.hash()));
+                    position += record.capacity();
+                }
+
+                compacted = new Manifest(manifest.type(), manifest.metadata(), frames);
+                byte[] manifestRecord = writeManifest(compacted, position);
+                writeFully(target, position, manifestRecord);
+                target.force(true);
+                compactedSize = position + manifestRecord.length;
+            }
+
+            synchronized (log) {
+                if (log.manifest != manifest || log.size != size || !Files.exists(logFile)) {
+                    Files.deleteIfExists(tempFile);
+                    return;
+                }
+
+                try {
+                    Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tempFile, logFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                log.update(compacted, compactedSize);
+            }
+
+            Logging.info("Compacted world " + worldName + " from " + size + " to " + compactedSize + " bytes.");
+        } catch (IOException ex) {
+            Logging.error("Failed to compact world " + worldName + ":");
+            ex.printStackTrace();
+        } finally {
+            synchronized (log) {
+                log.compacting = false;
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsDictionaries() {
+        return true;
+    }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        File file = new File(worldDir, dictionaryId + ".zdict");
+        if (!file.exists()) {
+            return null;
+        }
+
+        return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        Files.write(new File(worldDir, dictionaryId + ".zdict").toPath(), dictionary);
+    }
+
+    @Override
+    public void deleteWorld(String worldName) throws UnknownWorldException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        unlockWorld(worldName);
+
+        WorldLog log = getLog(worldName);
+        synchronized (log) {
+            Files.deleteIfExists(getLogFile(worldName));
+            log.reset();
+        }
+
+        Files.deleteIfExists(getLockFile(worldName));
+    }
+
+    @Override
+    public void acquireLock(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        acquireLockToken(worldName);
+    }
+
+    @Override
+    public long acquireLockToken(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        // Compaction replaces the log, so the lock is held on a file next to it for as long as the world is locked
+        FileChannel channel = FileChannel.open(getLockFile(worldName), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                lock = null;
+            }
+
+            if (lock == null) {
+                throw new WorldLockedException(worldName);
+            }
+
+            // The lock file holds the last fencing token handed out, only the holder of the lock can change it
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            long token = channel.read(buffer, 0) == Long.BYTES ? buffer.flip().getLong() + 1 : 1;
+            channel.write(buffer.clear().putLong(token).flip(), 0);
+
+            worldLocks.put(worldName, lock);
+            return token;
+        } catch (IOException | WorldLockedException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean isWorldLocked(String worldName) throws IOException {
+        if (worldLocks.containsKey(worldName)) {
+            return true;
+        }
+
+        Path lockFile = getLockFile(worldName);
+        if (!Files.exists(lockFile)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+
+            lock.release();
+            return false;
+        } catch (OverlappingFileLockException ex) {
+            return true;
+        }
+    }
+
+    @Override
+    public void unlockWorld(String worldName) throws UnknownWorldException, IOException {
+        if (!worldExists(worldName)) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        FileLock lock = worldLocks.remove(worldName);
+
+        if (lock != null) {
+            lock.channel().close(); // Closing the channel releases the lock
+        }
+    }
+
+    private WorldLog getLog(String worldName) {
+        return this.logs.computeIfAbsent(worldName, name -> new WorldLog(name));
+    }
+
+    private Path getLogFile(String worldName) {
+        return new File(worldDir, worldName + LOG_EXTENSION).toPath();
+    }
+
+    private Path getLockFile(String worldName) {
+        return new File(worldDir, worldName + LOG_EXTENSION + ".lock").toPath();
+    }
+
+    private static byte[] writeManifest(Manifest manifest, long recordOffset) throws IOException {
+        ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+        DataOutputStream manifestStream = new DataOutputStream(manifestBytes);
+        manifestStream.writeByte(manifest.type());
+        manifestStream.writeInt(manifest.metadata().length);
+        manifestStream.write(manifest.metadata());
+        manifestStream.writeInt(manifest.frames().size());
+        for (FrameRef ref : manifest.frames()) {
+            manifestStream.writeLong(ref.key());
+            manifestStream.writeInt(ref.length());
+            manifestStream.writeLong(ref.offset());
+            manifestStream.writeInt(ref.compressedLength());
+            manifestStream.writeLong(ref.hash());
+        }
+
+        byte[] content = manifestBytes.toByteArray();
+        CRC32C checksum = new CRC32C();
+        checksum.update(content);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + content.length + MANIFEST_FOOTER_LENGTH);
+        record.put(MANIFEST_RECORD);
+        record.putInt(content.length);
+        record.put(content);
+        record.putInt((int) checksum.getValue());
+        record.putLong(recordOffset);
+        record.putInt(TRAILER_MAGIC);
+        return record.array();
+    }
+
+    /**
+     * Reads the manifest record at the given offset of a log.
+     *
+     * @return the manifest, or <code>null</code> if the record is incomplete or corrupted
+     */
+    private static Manifest readManifest(FileChannel channel, long recordOffset, long size) throws IOException {
+        if (recordOffset < LOG_HEADER_LENGTH || recordOffset + RECORD_HEADER_LENGTH > size) {
+            return null;
+        }
+
+        ByteBuffer recordHeader = ByteBuffer.wrap(readFully(channel, recordOffset, RECORD_HEADER_LENGTH));
+        int length = recordHeader.getInt(1);
+        if (recordHeader.get(0) != MANIFEST_RECORD || length < 0 || recordOffset + RECORD_HEADER_LENGTH + length + MANIFEST_FOOTER_LENGTH > size) {
+            return null;
+        }
+
+        byte[] content = readFully(channel, recordOffset + RECORD_HEADER_LENGTH, length);
+        ByteBuffer footer = ByteBuffer.wrap(readFully(channel, recordOffset + RECORD_HEADER_LENGTH + length, MANIFEST_FOOTER_LENGTH));
+        CRC32C checksum = new CRC32C();
+        checksum.update(content);
+        if (footer.getInt() != (int) checksum.getValue() || footer.getLong() != recordOffset || footer.getInt() != TRAILER_MAGIC) {
+            return null;
+        }
+
+        DataInputStream manifestStream = new DataInputStream(new ByteArrayInputStream(content));
+        byte type = manifestStream.readByte();
+        byte[] metadata = new byte[manifestStream.readInt()];
+        manifestStream.readFully(metadata);
+
+        int frameCount = manifestStream.readInt();
+        List<FrameRef> frames = new ArrayList<>(frameCount);
+        for (int i = 0; i < frameCount; i++) {
+            frames.add(new FrameRef(manifestStream.readLong(), manifestStream.readInt(), manifestStream.readLong(),
+                    manifestStream.readInt(), manifestStream.readLong()));
+        }
+
+        return new Manifest(type, metadata, frames);
+    }
+
+    private static byte[] readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static void writeFully(FileChannel channel, long position, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * The last save of a world log. Every access to the log file of a world happens while holding the lock of its log.
+     * Another server may have saved or compacted the log since it was last read, so its manifest is always read again.
+     */
+    private final class WorldLog {
+
+        private final String worldName;
+        private Manifest manifest;
+        private long size;
+        private boolean compacting;
+
+        private WorldLog(String worldName) {
+            this.worldName = worldName;
+        }
+
+        /**
+         * Reads the last complete save of the log. Whatever was appended after it by a save that didn't complete
+         * is only dropped when recovering, as it may belong to a save of another server that's still in progress.
+         *
+         * @param recover whether the world's lock is held, so the log can be truncated
+         */
+        private Manifest open(FileChannel channel, boolean recover) throws IOException {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.wrap(readFully(channel, 0, LOG_HEADER_LENGTH));
+            if (header.getInt() != LOG_MAGIC || header.get() != LOG_VERSION) {
+                throw new IOException("World " + this.worldName + " isn't a world log");
+            }
+
+            Manifest manifest = null;
+            if (size >= LOG_HEADER_LENGTH + TRAILER_LENGTH) {
+                ByteBuffer trailer = ByteBuffer.wrap(readFully(channel, size - TRAILER_LENGTH, TRAILER_LENGTH));
+                long recordOffset = trailer.getLong();
+                if (trailer.getInt() == TRAILER_MAGIC) {
+                    manifest = readManifest(channel, recordOffset, size);
+                }
+            }
+
+            if (manifest == null) {
+                long end = LOG_HEADER_LENGTH;
+                long position = LOG_HEADER_LENGTH;
+                while (position + RECORD_HEADER_LENGTH <= size) {
+                    ByteBuffer recordHeader = ByteBuffer.wrap(readFully(channel, position, RECORD_HEADER_LENGTH));
+                    byte type = recordHeader.get();
+                    int length = recordHeader.getInt();
+                    Manifest recovered;
+                    if (type == FRAME_RECORD && length >= 0) {
+                        position += RECORD_HEADER_LENGTH + length;
+                    } else if (type == MANIFEST_RECORD && (recovered = readManifest(channel, position, size)) != null) {
+                        position += RECORD_HEADER_LENGTH + length + MANIFEST_FOOTER_LENGTH;
+                        end = position;
+                        manifest = recovered;
+                    } else {
+                        break;
+                    }
+                }
+
+                if (manifest == null) {
+                    throw new IOException("World " + this.worldName + " doesn't contain a complete save");
+                }
+
+                if (recover) {
+                    Logging.warning("The last save of world " + this.worldName + " didn't complete, its previous save has been recovered.");
+                    channel.truncate(end);
+                    channel.force(true);
+                    size = end;
+                }
+            }
+
+            update(manifest, size);
+            return manifest;
+        }
+
+        private void update(Manifest manifest, long size) {
+            this.manifest = manifest;
+            this.size = size;
+        }
+
+        private void reset() {
+            this.manifest = null;
+            this.size = 0;
+        }
+
+        private boolean shouldCompact() {
+            return !this.compacting && this.manifest != null && this.size >= minCompactionSize
+                    && this.manifest.liveBytes() < this.size * compactionRatio;
+        }
+
+    }
+
+    /**
+     * @param offset the offset of the compressed chunk inside the log
+     */
+    private record FrameRef(long key, int length, long offset, int compressedLength, long hash) {
+
+    }
+
+    private record Manifest(byte type, byte[] metadata, List<FrameRef> frames) {
+
+        /**
+         * @return the size the log would have if it only held this manifest and its frames
+         */
+        private long liveBytes() {
+            long liveBytes = LOG_HEADER_LENGTH + RECORD_HEADER_LENGTH + 1 + 4 + this.metadata.length + 4 + MANIFEST_FOOTER_LENGTH;
+            for (FrameRef ref : this.frames) {
+                liveBytes += FRAME_REF_LENGTH + RECORD_HEADER_LENGTH + ref.compressedLength();
+            }
+
+            return liveBytes;
+        }
+
+    }
+
+}
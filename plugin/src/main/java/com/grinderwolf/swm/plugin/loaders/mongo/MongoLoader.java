@@ -1,11 +1,15 @@
 package com.grinderwolf.swm.plugin.loaders.mongo;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.cache.Cache;
+import com.google.common.io.CountingInputStream;
 import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.grinderwolf.swm.plugin.SWMPlugin;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
+import com.grinderwolf.swm.plugin.loaders.LeaseManager;
+import com.grinderwolf.swm.plugin.loaders.LeaseStore;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.loaders.UpdatableLoader;
+import com.grinderwolf.swm.plugin.loaders.WorldMetadata;
 import com.grinderwolf.swm.plugin.log.Logging;
 import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
 import com.mongodb.MongoException;
@@ -13,38 +17,49 @@ import com.mongodb.MongoNamespace;
 import com.mongodb.client.*;
 import com.mongodb.client.gridfs.GridFSBucket;
 import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSDownloadStream;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 import org.bukkit.Bukkit;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
-public class MongoLoader extends UpdatableLoader {
+public class MongoLoader extends UpdatableLoader implements LeaseStore {
 
-    // World locking executor service
-    private static final ScheduledExecutorService SERVICE = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
-            .setNameFormat("SWM MongoDB Lock Pool Thread #%1$d").build());
+    // World documents only hold metadata, the worlds themselves are stored through GridFS
+    private static final Bson METADATA_PROJECTION = Projections.fields(Projections.excludeId(),
+            Projections.include("size", "locked", "dataVersion", "lastModified"));
+    // The GridFS file a world document points at, documents of older versions don't point at any
+    private static final Bson FILE_PROJECTION = Projections.fields(Projections.excludeId(), Projections.include("file"));
 
-    private final Map<String, ScheduledFuture> lockedWorlds = new HashMap<>();
+    private final LeaseManager leaseManager = LoaderUtils.getLeaseManager();
+    private final Cache<String, WorldMetadata> metadataCache = LoaderUtils.newMetadataCache();
 
     private final MongoClient client;
     private final String database;
     private final String collection;
+    private final MongoCollection<Document> worldCollection;
 
     public MongoLoader(DatasourcesConfig.MongoDBConfig config) throws MongoException {
         this.database = config.getDatabase();
@@ -60,6 +75,7 @@ public class MongoLoader extends UpdatableLoader {
         MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
 
         mongoCollection.createIndex(Indexes.ascending("name"), new IndexOptions().unique(true));
+        this.worldCollection = mongoCollection;
     }
 
     @Override
@@ -105,8 +121,7 @@ public class MongoLoader extends UpdatableLoader {
     public byte[] loadWorld(String worldName) throws UnknownWorldException, IOException {
         try {
             MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            Document worldDoc = mongoCollection.find(Filters.eq("name", worldName)).first();
+            Document worldDoc = worldCollection.find(Filters.eq("name", worldName)).projection(FILE_PROJECTION).first();
 
             if (worldDoc == null) {
                 throw new UnknownWorldException(worldName);
@@ -114,7 +129,13 @@ public class MongoLoader extends UpdatableLoader {
 
             GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection);
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            bucket.downloadToStream(worldName, stream);
+            ObjectId file = worldDoc.getObjectId("file");
+
+            if (file != null) {
+                bucket.downloadToStream(file, stream);
+            } else {
+                bucket.downloadToStream(worldName, stream);
+            }
 
             return stream.toByteArray();
         } catch (MongoException ex) {
@@ -122,29 +143,124 @@ public class MongoLoader extends UpdatableLoader {
         }
     }
 
-    private void updateLock(String worldName, boolean forceSchedule) {
+    @Override
+    public ByteBuffer loadWorldBuffer(String worldName) throws UnknownWorldException, IOException {
+        try (GridFSDownloadStream stream = openWorldStream(worldName)) {
+            return LoaderUtils.readDirect(stream, stream.getGridFSFile().getLength());
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public InputStream loadWorldStream(String worldName) throws UnknownWorldException, IOException {
+        try {
+            return openWorldStream(worldName);
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private GridFSDownloadStream openWorldStream(String worldName) throws UnknownWorldException {
+        MongoDatabase mongoDatabase = client.getDatabase(database);
+        Document worldDoc = worldCollection.find(Filters.eq("name", worldName)).projection(FILE_PROJECTION).first();
+
+        if (worldDoc == null) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection);
+        ObjectId file = worldDoc.getObjectId("file");
+        return file != null ? bucket.openDownloadStream(file) : bucket.openDownloadStream(worldName);
+    }
+
+    @Override
+    public boolean supportsDictionaries() {
+        return true;
+    }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
         try {
             MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            mongoCollection.updateOne(Filters.eq("name", worldName), Updates.set("locked", System.currentTimeMillis()));
+            GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection + "_dictionaries");
+
+            if (bucket.find(Filters.eq("filename", String.valueOf(dictionaryId))).first() == null) {
+                return null;
+            }
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            bucket.downloadToStream(String.valueOf(dictionaryId), stream);
+
+            return stream.toByteArray();
         } catch (MongoException ex) {
-            Logging.error("Failed to update the lock for world " + worldName + ":");
-            ex.printStackTrace();
+            throw new IOException(ex);
         }
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        try {
+            MongoDatabase mongoDatabase = client.getDatabase(database);
+            GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection + "_dictionaries");
+            GridFSFile oldFile = bucket.find(Filters.eq("filename", String.valueOf(dictionaryId))).first();
 
-        if (forceSchedule || lockedWorlds.containsKey(worldName)) { // Only schedule another update if the world is still on the map
-            lockedWorlds.put(worldName, SERVICE.schedule(() -> updateLock(worldName, false), LoaderUtils.LOCK_INTERVAL, TimeUnit.MILLISECONDS));
+            bucket.uploadFromStream(String.valueOf(dictionaryId), new ByteArrayInputStream(dictionary));
+
+            if (oldFile != null) {
+                bucket.delete(oldFile.getObjectId());
+            }
+        } catch (MongoException ex) {
+            throw new IOException(ex);
         }
     }
 
+
     @Override
     public boolean worldExists(String worldName) throws IOException {
+        return getCachedMetadata(worldName) != null;
+    }
+
+    /**
+     * Returns the metadata of a world, which may be cached for up to {@link LoaderUtils#METADATA_CACHE_TIME}.
+     *
+     * @param worldName the name of the world
+     * @return the metadata of the world
+     * @throws UnknownWorldException if the world isn't stored in the database
+     * @throws IOException           if the metadata couldn't be read
+     */
+    public WorldMetadata getWorldMetadata(String worldName) throws UnknownWorldException, IOException {
+        WorldMetadata metadata = getCachedMetadata(worldName);
+        if (metadata == null) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        return metadata;
+    }
+
+    private WorldMetadata getCachedMetadata(String worldName) throws IOException {
+        WorldMetadata metadata = metadataCache.getIfPresent(worldName);
+        if (metadata == null) {
+            metadata = readMetadata(worldName);
+
+            if (metadata != null) {
+                metadataCache.put(worldName, metadata);
+            }
+        }
+
+        return metadata;
+    }
+
+    private WorldMetadata readMetadata(String worldName) throws IOException {
         try {
-            MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            Document worldDoc = mongoCollection.find(Filters.eq("name", worldName)).first();
+            Document worldDoc = worldCollection.find(Filters.eq("name", worldName)).projection(METADATA_PROJECTION).first();
 
-            return worldDoc != null;
+            if (worldDoc == null) {
+                return null;
+            }
+
+            return new WorldMetadata(worldName, worldDoc.get("size", 0L), worldDoc.get("locked", 0L),
+                    worldDoc.get("dataVersion", 0), worldDoc.get("lastModified", 0L));
         } catch (MongoException ex) {
             throw new IOException(ex);
         }
@@ -155,9 +271,8 @@ public class MongoLoader extends UpdatableLoader {
         List<String> worldList = new ArrayList<>();
 
         try {
-            MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            MongoCursor<Document> documents = mongoCollection.find().cursor();
+            MongoCursor<Document> documents = worldCollection.find()
+                    .projection(Projections.fields(Projections.excludeId(), Projections.include("name"))).cursor();
 
             while (documents.hasNext()) {
                 worldList.add(documents.next().getString("name"));
@@ -171,39 +286,97 @@ public class MongoLoader extends UpdatableLoader {
 
     @Override
     public void saveWorld(String worldName, byte[] serializedWorld) throws IOException {
+        saveWorldStream(worldName, new ByteArrayInputStream(serializedWorld));
+    }
+
+    @Override
+    public void saveWorld(String worldName, byte[] serializedWorld, long lockToken) throws IOException {
+        saveWorldStream(worldName, new ByteArrayInputStream(serializedWorld), lockToken);
+    }
+
+    @Override
+    public void saveWorldStream(String worldName, InputStream serializedWorld) throws IOException {
+        saveWorldStream(worldName, serializedWorld, 0);
+    }
+
+    private void saveWorldStream(String worldName, InputStream serializedWorld, long lockToken) throws IOException {
+        // The data version is read from the start of the world, the size is counted while uploading it
+        BufferedInputStream bufferedWorld = new BufferedInputStream(serializedWorld);
+        bufferedWorld.mark(LoaderUtils.WORLD_PREFIX_LENGTH);
+        int dataVersion = LoaderUtils.readDataVersion(bufferedWorld.readNBytes(LoaderUtils.WORLD_PREFIX_LENGTH));
+        bufferedWorld.reset();
+        CountingInputStream countingWorld = new CountingInputStream(bufferedWorld);
+
         try {
             MongoDatabase mongoDatabase = client.getDatabase(database);
             GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection);
-            GridFSFile oldFile = bucket.find(Filters.eq("filename", worldName)).first();
+            Bson filter = lockToken == 0 ? Filters.eq("name", worldName)
+                    : Filters.and(Filters.eq("name", worldName), Filters.eq("lockToken", lockToken));
 
-            bucket.uploadFromStream(worldName, new ByteArrayInputStream(serializedWorld));
-
-            if (oldFile != null) {
-                bucket.delete(oldFile.getObjectId());
+            // Saves of a server that lost the lock are rejected before anything is uploaded
+            if (lockToken != 0 && worldCollection.find(filter).projection(FILE_PROJECTION).first() == null) {
+                throw new IOException("The lock of world " + worldName + " has been taken over by another server");
             }
 
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            Document worldDoc = mongoCollection.find(Filters.eq("name", worldName)).first();
+            // GridFS splits the stream into chunk documents as it's read. Until the world document points at
+            // the new file, it's stored under another name, so loads keep reading the previous one
+            ObjectId newFile = bucket.uploadFromStream(worldName + "_saving", countingWorld);
+            Bson update = Updates.combine(
+                    Updates.set("file", newFile),
+                    Updates.set("size", countingWorld.getCount()),
+                    Updates.set("dataVersion", dataVersion),
+                    Updates.set("lastModified", System.currentTimeMillis())
+            );
+
+            Document oldDoc;
+            try {
+                if (lockToken == 0) {
+                    oldDoc = worldCollection.findOneAndUpdate(filter, Updates.combine(update, Updates.setOnInsert("locked", 0L)),
+                            new FindOneAndUpdateOptions().upsert(true).projection(FILE_PROJECTION));
+                } else {
+                    oldDoc = worldCollection.findOneAndUpdate(filter, update, new FindOneAndUpdateOptions().projection(FILE_PROJECTION));
+
+                    if (oldDoc == null) {
+                        // The previous file is kept, as another server holds the world now
+                        bucket.delete(newFile);
+                        throw new IOException("The lock of world " + worldName + " has been taken over by another server");
+                    }
+                }
+            } catch (MongoException ex) {
+                bucket.delete(newFile);
+                throw ex;
+            }
 
+            ObjectId oldFile = oldDoc != null ? oldDoc.getObjectId("file") : null;
+            if (oldFile != null) {
+                bucket.delete(oldFile);
+            } else {
+                // Documents of older versions only find their file through its name
+                for (GridFSFile file : bucket.find(Filters.eq("filename", worldName))) {
+                    bucket.delete(file.getObjectId());
+                }
+            }
 
-            mongoCollection.insertOne(new Document().append("name", worldName));
+            bucket.rename(newFile, worldName);
         } catch (MongoException ex) {
             throw new IOException(ex);
+        } finally {
+            metadataCache.invalidate(worldName);
         }
     }
 
     @Override
     public void deleteWorld(String worldName) throws IOException, UnknownWorldException {
-        ScheduledFuture future = lockedWorlds.remove(worldName);
-
-        if (future != null) {
-            future.cancel(false);
-        }
+        leaseManager.release(this, worldName);
+        metadataCache.invalidate(worldName);
 
         try {
             MongoDatabase mongoDatabase = client.getDatabase(database);
             GridFSBucket bucket = GridFSBuckets.create(mongoDatabase, collection);
-            GridFSFile file = bucket.find(Filters.eq("filename", worldName)).first();
+            Document worldDoc = worldCollection.find(Filters.eq("name", worldName)).projection(FILE_PROJECTION).first();
+            GridFSFile file = worldDoc != null && worldDoc.getObjectId("file") != null
+                    ? bucket.find(Filters.eq("_id", worldDoc.getObjectId("file"))).first()
+                    : bucket.find(Filters.eq("filename", worldName)).first();
 
             if (file == null) {
                 throw new UnknownWorldException(worldName);
@@ -225,22 +398,38 @@ public class MongoLoader extends UpdatableLoader {
 
     @Override
     public void acquireLock(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        acquireLockToken(worldName);
+    }
+
+    @Override
+    public long acquireLockToken(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        metadataCache.invalidate(worldName);
+        long now = System.currentTimeMillis();
+
         try {
-            MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            Document worldDoc = mongoCollection.find(Filters.eq("name", worldName)).first();
+            // Only matches if the lock has expired, so checking and taking the lock is a single atomic operation
+            Document worldDoc = worldCollection.findOneAndUpdate(
+                    Filters.and(Filters.eq("name", worldName), Filters.or(
+                            Filters.lt("locked", now - LoaderUtils.MAX_LOCK_TIME),
+                            Filters.exists("locked", false)
+                    )),
+                    Updates.combine(Updates.set("locked", now), Updates.inc("lockToken", 1L)),
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER)
+                            .projection(Projections.fields(Projections.excludeId(), Projections.include("lockToken")))
+            );
 
             if (worldDoc == null) {
-                throw new UnknownWorldException(worldName);
-            }
-
-            long lockedMillis = worldDoc.getLong("locked");
+                // Only a failed attempt needs another query, to tell why it failed
+                if (readMetadata(worldName) == null) {
+                    throw new UnknownWorldException(worldName);
+                }
 
-            if (System.currentTimeMillis() - lockedMillis <= LoaderUtils.MAX_LOCK_TIME) {
                 throw new WorldLockedException(worldName);
             }
 
-            updateLock(worldName, true);
+            long token = worldDoc.getLong("lockToken");
+            leaseManager.acquire(this, worldName, token);
+            return token;
         } catch (MongoException ex) {
             throw new IOException(ex);
         }
@@ -248,44 +437,74 @@ public class MongoLoader extends UpdatableLoader {
 
     @Override
     public boolean isWorldLocked(String worldName) throws IOException, UnknownWorldException {
-        if (lockedWorlds.containsKey(worldName)) {
+        if (leaseManager.isHeld(this, worldName)) {
             return true;
         }
 
+        return getWorldMetadata(worldName).isLocked();
+    }
+
+    @Override
+    public void unlockWorld(String worldName) throws IOException, UnknownWorldException {
+        long token = leaseManager.release(this, worldName);
+        metadataCache.invalidate(worldName);
+
+        // Locks not held by this server belong to another one, they're left alone
+        if (token == 0) {
+            getWorldMetadata(worldName);
+            return;
+        }
+
         try {
-            MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            Document worldDoc = mongoCollection.find(Filters.eq("name", worldName)).first();
+            // A lock held by this server is only released if no other server has taken it over since
+            UpdateResult result = worldCollection.updateOne(Filters.and(Filters.eq("name", worldName),
+                    Filters.eq("lockToken", token)), Updates.set("locked", 0L));
 
-            if (worldDoc == null) {
+            if (result.getMatchedCount() == 0 && readMetadata(worldName) == null) {
                 throw new UnknownWorldException(worldName);
             }
-
-            return System.currentTimeMillis() - worldDoc.getLong("locked") <= LoaderUtils.MAX_LOCK_TIME;
         } catch (MongoException ex) {
             throw new IOException(ex);
         }
     }
 
     @Override
-    public void unlockWorld(String worldName) throws IOException, UnknownWorldException {
-        ScheduledFuture future = lockedWorlds.remove(worldName);
-
-        if (future != null) {
-            future.cancel(false);
-        }
+    public Set<String> renewLeases(Map<String, Long> leases) throws IOException {
+        metadataCache.invalidateAll(leases.keySet());
+        long now = System.currentTimeMillis();
+        Bson filter = getLeaseFilter(leases);
 
         try {
-            MongoDatabase mongoDatabase = client.getDatabase(database);
-            MongoCollection<Document> mongoCollection = mongoDatabase.getCollection(collection);
-            UpdateResult result = mongoCollection.updateOne(Filters.eq("name", worldName), Updates.set("locked", 0L));
+            worldCollection.updateMany(filter, Updates.set("locked", now));
 
-            if (result.getMatchedCount() == 0) {
-                throw new UnknownWorldException(worldName);
+            // The amount of updated documents doesn't tell which locks were renewed, so they're read back
+            Set<String> renewed = new HashSet<>();
+            for (Document worldDoc : worldCollection.find(Filters.and(Filters.eq("locked", now), filter))
+                    .projection(Projections.fields(Projections.excludeId(), Projections.include("name")))) {
+                renewed.add(worldDoc.getString("name"));
             }
+
+            return renewed;
         } catch (MongoException ex) {
             throw new IOException(ex);
         }
     }
 
+    @Override
+    public void releaseLeases(Map<String, Long> leases) throws IOException {
+        metadataCache.invalidateAll(leases.keySet());
+
+        try {
+            worldCollection.updateMany(getLeaseFilter(leases), Updates.set("locked", 0L));
+        } catch (MongoException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static Bson getLeaseFilter(Map<String, Long> leases) {
+        List<Bson> filters = new ArrayList<>(leases.size());
+        leases.forEach((worldName, token) -> filters.add(Filters.and(Filters.eq("name", worldName), Filters.eq("lockToken", token))));
+        return Filters.or(filters);
+    }
+
 }
@@ -1,36 +1,40 @@
 package com.grinderwolf.swm.plugin.loaders.mysql;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.cache.Cache;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
+import com.grinderwolf.swm.plugin.loaders.LeaseManager;
+import com.grinderwolf.swm.plugin.loaders.LeaseStore;
 import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.loaders.UpdatableLoader;
+import com.grinderwolf.swm.plugin.loaders.WorldMetadata;
 import com.grinderwolf.swm.plugin.log.Logging;
 import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
+import com.infernalsuite.aswm.serialization.slime.ChunkFrame;
+import com.infernalsuite.aswm.serialization.slime.SlimeWorldFrames;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
-public class MysqlLoader extends UpdatableLoader {
+public class MysqlLoader extends UpdatableLoader implements LeaseStore {
 
-    // World locking executor service
-    private static final ScheduledExecutorService SERVICE = Executors.newScheduledThreadPool(2, new ThreadFactoryBuilder()
-            .setNameFormat("SWM MySQL Lock Pool Thread #%1$d").build());
-
-    private static final int CURRENT_DB_VERSION = 1;
+    private static final int CURRENT_DB_VERSION = 4;
 
     // Database version handling queries
     private static final String CREATE_VERSIONING_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS `database_version` (`id` INT NOT NULL AUTO_INCREMENT, " +
@@ -41,16 +45,64 @@ public class MysqlLoader extends UpdatableLoader {
     // v1 update query
     private static final String ALTER_LOCKED_COLUMN_QUERY = "ALTER TABLE `worlds` CHANGE COLUMN `locked` `locked` BIGINT NOT NULL DEFAULT 0;";
 
+    // v2 update query
+    private static final String ADD_CHUNKED_COLUMN_QUERY = "ALTER TABLE `worlds` ADD COLUMN `chunked` BOOLEAN NOT NULL DEFAULT 0;";
+
+    // v3 update query
+    private static final String ADD_METADATA_COLUMNS_QUERY = "ALTER TABLE `worlds` ADD COLUMN `size` BIGINT NOT NULL DEFAULT 0, " +
+            "ADD COLUMN `data_version` INT NOT NULL DEFAULT 0, ADD COLUMN `last_modified` BIGINT NOT NULL DEFAULT 0;";
+    // Chunked worlds are joined back with a chunk count and an index entry per chunk, which has a checksum since v18.
+    // Since v10 the data version is the big-endian int that follows the header and the format version
+    private static final String BACKFILL_METADATA_QUERY = "UPDATE `worlds` SET " +
+            "`size` = LENGTH(`worlds`.`world`) + IF(`worlds`.`chunked`, 4 + (SELECT COUNT(*) * IF(ASCII(SUBSTRING(`worlds`.`world`, 3, 1)) >= 18, 28, 20) " +
+            "+ COALESCE(SUM(LENGTH(`world_chunks`.`data`)), 0) FROM `world_chunks` WHERE `world_chunks`.`world` = `worlds`.`id`), 0), " +
+            "`data_version` = IF(LENGTH(`worlds`.`world`) >= 7 AND SUBSTRING(`worlds`.`world`, 1, 2) = X'B10B' AND ASCII(SUBSTRING(`worlds`.`world`, 3, 1)) >= 10, " +
+            "CAST(CONV(HEX(SUBSTRING(`worlds`.`world`, 4, 4)), 16, 10) AS SIGNED), 0), " +
+            "`last_modified` = ? WHERE `worlds`.`world` IS NOT NULL;";
+
+    // v4 update query
+    private static final String ADD_LOCK_TOKEN_COLUMN_QUERY = "ALTER TABLE `worlds` ADD COLUMN `lock_token` BIGINT NOT NULL DEFAULT 0;";
+
     // World handling queries
     private static final String CREATE_WORLDS_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS `worlds` (`id` INT NOT NULL AUTO_INCREMENT, " +
             "`name` VARCHAR(255) UNIQUE, `world` MEDIUMBLOB, `locked` BIGINT, PRIMARY KEY(id));";
-    private static final String SELECT_WORLD_QUERY = "SELECT `world`, `locked` FROM `worlds` WHERE `name` = ?;";
-    private static final String UPDATE_WORLD_QUERY = "INSERT INTO `worlds` (`name`, `world`, `locked`) VALUES (?, ?, 1) ON DUPLICATE KEY UPDATE `world` = ?;";
-    private static final String UPDATE_LOCK_QUERY = "UPDATE `worlds` SET `locked` = ? WHERE `name` = ?;";
+    // Chunked worlds only store their metadata in the world column, their chunk frames are stored in the chunks table
+    private static final String SELECT_WORLD_QUERY = "SELECT `id`, `world`, `chunked` FROM `worlds` WHERE `name` = ?;";
+    private static final String SELECT_WORLD_ID_QUERY = "SELECT `id` FROM `worlds` WHERE `name` = ?;";
+    private static final String SELECT_METADATA_QUERY = "SELECT `size`, `locked`, `data_version`, `last_modified` FROM `worlds` WHERE `name` = ?;";
+    private static final String UPDATE_WORLD_QUERY = "INSERT INTO `worlds` (`name`, `world`, `chunked`, `size`, `data_version`, `last_modified`, `locked`) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 1) ON DUPLICATE KEY UPDATE `world` = VALUES(`world`), `chunked` = VALUES(`chunked`), " +
+            "`size` = VALUES(`size`), `data_version` = VALUES(`data_version`), `last_modified` = VALUES(`last_modified`);";
+    // Only succeeds if the world's lock is still held with the given fencing token
+    private static final String UPDATE_FENCED_WORLD_QUERY = "UPDATE `worlds` SET `world` = ?, `chunked` = ?, `size` = ?, `data_version` = ?, " +
+            "`last_modified` = ? WHERE `name` = ? AND `lock_token` = ?;";
+    // Only succeeds if the lock has expired, the new fencing token is returned through LAST_INSERT_ID()
+    private static final String ACQUIRE_LOCK_QUERY = "UPDATE `worlds` SET `locked` = ?, `lock_token` = LAST_INSERT_ID(`lock_token` + 1) " +
+            "WHERE `name` = ? AND `locked` < ?;";
+    private static final String RELEASE_LOCK_QUERY = "UPDATE `worlds` SET `locked` = 0 WHERE `name` = ? AND `lock_token` = ?;";
+    private static final String UPDATE_LOCKS_QUERY = "UPDATE `worlds` SET `locked` = ? WHERE (`name`, `lock_token`) IN (%s);";
+    private static final String SELECT_LOCKS_QUERY = "SELECT `name` FROM `worlds` WHERE `locked` = ? AND (`name`, `lock_token`) IN (%s);";
     private static final String DELETE_WORLD_QUERY = "DELETE FROM `worlds` WHERE `name` = ?;";
     private static final String LIST_WORLDS_QUERY = "SELECT `name` FROM `worlds`;";
 
-    private final Map<String, ScheduledFuture> lockedWorlds = new HashMap<>();
+    // Chunk handling queries
+    private static final String CREATE_CHUNKS_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS `world_chunks` (`world` INT NOT NULL, " +
+            "`chunk` BIGINT NOT NULL, `length` INT NOT NULL, `hash` BIGINT NOT NULL, `data` MEDIUMBLOB, PRIMARY KEY(`world`, `chunk`));";
+    private static final String SELECT_CHUNKS_QUERY = "SELECT `chunk`, `length`, `data` FROM `world_chunks` WHERE `world` = ?;";
+    private static final String SELECT_CHUNK_HASHES_QUERY = "SELECT `chunk`, `hash` FROM `world_chunks` WHERE `world` = ?;";
+    private static final String UPDATE_CHUNK_QUERY = "INSERT INTO `world_chunks` (`world`, `chunk`, `length`, `hash`, `data`) VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE `length` = VALUES(`length`), `hash` = VALUES(`hash`), `data` = VALUES(`data`);";
+    private static final String DELETE_CHUNK_QUERY = "DELETE FROM `world_chunks` WHERE `world` = ? AND `chunk` = ?;";
+    private static final String DELETE_WORLD_CHUNKS_QUERY = "DELETE FROM `world_chunks` WHERE `world` IN (SELECT `id` FROM `worlds` WHERE `name` = ?);";
+
+    // Dictionary handling queries
+    private static final String CREATE_DICTIONARIES_TABLE_QUERY = "CREATE TABLE IF NOT EXISTS `dictionaries` (`id` INT NOT NULL, " +
+            "`dictionary` MEDIUMBLOB, PRIMARY KEY(id));";
+    private static final String SELECT_DICTIONARY_QUERY = "SELECT `dictionary` FROM `dictionaries` WHERE `id` = ?;";
+    private static final String UPDATE_DICTIONARY_QUERY = "INSERT INTO `dictionaries` (`id`, `dictionary`) VALUES (?, ?) ON DUPLICATE KEY UPDATE `dictionary` = VALUES(`dictionary`);";
+
+    private final LeaseManager leaseManager = LoaderUtils.getLeaseManager();
+    private final Cache<String, WorldMetadata> metadataCache = LoaderUtils.newMetadataCache();
     private final HikariDataSource source;
 
     public MysqlLoader(DatasourcesConfig.MysqlConfig config) throws SQLException {
@@ -86,10 +138,20 @@ public class MysqlLoader extends UpdatableLoader {
                 statement.execute();
             }
 
+            // Create chunks table
+            try (PreparedStatement statement = con.prepareStatement(CREATE_CHUNKS_TABLE_QUERY)) {
+                statement.execute();
+            }
+
             // Create versioning table
             try (PreparedStatement statement = con.prepareStatement(CREATE_VERSIONING_TABLE_QUERY)) {
                 statement.execute();
             }
+
+            // Create dictionaries table
+            try (PreparedStatement statement = con.prepareStatement(CREATE_DICTIONARIES_TABLE_QUERY)) {
+                statement.execute();
+            }
         }
     }
 
@@ -120,8 +182,37 @@ public class MysqlLoader extends UpdatableLoader {
                 }
 
                 // Update to v1: alter locked column to store a long
-                try (PreparedStatement statement = con.prepareStatement(ALTER_LOCKED_COLUMN_QUERY)) {
-                    statement.executeUpdate();
+                if (version < 1) {
+                    try (PreparedStatement statement = con.prepareStatement(ALTER_LOCKED_COLUMN_QUERY)) {
+                        statement.executeUpdate();
+                    }
+                }
+
+                // Update to v2: store worlds as their metadata plus a row per chunk
+                if (version < 2) {
+                    try (PreparedStatement statement = con.prepareStatement(ADD_CHUNKED_COLUMN_QUERY)) {
+                        statement.executeUpdate();
+                    }
+                }
+
+                // Update to v3: store the metadata of worlds in their own columns
+                if (version < 3) {
+                    try (PreparedStatement statement = con.prepareStatement(ADD_METADATA_COLUMNS_QUERY)) {
+                        statement.executeUpdate();
+                    }
+
+                    // Worlds that aren't chunked yet are split by their next save
+                    try (PreparedStatement statement = con.prepareStatement(BACKFILL_METADATA_QUERY)) {
+                        statement.setLong(1, System.currentTimeMillis());
+                        statement.executeUpdate();
+                    }
+                }
+
+                // Update to v4: hand out fencing tokens with locks
+                if (version < 4) {
+                    try (PreparedStatement statement = con.prepareStatement(ADD_LOCK_TOKEN_COLUMN_QUERY)) {
+                        statement.executeUpdate();
+                    }
                 }
 
                 // Insert/update database version table
@@ -138,8 +229,77 @@ public class MysqlLoader extends UpdatableLoader {
 
     @Override
     public byte[] loadWorld(String worldName) throws UnknownWorldException, IOException {
-        try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(SELECT_WORLD_QUERY)) {
+        try (Connection con = source.getConnection()) {
+            int isolation = beginSnapshot(con);
+
+            try (PreparedStatement statement = con.prepareStatement(SELECT_WORLD_QUERY)) {
+                statement.setString(1, worldName);
+                ResultSet set = statement.executeQuery();
+
+                if (!set.next()) {
+                    throw new UnknownWorldException(worldName);
+                }
+
+                if (set.getBoolean("chunked")) {
+                    return SlimeWorldFrames.join(set.getBytes("world"), loadChunks(con, set.getInt("id")));
+                }
+
+                return set.getBytes("world");
+            } finally {
+                endSnapshot(con, isolation);
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Starts a repeatable read transaction, so the world row and the chunk rows read
+     * afterwards come from the same snapshot even if the world is saved in between.
+     *
+     * @return the isolation level to restore once the world has been read
+     */
+    private static int beginSnapshot(Connection con) throws SQLException {
+        int isolation = con.getTransactionIsolation();
+        con.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        con.setAutoCommit(false);
+        return isolation;
+    }
+
+    private static void endSnapshot(Connection con, int isolation) throws SQLException {
+        try {
+            con.commit();
+        } finally {
+            con.setAutoCommit(true);
+            con.setTransactionIsolation(isolation);
+        }
+    }
+
+    private List<ChunkFrame> loadChunks(Connection con, int worldId) throws SQLException {
+        List<ChunkFrame> frames = new ArrayList<>();
+
+        try (PreparedStatement statement = con.prepareStatement(SELECT_CHUNKS_QUERY)) {
+            statement.setInt(1, worldId);
+            ResultSet set = statement.executeQuery();
+
+            while (set.next()) {
+                frames.add(new ChunkFrame(set.getLong("chunk"), set.getInt("length"), set.getBytes("data")));
+            }
+        }
+
+        return frames;
+    }
+
+    @Override
+    public InputStream loadWorldStream(String worldName) throws UnknownWorldException, IOException {
+        Connection con = null;
+        int isolation = Connection.TRANSACTION_NONE;
+        boolean streaming = false;
+
+        try {
+            con = source.getConnection();
+            isolation = beginSnapshot(con);
+            PreparedStatement statement = con.prepareStatement(SELECT_WORLD_QUERY);
             statement.setString(1, worldName);
             ResultSet set = statement.executeQuery();
 
@@ -147,20 +307,94 @@ public class MysqlLoader extends UpdatableLoader {
                 throw new UnknownWorldException(worldName);
             }
 
-            return set.getBytes("world");
+            // Chunked worlds are made of many small rows, so they're joined in memory
+            if (set.getBoolean("chunked")) {
+                return new ByteArrayInputStream(SlimeWorldFrames.join(set.getBytes("world"), loadChunks(con, set.getInt("id"))));
+            }
+
+            // The connection, and with it the statement, is only closed once the world has been read
+            Connection connection = con;
+            int previousIsolation = isolation;
+            InputStream stream = new FilterInputStream(set.getBlob("world").getBinaryStream()) {
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        try (connection) {
+                            endSnapshot(connection, previousIsolation);
+                        } catch (SQLException ex) {
+                            throw new IOException(ex);
+                        }
+                    }
+                }
+            };
+
+            streaming = true;
+            return stream;
         } catch (SQLException ex) {
             throw new IOException(ex);
+        } finally {
+            if (!streaming && con != null) {
+                try (Connection connection = con) {
+                    if (isolation != Connection.TRANSACTION_NONE) {
+                        endSnapshot(connection, isolation);
+                    }
+                } catch (SQLException ignored) {
+
+                }
+            }
         }
     }
 
     @Override
     public boolean worldExists(String worldName) throws IOException {
+        return getCachedMetadata(worldName) != null;
+    }
+
+    /**
+     * Returns the metadata of a world, which may be cached for up to {@link LoaderUtils#METADATA_CACHE_TIME}.
+     *
+     * @param worldName the name of the world
+     * @return the metadata of the world
+     * @throws UnknownWorldException if the world isn't stored in the database
+     * @throws IOException           if the metadata couldn't be read
+     */
+    public WorldMetadata getWorldMetadata(String worldName) throws UnknownWorldException, IOException {
+        WorldMetadata metadata = getCachedMetadata(worldName);
+        if (metadata == null) {
+            throw new UnknownWorldException(worldName);
+        }
+
+        return metadata;
+    }
+
+    private WorldMetadata getCachedMetadata(String worldName) throws IOException {
+        WorldMetadata metadata = metadataCache.getIfPresent(worldName);
+        if (metadata == null) {
+            metadata = readMetadata(worldName);
+
+            if (metadata != null) {
+                metadataCache.put(worldName, metadata);
+            }
+        }
+
+        return metadata;
+    }
+
+    private WorldMetadata readMetadata(String worldName) throws IOException {
         try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(SELECT_WORLD_QUERY)) {
+             PreparedStatement statement = con.prepareStatement(SELECT_METADATA_QUERY)) {
             statement.setString(1, worldName);
             ResultSet set = statement.executeQuery();
 
-            return set.next();
+            if (!set.next()) {
+                return null;
+            }
+
+            return new WorldMetadata(worldName, set.getLong("size"), set.getLong("locked"),
+                    set.getInt("data_version"), set.getLong("last_modified"));
         } catch (SQLException ex) {
             throw new IOException(ex);
         }
@@ -186,32 +420,190 @@ public class MysqlLoader extends UpdatableLoader {
 
     @Override
     public void saveWorld(String worldName, byte[] serializedWorld) throws IOException {
-        try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(UPDATE_WORLD_QUERY)) {
-            statement.setString(1, worldName);
-            statement.setBytes(2, serializedWorld);
-            statement.setBytes(3, serializedWorld);
-            statement.executeUpdate();
+        saveWorld(worldName, serializedWorld, 0);
+    }
+
+    @Override
+    public void saveWorld(String worldName, byte[] serializedWorld, long lockToken) throws IOException {
+        SlimeWorldFrames frames = SlimeWorldFrames.canSplit(serializedWorld) ? SlimeWorldFrames.split(serializedWorld) : null;
+
+        try (Connection con = source.getConnection()) {
+            con.setAutoCommit(false);
+
+            try {
+                if (lockToken == 0) {
+                    try (PreparedStatement statement = con.prepareStatement(UPDATE_WORLD_QUERY)) {
+                        statement.setString(1, worldName);
+                        statement.setBytes(2, frames != null ? frames.getMetadata() : serializedWorld);
+                        statement.setBoolean(3, frames != null);
+                        statement.setLong(4, serializedWorld.length);
+                        statement.setInt(5, LoaderUtils.readDataVersion(serializedWorld));
+                        statement.setLong(6, System.currentTimeMillis());
+                        statement.executeUpdate();
+                    }
+                } else {
+                    try (PreparedStatement statement = con.prepareStatement(UPDATE_FENCED_WORLD_QUERY)) {
+                        statement.setBytes(1, frames != null ? frames.getMetadata() : serializedWorld);
+                        statement.setBoolean(2, frames != null);
+                        statement.setLong(3, serializedWorld.length);
+                        statement.setInt(4, LoaderUtils.readDataVersion(serializedWorld));
+                        statement.setLong(5, System.currentTimeMillis());
+                        statement.setString(6, worldName);
+                        statement.setLong(7, lockToken);
+
+                        if (statement.executeUpdate() == 0) {
+                            con.rollback();
+                            throw new IOException("The lock of world " + worldName + " has been taken over by another server");
+                        }
+                    }
+                }
+
+                int worldId;
+                try (PreparedStatement statement = con.prepareStatement(SELECT_WORLD_ID_QUERY)) {
+                    statement.setString(1, worldName);
+                    ResultSet set = statement.executeQuery();
+                    set.next();
+                    worldId = set.getInt("id");
+                }
 
+                saveChunks(con, worldId, frames != null ? frames.getFrames() : List.of());
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
         } catch (SQLException ex) {
             throw new IOException(ex);
+        } finally {
+            metadataCache.invalidate(worldName);
         }
     }
 
+    private void saveChunks(Connection con, int worldId, List<ChunkFrame> frames) throws SQLException {
+        Map<Long, Long> storedHashes = new HashMap<>();
+
+        try (PreparedStatement statement = con.prepareStatement(SELECT_CHUNK_HASHES_QUERY)) {
+            statement.setInt(1, worldId);
+            ResultSet set = statement.executeQuery();
+
+            while (set.next()) {
+                storedHashes.put(set.getLong("chunk"), set.getLong("hash"));
+            }
+        }
+
+        ChunkChanges changes = diffChunks(storedHashes, frames);
+
+        // Only chunks whose frame changed since the last save are written
+        try (PreparedStatement statement = con.prepareStatement(UPDATE_CHUNK_QUERY)) {
+            for (ChunkFrame frame : changes.changed()) {
+                statement.setInt(1, worldId);
+                statement.setLong(2, frame.key());
+                statement.setInt(3, frame.length());
+                statement.setLong(4, frame.hash());
+                statement.setBytes(5, frame.compressed());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+
+        if (!changes.removed().isEmpty()) {
+            try (PreparedStatement statement = con.prepareStatement(DELETE_CHUNK_QUERY)) {
+                for (long key : changes.removed()) {
+                    statement.setInt(1, worldId);
+                    statement.setLong(2, key);
+                    statement.addBatch();
+                }
+
+                statement.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Compares the frames of a world with the hashes of its stored chunk rows.
+     *
+     * @param storedHashes the hashes of the stored chunk rows, by chunk key
+     * @param frames       the frames of the world being saved
+     * @return the frames whose row has to be written, and the keys of the rows that aren't part of the world anymore
+     */
+    static ChunkChanges diffChunks(Map<Long, Long> storedHashes, List<ChunkFrame> frames) {
+        Set<Long> removed = new HashSet<>(storedHashes.keySet());
+        List<ChunkFrame> changed = new ArrayList<>();
+
+        for (ChunkFrame frame : frames) {
+            removed.remove(frame.key());
+            Long storedHash = storedHashes.get(frame.key());
+
+            if (storedHash == null || storedHash != frame.hash()) {
+                changed.add(frame);
+            }
+        }
+
+        return new ChunkChanges(changed, removed);
+    }
+
     @Override
-    public void deleteWorld(String worldName) throws IOException, UnknownWorldException {
-        ScheduledFuture future = lockedWorlds.remove(worldName);
+    public boolean supportsDictionaries() {
+        return true;
+    }
 
-        if (future != null) {
-            future.cancel(false);
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        try (Connection con = source.getConnection();
+             PreparedStatement statement = con.prepareStatement(SELECT_DICTIONARY_QUERY)) {
+            statement.setInt(1, dictionaryId);
+            ResultSet set = statement.executeQuery();
+
+            return set.next() ? set.getBytes("dictionary") : null;
+        } catch (SQLException ex) {
+            throw new IOException(ex);
         }
+    }
 
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
         try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(DELETE_WORLD_QUERY)) {
-            statement.setString(1, worldName);
+             PreparedStatement statement = con.prepareStatement(UPDATE_DICTIONARY_QUERY)) {
+            statement.setInt(1, dictionaryId);
+            statement.setBytes(2, dictionary);
+            statement.executeUpdate();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
 
-            if (statement.executeUpdate() == 0) {
-                throw new UnknownWorldException(worldName);
+    @Override
+    public void deleteWorld(String worldName) throws IOException, UnknownWorldException {
+        leaseManager.release(this, worldName);
+        metadataCache.invalidate(worldName);
+
+        try (Connection con = source.getConnection()) {
+            con.setAutoCommit(false);
+
+            try {
+                try (PreparedStatement statement = con.prepareStatement(DELETE_WORLD_CHUNKS_QUERY)) {
+                    statement.setString(1, worldName);
+                    statement.executeUpdate();
+                }
+
+                try (PreparedStatement statement = con.prepareStatement(DELETE_WORLD_QUERY)) {
+                    statement.setString(1, worldName);
+
+                    if (statement.executeUpdate() == 0) {
+                        con.rollback();
+                        throw new UnknownWorldException(worldName);
+                    }
+                }
+
+                con.commit();
+            } catch (SQLException ex) {
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
             }
         } catch (SQLException ex) {
             throw new IOException(ex);
@@ -220,77 +612,137 @@ public class MysqlLoader extends UpdatableLoader {
 
     @Override
     public void acquireLock(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
-        if (this.isWorldLocked(worldName)) {
+        acquireLockToken(worldName);
+    }
+
+    @Override
+    public long acquireLockToken(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        if (leaseManager.isHeld(this, worldName)) {
             throw new WorldLockedException(worldName);
         }
 
-        updateLock(worldName, true);
+        metadataCache.invalidate(worldName);
+        long now = System.currentTimeMillis();
+
+        try (Connection con = source.getConnection();
+             PreparedStatement statement = con.prepareStatement(ACQUIRE_LOCK_QUERY, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setLong(1, now);
+            statement.setString(2, worldName);
+            statement.setLong(3, now - LoaderUtils.MAX_LOCK_TIME);
+
+            if (statement.executeUpdate() == 0) {
+                // Only a failed attempt needs another query, to tell why it failed
+                if (readMetadata(worldName) == null) {
+                    throw new UnknownWorldException(worldName);
+                }
+
+                throw new WorldLockedException(worldName);
+            }
+
+            long token;
+            try (ResultSet set = statement.getGeneratedKeys()) {
+                set.next();
+                token = set.getLong(1);
+            }
+
+            leaseManager.acquire(this, worldName, token);
+            return token;
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
     }
 
     @Override
     public boolean isWorldLocked(String worldName) throws IOException, UnknownWorldException {
-        if (lockedWorlds.containsKey(worldName)) {
+        if (leaseManager.isHeld(this, worldName)) {
             return true;
         }
 
+        return getWorldMetadata(worldName).isLocked();
+    }
+
+    @Override
+    public void unlockWorld(String worldName) throws IOException, UnknownWorldException {
+        long token = leaseManager.release(this, worldName);
+        metadataCache.invalidate(worldName);
+
+        // Locks not held by this server belong to another one, they're left alone
+        if (token == 0) {
+            getWorldMetadata(worldName);
+            return;
+        }
+
+        // A lock held by this server is only released if no other server has taken it over since
         try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(SELECT_WORLD_QUERY)) {
+             PreparedStatement statement = con.prepareStatement(RELEASE_LOCK_QUERY)) {
             statement.setString(1, worldName);
-            ResultSet set = statement.executeQuery();
+            statement.setLong(2, token);
 
-            if (!set.next()) {
+            if (statement.executeUpdate() == 0 && readMetadata(worldName) == null) {
                 throw new UnknownWorldException(worldName);
             }
-
-            return System.currentTimeMillis() - set.getLong("locked") <= LoaderUtils.MAX_LOCK_TIME;
         } catch (SQLException ex) {
             throw new IOException(ex);
         }
     }
 
     @Override
-    public void unlockWorld(String worldName) throws IOException, UnknownWorldException {
-        ScheduledFuture future = lockedWorlds.remove(worldName);
+    public Set<String> renewLeases(Map<String, Long> leases) throws IOException {
+        metadataCache.invalidateAll(leases.keySet());
+        long now = System.currentTimeMillis();
 
-        if (future != null) {
-            future.cancel(false);
-        }
+        try (Connection con = source.getConnection()) {
+            updateLocks(con, leases, now);
 
-        try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(UPDATE_LOCK_QUERY)) {
-            statement.setLong(1, 0L);
-            statement.setString(2, worldName);
+            // The amount of updated rows doesn't tell which locks were renewed, so they're read back
+            Set<String> renewed = new HashSet<>();
+            try (PreparedStatement statement = con.prepareStatement(String.format(SELECT_LOCKS_QUERY, getLeaseTuples(leases)))) {
+                statement.setLong(1, now);
+                setLeases(statement, 2, leases);
+                ResultSet set = statement.executeQuery();
 
-            if (statement.executeUpdate() == 0) {
-                throw new UnknownWorldException(worldName);
+                while (set.next()) {
+                    renewed.add(set.getString("name"));
+                }
             }
+
+            return renewed;
         } catch (SQLException ex) {
             throw new IOException(ex);
         }
     }
 
-    private void updateLock(String worldName, boolean forceSchedule) throws IOException {
-        try (Connection con = source.getConnection();
-             PreparedStatement statement = con.prepareStatement(UPDATE_LOCK_QUERY)) {
-            statement.setLong(1, System.currentTimeMillis());
-            statement.setString(2, worldName);
+    @Override
+    public void releaseLeases(Map<String, Long> leases) throws IOException {
+        metadataCache.invalidateAll(leases.keySet());
 
-            statement.executeUpdate();
+        try (Connection con = source.getConnection()) {
+            updateLocks(con, leases, 0L);
         } catch (SQLException ex) {
-            Logging.error("Failed to update the lock for world " + worldName + ":");
-            ex.printStackTrace();
             throw new IOException(ex);
         }
+    }
 
-        if (forceSchedule || lockedWorlds.containsKey(worldName)) { // Only schedule another update if the world is still on the map
-            lockedWorlds.put(worldName, SERVICE.schedule(() -> {
-                try {
-                    updateLock(worldName, false);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }, LoaderUtils.LOCK_INTERVAL, TimeUnit.MILLISECONDS));
+    private void updateLocks(Connection con, Map<String, Long> leases, long locked) throws SQLException {
+        try (PreparedStatement statement = con.prepareStatement(String.format(UPDATE_LOCKS_QUERY, getLeaseTuples(leases)))) {
+            statement.setLong(1, locked);
+            setLeases(statement, 2, leases);
+            statement.executeUpdate();
         }
     }
 
+    private static String getLeaseTuples(Map<String, Long> leases) {
+        return String.join(", ", Collections.nCopies(leases.size(), "(?, ?)"));
+    }
+
+    private static void setLeases(PreparedStatement statement, int index, Map<String, Long> leases) throws SQLException {
+        for (Map.Entry<String, Long> lease : leases.entrySet()) {
+            statement.setString(index++, lease.getKey());
+            statement.setLong(index++, lease.getValue());
+        }
+    }
+
+    record ChunkChanges(List<ChunkFrame> changed, Set<Long> removed) {
+
+    }
 }
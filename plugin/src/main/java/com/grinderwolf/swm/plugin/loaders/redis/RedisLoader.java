@@ -4,51 +4,330 @@ import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
 import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
 import com.infernalsuite.aswm.api.loaders.SlimeLoader;
 import com.grinderwolf.swm.plugin.config.DatasourcesConfig;
+import com.grinderwolf.swm.plugin.loaders.LeaseManager;
+import com.grinderwolf.swm.plugin.loaders.LeaseStore;
+import com.grinderwolf.swm.plugin.loaders.LoaderUtils;
 import com.grinderwolf.swm.plugin.loaders.redis.util.StringByteCodec;
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisClient;
-import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.support.AsyncConnectionPoolSupport;
+import io.lettuce.core.support.BoundedAsyncPool;
+import io.lettuce.core.support.BoundedPoolConfig;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-public class RedisLoader implements SlimeLoader {
+public class RedisLoader implements SlimeLoader, LeaseStore {
 
+    // Worlds saved by older versions are stored as a single value under this prefix
     private static final String WORLD_DATA_PREFIX = "aswm_world_data_";
+    private static final String WORLD_MANIFEST_PREFIX = "aswm_world_manifest_";
+    private static final String WORLD_CHUNK_PREFIX = "aswm_world_chunk_";
     private static final String WORLD_LOCK_PREFIX = "aswm_world_lock_";
+    private static final String WORLD_DICTIONARY_PREFIX = "aswm_world_dictionary_";
+    private static final String WORLD_LEASE_PREFIX = "aswm_world_lease_";
+    private static final String WORLD_FENCE_PREFIX = "aswm_world_fence_";
+    // Worlds are stored and streamed in values of this size, so a single command never has to move the whole world
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    // Amount of chunks fetched or written by a single MGET or MSET
+    private static final int CHUNK_BATCH_SIZE = 8;
+    // Amount of MGETs or MSETs that may be waiting for a reply at once
+    private static final int MAX_PENDING_BATCHES = 4;
+    // Chunks of a replaced world are kept for a while, so servers still reading it can finish
+    private static final long OLD_CHUNKS_TIME = 60000L;
+    // Chunks of a world that's still being saved expire after this, unless the save completes
+    private static final long PENDING_CHUNKS_TIME = 600000L;
+    private static final int SCAN_COUNT = 1000;
     private static final byte TRUE = 0x1;
     private static final byte FALSE = 0x0;
 
+    // Lock keys only mark that a world exists, or hold a lock flag written by older versions. Locks are lease keys
+    // holding the fencing token they were acquired with, which expire unless they're renewed
+    private static final String ACQUIRE_LOCK_SCRIPT = """
+            local lock = redis.call('GET', KEYS[1])
+            if not lock then return -1 end
+            if lock == ARGV[2] or redis.call('EXISTS', KEYS[2]) == 1 then return 0 end
+            local token = redis.call('INCR', KEYS[3])
+            redis.call('SET', KEYS[2], token, 'NX', 'PX', ARGV[1])
+            return token
+            """;
+    private static final String RENEW_LOCK_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end
+            return 0
+            """;
+    private static final String RELEASE_LOCK_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0
+            """;
+    // Swaps in the manifest of a saved world once all of its chunks are stored, and makes them permanent.
+    // The chunks of the previous manifest are kept for a while, so servers still reading them can finish.
+    // Saves fenced with a token are rejected once the lease is held with another token
+    private static final String SWAP_MANIFEST_SCRIPT = """
+            if ARGV[5] ~= '0' and redis.call('GET', KEYS[4]) ~= ARGV[5] then return -1 end
+            local count = tonumber(ARGV[2])
+            for i = 5, 4 + count do
+                if redis.call('EXISTS', KEYS[i]) == 0 then return 0 end
+            end
+            for i = 5, 4 + count do redis.call('PERSIST', KEYS[i]) end
+            for i = 5 + count, #KEYS do redis.call('PEXPIRE', KEYS[i], ARGV[3]) end
+            redis.call('SET', KEYS[1], ARGV[1])
+            redis.call('DEL', KEYS[2])
+            redis.call('SET', KEYS[3], ARGV[4], 'NX')
+            return 1
+            """;
+    private static final byte[] LEASE_TIME = String.valueOf(LoaderUtils.MAX_LOCK_TIME).getBytes(StandardCharsets.US_ASCII);
+
     public RedisLoader(DatasourcesConfig.RedisConfig config) {
-        this.connection = RedisClient
-            .create(config.getUri())
-            .connect(StringByteCodec.INSTANCE)
-            .sync();
+        this(RedisURI.create(config.getUri()), RedisClient.create());
+    }
+
+    private RedisLoader(RedisURI uri, RedisClient client) {
+        this(uri.getTimeout(), () -> client.connectAsync(StringByteCodec.INSTANCE, uri));
     }
 
-    private final RedisCommands<String, byte[]> connection;
+    RedisLoader(Duration timeout, Supplier<CompletionStage<StatefulRedisConnection<String, byte[]>>> connections) {
+        this.timeout = timeout;
+        this.pool = AsyncConnectionPoolSupport.createBoundedObjectPool(connections, BoundedPoolConfig.create());
+    }
+
+    private final Duration timeout;
+    private final BoundedAsyncPool<StatefulRedisConnection<String, byte[]>> pool;
+    private final LeaseManager leaseManager = LoaderUtils.getLeaseManager();
 
     @Override
     public byte[] loadWorld(String name) throws UnknownWorldException, IOException {
-        byte[] data = connection.get(WORLD_DATA_PREFIX + name);
-        if (data == null) {
-            throw new UnknownWorldException(name);
+        Manifest manifest = readManifest(name);
+        if (manifest == null) {
+            byte[] data = execute(connection -> connection.get(WORLD_DATA_PREFIX + name));
+            if (data == null) {
+                throw new UnknownWorldException(name);
+            }
+            return data;
         }
+
+        byte[] data = new byte[Math.toIntExact(manifest.length())];
+        readChunks(name, manifest, ByteBuffer.wrap(data));
         return data;
     }
 
+    @Override
+    public ByteBuffer loadWorldBuffer(String name) throws UnknownWorldException, IOException {
+        Manifest manifest = readManifest(name);
+        if (manifest == null) {
+            try (InputStream stream = loadLegacyStream(name)) {
+                return LoaderUtils.readDirect(stream, ((WorldStream) stream).length);
+            }
+        }
+
+        if (manifest.length() > Integer.MAX_VALUE) {
+            throw new IndexOutOfBoundsException("World is too big!");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) manifest.length());
+        readChunks(name, manifest, buffer);
+        return buffer.flip();
+    }
+
+    @Override
+    public InputStream loadWorldStream(String name) throws UnknownWorldException, IOException {
+        Manifest manifest = readManifest(name);
+        if (manifest == null) {
+            return loadLegacyStream(name);
+        }
+
+        return new ChunkStream(name, manifest);
+    }
+
+    private InputStream loadLegacyStream(String name) throws UnknownWorldException, IOException {
+        long length = execute(connection -> connection.strlen(WORLD_DATA_PREFIX + name));
+        if (length == 0) {
+            throw new UnknownWorldException(name);
+        }
+        return new WorldStream(WORLD_DATA_PREFIX + name, length);
+    }
+
     @Override
     public boolean worldExists(String name) throws IOException {
-        return connection.get(WORLD_LOCK_PREFIX  + name) != null;
+        return execute(connection -> connection.exists(WORLD_LOCK_PREFIX + name)) > 0;
     }
 
     @Override
     public List<String> listWorlds() throws IOException {
-        return connection.keys(WORLD_LOCK_PREFIX  + "*");
+        // SCAN walks the keyspace in small steps, unlike KEYS it doesn't block the server until every key is checked
+        ScanArgs args = ScanArgs.Builder.matches(WORLD_LOCK_PREFIX + "*").limit(SCAN_COUNT);
+        List<String> worlds = new ArrayList<>();
+        ScanCursor cursor = ScanCursor.INITIAL;
+
+        do {
+            ScanCursor current = cursor;
+            KeyScanCursor<String> keys = execute(connection -> connection.scan(current, args));
+            for (String key : keys.getKeys()) {
+                worlds.add(key.substring(WORLD_LOCK_PREFIX.length()));
+            }
+            cursor = keys;
+        } while (!cursor.isFinished());
+
+        return worlds;
     }
 
     @Override
     public void saveWorld(String name, byte[] bytes) throws IOException {
-        connection.set(WORLD_DATA_PREFIX + name, bytes);
+        saveWorldStream(name, new ByteArrayInputStream(bytes));
+    }
+
+    @Override
+    public void saveWorld(String name, byte[] bytes, long lockToken) throws IOException {
+        saveWorldStream(name, new ByteArrayInputStream(bytes), lockToken);
+    }
+
+    @Override
+    public void saveWorldStream(String name, InputStream serializedWorld) throws IOException {
+        saveWorldStream(name, serializedWorld, 0);
+    }
+
+    private void saveWorldStream(String name, InputStream serializedWorld, long lockToken) throws IOException {
+        // Chunks are written under a new generation, so readers never see a partially written world
+        Manifest previous = readManifest(name);
+        long generation = previous == null ? 1 : previous.generation() + 1;
+
+        // Chunks are written with a few batches in flight. They expire unless the manifest is swapped in,
+        // so a save that never completes doesn't leave them behind
+        Deque<CompletableFuture<Void>> pending = new ArrayDeque<>();
+        Map<String, byte[]> batch = new LinkedHashMap<>();
+        long length = 0;
+        int index = 0;
+
+        try {
+            while (true) {
+                byte[] chunk = serializedWorld.readNBytes(CHUNK_SIZE);
+                if (chunk.length > 0) {
+                    batch.put(chunkKey(name, generation, index++), chunk);
+                    length += chunk.length;
+                }
+
+                if (!batch.isEmpty() && (batch.size() == CHUNK_BATCH_SIZE || chunk.length == 0)) {
+                    if (pending.size() >= MAX_PENDING_BATCHES) {
+                        await(pending.poll());
+                    }
+
+                    pending.add(writeChunks(batch));
+                    batch = new LinkedHashMap<>();
+                }
+
+                if (chunk.length == 0) {
+                    break;
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                await(pending.poll());
+            }
+        } catch (IOException | RuntimeException ex) {
+            discardChunks(name, generation, index, pending, ex);
+            throw ex;
+        }
+
+        Manifest manifest = new Manifest(generation, length);
+        List<String> keys = new ArrayList<>(List.of(WORLD_MANIFEST_PREFIX + name, WORLD_DATA_PREFIX + name, WORLD_LOCK_PREFIX + name,
+                WORLD_LEASE_PREFIX + name));
+        for (int i = 0; i < manifest.chunkCount(); i++) {
+            keys.add(chunkKey(name, generation, i));
+        }
+        if (previous != null) {
+            for (int i = 0; i < previous.chunkCount(); i++) {
+                keys.add(chunkKey(name, previous.generation(), i));
+            }
+        }
+
+        Long swapped = execute(connection -> connection.<Long>eval(SWAP_MANIFEST_SCRIPT, ScriptOutputType.INTEGER, keys.toArray(new String[0]),
+                manifest.serialize(), decimalValue(manifest.chunkCount()), decimalValue(OLD_CHUNKS_TIME), new byte[]{FALSE}, decimalValue(lockToken)));
+        if (swapped == -1) {
+            IOException ex = new IOException("The lock of world " + name + " has been taken over by another server");
+            discardChunks(name, generation, index, pending, ex);
+            throw ex;
+        }
+        if (swapped == 0) {
+            throw new IOException("Chunks of world " + name + " expired before it was saved");
+        }
+    }
+
+    private CompletableFuture<Void> writeChunks(Map<String, byte[]> chunks) {
+        return submit(connection -> {
+            List<CompletableFuture<String>> futures = new ArrayList<>(chunks.size());
+            chunks.forEach((key, value) -> futures.add(connection.set(key, value, SetArgs.Builder.px(PENDING_CHUNKS_TIME)).toCompletableFuture()));
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        });
+    }
+
+    // Waits for the writes still in flight, so none of them lands after the chunks are deleted
+    private void discardChunks(String name, long generation, int chunkCount, Deque<CompletableFuture<Void>> pending, Exception cause) {
+        while (!pending.isEmpty()) {
+            try {
+                await(pending.poll());
+            } catch (IOException ignored) {
+                // The write failed, there's nothing to delete for it
+            }
+        }
+
+        if (chunkCount == 0) {
+            return;
+        }
+
+        String[] keys = new String[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            keys[i] = chunkKey(name, generation, i);
+        }
+
+        try {
+            execute(connection -> connection.del(keys));
+        } catch (IOException ex) {
+            // They still expire on their own
+            cause.addSuppressed(ex);
+        }
+    }
+
+    @Override
+    public boolean supportsDictionaries() {
+        return true;
+    }
+
+    @Override
+    public byte[] loadDictionary(int dictionaryId) throws IOException {
+        return execute(connection -> connection.get(WORLD_DICTIONARY_PREFIX + dictionaryId));
+    }
+
+    @Override
+    public void saveDictionary(int dictionaryId, byte[] dictionary) throws IOException {
+        execute(connection -> connection.set(WORLD_DICTIONARY_PREFIX + dictionaryId, dictionary));
     }
 
     @Override
@@ -57,33 +336,366 @@ public class RedisLoader implements SlimeLoader {
         if (!exists) {
             throw new UnknownWorldException(name);
         }
-        connection.del(WORLD_DATA_PREFIX + name, WORLD_LOCK_PREFIX + name);
+        leaseManager.release(this, name);
+
+        Manifest manifest = readManifest(name);
+        List<String> keys = new ArrayList<>(List.of(WORLD_MANIFEST_PREFIX + name, WORLD_DATA_PREFIX + name,
+                WORLD_LOCK_PREFIX + name, WORLD_LEASE_PREFIX + name, WORLD_FENCE_PREFIX + name));
+        if (manifest != null) {
+            for (int i = 0; i < manifest.chunkCount(); i++) {
+                keys.add(chunkKey(name, manifest.generation(), i));
+            }
+        }
+
+        execute(connection -> connection.del(keys.toArray(new String[0])));
     }
 
     @Override
     public void acquireLock(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
-        if (this.isWorldLocked(worldName)) {
+        acquireLockToken(worldName);
+    }
+
+    @Override
+    public long acquireLockToken(String worldName) throws UnknownWorldException, WorldLockedException, IOException {
+        if (leaseManager.isHeld(this, worldName)) {
             throw new WorldLockedException(worldName);
         }
 
-        connection.set(WORLD_LOCK_PREFIX + worldName, new byte[]{TRUE});
+        Long token = execute(connection -> connection.<Long>eval(ACQUIRE_LOCK_SCRIPT, ScriptOutputType.INTEGER,
+                new String[]{WORLD_LOCK_PREFIX + worldName, WORLD_LEASE_PREFIX + worldName, WORLD_FENCE_PREFIX + worldName},
+                LEASE_TIME, new byte[]{TRUE}));
+
+        if (token < 0) {
+            throw new UnknownWorldException(worldName);
+        }
+        if (token == 0) {
+            throw new WorldLockedException(worldName);
+        }
+
+        leaseManager.acquire(this, worldName, token);
+        return token;
     }
 
     @Override
     public boolean isWorldLocked(String worldName) throws UnknownWorldException, IOException {
-        byte[] lock = connection.get(WORLD_LOCK_PREFIX + worldName);
+        if (leaseManager.isHeld(this, worldName)) {
+            return true;
+        }
+
+        byte[] lock = execute(connection -> connection.get(WORLD_LOCK_PREFIX + worldName));
         if (lock == null) {
             throw new UnknownWorldException(worldName);
         }
-        if (lock[0] == TRUE) {
+        if (lock.length == 1 && lock[0] == TRUE) {
             return true;
         }
 
-        return false;
+        return execute(connection -> connection.exists(WORLD_LEASE_PREFIX + worldName)) > 0;
     }
 
     @Override
     public void unlockWorld(String worldName) throws UnknownWorldException, IOException {
-        connection.set(WORLD_LOCK_PREFIX + worldName, new byte[]{FALSE});
+        long token = leaseManager.release(this, worldName);
+
+        // Locks not held by this server belong to another one, they're left alone
+        if (token == 0) {
+            if (!worldExists(worldName)) {
+                throw new UnknownWorldException(worldName);
+            }
+            return;
+        }
+
+        execute(connection -> {
+            // A lock held by this server is only released if no other server has taken it over since
+            connection.eval(RELEASE_LOCK_SCRIPT, ScriptOutputType.INTEGER, new String[]{WORLD_LEASE_PREFIX + worldName}, decimalValue(token));
+            return connection.set(WORLD_LOCK_PREFIX + worldName, new byte[]{FALSE}, SetArgs.Builder.xx());
+        });
     }
-}
\ No newline at end of file
+
+    @Override
+    public Set<String> renewLeases(Map<String, Long> leases) throws IOException {
+        List<String> worldNames = new ArrayList<>(leases.keySet());
+        List<Long> results = evalLeases(RENEW_LOCK_SCRIPT, worldNames, leases, LEASE_TIME);
+
+        Set<String> renewed = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) > 0) {
+                renewed.add(worldNames.get(i));
+            }
+        }
+
+        return renewed;
+    }
+
+    @Override
+    public void releaseLeases(Map<String, Long> leases) throws IOException {
+        evalLeases(RELEASE_LOCK_SCRIPT, new ArrayList<>(leases.keySet()), leases);
+    }
+
+    private List<Long> evalLeases(String script, List<String> worldNames, Map<String, Long> leases, byte[]... arguments) throws IOException {
+        // Scripts are pipelined on a single connection, they're only waited for once all of them are sent
+        return execute(connection -> {
+            List<CompletableFuture<Long>> futures = new ArrayList<>(worldNames.size());
+            for (String worldName : worldNames) {
+                byte[][] values = new byte[arguments.length + 1][];
+                values[0] = decimalValue(leases.get(worldName));
+                System.arraycopy(arguments, 0, values, 1, arguments.length);
+
+                RedisFuture<Long> future = connection.eval(script, ScriptOutputType.INTEGER,
+                        new String[]{WORLD_LEASE_PREFIX + worldName}, values);
+                futures.add(future.toCompletableFuture());
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+        });
+    }
+
+    private Manifest readManifest(String name) throws IOException {
+        byte[] manifest = execute(connection -> connection.get(WORLD_MANIFEST_PREFIX + name));
+        return manifest == null ? null : Manifest.deserialize(manifest);
+    }
+
+    private void readChunks(String name, Manifest manifest, ByteBuffer target) throws IOException {
+        // A few MGETs are kept in flight, so the next chunks are already on their way while a batch is copied
+        Deque<CompletableFuture<List<KeyValue<String, byte[]>>>> pending = new ArrayDeque<>();
+        int requested = 0;
+        int index = 0;
+
+        while (index < manifest.chunkCount()) {
+            while (requested < manifest.chunkCount() && pending.size() < MAX_PENDING_BATCHES) {
+                pending.add(fetchChunks(name, manifest, requested));
+                requested += CHUNK_BATCH_SIZE;
+            }
+
+            for (byte[] chunk : chunkValues(name, manifest, index, pending.poll())) {
+                target.put(chunk);
+                index++;
+            }
+        }
+    }
+
+    private CompletableFuture<List<KeyValue<String, byte[]>>> fetchChunks(String name, Manifest manifest, int first) {
+        int last = Math.min(first + CHUNK_BATCH_SIZE, manifest.chunkCount());
+        String[] keys = new String[last - first];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = chunkKey(name, manifest.generation(), first + i);
+        }
+
+        return submit(connection -> connection.mget(keys));
+    }
+
+    private List<byte[]> chunkValues(String name, Manifest manifest, int first,
+                                     CompletableFuture<List<KeyValue<String, byte[]>>> future) throws IOException {
+        List<KeyValue<String, byte[]>> values = await(future);
+        List<byte[]> chunks = new ArrayList<>(values.size());
+
+        for (int i = 0; i < values.size(); i++) {
+            KeyValue<String, byte[]> value = values.get(i);
+            long expected = Math.min(CHUNK_SIZE, manifest.length() - (long) (first + i) * CHUNK_SIZE);
+            if (!value.hasValue() || value.getValue().length != expected) {
+                throw new IOException("World " + name + " was changed while it was being read");
+            }
+            chunks.add(value.getValue());
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Runs commands on a pooled connection and waits for the future they return. The connection is given back to the
+     * pool once that future completes, commands sent before it are pipelined with it.
+     */
+    private <T> T execute(Function<RedisAsyncCommands<String, byte[]>, ? extends CompletionStage<T>> command) throws IOException {
+        return await(submit(command));
+    }
+
+    private <T> CompletableFuture<T> submit(Function<RedisAsyncCommands<String, byte[]>, ? extends CompletionStage<T>> command) {
+        return pool.acquire().thenCompose(connection -> {
+            CompletionStage<T> result;
+            try {
+                result = command.apply(connection.async());
+            } catch (RuntimeException ex) {
+                pool.release(connection);
+                throw ex;
+            }
+
+            return result.whenComplete((value, ex) -> pool.release(connection));
+        });
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for Redis", ex);
+        } catch (TimeoutException ex) {
+            throw new IOException("Timed out while waiting for Redis", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause() instanceof CompletionException ? ex.getCause().getCause() : ex.getCause();
+            throw cause instanceof IOException ioException ? ioException : new IOException(cause);
+        }
+    }
+
+    private static String chunkKey(String name, long generation, int index) {
+        return WORLD_CHUNK_PREFIX + name + ":" + generation + ":" + index;
+    }
+
+    // Numbers passed to scripts, like fencing tokens, are sent as decimal strings
+    private static byte[] decimalValue(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Points to the chunks a world is currently stored in.
+     *
+     * @param generation the generation of the chunk keys, which changes every time the world is saved
+     * @param length     the size of the serialized world, in bytes
+     */
+    private record Manifest(long generation, long length) {
+
+        private int chunkCount() {
+            return Math.toIntExact((length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+
+        private byte[] serialize() {
+            return ByteBuffer.allocate(Long.BYTES * 2).putLong(generation).putLong(length).array();
+        }
+
+        private static Manifest deserialize(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new Manifest(buffer.getLong(), buffer.getLong());
+        }
+
+    }
+
+    /**
+     * Reads the chunks of a stored world, always fetching the next batch of chunks while the current one is read.
+     * Chunks of replaced worlds are kept for {@link #OLD_CHUNKS_TIME}, so they don't disappear while being read.
+     */
+    private class ChunkStream extends InputStream {
+
+        private final String name;
+        private final Manifest manifest;
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        private CompletableFuture<List<KeyValue<String, byte[]>>> pending;
+        private int pendingIndex;
+        private byte[] chunk = new byte[0];
+        private int chunkOffset;
+
+        private ChunkStream(String name, Manifest manifest) {
+            this.name = name;
+            this.manifest = manifest;
+            this.pending = manifest.chunkCount() > 0 ? fetchChunks(name, manifest, 0) : null;
+        }
+
+        private boolean fill() throws IOException {
+            while (chunkOffset >= chunk.length) {
+                if (chunks.isEmpty()) {
+                    if (pending == null) {
+                        return false;
+                    }
+
+                    chunks.addAll(chunkValues(name, manifest, pendingIndex, pending));
+                    pendingIndex += CHUNK_BATCH_SIZE;
+                    pending = pendingIndex < manifest.chunkCount() ? fetchChunks(name, manifest, pendingIndex) : null;
+                }
+
+                chunk = chunks.poll();
+                chunkOffset = 0;
+            }
+
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[chunkOffset++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+
+            int read = Math.min(len, chunk.length - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, b, off, read);
+            chunkOffset += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - chunkOffset;
+        }
+
+    }
+
+    /**
+     * Reads a world stored as a single value by older versions in ranges of {@link #CHUNK_SIZE} bytes. Worlds are
+     * only written by the server holding their lock, so the value doesn't change while it's being read.
+     */
+    private class WorldStream extends InputStream {
+
+        private final String key;
+        private final long length;
+        private long offset;
+        private byte[] chunk = new byte[0];
+        private int chunkOffset;
+
+        private WorldStream(String key, long length) {
+            this.key = key;
+            this.length = length;
+        }
+
+        private boolean fill() throws IOException {
+            if (chunkOffset < chunk.length) {
+                return true;
+            }
+            if (offset >= length) {
+                return false;
+            }
+
+            long start = offset;
+            long end = Math.min(offset + CHUNK_SIZE, length) - 1;
+            chunk = execute(connection -> connection.getrange(key, start, end));
+            chunkOffset = 0;
+            offset += chunk.length;
+
+            // The value got shorter while reading
+            return chunk.length > 0;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[chunkOffset++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+
+            int read = Math.min(len, chunk.length - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, b, off, read);
+            chunkOffset += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - chunkOffset;
+        }
+
+    }
+
+}
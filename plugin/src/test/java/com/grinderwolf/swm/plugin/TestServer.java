@@ -0,0 +1,97 @@
+package com.grinderwolf.swm.plugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.ConsoleCommandSender;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * Minimal server, so code logging through the server console can run without one. Messages sent to the console are kept.
+ */
+public final class TestServer {
+
+    private static final List<String> MESSAGES = new CopyOnWriteArrayList<>();
+
+    private TestServer() {
+    }
+
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+
+        ConsoleCommandSender console = proxy(ConsoleCommandSender.class, (method, args) -> {
+            if (method.getName().equals("sendMessage") && args != null && args.length == 1 && args[0] instanceof String message) {
+                MESSAGES.add(message);
+            }
+
+            return null;
+        });
+
+        Bukkit.setServer(proxy(Server.class, (method, args) -> switch (method.getName()) {
+            case "getLogger" -> Logger.getLogger("TestServer");
+            case "getConsoleSender" -> console;
+            case "getName", "getVersion", "getBukkitVersion" -> "test";
+            default -> null;
+        }));
+    }
+
+    /**
+     * @return the messages sent to the console so far
+     */
+    public static List<String> getMessages() {
+        return MESSAGES;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(TestServer.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName();
+                };
+            }
+
+            Object value = handler.handle(method, args);
+            return value != null || !method.getReturnType().isPrimitive() ? value : defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+
+        if (type == void.class) {
+            return null;
+        }
+
+        if (type == char.class) {
+            return '\0';
+        }
+
+        // Every other primitive is a number
+        return switch (type.getName()) {
+            case "byte" -> (byte) 0;
+            case "short" -> (short) 0;
+            case "int" -> 0;
+            case "long" -> 0L;
+            case "float" -> 0F;
+            default -> 0D;
+        };
+    }
+
+    private interface Handler {
+
+        Object handle(Method method, Object[] args);
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.grinderwolf.swm.plugin.loaders;
+
+import com.grinderwolf.swm.plugin.TestServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaseManagerTest {
+
+    private static final long RENEW_INTERVAL = 10;
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition wasn't met in time");
+            Thread.sleep(RENEW_INTERVAL);
+        }
+    }
+
+    @Test
+    void renewsEveryLeaseOfAStoreInOneBatch() throws Exception {
+        TestServer.install();
+        LeaseManager manager = new LeaseManager(RENEW_INTERVAL);
+        Store store = new Store();
+
+        try {
+            manager.acquire(store, "a", 1);
+            manager.acquire(store, "b", 2);
+            manager.acquire(store, "c", 3);
+            // A renewal may run before every lease was acquired, the following ones renew all of them at once
+            await(() -> store.renewed.contains(Map.of("a", 1L, "b", 2L, "c", 3L)));
+            assertTrue(manager.isHeld(store, "a"));
+
+            LeaseManager.Metrics metrics = manager.getMetrics();
+            assertEquals(3, metrics.heldLeases());
+            assertEquals(0, metrics.lostLeases());
+            assertTrue(metrics.isHealthy());
+        } finally {
+            manager.releaseAll();
+        }
+    }
+
+    @Test
+    void dropsLeasesTakenOverByAnotherServer() throws Exception {
+        TestServer.install();
+        LeaseManager manager = new LeaseManager(RENEW_INTERVAL);
+        Store store = new Store();
+        store.takenOver.add("b");
+        List<String> lost = new CopyOnWriteArrayList<>();
+        manager.addLostLeaseListener((lostStore, worldName) -> {
+            if (lostStore == store) {
+                lost.add(worldName);
+            }
+        });
+
+        try {
+            manager.acquire(store, "a", 1);
+            manager.acquire(store, "b", 2);
+            await(() -> !lost.isEmpty());
+
+            assertEquals(List.of("b"), lost);
+            assertFalse(manager.isHeld(store, "b"));
+            assertTrue(manager.isHeld(store, "a"));
+            assertEquals(1, manager.getMetrics().lostLeases());
+            assertEquals(1, manager.getMetrics().heldLeases());
+        } finally {
+            manager.releaseAll();
+        }
+    }
+
+    @Test
+    void countsFailedRenewalsWithoutDroppingRecentLeases() throws Exception {
+        TestServer.install();
+        LeaseManager manager = new LeaseManager(RENEW_INTERVAL);
+        Store store = new Store();
+        store.failing = true;
+
+        try {
+            manager.acquire(store, "a", 1);
+            await(() -> manager.getMetrics().failedRenewals() > 1);
+
+            assertTrue(manager.isHeld(store, "a"));
+            assertEquals(0, manager.getMetrics().lostLeases());
+        } finally {
+            manager.releaseAll();
+        }
+    }
+
+    @Test
+    void releasesLeasesThatWereRenewedWhileBeingReleased() throws Exception {
+        TestServer.install();
+        LeaseManager manager = new LeaseManager(RENEW_INTERVAL);
+        Store store = new Store();
+        store.renewing = new CountDownLatch(1);
+        store.resume = new CountDownLatch(1);
+
+        try {
+            manager.acquire(store, "a", 1);
+            assertTrue(store.renewing.await(5, TimeUnit.SECONDS));
+
+            // The renewal in progress renews the lock after it was released, so it's released again afterwards
+            assertEquals(1, manager.release(store, "a"));
+            assertEquals(0, manager.release(store, "a"));
+            store.resume.countDown();
+            await(() -> !store.released.isEmpty());
+
+            assertEquals(Map.of("a", 1L), store.released.get(0));
+            assertFalse(manager.isHeld(store, "a"));
+        } finally {
+            manager.releaseAll();
+        }
+    }
+
+    @Test
+    void releasesEveryLeaseOnShutdown() {
+        LeaseManager manager = new LeaseManager(60000);
+        Store first = new Store();
+        Store second = new Store();
+        manager.acquire(first, "a", 1);
+        manager.acquire(first, "b", 2);
+        manager.acquire(second, "c", 3);
+
+        manager.releaseAll();
+
+        assertEquals(List.of(Map.of("a", 1L, "b", 2L)), first.released);
+        assertEquals(List.of(Map.of("c", 3L)), second.released);
+        assertFalse(manager.isHeld(first, "a"));
+        assertEquals(0, manager.getMetrics().heldLeases());
+    }
+
+    private static final class Store implements LeaseStore {
+
+        private final List<Map<String, Long>> renewed = new CopyOnWriteArrayList<>();
+        private final List<Map<String, Long>> released = new CopyOnWriteArrayList<>();
+        private final Set<String> takenOver = new HashSet<>();
+        private volatile boolean failing;
+        private volatile CountDownLatch renewing;
+        private volatile CountDownLatch resume;
+
+        @Override
+        public Set<String> renewLeases(Map<String, Long> leases) throws IOException {
+            if (this.renewing != null) {
+                this.renewing.countDown();
+                try {
+                    this.resume.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (this.failing) {
+                throw new IOException("data source unavailable");
+            }
+
+            this.renewed.add(new HashMap<>(leases));
+            Set<String> renewed = new HashSet<>(leases.keySet());
+            renewed.removeAll(this.takenOver);
+            return renewed;
+        }
+
+        @Override
+        public void releaseLeases(Map<String, Long> leases) {
+            this.released.add(new HashMap<>(leases));
+        }
+
+    }
+}
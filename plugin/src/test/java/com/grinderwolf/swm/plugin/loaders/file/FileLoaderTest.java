@@ -0,0 +1,106 @@
+package com.grinderwolf.swm.plugin.loaders.file;
+
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileLoaderTest {
+
+    @TempDir
+    File worldDir;
+
+    @Test
+    void roundTripsWorlds() throws Exception {
+        FileLoader loader = new FileLoader(this.worldDir);
+        byte[] world = LoaderWorlds.serialize(LoaderWorlds.filled(2, "minecraft:stone"));
+        loader.saveWorld("world", world);
+
+        assertTrue(loader.worldExists("world"));
+        assertArrayEquals(world, loader.loadWorld("world"));
+
+        ByteBuffer buffer = loader.loadWorldBuffer("world");
+        byte[] fromBuffer = new byte[buffer.remaining()];
+        buffer.get(fromBuffer);
+        assertArrayEquals(world, fromBuffer);
+
+        try (InputStream in = loader.loadWorldStream("world")) {
+            assertArrayEquals(world, in.readAllBytes());
+        }
+
+        // Saving again replaces the whole world, streamed saves write the same file
+        byte[] changed = LoaderWorlds.serialize(LoaderWorlds.filled(1, "minecraft:dirt"));
+        loader.saveWorldStream("world", new ByteArrayInputStream(changed));
+        assertArrayEquals(changed, loader.loadWorld("world"));
+        assertEquals(List.of("world"), loader.listWorlds());
+    }
+
+    @Test
+    void rejectsUnknownWorlds() throws IOException {
+        FileLoader loader = new FileLoader(this.worldDir);
+
+        assertFalse(loader.worldExists("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.loadWorld("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.loadWorldBuffer("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.deleteWorld("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.acquireLockToken("missing"));
+        assertTrue(loader.listWorlds().isEmpty());
+    }
+
+    @Test
+    void locksWorlds() throws Exception {
+        FileLoader loader = new FileLoader(this.worldDir);
+        loader.saveWorld("world", LoaderWorlds.serialize(LoaderWorlds.filled(0, "minecraft:stone")));
+
+        assertFalse(loader.isWorldLocked("world"));
+        long token = loader.acquireLockToken("world");
+        assertTrue(loader.isWorldLocked("world"));
+        assertTrue(new FileLoader(this.worldDir).isWorldLocked("world"), "lock isn't visible to other loaders");
+        assertThrows(WorldLockedException.class, () -> new FileLoader(this.worldDir).acquireLockToken("world"));
+
+        // Tokens keep increasing across locks, saves don't release the lock
+        loader.saveWorld("world", LoaderWorlds.serialize(LoaderWorlds.filled(0, "minecraft:dirt")));
+        assertTrue(loader.isWorldLocked("world"));
+        loader.unlockWorld("world");
+        assertFalse(loader.isWorldLocked("world"));
+        assertEquals(token + 1, new FileLoader(this.worldDir).acquireLockToken("world"));
+    }
+
+    @Test
+    void deletesWorlds() throws Exception {
+        FileLoader loader = new FileLoader(this.worldDir);
+        loader.saveWorld("world", LoaderWorlds.serialize(LoaderWorlds.filled(0, "minecraft:stone")));
+        loader.acquireLock("world");
+
+        loader.deleteWorld("world");
+        assertFalse(loader.worldExists("world"));
+        assertTrue(loader.listWorlds().isEmpty());
+        assertFalse(new File(this.worldDir, "world.slime.lock").exists());
+    }
+
+    @Test
+    void storesDictionaries() throws IOException {
+        FileLoader loader = new FileLoader(this.worldDir);
+        assertTrue(loader.supportsDictionaries());
+        assertNull(loader.loadDictionary(7));
+
+        byte[] dictionary = {1, 2, 3, 4};
+        loader.saveDictionary(7, dictionary);
+        assertArrayEquals(dictionary, loader.loadDictionary(7));
+        assertTrue(loader.listWorlds().isEmpty());
+    }
+}
@@ -0,0 +1,66 @@
+package com.grinderwolf.swm.plugin.loaders.file;
+
+import com.flowpowered.nbt.CompoundMap;
+import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.ListTag;
+import com.flowpowered.nbt.LongArrayTag;
+import com.flowpowered.nbt.StringTag;
+import com.flowpowered.nbt.TagType;
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.world.SlimeChunk;
+import com.infernalsuite.aswm.api.world.SlimeChunkSection;
+import com.infernalsuite.aswm.api.world.properties.SlimePropertyMap;
+import com.infernalsuite.aswm.serialization.slime.SlimeSerializer;
+import com.infernalsuite.aswm.skeleton.SkeletonSlimeWorld;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSectionSkeleton;
+import com.infernalsuite.aswm.skeleton.SlimeChunkSkeleton;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Serializes small worlds for the loader tests. Every chunk is filled with the block it is given and gets
+ * random height maps, so each chunk frame is large enough to tell appended chunks from manifests.
+ */
+final class LoaderWorlds {
+
+    private LoaderWorlds() {
+    }
+
+    static byte[] serialize(Map<ChunkPos, String> blocks) {
+        Map<ChunkPos, SlimeChunk> chunks = new HashMap<>();
+        blocks.forEach((pos, block) -> chunks.put(pos, chunk(pos, block)));
+        return SlimeSerializer.serialize(new SkeletonSlimeWorld("test", null, chunks, new CompoundTag("", new CompoundMap()),
+                new SlimePropertyMap(), 3120));
+    }
+
+    static Map<ChunkPos, String> filled(int radius, String block) {
+        Map<ChunkPos, String> blocks = new HashMap<>();
+        for (int x = -radius; x <= radius; x++) {
+            for (int z = -radius; z <= radius; z++) {
+                blocks.put(new ChunkPos(x, z), block);
+            }
+        }
+
+        return blocks;
+    }
+
+    private static SlimeChunk chunk(ChunkPos pos, String block) {
+        SlimeChunkSection[] sections = new SlimeChunkSection[24];
+        for (int i = 0; i < sections.length; i++) {
+            CompoundMap state = new CompoundMap();
+            state.put(new StringTag("Name", block));
+            CompoundMap blockStates = new CompoundMap();
+            blockStates.put(new ListTag<>("palette", TagType.TAG_COMPOUND, List.of(new CompoundTag("", state))));
+            CompoundMap biomes = new CompoundMap();
+            biomes.put(new ListTag<>("palette", TagType.TAG_STRING, List.of(new StringTag("", "minecraft:plains"))));
+            sections[i] = new SlimeChunkSectionSkeleton(new CompoundTag("", blockStates), new CompoundTag("", biomes), null, null);
+        }
+
+        CompoundMap heightMaps = new CompoundMap();
+        heightMaps.put(new LongArrayTag("MOTION_BLOCKING", new Random(pos.toKey()).longs(256).toArray()));
+        return new SlimeChunkSkeleton(pos.x(), pos.z(), sections, new CompoundTag("", heightMaps), List.of(), List.of());
+    }
+}
@@ -0,0 +1,144 @@
+package com.grinderwolf.swm.plugin.loaders.file;
+
+import com.infernalsuite.aswm.ChunkPos;
+import com.infernalsuite.aswm.api.exceptions.UnknownWorldException;
+import com.infernalsuite.aswm.api.exceptions.WorldLockedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFileLoaderTest {
+
+    @TempDir
+    File worldDir;
+
+    // Compaction reports through the server console, so it's never started here
+    private LogFileLoader loader() {
+        return new LogFileLoader(this.worldDir, 0.5, Long.MAX_VALUE);
+    }
+
+    private long logSize(String worldName) {
+        return new File(this.worldDir, worldName + ".slimelog").length();
+    }
+
+    @Test
+    void roundTripsWorlds() throws Exception {
+        LogFileLoader loader = loader();
+        byte[] world = LoaderWorlds.serialize(LoaderWorlds.filled(2, "minecraft:stone"));
+        loader.saveWorld("world", world);
+
+        assertTrue(loader.worldExists("world"));
+        assertArrayEquals(world, loader.loadWorld("world"));
+        assertArrayEquals(world, loader().loadWorld("world"), "log isn't read back by a new loader");
+        assertEquals(List.of("world"), loader.listWorlds());
+    }
+
+    @Test
+    void appendsOnlyChangedChunks() throws Exception {
+        LogFileLoader loader = loader();
+        Map<ChunkPos, String> blocks = LoaderWorlds.filled(2, "minecraft:stone");
+        byte[] world = LoaderWorlds.serialize(blocks);
+        loader.saveWorld("world", world);
+        long firstSave = logSize("world");
+
+        blocks.put(new ChunkPos(1, 1), "minecraft:dirt");
+        blocks.remove(new ChunkPos(-2, -2));
+        byte[] changed = LoaderWorlds.serialize(blocks);
+        loader.saveWorld("world", changed);
+        assertTrue(logSize("world") - firstSave < firstSave / 4, "unchanged chunks were appended again");
+        assertArrayEquals(changed, loader.loadWorld("world"));
+        assertArrayEquals(changed, loader().loadWorld("world"));
+
+        // Saving the same world again only appends a manifest
+        long secondSave = logSize("world");
+        loader.saveWorld("world", changed);
+        assertTrue(logSize("world") - secondSave < firstSave / 4);
+        assertArrayEquals(changed, loader.loadWorld("world"));
+    }
+
+    @Test
+    void storesUnsplittableWorldsWhole() throws Exception {
+        LogFileLoader loader = loader();
+        byte[] world = LoaderWorlds.serialize(LoaderWorlds.filled(1, "minecraft:stone"));
+        loader.saveWorld("world", world);
+
+        byte[] raw = "not a slime world".getBytes(StandardCharsets.UTF_8);
+        loader.saveWorld("world", raw);
+        assertArrayEquals(raw, loader.loadWorld("world"));
+        assertArrayEquals(raw, loader().loadWorld("world"));
+
+        loader.saveWorld("world", world);
+        assertArrayEquals(world, loader().loadWorld("world"));
+    }
+
+    @Test
+    void readsIncompleteSavesWithoutTruncatingThem() throws Exception {
+        LogFileLoader loader = loader();
+        byte[] world = LoaderWorlds.serialize(LoaderWorlds.filled(1, "minecraft:stone"));
+        loader.saveWorld("world", world);
+
+        // Another server holding the lock may still be appending its save
+        byte[] partialRecord = {1, 0, 0, 1, 0, 42, 42};
+        Files.write(new File(this.worldDir, "world.slimelog").toPath(), partialRecord, StandardOpenOption.APPEND);
+        long size = logSize("world");
+
+        assertArrayEquals(world, loader.loadWorld("world"));
+        assertArrayEquals(world, loader().loadWorld("world"));
+        assertEquals(size, logSize("world"), "log was truncated without holding the lock");
+
+        // Saves made without the lock are appended after it, and still read back
+        byte[] changed = LoaderWorlds.serialize(LoaderWorlds.filled(1, "minecraft:dirt"));
+        loader().saveWorld("world", changed);
+        assertTrue(logSize("world") > size);
+        assertArrayEquals(changed, loader.loadWorld("world"));
+    }
+
+    @Test
+    void rejectsUnknownWorlds() throws IOException {
+        LogFileLoader loader = loader();
+
+        assertFalse(loader.worldExists("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.loadWorld("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.deleteWorld("missing"));
+        assertThrows(UnknownWorldException.class, () -> loader.acquireLockToken("missing"));
+        assertTrue(loader.listWorlds().isEmpty());
+    }
+
+    @Test
+    void locksAndDeletesWorlds() throws Exception {
+        LogFileLoader loader = loader();
+        loader.saveWorld("world", LoaderWorlds.serialize(LoaderWorlds.filled(0, "minecraft:stone")));
+
+        long token = loader.acquireLockToken("world");
+        assertTrue(loader.isWorldLocked("world"));
+        assertTrue(loader().isWorldLocked("world"), "lock isn't visible to other loaders");
+        assertThrows(WorldLockedException.class, () -> loader().acquireLockToken("world"));
+
+        loader.unlockWorld("world");
+        assertFalse(loader.isWorldLocked("world"));
+        assertEquals(token + 1, loader.acquireLockToken("world"));
+
+        loader.deleteWorld("world");
+        assertFalse(loader.worldExists("world"));
+        assertFalse(loader.isWorldLocked("world"));
+        assertTrue(loader.listWorlds().isEmpty());
+
+        // A deleted world starts a new log when it's saved again
+        byte[] world = LoaderWorlds.serialize(LoaderWorlds.filled(1, "minecraft:dirt"));
+        loader.saveWorld("world", world);
+        assertArrayEquals(world, loader.loadWorld("world"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.grinderwolf.swm.plugin.loaders.mysql;
+
+import com.infernalsuite.aswm.serialization.slime.ChunkFrame;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MysqlLoaderTest {
+
+    private static ChunkFrame frame(long key, int content) {
+        return new ChunkFrame(key, 4, new byte[]{(byte) content, 1, 2, 3});
+    }
+
+    @Test
+    void writesOnlyNewAndChangedChunkRows() {
+        ChunkFrame unchanged = frame(1, 1);
+        ChunkFrame changed = frame(2, 2);
+        ChunkFrame added = frame(3, 3);
+        Map<Long, Long> storedHashes = Map.of(1L, unchanged.hash(), 2L, frame(2, 5).hash());
+
+        MysqlLoader.ChunkChanges changes = MysqlLoader.diffChunks(storedHashes, List.of(unchanged, changed, added));
+
+        assertEquals(List.of(changed, added), changes.changed());
+        assertTrue(changes.removed().isEmpty());
+    }
+
+    @Test
+    void deletesRowsOfRemovedChunks() {
+        ChunkFrame kept = frame(1, 1);
+        Map<Long, Long> storedHashes = Map.of(1L, kept.hash(), 2L, frame(2, 2).hash(), 3L, frame(3, 3).hash());
+
+        MysqlLoader.ChunkChanges changes = MysqlLoader.diffChunks(storedHashes, List.of(kept));
+
+        assertTrue(changes.changed().isEmpty());
+        assertEquals(Set.of(2L, 3L), changes.removed());
+    }
+
+    @Test
+    void writesEveryChunkOfNewWorlds() {
+        List<ChunkFrame> frames = List.of(frame(1, 1), frame(2, 2));
+
+        MysqlLoader.ChunkChanges changes = MysqlLoader.diffChunks(Map.of(), frames);
+
+        assertEquals(frames, changes.changed());
+        assertTrue(changes.removed().isEmpty());
+    }
+}
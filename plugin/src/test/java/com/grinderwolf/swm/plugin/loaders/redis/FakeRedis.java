@@ -0,0 +1,213 @@
+package com.grinderwolf.swm.plugin.loaders.redis;
+
+import com.grinderwolf.swm.plugin.loaders.redis.util.StringByteCodec;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.protocol.CommandArgs;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory Redis with a clock of its own, holding just the commands the loader sends. Scripts can't run without a
+ * server, so the manifest swap script is replayed step by step; any other command or script fails.
+ */
+final class FakeRedis {
+
+    private final Map<String, Value> values = new HashMap<>();
+    private long now;
+    private Runnable beforeScript = () -> {
+    };
+
+    CompletionStage<StatefulRedisConnection<String, byte[]>> connect() {
+        RedisAsyncCommands<String, byte[]> commands = proxy(RedisAsyncCommands.class, (name, args) -> command(name, args));
+        StatefulRedisConnection<String, byte[]> connection = proxy(StatefulRedisConnection.class, (name, args) -> switch (name) {
+            case "async" -> commands;
+            case "isOpen" -> true;
+            case "close" -> null;
+            case "closeAsync" -> CompletableFuture.completedFuture(null);
+            default -> throw new UnsupportedOperationException(name);
+        });
+
+        return CompletableFuture.completedFuture(connection);
+    }
+
+    synchronized void advance(long millis) {
+        this.now += millis;
+    }
+
+    /**
+     * Runs before the next script, like another server acting while a save is in progress.
+     */
+    synchronized void beforeScript(Runnable action) {
+        this.beforeScript = action;
+    }
+
+    synchronized void set(String key, String value) {
+        this.values.put(key, new Value(value.getBytes(StandardCharsets.US_ASCII), 0));
+    }
+
+    synchronized List<String> keys(String prefix) {
+        return List.copyOf(this.values.keySet()).stream().filter(key -> key.startsWith(prefix) && get(key) != null).sorted().toList();
+    }
+
+    private byte[] get(String key) {
+        Value value = this.values.get(key);
+        if (value != null && value.expiresAt() != 0 && value.expiresAt() <= this.now) {
+            this.values.remove(key);
+            return null;
+        }
+
+        return value == null ? null : value.bytes();
+    }
+
+    private void expire(String key, long millis) {
+        byte[] value = get(key);
+        if (value != null) {
+            this.values.put(key, new Value(value, millis == 0 ? 0 : this.now + millis));
+        }
+    }
+
+    private synchronized Object command(String name, Object[] args) {
+        return switch (name) {
+            case "get" -> get((String) args[0]);
+            case "strlen" -> {
+                byte[] value = get((String) args[0]);
+                yield (long) (value == null ? 0 : value.length);
+            }
+            case "mget" -> Arrays.stream((String[]) args[0]).map(key -> KeyValue.fromNullable(key, get(key))).toList();
+            case "exists" -> Arrays.stream((String[]) args[0]).filter(key -> get(key) != null).count();
+            case "del" -> Arrays.stream((String[]) args[0]).filter(key -> this.values.remove(key) != null).count();
+            case "set" -> set((String) args[0], (byte[]) args[1], args.length > 2 ? (SetArgs) args[2] : null);
+            case "eval" -> eval((String) args[0], (String[]) args[2], (byte[][]) args[3]);
+            default -> throw new UnsupportedOperationException(name);
+        };
+    }
+
+    private String set(String key, byte[] value, SetArgs setArgs) {
+        long expiry = 0;
+        if (setArgs != null) {
+            CommandArgs<String, byte[]> args = new CommandArgs<>(StringByteCodec.INSTANCE);
+            setArgs.build(args);
+            String[] options = args.toCommandString().split(" ");
+
+            for (int i = 0; i < options.length; i++) {
+                switch (options[i]) {
+                    case "PX" -> expiry = this.now + Long.parseLong(options[++i]);
+                    case "NX" -> {
+                        if (get(key) != null) {
+                            return null;
+                        }
+                    }
+                    case "XX" -> {
+                        if (get(key) == null) {
+                            return null;
+                        }
+                    }
+                    default -> throw new UnsupportedOperationException(options[i]);
+                }
+            }
+        }
+
+        this.values.put(key, new Value(value, expiry));
+        return "OK";
+    }
+
+    private long eval(String script, String[] keys, byte[][] argv) {
+        Runnable action = this.beforeScript;
+        this.beforeScript = () -> {
+        };
+        action.run();
+
+        if (!script.contains("PERSIST")) {
+            throw new UnsupportedOperationException(script);
+        }
+
+        // Follows SWAP_MANIFEST_SCRIPT, with 0-based indexes
+        String token = ascii(argv[4]);
+        byte[] lease = get(keys[3]);
+        if (!token.equals("0") && (lease == null || !ascii(lease).equals(token))) {
+            return -1;
+        }
+
+        int count = Integer.parseInt(ascii(argv[1]));
+        for (int i = 4; i < 4 + count; i++) {
+            if (get(keys[i]) == null) {
+                return 0;
+            }
+        }
+        for (int i = 4; i < 4 + count; i++) {
+            expire(keys[i], 0);
+        }
+        for (int i = 4 + count; i < keys.length; i++) {
+            expire(keys[i], Long.parseLong(ascii(argv[2])));
+        }
+
+        this.values.put(keys[0], new Value(argv[0], 0));
+        this.values.remove(keys[1]);
+        if (get(keys[2]) == null) {
+            this.values.put(keys[2], new Value(argv[3], 0));
+        }
+
+        return 1;
+    }
+
+    private static String ascii(byte[] value) {
+        return new String(value, StandardCharsets.US_ASCII);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(FakeRedis.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName();
+                };
+            }
+
+            Object result = handler.handle(method.getName(), args);
+            return RedisFuture.class.isAssignableFrom(method.getReturnType()) ? new CompletedFuture<>(result) : result;
+        });
+    }
+
+    private interface Handler {
+
+        Object handle(String name, Object[] args);
+
+    }
+
+    private record Value(byte[] bytes, long expiresAt) {
+
+    }
+
+    private static final class CompletedFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+
+        private CompletedFuture(T value) {
+            complete(value);
+        }
+
+        @Override
+        public String getError() {
+            return null;
+        }
+
+        @Override
+        public boolean await(long timeout, TimeUnit unit) {
+            return true;
+        }
+
+    }
+
+}
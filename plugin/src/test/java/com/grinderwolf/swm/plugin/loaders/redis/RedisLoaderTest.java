@@ -0,0 +1,93 @@
+package com.grinderwolf.swm.plugin.loaders.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisLoaderTest {
+
+    private static final String CHUNKS = "aswm_world_chunk_test:";
+    // Worlds span more than one batch of chunks, so reads and writes keep several batches in flight
+    private static final int WORLD_SIZE = 10 * 1024 * 1024 + 123;
+
+    private final FakeRedis redis = new FakeRedis();
+    private final RedisLoader loader = new RedisLoader(Duration.ofSeconds(5), this.redis::connect);
+
+    private static byte[] world(int seed) {
+        byte[] world = new byte[WORLD_SIZE];
+        new Random(seed).nextBytes(world);
+        return world;
+    }
+
+    @Test
+    void savesWorldsAcrossSeveralChunks() throws Exception {
+        byte[] world = world(1);
+        this.loader.saveWorld("test", world);
+
+        assertTrue(this.loader.worldExists("test"));
+        assertEquals(11, this.redis.keys(CHUNKS + "1:").size());
+        assertArrayEquals(world, this.loader.loadWorld("test"));
+        try (InputStream stream = this.loader.loadWorldStream("test")) {
+            assertArrayEquals(world, stream.readAllBytes());
+        }
+    }
+
+    @Test
+    void keepsReplacedChunksUntilReadersAreDone() throws Exception {
+        byte[] first = world(1);
+        byte[] second = world(2);
+        this.loader.saveWorld("test", first);
+
+        // A reader that started before the world was saved again still reads the world it started with
+        try (InputStream stream = this.loader.loadWorldStream("test")) {
+            this.loader.saveWorld("test", second);
+            assertArrayEquals(first, stream.readAllBytes());
+        }
+        assertArrayEquals(second, this.loader.loadWorld("test"));
+
+        this.redis.advance(TimeUnit.HOURS.toMillis(1));
+        assertEquals(List.of(), this.redis.keys(CHUNKS + "1:"));
+        assertEquals(11, this.redis.keys(CHUNKS + "2:").size());
+        assertArrayEquals(second, this.loader.loadWorld("test"));
+    }
+
+    @Test
+    void dropsChunksOfSavesThatDidNotComplete() throws Exception {
+        byte[] world = world(1);
+        this.loader.saveWorld("test", world);
+
+        // The chunks of the second save expire before its manifest is swapped in
+        this.redis.beforeScript(() -> this.redis.advance(TimeUnit.HOURS.toMillis(1)));
+        IOException ex = assertThrows(IOException.class, () -> this.loader.saveWorld("test", world(2)));
+        assertTrue(ex.getMessage().contains("expired"), ex.getMessage());
+
+        assertEquals(List.of(), this.redis.keys(CHUNKS + "2:"));
+        assertArrayEquals(world, this.loader.loadWorld("test"));
+    }
+
+    @Test
+    void rejectsSavesOfServersThatLostTheLock() throws Exception {
+        byte[] first = world(1);
+        byte[] second = world(2);
+        this.loader.saveWorld("test", first);
+        this.redis.set("aswm_world_lease_test", "7");
+
+        IOException ex = assertThrows(IOException.class, () -> this.loader.saveWorld("test", second, 6));
+        assertTrue(ex.getMessage().contains("taken over"), ex.getMessage());
+        assertEquals(List.of(), this.redis.keys(CHUNKS + "2:"));
+        assertArrayEquals(first, this.loader.loadWorld("test"));
+
+        this.loader.saveWorld("test", second, 7);
+        assertArrayEquals(second, this.loader.loadWorld("test"));
+    }
+}